@@ -75,6 +75,12 @@ public final class DependencyGraphBuilder implements Cancelable {
    * {@link DependencyGraphBuilderFactory#setEnableFailureReporting}. The default value is off but can be controlled by the {@code DependencyGraphBuilder.dumpFailureInfo} property.
    */
   private static final boolean DEBUG_DUMP_FAILURE_INFO = System.getProperty("DependencyGraphBuilder.dumpFailureInfo", "FALSE").equalsIgnoreCase("TRUE");
+  /**
+   * Number of lock stripes used by the shared resolution maps. Each map is updated by every builder thread so there should be a few stripes per thread to keep contention low. This is four times the
+   * number of processor cores (with a minimum of 16) by default but can be controlled by the {@code DependencyGraphBuilder.concurrencyLevel} property.
+   */
+  private static final int CONCURRENCY_LEVEL = Integer.parseInt(System.getProperty("DependencyGraphBuilder.concurrencyLevel",
+      Integer.toString(Math.max(16, Runtime.getRuntime().availableProcessors() * 4))));
 
   private final int _objectId = s_nextObjectId.incrementAndGet();
   private final AtomicInteger _activeJobCount = new AtomicInteger();
@@ -97,13 +103,18 @@ public final class DependencyGraphBuilder implements Cancelable {
   private FunctionExclusionGroups _functionExclusionGroups;
 
   // The resolve task is ref-counted once for the map (it is being used as a set)
-  private final ConcurrentMap<ValueRequirement, Map<ResolveTask, ResolveTask>> _requirements = new ConcurrentHashMap<ValueRequirement, Map<ResolveTask, ResolveTask>>();
+  private final ConcurrentMap<ValueRequirement, Map<ResolveTask, ResolveTask>> _requirements = new ConcurrentHashMap<ValueRequirement, Map<ResolveTask, ResolveTask>>(16, 0.75f,
+      CONCURRENCY_LEVEL);
   private final AtomicInteger _activeResolveTasks = new AtomicInteger();
 
   // The resolve task is NOT ref-counted (it is only used for parent comparisons), but the value producer is
-  private final ConcurrentMap<ValueSpecification, MapEx<ResolveTask, ResolvedValueProducer>> _specifications = new ConcurrentHashMap<ValueSpecification, MapEx<ResolveTask, ResolvedValueProducer>>();
+  private final ConcurrentMap<ValueSpecification, MapEx<ResolveTask, ResolvedValueProducer>> _specifications = new ConcurrentHashMap<ValueSpecification, MapEx<ResolveTask, ResolvedValueProducer>>(
+      16, 0.75f, CONCURRENCY_LEVEL);
 
-  private final ConcurrentMap<ValueSpecification, ResolvedValue> _resolvedValues = new ConcurrentHashMap<ValueSpecification, ResolvedValue>();
+  private final ConcurrentMap<ValueSpecification, ResolvedValue> _resolvedValues = new ConcurrentHashMap<ValueSpecification, ResolvedValue>(16, 0.75f, CONCURRENCY_LEVEL);
+
+  // Resolutions carried over from a previously built graph; these are never resolved again
+  private final ConcurrentMap<ValueRequirement, ResolvedValue> _existingResolutions = new ConcurrentHashMap<ValueRequirement, ResolvedValue>();
 
   /**
    * Number of additional threads to launch while requirements are being added or the graph is being built. The total number of threads used for graph construction may be up to this value or may be
@@ -311,6 +322,45 @@ public final class DependencyGraphBuilder implements Cancelable {
     _resolvedValues.put(value.getValueSpecification(), value);
   }
 
+  protected ResolvedValue getExistingResolution(final ValueRequirement valueRequirement) {
+    return _existingResolutions.get(valueRequirement);
+  }
+
+  /**
+   * Seeds the builder with nodes from a previously constructed graph. The nodes will be part of the graph produced and any of the
+   * given requirements, whether added as a target or required as an input by another function, will be satisfied by the existing
+   * production rather than being resolved again. This must be called before any targets are added.
+   * <p>
+   * The nodes must form a closed set - any input nodes must also be supplied - and must not be part of a graph that is in use
+   * elsewhere as they may be modified during graph construction.
+   * 
+   * @param nodes the existing nodes, not null
+   * @param resolutions the requirements satisfied by the outputs of the existing nodes, not null
+   */
+  public void addExistingNodes(final Collection<DependencyNode> nodes, final Map<ValueRequirement, ValueSpecification> resolutions) {
+    ArgumentChecker.notNull(nodes, "nodes");
+    ArgumentChecker.notNull(resolutions, "resolutions");
+    final Map<ValueSpecification, DependencyNode> producers = new HashMap<ValueSpecification, DependencyNode>();
+    for (DependencyNode node : nodes) {
+      for (ValueSpecification output : node.getOutputValues()) {
+        producers.put(output, node);
+      }
+    }
+    final Map<ValueRequirement, ValueSpecification> validResolutions = new HashMap<ValueRequirement, ValueSpecification>();
+    for (Map.Entry<ValueRequirement, ValueSpecification> resolution : resolutions.entrySet()) {
+      final DependencyNode node = producers.get(resolution.getValue());
+      if (node == null) {
+        s_logger.warn("No existing node produces {} for {}", resolution.getValue(), resolution.getKey());
+        continue;
+      }
+      _existingResolutions.put(resolution.getKey(), new ResolvedValue(resolution.getValue(), node.getFunction(), new HashSet<ValueSpecification>(node.getInputValues()),
+          new HashSet<ValueSpecification>(node.getOutputValues())));
+      validResolutions.put(resolution.getKey(), resolution.getValue());
+    }
+    getTerminalValuesCallback().addExistingNodes(nodes, validResolutions);
+    s_logger.info("Added {} existing nodes with {} existing resolutions", nodes.size(), validResolutions.size());
+  }
+
   /**
    * Sets the visitor to receive resolution failures. If not set, a synthetic exception is created for each failure in the miscellaneous exception set.
    * 
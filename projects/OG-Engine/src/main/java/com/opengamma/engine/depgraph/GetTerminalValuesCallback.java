@@ -288,6 +288,24 @@ import com.opengamma.util.tuple.Pair;
     return "TerminalValueCallback";
   }
 
+  /**
+   * Registers nodes from a previously constructed graph. The nodes will be included in the graph nodes reported and will be used in preference to creating new nodes
+   * for any of their outputs.
+   * 
+   * @param nodes the existing nodes, not null
+   * @param resolutions the top level requirements already satisfied by the existing nodes, not null
+   */
+  public synchronized void addExistingNodes(final Collection<DependencyNode> nodes, final Map<ValueRequirement, ValueSpecification> resolutions) {
+    for (DependencyNode node : nodes) {
+      for (ValueSpecification output : node.getOutputValues()) {
+        _spec2Node.put(output, node);
+      }
+      getOrCreateNodes(node.getFunction(), node.getComputationTarget()).add(node);
+      _graphNodes.add(node);
+    }
+    _resolvedValues.putAll(resolutions);
+  }
+
   /**
    * Returns the dependency graph nodes built by calls to {@link #resolved}. It is only valid to call this when there are no pending resolutions - that is all calls to {@link #resolved} have returned.
    * A copy of the internal structure is used so that it may be modified by the caller and this callback instance be used to process subsequent resolutions.
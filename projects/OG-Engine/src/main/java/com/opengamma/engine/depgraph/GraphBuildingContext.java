@@ -157,6 +157,11 @@ import com.opengamma.util.tuple.Pair;
       s_logger.debug("Can't introduce a ValueRequirement loop");
       return new NullResolvedValueProducer(requirement, recursiveRequirement(requirement));
     }
+    final ResolvedValue existing = getBuilder().getExistingResolution(requirement);
+    if (existing != null) {
+      s_logger.debug("Using existing resolution {}", existing);
+      return new SingleResolvedValueProducer(requirement, existing);
+    }
     RequirementResolver resolver = null;
     final ResolveTask[] tasks = getTasksResolving(requirement);
     if (tasks != null) {
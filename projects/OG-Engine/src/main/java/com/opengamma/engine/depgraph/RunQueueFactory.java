@@ -89,4 +89,19 @@ public abstract class RunQueueFactory {
     };
   }
 
+  /**
+   * Creates work stealing queues with a deque for each processor core. Each builder thread adds and takes tasks (LIFO) from its own deque, stealing the oldest tasks from other deques only when its own
+   * is empty. This can scale better than {@link #getConcurrentStack} or {@link #getConcurrentLinkedQueue} on machines with many cores as the builder threads do not contend on a single structure.
+   * 
+   * @return the factory instance
+   */
+  public static RunQueueFactory getWorkStealing() {
+    return new RunQueueFactory() {
+      @Override
+      protected RunQueue createRunQueue() {
+        return new WorkStealingRunQueue();
+      }
+    };
+  }
+
 }
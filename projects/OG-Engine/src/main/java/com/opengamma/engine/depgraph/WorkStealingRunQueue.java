@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.depgraph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Run queue implementation based on work stealing between a number of deques. Each thread is assigned a "home" deque; tasks added by a thread go onto the tail of its home deque and are taken from
+ * there in LIFO order. When its home deque is empty a thread will steal the oldest task from the head of one of the other deques. Threads working on independent parts of the graph will normally only
+ * touch their own deques so contention is far lower than with a single shared queue.
+ * <p>
+ * The number of deques defaults to the number of processor cores. Each deque is only locked briefly and, with a thread per core, almost always by the same thread so the locks are uncontended.
+ */
+/* package */final class WorkStealingRunQueue implements RunQueue {
+
+  private static final AtomicInteger s_nextThreadIndex = new AtomicInteger();
+
+  private static final ThreadLocal<Integer> s_threadIndex = new ThreadLocal<Integer>() {
+    @Override
+    protected Integer initialValue() {
+      return s_nextThreadIndex.getAndIncrement() & Integer.MAX_VALUE;
+    }
+  };
+
+  private final ArrayDeque<ContextRunnable>[] _deques;
+  /**
+   * Count of the tasks in the deques. This is incremented before a task is added and decremented after one is removed so that it is never an under-estimate and {@link #isEmpty} will not return true
+   * while a task is present.
+   */
+  private final AtomicInteger _size = new AtomicInteger();
+
+  public WorkStealingRunQueue() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  @SuppressWarnings("unchecked")
+  public WorkStealingRunQueue(final int deques) {
+    _deques = new ArrayDeque[Math.max(deques, 1)];
+    for (int i = 0; i < _deques.length; i++) {
+      _deques[i] = new ArrayDeque<ContextRunnable>();
+    }
+  }
+
+  private int getHomeIndex() {
+    return s_threadIndex.get() % _deques.length;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return _size.get() <= 0;
+  }
+
+  @Override
+  public int size() {
+    return _size.get();
+  }
+
+  @Override
+  public Iterator<ContextRunnable> iterator() {
+    final List<ContextRunnable> copy = new ArrayList<ContextRunnable>();
+    for (ArrayDeque<ContextRunnable> deque : _deques) {
+      synchronized (deque) {
+        copy.addAll(deque);
+      }
+    }
+    return copy.iterator();
+  }
+
+  @Override
+  public void add(final ContextRunnable runnable) {
+    final ArrayDeque<ContextRunnable> deque = _deques[getHomeIndex()];
+    _size.incrementAndGet();
+    synchronized (deque) {
+      deque.addLast(runnable);
+    }
+  }
+
+  @Override
+  public ContextRunnable take() {
+    final int home = getHomeIndex();
+    ContextRunnable runnable;
+    ArrayDeque<ContextRunnable> deque = _deques[home];
+    synchronized (deque) {
+      runnable = deque.pollLast();
+    }
+    if (runnable == null) {
+      for (int i = 1; i < _deques.length; i++) {
+        deque = _deques[(home + i) % _deques.length];
+        synchronized (deque) {
+          runnable = deque.pollFirst();
+        }
+        if (runnable != null) {
+          break;
+        }
+      }
+      if (runnable == null) {
+        return null;
+      }
+    }
+    _size.decrementAndGet();
+    return runnable;
+  }
+
+}
@@ -22,6 +22,8 @@ import org.fudgemsg.mapping.FudgeSerializer;
 
 import com.opengamma.engine.depgraph.DependencyGraph;
 import com.opengamma.engine.depgraph.DependencyNode;
+import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.engine.value.ValueSpecification;
 import com.opengamma.util.tuple.IntObjectPair;
 import com.opengamma.util.tuple.Pair;
 
@@ -34,6 +36,9 @@ public class DependencyGraphFudgeBuilder implements FudgeBuilder<DependencyGraph
   private static final String CALCULATION_CONFIGURATION_NAME_FIELD = "calculationConfigurationName";
   private static final String NODE_FIELD = "dependencyNode";
   private static final String EDGE_FIELD = "edge";
+  private static final String TERMINAL_OUTPUT_FIELD = "terminalOutput";
+  private static final String SPECIFICATION_FIELD = "specification";
+  private static final String REQUIREMENT_FIELD = "requirement";
   
   @Override
   public MutableFudgeMsg buildMessage(FudgeSerializer serializer, DependencyGraph depGraph) {
@@ -49,6 +54,16 @@ public class DependencyGraphFudgeBuilder implements FudgeBuilder<DependencyGraph
       msg.add(EDGE_FIELD, edge.getFirst());
       msg.add(EDGE_FIELD, edge.getSecond());
     }
+    for (Map.Entry<ValueSpecification, Set<ValueRequirement>> terminalOutput : depGraph.getTerminalOutputs().entrySet()) {
+      final MutableFudgeMsg terminalOutputMsg = serializer.newMessage();
+      serializer.addToMessage(terminalOutputMsg, SPECIFICATION_FIELD, null, terminalOutput.getKey());
+      if (terminalOutput.getValue() != null) {
+        for (ValueRequirement requirement : terminalOutput.getValue()) {
+          serializer.addToMessage(terminalOutputMsg, REQUIREMENT_FIELD, null, requirement);
+        }
+      }
+      msg.add(TERMINAL_OUTPUT_FIELD, terminalOutputMsg);
+    }
     return msg;
   }
 
@@ -91,6 +106,20 @@ public class DependencyGraphFudgeBuilder implements FudgeBuilder<DependencyGraph
     for (DependencyNode node : nodes) {
       graph.addDependencyNode(node);
     }
+    final List<FudgeField> terminalOutputFields = msg.getAllByName(TERMINAL_OUTPUT_FIELD);
+    if (!terminalOutputFields.isEmpty()) {
+      final Map<ValueSpecification, Set<ValueRequirement>> terminalOutputs = new HashMap<ValueSpecification, Set<ValueRequirement>>();
+      for (FudgeField terminalOutputField : terminalOutputFields) {
+        final FudgeMsg terminalOutputMsg = (FudgeMsg) terminalOutputField.getValue();
+        final ValueSpecification specification = deserializer.fieldValueToObject(ValueSpecification.class, terminalOutputMsg.getByName(SPECIFICATION_FIELD));
+        final Set<ValueRequirement> requirements = new HashSet<ValueRequirement>();
+        for (FudgeField requirementField : terminalOutputMsg.getAllByName(REQUIREMENT_FIELD)) {
+          requirements.add(deserializer.fieldValueToObject(ValueRequirement.class, requirementField));
+        }
+        terminalOutputs.put(specification, requirements);
+      }
+      graph.addTerminalOutputs(terminalOutputs);
+    }
     return graph;
   } 
   
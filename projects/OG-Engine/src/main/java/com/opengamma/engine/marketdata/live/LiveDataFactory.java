@@ -5,11 +5,16 @@
  */
 package com.opengamma.engine.marketdata.live;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
 import com.opengamma.core.security.SecuritySource;
 import com.opengamma.engine.marketdata.availability.MarketDataAvailabilityProvider;
 import com.opengamma.livedata.LiveDataClient;
 import com.opengamma.livedata.UserPrincipal;
+import com.opengamma.livedata.client.CoalescingLiveDataClient;
 import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.NamedThreadPoolFactory;
 
 /**
  * Factory for building {@link LiveMarketDataProvider} instances.
@@ -19,19 +24,76 @@ public class LiveDataFactory {
   private final LiveDataClient _liveDataClient;
   private final MarketDataAvailabilityProvider _availabilityProvider;
   private final SecuritySource _securitySource;
+  /** Access controlled via this */
+  private long _conflationWindowMillis;
+  /** Access controlled via this */
+  private ScheduledExecutorService _conflationExecutor;
 
+  /**
+   * Creates a factory whose providers pass their subscription requests straight to the live data client.
+   * 
+   * @param liveDataClient the live data client, not null
+   * @param availabilityProvider the availability provider, not null
+   * @param securitySource the security source, not null
+   */
   public LiveDataFactory(LiveDataClient liveDataClient,
                          MarketDataAvailabilityProvider availabilityProvider,
                          SecuritySource securitySource) {
+    this(liveDataClient, availabilityProvider, securitySource, false);
+  }
+
+  /**
+   * Creates a factory.
+   * <p>
+   * The providers created by a factory share its live data client. If subscriptions are coalesced, the requests from
+   * all of the providers are combined into large batches and deduplicated before reaching the client, which greatly
+   * reduces the number of round trips when many views start at once. Coalescing is off unless requested here.
+   * 
+   * @param liveDataClient the live data client, not null
+   * @param availabilityProvider the availability provider, not null
+   * @param securitySource the security source, not null
+   * @param coalesceSubscriptions true to coalesce the subscription requests from all providers, false to pass each to the client
+   */
+  public LiveDataFactory(LiveDataClient liveDataClient,
+                         MarketDataAvailabilityProvider availabilityProvider,
+                         SecuritySource securitySource,
+                         boolean coalesceSubscriptions) {
     ArgumentChecker.notNull(liveDataClient, "liveDataClient");
     ArgumentChecker.notNull(availabilityProvider, "availabilityProvider");
     ArgumentChecker.notNull(securitySource, "securitySource");
-    _liveDataClient = liveDataClient;
+    _liveDataClient = coalesceSubscriptions ? new CoalescingLiveDataClient(liveDataClient) : liveDataClient;
     _availabilityProvider = availabilityProvider;
     _securitySource = securitySource;
   }
 
-  /* package */ LiveMarketDataProvider create(UserPrincipal user) {
-    return new LiveMarketDataProvider(_liveDataClient, _availabilityProvider, _securitySource, user);
+  /**
+   * Gets the conflation window of the providers created.
+   * 
+   * @return the window in milliseconds, zero if updates are not conflated
+   */
+  public synchronized long getConflationWindowMillis() {
+    return _conflationWindowMillis;
+  }
+
+  /**
+   * Sets the conflation window of the providers created, see {@link LiveMarketDataProvider#setConflation}.
+   * <p>
+   * The providers share a single daemon thread delivering the conflated updates.
+   * 
+   * @param conflationWindowMillis  the window in milliseconds, zero or less to apply each update as it arrives
+   */
+  public synchronized void setConflationWindowMillis(long conflationWindowMillis) {
+    if (conflationWindowMillis > 0 && _conflationExecutor == null) {
+      _conflationExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadPoolFactory("LiveDataConflation", true));
+    }
+    _conflationWindowMillis = Math.max(conflationWindowMillis, 0);
+  }
+
+  /* package */ synchronized LiveMarketDataProvider create(UserPrincipal user) {
+    LiveMarketDataProvider provider = new LiveMarketDataProvider(_liveDataClient, _availabilityProvider, _securitySource, user);
+    if (_conflationWindowMillis > 0) {
+      provider.setConflation(_conflationWindowMillis, _conflationExecutor);
+    }
+    return provider;
   }
 }
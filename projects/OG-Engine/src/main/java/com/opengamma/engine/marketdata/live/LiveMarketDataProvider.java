@@ -5,12 +5,14 @@
  */
 package com.opengamma.engine.marketdata.live;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ScheduledExecutorService;
 
 import org.fudgemsg.FudgeMsg;
 import org.slf4j.Logger;
@@ -26,11 +28,13 @@ import com.opengamma.engine.marketdata.availability.MarketDataAvailabilityProvid
 import com.opengamma.engine.marketdata.spec.LiveMarketDataSpecification;
 import com.opengamma.engine.marketdata.spec.MarketDataSpecification;
 import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.livedata.BatchLiveDataListener;
 import com.opengamma.livedata.LiveDataClient;
 import com.opengamma.livedata.LiveDataListener;
 import com.opengamma.livedata.LiveDataSpecification;
 import com.opengamma.livedata.LiveDataValueUpdate;
 import com.opengamma.livedata.UserPrincipal;
+import com.opengamma.livedata.client.ConflatingLiveDataListener;
 import com.opengamma.livedata.msg.LiveDataSubscriptionResponse;
 import com.opengamma.livedata.msg.LiveDataSubscriptionResult;
 import com.opengamma.util.ArgumentChecker;
@@ -38,7 +42,7 @@ import com.opengamma.util.ArgumentChecker;
 /**
  * A {@link MarketDataProvider} for live data.
  */
-public class LiveMarketDataProvider extends AbstractMarketDataProvider implements LiveDataListener {
+public class LiveMarketDataProvider extends AbstractMarketDataProvider implements BatchLiveDataListener {
 
   /** Logger. */
   private static final Logger s_logger = LoggerFactory.getLogger(LiveMarketDataProvider.class);
@@ -55,6 +59,7 @@ public class LiveMarketDataProvider extends AbstractMarketDataProvider implement
       new ConcurrentHashMap<LiveDataSpecification, Set<ValueRequirement>>();
   private final Set<ValueRequirement> _failedRequirements = new CopyOnWriteArraySet<ValueRequirement>();
   private final UserPrincipal _marketDataUser;
+  private volatile LiveDataListener _subscriptionListener = this;
 
   public LiveMarketDataProvider(LiveDataClient liveDataClient,
                                 MarketDataAvailabilityProvider availabilityProvider,
@@ -85,6 +90,24 @@ public class LiveMarketDataProvider extends AbstractMarketDataProvider implement
     _marketDataUser = marketDataUser;
   }
 
+  /**
+   * Conflates the updates received for subsequent subscriptions.
+   * <p>
+   * Updates are held for the given window, keeping the latest value of each field, and then
+   * applied together with a single notification of the changed values. This suits views which
+   * recompute less often than their market data ticks.
+   * 
+   * @param windowMillis  how long updates are held for, zero or less to apply each update as it arrives
+   * @param executor  the executor delivering the held updates, not null if the window is positive
+   */
+  public void setConflation(long windowMillis, ScheduledExecutorService executor) {
+    if (windowMillis > 0) {
+      _subscriptionListener = new ConflatingLiveDataListener(this, windowMillis, executor);
+    } else {
+      _subscriptionListener = this;
+    }
+  }
+
   //-------------------------------------------------------------------------
   @Override
   public void subscribe(ValueRequirement valueRequirement) {
@@ -103,7 +126,7 @@ public class LiveMarketDataProvider extends AbstractMarketDataProvider implement
       liveDataSpecs.add(liveDataSpec);
       registerLiveDataSpec(requirement, liveDataSpec);
     }
-    _liveDataClient.subscribe(_marketDataUser, liveDataSpecs, this);
+    _liveDataClient.subscribe(_marketDataUser, liveDataSpecs, _subscriptionListener);
   }
 
   @Override
@@ -196,12 +219,33 @@ public class LiveMarketDataProvider extends AbstractMarketDataProvider implement
 
   @Override
   public void valueUpdate(LiveDataValueUpdate valueUpdate) {
+    Set<ValueRequirement> valueRequirements = applyUpdate(valueUpdate);
+    if (valueRequirements != null) {
+      super.valuesChanged(valueRequirements);
+    }
+  }
+
+  @Override
+  public void valueUpdates(Collection<LiveDataValueUpdate> valueUpdates) {
+    Set<ValueRequirement> changed = new HashSet<ValueRequirement>();
+    for (LiveDataValueUpdate valueUpdate : valueUpdates) {
+      Set<ValueRequirement> valueRequirements = applyUpdate(valueUpdate);
+      if (valueRequirements != null) {
+        changed.addAll(valueRequirements);
+      }
+    }
+    if (!changed.isEmpty()) {
+      super.valuesChanged(changed);
+    }
+  }
+
+  private Set<ValueRequirement> applyUpdate(LiveDataValueUpdate valueUpdate) {
     s_logger.debug("Update received {}", valueUpdate);
 
     Set<ValueRequirement> valueRequirements = _liveDataSpec2ValueRequirements.get(valueUpdate.getSpecification());
     if (valueRequirements == null) {
       s_logger.warn("Received value update for which no corresponding set of value requirements was found: {}", valueUpdate.getSpecification());
-      return;
+      return null;
     }
 
     s_logger.debug("Corresponding value requirements are {}", valueRequirements);
@@ -217,8 +261,7 @@ public class LiveMarketDataProvider extends AbstractMarketDataProvider implement
       }
       _underlyingProvider.addValue(valueRequirement, value);
     }
-
-    super.valuesChanged(valueRequirements);
+    return valueRequirements;
   }
 
 }
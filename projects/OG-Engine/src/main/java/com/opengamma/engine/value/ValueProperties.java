@@ -14,13 +14,15 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.regex.Pattern;
 
-import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Sets;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.PublicAPI;
@@ -235,12 +237,12 @@ public abstract class ValueProperties implements Serializable, Comparable<ValueP
             _properties.put(optionalProperty, Collections.<String>emptySet());
           }
         }
-        return new ValuePropertiesImpl(getSmallMap(_properties), getUnmodifiableSet(_optional));
+        return ValuePropertiesImpl.of(_properties, _optional);
       } else {
         if (_properties.isEmpty()) {
           return EMPTY;
         }
-        return new ValuePropertiesImpl(getSmallMap(_properties), Collections.<String>emptySet());
+        return ValuePropertiesImpl.of(_properties, null);
       }
     }
     
@@ -254,23 +256,15 @@ public abstract class ValueProperties implements Serializable, Comparable<ValueP
           return Collections.unmodifiableSet((values instanceof Set) ? (Set<String>) values : new HashSet<String>(values));
       }
     }
-    
-    private static <K, V> Map<K, V> getSmallMap(Map<K, V> map) {
-      switch (map.size()) {
-        case 0:
-          return Collections.emptyMap();
-        case 1:
-          for (Entry<K, V> entry : map.entrySet()) {
-            return Collections.singletonMap(entry.getKey(), entry.getValue());
-          }
-        default:
-          return new HashMap<K, V>(map);
-      }
-    }
   }
 
   /**
    * A value properties implementation holding a set of properties.
+   * <p>
+   * The properties and their values are held in sorted, array based, immutable collections which are much smaller than hash
+   * based ones for the handful of properties typically present. Instances are canonicalized so that equal property sets
+   * (and equal sets of values within them) are normally the same object; the equality test then reduces to an identity
+   * check in the common case.
    */
   public static final class ValuePropertiesImpl extends ValueProperties {
 
@@ -278,22 +272,26 @@ public abstract class ValueProperties implements Serializable, Comparable<ValueP
      * 
      */
     private static final long serialVersionUID = 1L;
+    /**
+     * The canonical property sets.
+     */
+    private static final Interner<ValuePropertiesImpl> s_interned = Interners.newWeakInterner();
+    /**
+     * The canonical property value sets.
+     */
+    private static final Interner<ImmutableSortedSet<String>> s_internedValues = Interners.newWeakInterner();
     /**
      * The properties.
      */
-    private final Map<String, Set<String>> _properties;
+    private final ImmutableSortedMap<String, Set<String>> _properties;
     /**
      * The optional properties.
      */
-    private final Set<String> _optional;
+    private final ImmutableSortedSet<String> _optional;
     /**
      * Hashcode of the property set.
      */
-    private volatile int _hashCode;
-    /**
-     * Indicates whether the hash-code is valid.
-     */
-    private volatile boolean _hashCodeValid;
+    private final int _hashCode;
 
     /**
      * Creates an instance.
@@ -301,9 +299,30 @@ public abstract class ValueProperties implements Serializable, Comparable<ValueP
      * @param properties  the required properties, not null
      * @param optional  the optional properties, not null
      */
-    private ValuePropertiesImpl(final Map<String, Set<String>> properties, final Set<String> optional) {
+    private ValuePropertiesImpl(final ImmutableSortedMap<String, Set<String>> properties, final ImmutableSortedSet<String> optional) {
       _properties = properties;
       _optional = optional;
+      _hashCode = properties.hashCode() ^ optional.hashCode();
+    }
+
+    /**
+     * Returns the canonical instance for a property set.
+     * 
+     * @param properties  the required properties, not null
+     * @param optional  the optional properties, null or empty for none
+     * @return the property set, not null
+     */
+    private static ValuePropertiesImpl of(final Map<String, Set<String>> properties, final Set<String> optional) {
+      final ImmutableSortedMap.Builder<String, Set<String>> builder = ImmutableSortedMap.naturalOrder();
+      for (Map.Entry<String, Set<String>> property : properties.entrySet()) {
+        builder.put(property.getKey(), s_internedValues.intern(ImmutableSortedSet.copyOf(property.getValue())));
+      }
+      final ImmutableSortedSet<String> optionalSet = ((optional == null) || optional.isEmpty()) ? ImmutableSortedSet.<String>of() : ImmutableSortedSet.copyOf(optional);
+      return s_interned.intern(new ValuePropertiesImpl(builder.build(), optionalSet));
+    }
+
+    private Object readResolve() {
+      return s_interned.intern(this);
     }
 
     @Override
@@ -466,7 +485,7 @@ public abstract class ValueProperties implements Serializable, Comparable<ValueP
           }
         }
       }
-      return new ValuePropertiesImpl(Collections.unmodifiableMap(composed), (optional != null) ? Collections.unmodifiableSet(optional) : Collections.<String>emptySet());
+      return of(composed, optional);
     }
 
     @Override
@@ -521,7 +540,7 @@ public abstract class ValueProperties implements Serializable, Comparable<ValueP
         return EMPTY;
       } else {
         if (different) {
-          return new ValuePropertiesImpl(Collections.unmodifiableMap(intersection), (optional != null) ? Collections.unmodifiableSet(optional) : Collections.<String>emptySet());
+          return of(intersection, optional);
         } else {
           return this;
         }
@@ -547,19 +566,15 @@ public abstract class ValueProperties implements Serializable, Comparable<ValueP
         return false;
       }
       final ValuePropertiesImpl other = (ValuePropertiesImpl) o;
-      return _properties.equals(other._properties) && ObjectUtils.equals(_optional, other._optional);
+      if (_hashCode != other._hashCode) {
+        return false;
+      }
+      return _properties.equals(other._properties) && _optional.equals(other._optional);
     }
 
     @Override
     public int hashCode() {
-      if (_hashCodeValid) {
-        return _hashCode;
-      } else {
-        final int hashCode = _properties.hashCode() ^ _optional.hashCode();
-        _hashCode = hashCode;
-        _hashCodeValid = true;
-        return hashCode;
-      }
+      return _hashCode;
     }
 
     @Override
@@ -1021,7 +1036,7 @@ public abstract class ValueProperties implements Serializable, Comparable<ValueP
         if (other._optional.isEmpty()) {
           return properties;
         } else {
-          return new ValuePropertiesImpl(other._properties, Collections.<String>emptySet());
+          return ValuePropertiesImpl.of(other._properties, null);
         }
       } else {
         return properties;
@@ -11,6 +11,8 @@ import java.util.Set;
 import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.text.StrBuilder;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.opengamma.engine.ComputationTargetSpecification;
 import com.opengamma.engine.ComputationTargetType;
 import com.opengamma.id.UniqueId;
@@ -35,6 +37,11 @@ import com.opengamma.util.PublicAPI;
 public class ValueSpecification implements Serializable {
 
   private static final long serialVersionUID = 1L;
+
+  /**
+   * The canonical specifications.
+   */
+  private static final Interner<ValueSpecification> s_interned = Interners.newWeakInterner();
   
   /**
    * The name of the value being requested.
@@ -53,9 +60,21 @@ public class ValueSpecification implements Serializable {
   private final ValueProperties _properties;
   
   /**
-   * The cached hash code.
+   * The cached hash code. This is calculated on construction, or on first use after deserialization.
    */
-  private transient volatile int _hashCode;
+  private transient int _hashCode;
+
+  /**
+   * Returns the canonical instance of a specification. Specifications that are held for a long time, or in large numbers,
+   * such as those decoded from messages, can be canonicalized to avoid holding many equal copies. Equality tests between
+   * canonical instances reduce to an identity check.
+   * 
+   * @param valueSpecification  the specification, not null
+   * @return the canonical instance equal to the specification, not null
+   */
+  public static ValueSpecification getInterned(final ValueSpecification valueSpecification) {
+    return s_interned.intern(valueSpecification);
+  }
 
   /**
    * Obtains a {@code ValueSpecification} from a target, building the target specification
@@ -180,6 +199,7 @@ public class ValueSpecification implements Serializable {
     _valueName = requirementSpecification.getValueName();
     _targetSpecification = requirementSpecification.getTargetSpecification();
     _properties = requirementSpecification.getConstraints().copy().with(ValuePropertyNames.FUNCTION, functionIdentifier).get();
+    _hashCode = calculateHashCode();
   }
 
   /**
@@ -200,6 +220,7 @@ public class ValueSpecification implements Serializable {
     _valueName = requirementSpecification.getValueName();
     _targetSpecification = requirementSpecification.getTargetSpecification();
     _properties = properties;
+    _hashCode = calculateHashCode();
   }
 
   /**
@@ -219,6 +240,7 @@ public class ValueSpecification implements Serializable {
     _valueName = ValueRequirement.getInterned(valueName);
     _targetSpecification = targetSpecification;
     _properties = properties;
+    _hashCode = calculateHashCode();
   }
 
   //-------------------------------------------------------------------------
@@ -318,6 +340,9 @@ public class ValueSpecification implements Serializable {
     }
     if (obj instanceof ValueSpecification) {
       final ValueSpecification other = (ValueSpecification) obj;
+      if (hashCode() != other.hashCode()) {
+        return false;
+      }
       // valueName is interned
       return (_valueName == other._valueName) &&
         ObjectUtils.equals(_targetSpecification, other._targetSpecification) &&
@@ -326,15 +351,19 @@ public class ValueSpecification implements Serializable {
     return false;
   }
   
+  private int calculateHashCode() {
+    final int prime = 37;
+    int result = 1;
+    result = (result * prime) + _valueName.hashCode();
+    result = (result * prime) + _targetSpecification.hashCode();
+    result = (result * prime) + _properties.hashCode();
+    return result;
+  }
+
   @Override
   public int hashCode() {
     if (_hashCode == 0) {
-      final int prime = 37;
-      int result = 1;
-      result = (result * prime) + _valueName.hashCode();
-      result = (result * prime) + _targetSpecification.hashCode();
-      result = (result * prime) + _properties.hashCode();
-      _hashCode = result;
+      _hashCode = calculateHashCode();
     }
     return _hashCode;
   }
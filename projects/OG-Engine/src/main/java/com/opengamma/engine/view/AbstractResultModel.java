@@ -24,7 +24,20 @@ import com.opengamma.util.tuple.Pair;
 
   private static final long serialVersionUID = 1L;
   
-  private final Map<T, Map<Pair<String, ValueProperties>, ComputedValueResult>> _valuesByName = new HashMap<T, Map<Pair<String, ValueProperties>, ComputedValueResult>>();
+  private final Map<T, Map<Pair<String, ValueProperties>, ComputedValueResult>> _valuesByName;
+
+  protected AbstractResultModel() {
+    _valuesByName = new HashMap<T, Map<Pair<String, ValueProperties>, ComputedValueResult>>();
+  }
+
+  /**
+   * Creates a model sized for a number of keys.
+   * 
+   * @param keys the expected number of keys
+   */
+  protected AbstractResultModel(final int keys) {
+    _valuesByName = new HashMap<T, Map<Pair<String, ValueProperties>, ComputedValueResult>>((keys << 2) / 3 + 1);
+  }
 
   protected Collection<T> getKeys() {
     return Collections.unmodifiableSet(_valuesByName.keySet());
@@ -23,7 +23,22 @@ public class InMemoryViewComputationResultModel extends InMemoryViewResultModel
   private static final long serialVersionUID = 1L;
 
   private final Map<ValueSpecification, ComputedValue> _allMarketData = new HashMap<ValueSpecification, ComputedValue>();
-  private final Map<ValueSpecification, Set<ValueRequirement>> _specToRequirementsMap = new HashMap<ValueSpecification, Set<ValueRequirement>>();
+  private final Map<ValueSpecification, Set<ValueRequirement>> _specToRequirementsMap;
+
+  public InMemoryViewComputationResultModel() {
+    _specToRequirementsMap = new HashMap<ValueSpecification, Set<ValueRequirement>>();
+  }
+
+  /**
+   * Creates a model sized to hold a number of values, for a number of targets, without growing as they are added.
+   * 
+   * @param targets the expected number of distinct targets
+   * @param values the expected number of values
+   */
+  public InMemoryViewComputationResultModel(final int targets, final int values) {
+    super(targets, values);
+    _specToRequirementsMap = new HashMap<ValueSpecification, Set<ValueRequirement>>((values << 2) / 3 + 1);
+  }
 
   /**
    * Adds a market data value, replacing any previous item with the same value specification.
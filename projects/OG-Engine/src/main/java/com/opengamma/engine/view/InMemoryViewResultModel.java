@@ -37,8 +37,24 @@ public abstract class InMemoryViewResultModel implements ViewResultModel, Serial
   private Duration _calculationDuration;
   private VersionCorrection _versionCorrection;
   private final Map<String, ViewCalculationResultModelImpl> _resultsByConfiguration = new HashMap<String, ViewCalculationResultModelImpl>();
-  private final Map<ComputationTargetSpecification, ViewTargetResultModelImpl> _resultsByTarget = new HashMap<ComputationTargetSpecification, ViewTargetResultModelImpl>();
-  private final List<ViewResultEntry> _allResults = new ArrayList<ViewResultEntry>();
+  private final Map<ComputationTargetSpecification, ViewTargetResultModelImpl> _resultsByTarget;
+  private final List<ViewResultEntry> _allResults;
+
+  protected InMemoryViewResultModel() {
+    _resultsByTarget = new HashMap<ComputationTargetSpecification, ViewTargetResultModelImpl>();
+    _allResults = new ArrayList<ViewResultEntry>();
+  }
+
+  /**
+   * Creates a model sized to hold a number of values, for a number of targets, without growing as they are added.
+   * 
+   * @param targets the expected number of distinct targets
+   * @param values the expected number of values
+   */
+  protected InMemoryViewResultModel(final int targets, final int values) {
+    _resultsByTarget = new HashMap<ComputationTargetSpecification, ViewTargetResultModelImpl>((targets << 2) / 3 + 1);
+    _allResults = new ArrayList<ViewResultEntry>(values);
+  }
   
   @Override
   public UniqueId getViewProcessId() {
@@ -106,6 +122,19 @@ public abstract class InMemoryViewResultModel implements ViewResultModel, Serial
     return _resultsByConfiguration.get(calcConfigurationName);
   }
 
+  /**
+   * Sizes the model to hold the values of a calculation configuration, for a number of targets, without growing as they are added.
+   * This should be called immediately before the first value is added for the configuration; it has no effect after that.
+   * 
+   * @param calcConfigurationName the calculation configuration name, not null
+   * @param targets the number of distinct targets
+   */
+  public void ensureCapacity(final String calcConfigurationName, final int targets) {
+    if (!_resultsByConfiguration.containsKey(calcConfigurationName)) {
+      _resultsByConfiguration.put(calcConfigurationName, new ViewCalculationResultModelImpl(targets));
+    }
+  }
+
   public void addValue(final String calcConfigurationName, final ComputedValueResult value) {
     final ComputationTargetSpecification target = value.getSpecification().getTargetSpecification();
 
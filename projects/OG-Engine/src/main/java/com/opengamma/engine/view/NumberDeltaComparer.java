@@ -44,8 +44,20 @@ public class NumberDeltaComparer implements DeltaComparer<Number> {
       return true;
     }
     
-    long previousCompare = (long) (previousValue.doubleValue() * _multiplier);
-    long newCompare = (long) (newValue.doubleValue() * _multiplier);
+    return isDelta(previousValue.doubleValue(), newValue.doubleValue());
+  }
+
+  /**
+   * Indicates whether the difference between two primitive values is sufficient to be treated as a delta, avoiding
+   * the boxing of {@link #isDelta(Number, Number)}.
+   * 
+   * @param previousValue  the previous value
+   * @param newValue  the new value
+   * @return true if {@code newValue} should be treated as a delta, otherwise false
+   */
+  public boolean isDelta(final double previousValue, final double newValue) {
+    long previousCompare = (long) (previousValue * _multiplier);
+    long newCompare = (long) (newValue * _multiplier);
     return previousCompare != newCompare;
   }
   
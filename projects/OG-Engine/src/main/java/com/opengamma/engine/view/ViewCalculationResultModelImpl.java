@@ -23,6 +23,18 @@ public class ViewCalculationResultModelImpl extends AbstractResultModel<Computat
   
   private DependencyGraphBuilder _dependencyGraphModel;
 
+  public ViewCalculationResultModelImpl() {
+  }
+
+  /**
+   * Creates a model sized for the values of a number of targets.
+   * 
+   * @param targets the expected number of targets
+   */
+  public ViewCalculationResultModelImpl(final int targets) {
+    super(targets);
+  }
+
   public void setDependencyGraphModel(DependencyGraphBuilder dependencyGraphModel) {
     _dependencyGraphModel = dependencyGraphModel;
   }
@@ -21,6 +21,7 @@ import com.opengamma.engine.view.calc.DependencyGraphExecutorFactory;
 import com.opengamma.engine.view.calc.stats.GraphExecutorStatisticsGathererProvider;
 import com.opengamma.engine.view.calcnode.JobDispatcher;
 import com.opengamma.engine.view.calcnode.ViewProcessorQueryReceiver;
+import com.opengamma.engine.view.compilation.PersistentCompiledViewDefinitionCache;
 import com.opengamma.engine.view.compilation.ViewCompilationServices;
 import com.opengamma.engine.view.permission.ViewPermissionProvider;
 import com.opengamma.util.ArgumentChecker;
@@ -44,6 +45,7 @@ public class ViewProcessContext {
   private final MarketDataInjector _liveDataOverrideInjector;
   private final MarketDataProviderResolver _marketDataProviderResolver;
   private final OverrideOperationCompiler _overrideOperationCompiler;
+  private final PersistentCompiledViewDefinitionCache _compiledViewDefinitionCache;
 
   public ViewProcessContext(
       ConfigSource configSource,
@@ -59,6 +61,25 @@ public class ViewProcessContext {
       DependencyGraphExecutorFactory<?> dependencyGraphExecutorFactory,
       GraphExecutorStatisticsGathererProvider graphExecutorStatisticsProvider,
       OverrideOperationCompiler overrideOperationCompiler) {
+    this(configSource, viewPermissionProvider, marketDataProviderResolver, functionCompilationService, functionResolver, computationTargetResolver, computationCacheSource,
+        computationJobDispatcher, viewProcessorQueryReceiver, dependencyGraphBuilderFactory, dependencyGraphExecutorFactory, graphExecutorStatisticsProvider, overrideOperationCompiler, null);
+  }
+
+  public ViewProcessContext(
+      ConfigSource configSource,
+      ViewPermissionProvider viewPermissionProvider,
+      MarketDataProviderResolver marketDataProviderResolver,
+      CompiledFunctionService functionCompilationService,
+      FunctionResolver functionResolver,
+      ComputationTargetResolver computationTargetResolver,
+      ViewComputationCacheSource computationCacheSource,
+      JobDispatcher computationJobDispatcher,
+      ViewProcessorQueryReceiver viewProcessorQueryReceiver,
+      DependencyGraphBuilderFactory dependencyGraphBuilderFactory,
+      DependencyGraphExecutorFactory<?> dependencyGraphExecutorFactory,
+      GraphExecutorStatisticsGathererProvider graphExecutorStatisticsProvider,
+      OverrideOperationCompiler overrideOperationCompiler,
+      PersistentCompiledViewDefinitionCache compiledViewDefinitionCache) {
     ArgumentChecker.notNull(configSource, "configSource");
     ArgumentChecker.notNull(viewPermissionProvider, "viewPermissionProvider");
     ArgumentChecker.notNull(marketDataProviderResolver, "marketDataSnapshotProviderResolver");
@@ -86,6 +107,7 @@ public class ViewProcessContext {
     _dependencyGraphExecutorFactory = dependencyGraphExecutorFactory;
     _graphExecutorStatisticsGathererProvider = graphExecutorStatisticsProvider;
     _overrideOperationCompiler = overrideOperationCompiler;
+    _compiledViewDefinitionCache = compiledViewDefinitionCache;
   }
 
   // -------------------------------------------------------------------------
@@ -201,6 +223,15 @@ public class ViewProcessContext {
     return _overrideOperationCompiler;
   }
 
+  /**
+   * Gets the persistent store of compiled view definitions.
+   * 
+   * @return the compiled view definition cache, null if compiled view definitions are not persisted
+   */
+  public PersistentCompiledViewDefinitionCache getCompiledViewDefinitionCache() {
+    return _compiledViewDefinitionCache;
+  }
+
   // -------------------------------------------------------------------------
   /**
    * Uses this context to form a {@code ViewCompliationServices} instance.
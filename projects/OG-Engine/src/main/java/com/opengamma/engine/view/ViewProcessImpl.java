@@ -33,6 +33,7 @@ import com.opengamma.engine.view.calc.ViewComputationJob;
 import com.opengamma.engine.view.calc.ViewCycle;
 import com.opengamma.engine.view.calc.ViewCycleMetadata;
 import com.opengamma.engine.view.client.ViewDeltaResultCalculator;
+import com.opengamma.engine.view.client.ViewResultColumns;
 import com.opengamma.engine.view.compilation.CompiledViewDefinitionWithGraphsImpl;
 import com.opengamma.engine.view.execution.ViewCycleExecutionOptions;
 import com.opengamma.engine.view.execution.ViewExecutionOptions;
@@ -80,6 +81,10 @@ public class ViewProcessImpl implements ViewProcessInternal, ExecutionLogModeSou
   private final AtomicReference<Pair<CompiledViewDefinitionWithGraphsImpl, MarketDataPermissionProvider>> _latestCompiledViewDefinition =
       new AtomicReference<Pair<CompiledViewDefinitionWithGraphsImpl, MarketDataPermissionProvider>>();
   private final AtomicReference<ViewComputationResultModel> _latestResult = new AtomicReference<ViewComputationResultModel>();
+  /**
+   * The columnar form of {@link #_latestResult}, kept so that it is not rebuilt for each delta. Only accessed while holding the semaphore.
+   */
+  private ViewResultColumns _latestResultColumns;
 
   private ExecutorService _calcJobResultExecutor = Executors.newSingleThreadExecutor();
 
@@ -354,9 +359,9 @@ public class ViewProcessImpl implements ViewProcessInternal, ExecutionLogModeSou
     // be an unnecessary burden.
 
     // We swap these first so that in the callback the process is consistent.
-    ViewComputationResultModel previousResult = _latestResult.get();
+    ViewResultColumns previousResult = _latestResultColumns;
 
-    ViewDeltaResultModel deltaFragment = ViewDeltaResultCalculator.computeDeltaModel(viewDefinition, previousResult, fullFragment);
+    ViewDeltaResultModel deltaFragment = ViewDeltaResultCalculator.computeDeltaModel(viewDefinition, previousResult, ViewResultColumns.of(fullFragment));
     for (ViewResultListener listener : _listeners) {
       try {
         listener.cycleFragmentCompleted(fullFragment, deltaFragment);
@@ -378,10 +383,12 @@ public class ViewProcessImpl implements ViewProcessInternal, ExecutionLogModeSou
 
     // We swap these first so that in the callback the process is consistent.
     ViewComputationResultModel result = cycle.getResultModel();
-    ViewComputationResultModel previousResult = _latestResult.get();
+    ViewResultColumns previousResult = _latestResultColumns;
+    ViewResultColumns resultColumns = ViewResultColumns.of(result);
     _latestResult.set(result);
+    _latestResultColumns = resultColumns;
 
-    ViewDeltaResultModel deltaResult = ViewDeltaResultCalculator.computeDeltaModel(cycle.getCompiledViewDefinition().getViewDefinition(), previousResult, result);
+    ViewDeltaResultModel deltaResult = ViewDeltaResultCalculator.computeDeltaModel(cycle.getCompiledViewDefinition().getViewDefinition(), previousResult, resultColumns);
     for (ViewResultListener listener : _listeners) {
       try {
         listener.cycleCompleted(result, deltaResult);
@@ -25,6 +25,8 @@ import com.opengamma.engine.view.calc.stats.DiscardingGraphStatisticsGathererPro
 import com.opengamma.engine.view.calc.stats.GraphExecutorStatisticsGathererProvider;
 import com.opengamma.engine.view.calcnode.JobDispatcher;
 import com.opengamma.engine.view.calcnode.ViewProcessorQueryReceiver;
+import com.opengamma.engine.view.compilation.PersistentCompiledViewDefinitionCache;
+import com.opengamma.engine.view.listener.AsynchronousViewResultListener.OverflowPolicy;
 import com.opengamma.engine.view.permission.ViewPermissionProvider;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.SingletonFactoryBean;
@@ -52,6 +54,9 @@ public class ViewProcessorFactoryBean extends SingletonFactoryBean<ViewProcessor
   private ViewPermissionProvider _viewPermissionProvider;
   private OverrideOperationCompiler _overrideOperationCompiler = new DummyOverrideOperationCompiler();
   private ViewResultListenerFactory _batchViewClientFactory;
+  private PersistentCompiledViewDefinitionCache _compiledViewDefinitionCache;
+  private OverflowPolicy _listenerOverflowPolicy;
+  private Integer _listenerQueueCapacity;
 
   //-------------------------------------------------------------------------
   public String getName() {
@@ -193,7 +198,7 @@ public class ViewProcessorFactoryBean extends SingletonFactoryBean<ViewProcessor
   @Override
   public ViewProcessor createObject() {
     checkInjectedInputs();
-    return new ViewProcessorImpl(
+    final ViewProcessorImpl viewProcessor = new ViewProcessorImpl(
         getName(),
         getConfigSource(),
         getNamedMarketDataSpecificationRepository(),
@@ -210,6 +215,12 @@ public class ViewProcessorFactoryBean extends SingletonFactoryBean<ViewProcessor
         getViewPermissionProvider(),
         getOverrideOperationCompiler(),
         getViewResultListenerFactory());
+    viewProcessor.setCompiledViewDefinitionCache(getCompiledViewDefinitionCache());
+    viewProcessor.setListenerOverflowPolicy(getListenerOverflowPolicy());
+    if (getListenerQueueCapacity() != null) {
+      viewProcessor.setListenerQueueCapacity(getListenerQueueCapacity());
+    }
+    return viewProcessor;
   }
 
   public void setViewResultListenerFactory(ViewResultListenerFactory viewResultListenerFactory) {
@@ -219,4 +230,28 @@ public class ViewProcessorFactoryBean extends SingletonFactoryBean<ViewProcessor
   public ViewResultListenerFactory getViewResultListenerFactory() {
     return _batchViewClientFactory;
   }
+
+  public void setCompiledViewDefinitionCache(final PersistentCompiledViewDefinitionCache compiledViewDefinitionCache) {
+    _compiledViewDefinitionCache = compiledViewDefinitionCache;
+  }
+
+  public PersistentCompiledViewDefinitionCache getCompiledViewDefinitionCache() {
+    return _compiledViewDefinitionCache;
+  }
+
+  public void setListenerOverflowPolicy(final OverflowPolicy listenerOverflowPolicy) {
+    _listenerOverflowPolicy = listenerOverflowPolicy;
+  }
+
+  public OverflowPolicy getListenerOverflowPolicy() {
+    return _listenerOverflowPolicy;
+  }
+
+  public void setListenerQueueCapacity(final Integer listenerQueueCapacity) {
+    _listenerQueueCapacity = listenerQueueCapacity;
+  }
+
+  public Integer getListenerQueueCapacity() {
+    return _listenerQueueCapacity;
+  }
 }
@@ -15,6 +15,7 @@ import java.util.Timer;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -44,11 +45,14 @@ import com.opengamma.engine.view.calc.ViewResultListenerFactory;
 import com.opengamma.engine.view.calc.stats.GraphExecutorStatisticsGathererProvider;
 import com.opengamma.engine.view.calcnode.JobDispatcher;
 import com.opengamma.engine.view.calcnode.ViewProcessorQueryReceiver;
+import com.opengamma.engine.view.compilation.PersistentCompiledViewDefinitionCache;
 import com.opengamma.engine.view.client.ViewClient;
 import com.opengamma.engine.view.client.ViewClientImpl;
 import com.opengamma.engine.view.event.ViewProcessorEventListenerRegistry;
 import com.opengamma.engine.view.execution.ViewExecutionFlags;
 import com.opengamma.engine.view.execution.ViewExecutionOptions;
+import com.opengamma.engine.view.listener.AsynchronousViewResultListener;
+import com.opengamma.engine.view.listener.AsynchronousViewResultListener.OverflowPolicy;
 import com.opengamma.engine.view.listener.ViewResultListener;
 import com.opengamma.engine.view.permission.ViewPermissionProvider;
 import com.opengamma.id.ObjectId;
@@ -56,6 +60,7 @@ import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
 import com.opengamma.livedata.UserPrincipal;
 import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.NamedThreadPoolFactory;
 import com.opengamma.util.monitor.OperationTimer;
 import com.opengamma.util.tuple.Pair;
 
@@ -70,6 +75,8 @@ public class ViewProcessorImpl implements ViewProcessorInternal {
   private static final String PROCESS_SCHEME = "ViewProcess";
   private static final String CYCLE_SCHEME = "ViewCycle";
 
+  private static final int DEFAULT_LISTENER_QUEUE_CAPACITY = 16;
+
   private final AtomicLong _processIdSource = new AtomicLong();
   private final AtomicLong _clientIdSource = new AtomicLong();
   private final ReentrantLock _lifecycleLock = new ReentrantLock();
@@ -96,6 +103,10 @@ public class ViewProcessorImpl implements ViewProcessorInternal {
   private final ViewPermissionProvider _viewPermissionProvider;
   private final OverrideOperationCompiler _overrideOperationCompiler;
   private final ViewResultListenerFactory _viewResultListenerFactory;
+  private PersistentCompiledViewDefinitionCache _compiledViewDefinitionCache;
+  private OverflowPolicy _listenerOverflowPolicy;
+  private int _listenerQueueCapacity = DEFAULT_LISTENER_QUEUE_CAPACITY;
+  private final ExecutorService _listenerExecutor = Executors.newCachedThreadPool(new NamedThreadPoolFactory("ViewResultListener", true));
 
   // State
   /**
@@ -153,6 +164,71 @@ public class ViewProcessorImpl implements ViewProcessorInternal {
     _viewResultListenerFactory = viewResultListenerFactory;
   }
 
+  /**
+   * Sets the persistent store of compiled view definitions. This must be set before the view processor is started.
+   * 
+   * @param compiledViewDefinitionCache the compiled view definition cache, null to always compile views from scratch
+   */
+  public void setCompiledViewDefinitionCache(final PersistentCompiledViewDefinitionCache compiledViewDefinitionCache) {
+    _compiledViewDefinitionCache = compiledViewDefinitionCache;
+  }
+
+  public PersistentCompiledViewDefinitionCache getCompiledViewDefinitionCache() {
+    return _compiledViewDefinitionCache;
+  }
+
+  /**
+   * Sets how results are delivered to view clients. By default they are delivered synchronously from the thread running
+   * the view process, so a slow client holds up every other client of the same process. If a policy is set, each client
+   * is given its own bounded queue, delivered from a thread pool, and the policy decides what happens when the queue is
+   * full. This applies to clients attached after the call.
+   * 
+   * @param listenerOverflowPolicy the overflow policy, null to deliver synchronously
+   */
+  public void setListenerOverflowPolicy(final OverflowPolicy listenerOverflowPolicy) {
+    _listenerOverflowPolicy = listenerOverflowPolicy;
+  }
+
+  public OverflowPolicy getListenerOverflowPolicy() {
+    return _listenerOverflowPolicy;
+  }
+
+  /**
+   * Sets the number of pending calls each client's queue holds before the overflow policy applies. This is only used if
+   * an overflow policy is set.
+   * 
+   * @param listenerQueueCapacity the queue capacity, at least 1
+   */
+  public void setListenerQueueCapacity(final int listenerQueueCapacity) {
+    ArgumentChecker.isTrue(listenerQueueCapacity > 0, "listenerQueueCapacity");
+    _listenerQueueCapacity = listenerQueueCapacity;
+  }
+
+  public int getListenerQueueCapacity() {
+    return _listenerQueueCapacity;
+  }
+
+  /**
+   * Returns the queue delivering results to a view client, if results are being delivered asynchronously. The queue
+   * reports its depth and lag.
+   * 
+   * @param clientId the unique identifier of the client, not null
+   * @return the queue, or null if the client is not attached or results are delivered synchronously
+   */
+  public AsynchronousViewResultListener getClientListenerQueue(final UniqueId clientId) {
+    ArgumentChecker.notNull(clientId, "clientId");
+    _processLock.lock();
+    try {
+      final Pair<ViewProcessImpl, ViewResultListener> processAttachment = _clientToProcess.get(clientId);
+      if ((processAttachment == null) || !(processAttachment.getSecond() instanceof AsynchronousViewResultListener)) {
+        return null;
+      }
+      return (AsynchronousViewResultListener) processAttachment.getSecond();
+    } finally {
+      _processLock.unlock();
+    }
+  }
+
   //-------------------------------------------------------------------------
   @Override
   public String getName() {
@@ -280,14 +356,21 @@ public class ViewProcessorImpl implements ViewProcessorInternal {
   }
 
   private ViewPermissionProvider attachClientToViewProcessCore(ViewClientImpl client, ViewResultListener listener, ViewProcessImpl process, boolean privateProcess) {
-    Pair<ViewProcessImpl, ViewResultListener> processListenerPair = Pair.of(process, listener);
+    final OverflowPolicy overflowPolicy = getListenerOverflowPolicy();
+    final ViewResultListener processListener;
+    if (overflowPolicy != null) {
+      processListener = new AsynchronousViewResultListener(listener, _listenerExecutor, getListenerQueueCapacity(), overflowPolicy);
+    } else {
+      processListener = listener;
+    }
+    Pair<ViewProcessImpl, ViewResultListener> processListenerPair = Pair.of(process, processListener);
     _processLock.lock();
     try {
       Pair<ViewProcessImpl, ViewResultListener> existingAttachment = _clientToProcess.get(client.getUniqueId());
       if (existingAttachment != null) {
         throw new IllegalStateException("View client " + client.getUniqueId() + " is already attached to view process " + existingAttachment.getFirst().getUniqueId());
       }
-      ViewPermissionProvider permissionProvider = process.attachListener(listener);
+      ViewPermissionProvider permissionProvider = process.attachListener(processListener);
       _clientToProcess.put(client.getUniqueId(), processListenerPair);
       return permissionProvider;
     } finally {
@@ -312,6 +395,10 @@ public class ViewProcessorImpl implements ViewProcessorInternal {
       ViewProcessImpl process = processAttachment.getFirst();
       ViewResultListener listener = processAttachment.getSecond();
       process.detachListener(listener);
+      if (listener instanceof AsynchronousViewResultListener) {
+        // Nothing should be delivered after detaching, as would be the case with synchronous delivery
+        ((AsynchronousViewResultListener) listener).discard();
+      }
 
       removeViewProcessIfUnused(process);
     } finally {
@@ -555,7 +642,8 @@ public class ViewProcessorImpl implements ViewProcessorInternal {
         _dependencyGraphBuilderFactory,
         _dependencyGraphExecutorFactory,
         _graphExecutionStatistics,
-        _overrideOperationCompiler);
+        _overrideOperationCompiler,
+        _compiledViewDefinitionCache);
   }
 
   private String generateIdValue(AtomicLong source) {
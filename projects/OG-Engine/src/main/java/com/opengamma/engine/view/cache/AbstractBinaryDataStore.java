@@ -39,4 +39,28 @@ public abstract class AbstractBinaryDataStore implements BinaryDataStore {
     }
   }
 
+  @Override
+  public byte[][] get(final long[] identifiers) {
+    return get(this, identifiers);
+  }
+
+  public static byte[][] get(final BinaryDataStore dataStore, final long[] identifiers) {
+    final byte[][] result = new byte[identifiers.length][];
+    for (int i = 0; i < identifiers.length; i++) {
+      result[i] = dataStore.get(identifiers[i]);
+    }
+    return result;
+  }
+
+  @Override
+  public void put(final long[] identifiers, final byte[][] data) {
+    put(this, identifiers, data);
+  }
+
+  public static void put(final BinaryDataStore dataStore, final long[] identifiers, final byte[][] data) {
+    for (int i = 0; i < identifiers.length; i++) {
+      dataStore.put(identifiers[i], data[i]);
+    }
+  }
+
 }
@@ -51,6 +51,32 @@ public abstract class AbstractIdentifierMap implements IdentifierMap {
     return specifications;
   }
 
+  @Override
+  public long[] getIdentifiers(final ValueSpecification[] specifications) {
+    return getIdentifiers(this, specifications);
+  }
+
+  public static long[] getIdentifiers(final IdentifierMap map, final ValueSpecification[] specifications) {
+    final long[] identifiers = new long[specifications.length];
+    for (int i = 0; i < specifications.length; i++) {
+      identifiers[i] = map.getIdentifier(specifications[i]);
+    }
+    return identifiers;
+  }
+
+  @Override
+  public ValueSpecification[] getValueSpecifications(final long[] identifiers) {
+    return getValueSpecifications(this, identifiers);
+  }
+
+  public static ValueSpecification[] getValueSpecifications(final IdentifierMap map, final long[] identifiers) {
+    final ValueSpecification[] specifications = new ValueSpecification[identifiers.length];
+    for (int i = 0; i < identifiers.length; i++) {
+      specifications[i] = map.getValueSpecification(identifiers[i]);
+    }
+    return specifications;
+  }
+
   public static void convertIdentifiers(final IdentifierMap map, final IdentifierEncodedValueSpecifications object) {
     final Set<ValueSpecification> valueSpecifications = new HashSet<ValueSpecification>();
     object.collectValueSpecifications(valueSpecifications);
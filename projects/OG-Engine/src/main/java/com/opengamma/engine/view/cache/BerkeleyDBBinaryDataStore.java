@@ -98,4 +98,14 @@ public class BerkeleyDBBinaryDataStore extends AbstractBerkeleyDBComponent imple
     AbstractBinaryDataStore.put(this, data);
   }
 
+  @Override
+  public byte[][] get(final long[] identifiers) {
+    return AbstractBinaryDataStore.get(this, identifiers);
+  }
+
+  @Override
+  public void put(final long[] identifiers, final byte[][] data) {
+    AbstractBinaryDataStore.put(this, identifiers, data);
+  }
+
 }
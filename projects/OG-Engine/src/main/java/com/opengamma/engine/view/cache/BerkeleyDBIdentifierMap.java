@@ -142,6 +142,35 @@ public class BerkeleyDBIdentifierMap implements IdentifierMap, Lifecycle {
     return result;
   }
 
+  @Override
+  public long[] getIdentifiers(final ValueSpecification[] specs) {
+    ArgumentChecker.notNull(specs, "specs");
+    if (!isRunning()) {
+      s_logger.info("Starting on first call as wasn't called as part of lifecycle interface");
+      start();
+    }
+    // Now we open the transaction.
+    TransactionConfig txnConfig = new TransactionConfig();
+    txnConfig.setSync(false);
+    Transaction txn = getDbEnvironment().beginTransaction(null, txnConfig);
+    final long[] result = new long[specs.length];
+    boolean rollback = true;
+    try {
+      final DatabaseEntry identifierEntry = new DatabaseEntry();
+      for (int i = 0; i < specs.length; i++) {
+        result[i] = getIdentifierImpl(txn, specs[i], identifierEntry);
+      }
+      txn.commit();
+      rollback = false;
+    } finally {
+      if (rollback) {
+        s_logger.error("Rolling back transaction getting identifiers");
+        txn.abort();
+      }
+    }
+    return result;
+  }
+
   protected long getIdentifierImpl(final Transaction txn, final ValueSpecification spec, final DatabaseEntry identifierEntry) {
     byte[] specAsBytes = convertSpecificationToByteArray(spec);
     DatabaseEntry specEntry = new DatabaseEntry(specAsBytes);
@@ -191,6 +220,26 @@ public class BerkeleyDBIdentifierMap implements IdentifierMap, Lifecycle {
     }
   }
 
+  @Override
+  public ValueSpecification[] getValueSpecifications(final long[] identifiers) {
+    if (!isRunning()) {
+      s_logger.info("Starting on first call as wasn't called as part of lifecycle interface");
+      start();
+    }
+    final Transaction txn = getDbEnvironment().beginTransaction(null, null);
+    try {
+      final ValueSpecification[] result = new ValueSpecification[identifiers.length];
+      final DatabaseEntry identifierEntry = new DatabaseEntry();
+      final DatabaseEntry valueSpecEntry = new DatabaseEntry();
+      for (int i = 0; i < identifiers.length; i++) {
+        result[i] = getValueSpecificationImpl(txn, identifiers[i], identifierEntry, valueSpecEntry);
+      }
+      return result;
+    } finally {
+      txn.commitNoSync();
+    }
+  }
+
   protected ValueSpecification getValueSpecificationImpl(final Transaction txn, final long identifier, final DatabaseEntry identifierEntry, final DatabaseEntry valueSpecEntry) {
     LongBinding.longToEntry(identifier, identifierEntry);
     OperationStatus status = _identifierToValueSpecification.getDatabase().get(txn, identifierEntry, valueSpecEntry, LockMode.READ_COMMITTED);
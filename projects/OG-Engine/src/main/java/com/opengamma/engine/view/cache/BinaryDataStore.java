@@ -49,6 +49,22 @@ public interface BinaryDataStore {
    */
   void put(Map<Long, byte[]> data);
 
+  /**
+   * Form of {@link #get(Collection)} that avoids boxing the identifiers.
+   * 
+   * @param identifiers identifiers to query
+   * @return the results, in the same order as the identifiers. If there is no data for an identifier the element will be null.
+   */
+  byte[][] get(long[] identifiers);
+
+  /**
+   * Form of {@link #put(Map)} that avoids boxing the identifiers.
+   * 
+   * @param identifiers identifiers to use as keys
+   * @param data data values to store, in the same order as the identifiers
+   */
+  void put(long[] identifiers, byte[][] data);
+
   /**
    * Remove any underlying resources, and free all memory, relating
    * to this store. Immediately after this method is called the store instance
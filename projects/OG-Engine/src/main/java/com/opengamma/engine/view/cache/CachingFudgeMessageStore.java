@@ -120,4 +120,52 @@ public class CachingFudgeMessageStore implements FudgeMessageStore {
     }
   }
 
+  @Override
+  public FudgeMsg[] get(final long[] identifiers) {
+    final FudgeMsg[] result = new FudgeMsg[identifiers.length];
+    int[] missing = null;
+    int missingCount = 0;
+    for (int i = 0; i < identifiers.length; i++) {
+      final Element cacheElement = getCache().get(identifiers[i]);
+      if (cacheElement != null) {
+        result[i] = (FudgeMsg) cacheElement.getObjectValue();
+      } else {
+        if (missing == null) {
+          missing = new int[identifiers.length - i];
+        }
+        missing[missingCount++] = i;
+      }
+    }
+    if (missingCount == 0) {
+      return result;
+    }
+    if (missingCount == 1) {
+      final long missingIdentifier = identifiers[missing[0]];
+      final FudgeMsg data = getUnderlying().get(missingIdentifier);
+      result[missing[0]] = data;
+      getCache().put(new Element(missingIdentifier, data));
+    } else {
+      final long[] missingIdentifiers = new long[missingCount];
+      for (int i = 0; i < missingCount; i++) {
+        missingIdentifiers[i] = identifiers[missing[i]];
+      }
+      final FudgeMsg[] missingData = getUnderlying().get(missingIdentifiers);
+      for (int i = 0; i < missingCount; i++) {
+        if (missingData[i] != null) {
+          result[missing[i]] = missingData[i];
+          getCache().put(new Element(missingIdentifiers[i], missingData[i]));
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void put(final long[] identifiers, final FudgeMsg[] data) {
+    getUnderlying().put(identifiers, data);
+    for (int i = 0; i < identifiers.length; i++) {
+      getCache().put(new Element(identifiers[i], data[i]));
+    }
+  }
+
 }
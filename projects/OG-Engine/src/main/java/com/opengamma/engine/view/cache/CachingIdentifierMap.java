@@ -205,4 +205,85 @@ public class CachingIdentifierMap implements IdentifierMap {
     return specifications;
   }
 
+  @Override
+  public long[] getIdentifiers(final ValueSpecification[] specs) {
+    final long[] identifiers = new long[specs.length];
+    int[] cacheMisses = null;
+    int cacheMissCount = 0;
+    for (int i = 0; i < specs.length; i++) {
+      final Key value = _specificationToIdentifier.get(specs[i]);
+      if (value != null) {
+        identifiers[i] = value._identifier;
+      } else {
+        if (cacheMisses == null) {
+          cacheMisses = new int[specs.length - i];
+        }
+        cacheMisses[cacheMissCount++] = i;
+      }
+    }
+    if (cacheMissCount == 1) {
+      final int index = cacheMisses[0];
+      final ValueSpecification spec = MemoryUtils.instance(specs[index]);
+      final long value = getUnderlying().getIdentifier(spec);
+      final Key keyValue = new Key(value);
+      _specificationToIdentifier.put(spec, keyValue);
+      _identifierToSpecification.put(keyValue, spec);
+      identifiers[index] = value;
+    } else if (cacheMissCount > 1) {
+      final ValueSpecification[] missingSpecs = new ValueSpecification[cacheMissCount];
+      for (int i = 0; i < cacheMissCount; i++) {
+        missingSpecs[i] = MemoryUtils.instance(specs[cacheMisses[i]]);
+      }
+      final long[] values = getUnderlying().getIdentifiers(missingSpecs);
+      for (int i = 0; i < cacheMissCount; i++) {
+        final Key value = new Key(values[i]);
+        _specificationToIdentifier.put(missingSpecs[i], value);
+        _identifierToSpecification.put(value, missingSpecs[i]);
+        identifiers[cacheMisses[i]] = values[i];
+      }
+    }
+    return identifiers;
+  }
+
+  @Override
+  public ValueSpecification[] getValueSpecifications(final long[] identifiers) {
+    final ValueSpecification[] specifications = new ValueSpecification[identifiers.length];
+    int[] cacheMisses = null;
+    int cacheMissCount = 0;
+    for (int i = 0; i < identifiers.length; i++) {
+      final Key key = borrowKey(identifiers[i]);
+      final ValueSpecification specification = _identifierToSpecification.get(key);
+      returnKey(key);
+      if (specification != null) {
+        specifications[i] = specification;
+      } else {
+        if (cacheMisses == null) {
+          cacheMisses = new int[identifiers.length - i];
+        }
+        cacheMisses[cacheMissCount++] = i;
+      }
+    }
+    if (cacheMissCount == 1) {
+      final int index = cacheMisses[0];
+      final ValueSpecification specification = getUnderlying().getValueSpecification(identifiers[index]);
+      final Key key = new Key(identifiers[index]);
+      _specificationToIdentifier.put(specification, key);
+      _identifierToSpecification.put(key, specification);
+      specifications[index] = specification;
+    } else if (cacheMissCount > 1) {
+      final long[] missingIdentifiers = new long[cacheMissCount];
+      for (int i = 0; i < cacheMissCount; i++) {
+        missingIdentifiers[i] = identifiers[cacheMisses[i]];
+      }
+      final ValueSpecification[] values = getUnderlying().getValueSpecifications(missingIdentifiers);
+      for (int i = 0; i < cacheMissCount; i++) {
+        final Key key = new Key(missingIdentifiers[i]);
+        _specificationToIdentifier.put(values[i], key);
+        _identifierToSpecification.put(key, values[i]);
+        specifications[cacheMisses[i]] = values[i];
+      }
+    }
+    return specifications;
+  }
+
 }
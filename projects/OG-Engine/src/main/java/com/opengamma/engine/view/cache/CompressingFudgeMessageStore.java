@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.fudgemsg.FudgeMsg;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Compresses large messages written to another Fudge message store, and expands them when read back.
+ * <p>
+ * On a calculation node this should wrap the {@link RemoteFudgeMessageStore} so that values cross the network, and are held
+ * by the server, in their compressed form. Any {@link CachingFudgeMessageStore} should be in front of this store so that
+ * frequently read values are only expanded once. On the server it should wrap the shared data store of the cache source so
+ * that the view processor reads expanded values; the {@link FudgeMessageStoreServer} exchanges values with the calculation
+ * nodes through the underlying store.
+ */
+public class CompressingFudgeMessageStore implements FudgeMessageStore {
+
+  private final FudgeMessageStore _underlying;
+  private final FudgeMessageCompression _compression;
+
+  public CompressingFudgeMessageStore(final FudgeMessageStore underlying, final FudgeMessageCompression compression) {
+    ArgumentChecker.notNull(underlying, "underlying");
+    ArgumentChecker.notNull(compression, "compression");
+    _underlying = underlying;
+    _compression = compression;
+  }
+
+  protected FudgeMessageStore getUnderlying() {
+    return _underlying;
+  }
+
+  protected FudgeMessageCompression getCompression() {
+    return _compression;
+  }
+
+  @Override
+  public void delete() {
+    getUnderlying().delete();
+  }
+
+  @Override
+  public FudgeMsg get(final long identifier) {
+    return getCompression().expand(getUnderlying().get(identifier));
+  }
+
+  @Override
+  public Map<Long, FudgeMsg> get(final Collection<Long> identifiers) {
+    final Map<Long, FudgeMsg> data = getUnderlying().get(identifiers);
+    final Map<Long, FudgeMsg> result = new HashMap<Long, FudgeMsg>();
+    for (Map.Entry<Long, FudgeMsg> element : data.entrySet()) {
+      result.put(element.getKey(), getCompression().expand(element.getValue()));
+    }
+    return result;
+  }
+
+  @Override
+  public FudgeMsg[] get(final long[] identifiers) {
+    final FudgeMsg[] data = getUnderlying().get(identifiers);
+    for (int i = 0; i < data.length; i++) {
+      data[i] = getCompression().expand(data[i]);
+    }
+    return data;
+  }
+
+  @Override
+  public void put(final long identifier, final FudgeMsg data) {
+    getUnderlying().put(identifier, getCompression().compress(data));
+  }
+
+  @Override
+  public void put(final Map<Long, FudgeMsg> data) {
+    final Map<Long, FudgeMsg> compressed = new HashMap<Long, FudgeMsg>();
+    for (Map.Entry<Long, FudgeMsg> element : data.entrySet()) {
+      compressed.put(element.getKey(), getCompression().compress(element.getValue()));
+    }
+    getUnderlying().put(compressed);
+  }
+
+  @Override
+  public void put(final long[] identifiers, final FudgeMsg[] data) {
+    final FudgeMsg[] compressed = new FudgeMsg[data.length];
+    for (int i = 0; i < data.length; i++) {
+      compressed[i] = getCompression().compress(data[i]);
+    }
+    getUnderlying().put(identifiers, compressed);
+  }
+
+  @Override
+  public String toString() {
+    return "CompressingFudgeMessageStore[" + getUnderlying() + "]";
+  }
+
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * A data store factory that wraps an underlying factory's generation with a compression layer.
+ */
+public class CompressingFudgeMessageStoreFactory implements FudgeMessageStoreFactory {
+
+  private final FudgeMessageStoreFactory _underlying;
+  private final FudgeMessageCompression _compression;
+
+  public CompressingFudgeMessageStoreFactory(final FudgeMessageStoreFactory underlying, final FudgeMessageCompression compression) {
+    ArgumentChecker.notNull(underlying, "underlying");
+    ArgumentChecker.notNull(compression, "compression");
+    _underlying = underlying;
+    _compression = compression;
+  }
+
+  protected FudgeMessageStoreFactory getUnderlying() {
+    return _underlying;
+  }
+
+  public FudgeMessageCompression getCompression() {
+    return _compression;
+  }
+
+  @Override
+  public FudgeMessageStore createMessageStore(final ViewComputationCacheKey cacheKey) {
+    return new CompressingFudgeMessageStore(getUnderlying().createMessageStore(cacheKey), getCompression());
+  }
+
+}
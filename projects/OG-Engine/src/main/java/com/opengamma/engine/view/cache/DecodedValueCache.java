@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * A size-bounded cache of decoded values for a {@link DefaultViewComputationCache}, keyed by identifier. This avoids
+ * repeated deserialization of large values, such as curves and surfaces, that are read by many functions within a
+ * cycle. The least recently used values are evicted once the total encoded size of the cached values exceeds the
+ * limit. Values with an encoded size below a minimum are not worth caching and are ignored.
+ * <p>
+ * Each entry records whether it was read from the private or shared data store so that filtered reads only see
+ * values from the store the {@link CacheSelectHint} selects.
+ * <p>
+ * The cached objects are returned to every caller that requests them, so should only be used when the functions
+ * reading them treat their inputs as immutable.
+ * <p>
+ * This class is internally synchronized.
+ */
+public class DecodedValueCache {
+
+  /**
+   * Default minimum encoded size, in bytes, of a value worth caching.
+   */
+  public static final int DEFAULT_MIN_VALUE_SIZE = 1024;
+
+  private static final class Entry {
+
+    private final Object _value;
+    private final int _size;
+    private final boolean _private;
+
+    public Entry(final Object value, final int size, final boolean isPrivate) {
+      _value = value;
+      _size = size;
+      _private = isPrivate;
+    }
+
+  }
+
+  private final long _maxSize;
+  private final int _minValueSize;
+  private final LinkedHashMap<Long, Entry> _entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true);
+  private long _size;
+
+  public DecodedValueCache(final long maxSize) {
+    this(maxSize, DEFAULT_MIN_VALUE_SIZE);
+  }
+
+  public DecodedValueCache(final long maxSize, final int minValueSize) {
+    ArgumentChecker.isTrue(maxSize > 0, "maxSize must be positive");
+    ArgumentChecker.isTrue(minValueSize >= 0, "minValueSize must not be negative");
+    _maxSize = maxSize;
+    _minValueSize = minValueSize;
+  }
+
+  public long getMaxSize() {
+    return _maxSize;
+  }
+
+  public int getMinValueSize() {
+    return _minValueSize;
+  }
+
+  /**
+   * Returns the total encoded size of the values currently cached.
+   *
+   * @return the size in bytes
+   */
+  public synchronized long getSize() {
+    return _size;
+  }
+
+  /**
+   * Returns the cached value for an identifier, regardless of which data store it came from.
+   *
+   * @param identifier the value identifier
+   * @return the decoded value, or null if it is not cached
+   */
+  public synchronized Object get(final long identifier) {
+    final Entry entry = _entries.get(identifier);
+    return (entry != null) ? entry._value : null;
+  }
+
+  /**
+   * Returns the cached value for an identifier if it came from the private or shared data store as requested.
+   *
+   * @param identifier the value identifier
+   * @param isPrivate true for a value from the private data store, false for one from the shared data store
+   * @return the decoded value, or null if it is not cached
+   */
+  public synchronized Object get(final long identifier, final boolean isPrivate) {
+    final Entry entry = _entries.get(identifier);
+    return ((entry != null) && (entry._private == isPrivate)) ? entry._value : null;
+  }
+
+  /**
+   * Stores a decoded value. The value is ignored if its encoded size is below the minimum or above the maximum
+   * size of the cache.
+   *
+   * @param identifier the value identifier
+   * @param value the decoded value, not null
+   * @param size the encoded size of the value, negative if not known
+   * @param isPrivate true if the value came from the private data store, false if from the shared data store
+   */
+  public void put(final long identifier, final Object value, final int size, final boolean isPrivate) {
+    if ((size < getMinValueSize()) || (size > getMaxSize())) {
+      return;
+    }
+    final Entry entry = new Entry(value, size, isPrivate);
+    synchronized (this) {
+      final Entry previous = _entries.put(identifier, entry);
+      if (previous != null) {
+        _size -= previous._size;
+      }
+      _size += size;
+      if (_size > _maxSize) {
+        final Iterator<Map.Entry<Long, Entry>> itr = _entries.entrySet().iterator();
+        while (_size > _maxSize) {
+          _size -= itr.next().getValue()._size;
+          itr.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * Discards any cached value for an identifier, for example because a new value has been written.
+   *
+   * @param identifier the value identifier
+   */
+  public synchronized void remove(final long identifier) {
+    final Entry previous = _entries.remove(identifier);
+    if (previous != null) {
+      _size -= previous._size;
+    }
+  }
+
+  /**
+   * Discards all cached values.
+   */
+  public synchronized void clear() {
+    _entries.clear();
+    _size = 0;
+  }
+
+}
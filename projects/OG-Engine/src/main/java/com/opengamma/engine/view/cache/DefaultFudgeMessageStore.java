@@ -62,6 +62,18 @@ public class DefaultFudgeMessageStore implements FudgeMessageStore {
     return resultValues;
   }
 
+  @Override
+  public FudgeMsg[] get(final long[] identifiers) {
+    final byte[][] dataValues = getBinaryData().get(identifiers);
+    final FudgeMsg[] resultValues = new FudgeMsg[dataValues.length];
+    for (int i = 0; i < dataValues.length; i++) {
+      if (dataValues[i] != null) {
+        resultValues[i] = new EncodedFudgeMsg(dataValues[i], getFudgeContext());
+      }
+    }
+    return resultValues;
+  }
+
   @Override
   public void put(long identifier, FudgeMsg dataMessage) {
     final byte[] data;
@@ -99,4 +111,27 @@ public class DefaultFudgeMessageStore implements FudgeMessageStore {
     }
     getBinaryData().put(dataBytes);
   }
+
+  @Override
+  public void put(final long[] identifiers, final FudgeMsg[] dataMessages) {
+    final byte[][] dataBytes = new byte[dataMessages.length][];
+    ByteArrayOutputStream baos = null;
+    FudgeDataOutputStreamWriter writer = null;
+    for (int i = 0; i < dataMessages.length; i++) {
+      if (dataMessages[i] instanceof FudgeEncoded) {
+        dataBytes[i] = ((FudgeEncoded) dataMessages[i]).getFudgeEncoded();
+      } else {
+        if (baos == null) {
+          baos = new ByteArrayOutputStream();
+          writer = new FudgeDataOutputStreamWriter(getFudgeContext(), baos);
+        } else {
+          baos.reset();
+        }
+        writer.writeFields(dataMessages[i]);
+        dataBytes[i] = baos.toByteArray();
+      }
+    }
+    getBinaryData().put(identifiers, dataBytes);
+  }
+
 }
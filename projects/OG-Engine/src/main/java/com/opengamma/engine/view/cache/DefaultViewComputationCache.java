@@ -5,11 +5,13 @@
  */
 package com.opengamma.engine.view.cache;
 
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 
 import org.fudgemsg.FudgeContext;
@@ -18,6 +20,7 @@ import org.fudgemsg.FudgeMsg;
 import org.fudgemsg.MutableFudgeMsg;
 import org.fudgemsg.mapping.FudgeDeserializer;
 import org.fudgemsg.mapping.FudgeSerializer;
+import org.fudgemsg.wire.FudgeEncoded;
 import org.fudgemsg.wire.FudgeSize;
 import org.fudgemsg.wire.types.FudgeWireType;
 
@@ -53,6 +56,8 @@ public class DefaultViewComputationCache implements ViewComputationCache,
 
   private MissingValueLoader _missingValueLoader;
 
+  private volatile DecodedValueCache _decodedValueCache;
+
   /**
    * The size of recent values that have gone into or come out of this cache.
    */
@@ -73,12 +78,43 @@ public class DefaultViewComputationCache implements ViewComputationCache,
    */
   private final Map<Class<?>, Integer> _valueSizeByClassCache;
 
-  private void cacheValueSize(final ValueSpecification specification, FudgeMsg data, Object value) {
+  /**
+   * Records the size of a value.
+   * 
+   * @return the encoded size of the value, or -1 if the value is of a fixed size class
+   */
+  private int cacheValueSize(final ValueSpecification specification, FudgeMsg data, Object value) {
     if (value != null && _valueSizeByClassCache.containsKey(value.getClass())) {
-      return;
+      return -1;
     }
     int calculateMessageSize = FudgeSize.calculateMessageSize(data);
     getValueSizeCache().put(specification, calculateMessageSize);
+    return calculateMessageSize;
+  }
+
+  /**
+   * Deserializes a value read from one of the data stores, recording its size and offering it to the decoded value
+   * cache if there is one.
+   */
+  private Object readValue(final FudgeDeserializer deserializer, final ValueSpecification specification, final long identifier,
+      final FudgeMsg data, final boolean isPrivate) {
+    final Object value = deserializeValue(deserializer, data);
+    final int size = cacheValueSize(specification, data, value);
+    final DecodedValueCache decodedValues = getDecodedValueCache();
+    if ((decodedValues != null) && (value != null)) {
+      decodedValues.put(identifier, value, size, isPrivate);
+    }
+    return value;
+  }
+
+  /**
+   * Discards any decoded form of a value about to be written.
+   */
+  private void invalidateDecodedValue(final long identifier) {
+    final DecodedValueCache decodedValues = getDecodedValueCache();
+    if (decodedValues != null) {
+      decodedValues.remove(identifier);
+    }
   }
 
   protected DefaultViewComputationCache(final IdentifierMap identifierMap, final FudgeMessageStore dataStore,
@@ -121,6 +157,20 @@ public class DefaultViewComputationCache implements ViewComputationCache,
     return _missingValueLoader;
   }
 
+  /**
+   * Sets an optional cache of decoded values. Values read from the data stores are held in their decoded form so
+   * that subsequent reads of the same value do not need to deserialize it again.
+   * 
+   * @param decodedValueCache the decoded value cache, null for none
+   */
+  public void setDecodedValueCache(final DecodedValueCache decodedValueCache) {
+    _decodedValueCache = decodedValueCache;
+  }
+
+  public DecodedValueCache getDecodedValueCache() {
+    return _decodedValueCache;
+  }
+
   /**
    * Gets the identifierSource field.
    * 
@@ -156,8 +206,17 @@ public class DefaultViewComputationCache implements ViewComputationCache,
   public Object getValue(final ValueSpecification specification) {
     ArgumentChecker.notNull(specification, "Specification");
     final long identifier = getIdentifierMap().getIdentifier(specification);
+    final DecodedValueCache decodedValues = getDecodedValueCache();
+    if (decodedValues != null) {
+      final Object obj = decodedValues.get(identifier);
+      if (obj != null) {
+        return obj;
+      }
+    }
+    boolean isPrivate = true;
     FudgeMsg data = getPrivateDataStore().get(identifier);
     if (data == null) {
+      isPrivate = false;
       data = getSharedDataStore().get(identifier);
     }
     if (data == null) {
@@ -171,9 +230,7 @@ public class DefaultViewComputationCache implements ViewComputationCache,
       }
     }
     final FudgeDeserializer deserializer = new FudgeDeserializer(getFudgeContext());
-    Object obj = deserializeValue(deserializer, data);
-    cacheValueSize(specification, data, obj);
-    return obj;
+    return readValue(deserializer, specification, identifier, data, isPrivate);
   }
 
   @Override
@@ -181,125 +238,154 @@ public class DefaultViewComputationCache implements ViewComputationCache,
     ArgumentChecker.notNull(specification, "Specification");
     final long identifier = getIdentifierMap().getIdentifier(specification);
     final boolean isPrivate = filter.isPrivateValue(specification);
+    final DecodedValueCache decodedValues = getDecodedValueCache();
+    if (decodedValues != null) {
+      final Object obj = decodedValues.get(identifier, isPrivate);
+      if (obj != null) {
+        return obj;
+      }
+    }
     final FudgeMsg data = (isPrivate ? getPrivateDataStore() : getSharedDataStore()).get(identifier);
     if (data == null) {
       return null;
     }
     final FudgeDeserializer deserializer = new FudgeDeserializer(getFudgeContext());
-    Object obj = deserializeValue(deserializer, data);
-    cacheValueSize(specification, data, obj);
-    return obj;
+    return readValue(deserializer, specification, identifier, data, isPrivate);
+  }
+
+  private static long[] trim(final long[] identifiers, final int count) {
+    return (count == identifiers.length) ? identifiers : Arrays.copyOf(identifiers, count);
+  }
+
+  /**
+   * Deserializes the values found for the first {@code count} identifiers, compacting the arrays to leave only those
+   * that were not found.
+   * 
+   * @return the number of identifiers not found
+   */
+  private int readValues(final FudgeDeserializer deserializer, final ValueSpecification[] specifications, final long[] identifiers, final int count,
+      final FudgeMsg[] data, final boolean isPrivate, final Collection<Pair<ValueSpecification, Object>> returnValues) {
+    int missing = 0;
+    for (int i = 0; i < count; i++) {
+      if (data[i] != null) {
+        final Object value = readValue(deserializer, specifications[i], identifiers[i], data[i], isPrivate);
+        returnValues.add(Pair.of(specifications[i], value));
+      } else {
+        specifications[missing] = specifications[i];
+        identifiers[missing++] = identifiers[i];
+      }
+    }
+    return missing;
   }
 
   @Override
   public Collection<Pair<ValueSpecification, Object>> getValues(final Collection<ValueSpecification> specifications) {
     ArgumentChecker.notNull(specifications, "specifications");
-    final Map<ValueSpecification, Long> identifiers = getIdentifierMap().getIdentifiers(specifications);
-    final Collection<Pair<ValueSpecification, Object>> returnValues = new ArrayList<Pair<ValueSpecification, Object>>(specifications.size());
-    final Collection<Long> identifierValues = identifiers.values();
-    final FudgeDeserializer deserializer = new FudgeDeserializer(getFudgeContext());
-    Map<Long, FudgeMsg> rawValues = getPrivateDataStore().get(identifierValues);
-    if (!rawValues.isEmpty()) {
-      final Iterator<Map.Entry<ValueSpecification, Long>> identifierIterator = identifiers.entrySet().iterator();
-      while (identifierIterator.hasNext()) {
-        final Map.Entry<ValueSpecification, Long> identifier = identifierIterator.next();
-        final FudgeMsg data = rawValues.get(identifier.getValue());
-        if (data != null) {
-          Object value = deserializeValue(deserializer, data);
-          cacheValueSize(identifier.getKey(), data, value);
-          returnValues.add(Pair.of(identifier.getKey(), value));
-          identifierIterator.remove();
+    final ValueSpecification[] specs = specifications.toArray(new ValueSpecification[specifications.size()]);
+    final long[] identifiers = getIdentifierMap().getIdentifiers(specs);
+    final Collection<Pair<ValueSpecification, Object>> returnValues = new ArrayList<Pair<ValueSpecification, Object>>(specs.length);
+    int count = specs.length;
+    final DecodedValueCache decodedValues = getDecodedValueCache();
+    if (decodedValues != null) {
+      count = 0;
+      for (int i = 0; i < specs.length; i++) {
+        final Object value = decodedValues.get(identifiers[i]);
+        if (value != null) {
+          returnValues.add(Pair.of(specs[i], value));
+        } else {
+          specs[count] = specs[i];
+          identifiers[count++] = identifiers[i];
         }
       }
-      if (identifiers.isEmpty()) {
+      if (count == 0) {
         return returnValues;
       }
     }
-    rawValues = getSharedDataStore().get(identifierValues);
-    if (!rawValues.isEmpty()) {
-      final Iterator<Map.Entry<ValueSpecification, Long>> identifierIterator = identifiers.entrySet().iterator();
-      while (identifierIterator.hasNext()) {
-        final Map.Entry<ValueSpecification, Long> identifier = identifierIterator.next();
-        final FudgeMsg data = rawValues.get(identifier.getValue());
-        if (data != null) {
-          Object value = deserializeValue(deserializer, data);
-          cacheValueSize(identifier.getKey(), data, value);
-          returnValues.add(Pair.of(identifier.getKey(), value));
-          identifierIterator.remove();
-        }
-      }
-      if (identifiers.isEmpty()) {
-        return returnValues;
-      }
+    final FudgeDeserializer deserializer = new FudgeDeserializer(getFudgeContext());
+    FudgeMsg[] rawValues = getPrivateDataStore().get(trim(identifiers, count));
+    count = readValues(deserializer, specs, identifiers, count, rawValues, true, returnValues);
+    if (count == 0) {
+      return returnValues;
+    }
+    rawValues = getSharedDataStore().get(trim(identifiers, count));
+    count = readValues(deserializer, specs, identifiers, count, rawValues, false, returnValues);
+    if (count == 0) {
+      return returnValues;
     }
     final MissingValueLoader loader = getMissingValueLoader();
     if (loader != null) {
-      rawValues = loader.findMissingValues(identifierValues);
-      if (!rawValues.isEmpty()) {
-        final Iterator<Map.Entry<ValueSpecification, Long>> identifierIterator = identifiers.entrySet().iterator();
-        while (identifierIterator.hasNext()) {
-          final Map.Entry<ValueSpecification, Long> identifier = identifierIterator.next();
-          final FudgeMsg data = rawValues.get(identifier.getValue());
-          if (data != null) {
-            Object value = deserializeValue(deserializer, data);
-            cacheValueSize(identifier.getKey(), data, value);
-            returnValues.add(Pair.of(identifier.getKey(), value));
-            identifierIterator.remove();
-          }
+      final Map<Long, FudgeMsg> missingValues = loader.findMissingValues(LongArrayList.wrap(identifiers, count));
+      if (!missingValues.isEmpty()) {
+        rawValues = new FudgeMsg[count];
+        for (int i = 0; i < count; i++) {
+          rawValues[i] = missingValues.get(identifiers[i]);
         }
+        readValues(deserializer, specs, identifiers, count, rawValues, false, returnValues);
       }
     }
     return returnValues;
   }
 
+  /**
+   * Fetches and deserializes the values identified by a range of the {@code indices} array from a data store. A null
+   * value is returned for any that are not found.
+   */
+  private void fetchValues(final FudgeDeserializer deserializer, final ValueSpecification[] specifications, final long[] identifiers, final int[] indices,
+      final int from, final int to, final FudgeMessageStore dataStore, final boolean isPrivate, final Collection<Pair<ValueSpecification, Object>> returnValues) {
+    final long[] fetchIdentifiers = new long[to - from];
+    for (int i = 0; i < fetchIdentifiers.length; i++) {
+      fetchIdentifiers[i] = identifiers[indices[from + i]];
+    }
+    final FudgeMsg[] rawValues;
+    if (fetchIdentifiers.length == 1) {
+      rawValues = new FudgeMsg[] {dataStore.get(fetchIdentifiers[0]) };
+    } else {
+      rawValues = dataStore.get(fetchIdentifiers);
+    }
+    for (int i = 0; i < fetchIdentifiers.length; i++) {
+      final ValueSpecification specification = specifications[indices[from + i]];
+      if (rawValues[i] != null) {
+        final Object value = readValue(deserializer, specification, fetchIdentifiers[i], rawValues[i], isPrivate);
+        returnValues.add(Pair.of(specification, value));
+      } else {
+        returnValues.add(Pair.of(specification, null));
+      }
+    }
+  }
+
   @Override
   public Collection<Pair<ValueSpecification, Object>> getValues(final Collection<ValueSpecification> specifications, final CacheSelectHint filter) {
     ArgumentChecker.notNull(specifications, "specifications");
-    final Map<ValueSpecification, Long> identifiers = getIdentifierMap().getIdentifiers(specifications);
-    final Collection<Pair<ValueSpecification, Object>> returnValues = new ArrayList<Pair<ValueSpecification, Object>>(specifications.size());
-    List<Long> privateIdentifiers = null;
-    List<Long> sharedIdentifiers = null;
-    for (ValueSpecification specification : specifications) {
-      if (filter.isPrivateValue(specification)) {
-        if (privateIdentifiers == null) {
-          privateIdentifiers = new ArrayList<Long>(specifications.size());
-        }
-        privateIdentifiers.add(identifiers.get(specification));
-      } else {
-        if (sharedIdentifiers == null) {
-          sharedIdentifiers = new ArrayList<Long>(specifications.size());
+    final ValueSpecification[] specs = specifications.toArray(new ValueSpecification[specifications.size()]);
+    final long[] identifiers = getIdentifierMap().getIdentifiers(specs);
+    final Collection<Pair<ValueSpecification, Object>> returnValues = new ArrayList<Pair<ValueSpecification, Object>>(specs.length);
+    final DecodedValueCache decodedValues = getDecodedValueCache();
+    // Indices of the values to fetch; private values fill from the start and shared values from the end
+    final int[] fetch = new int[specs.length];
+    int privateCount = 0;
+    int sharedStart = specs.length;
+    for (int i = 0; i < specs.length; i++) {
+      final boolean isPrivate = filter.isPrivateValue(specs[i]);
+      if (decodedValues != null) {
+        final Object value = decodedValues.get(identifiers[i], isPrivate);
+        if (value != null) {
+          returnValues.add(Pair.of(specs[i], value));
+          continue;
         }
-        sharedIdentifiers.add(identifiers.get(specification));
-      }
-    }
-    final Map<Long, FudgeMsg> rawValues = new HashMap<Long, FudgeMsg>();
-    // TODO Can we overlay the fetch of shared and private data?
-    if (sharedIdentifiers != null) {
-      if (sharedIdentifiers.size() == 1) {
-        final FudgeMsg data = getSharedDataStore().get(sharedIdentifiers.get(0));
-        rawValues.put(sharedIdentifiers.get(0), data);
-      } else {
-        rawValues.putAll(getSharedDataStore().get(sharedIdentifiers));
       }
-    }
-    if (privateIdentifiers != null) {
-      if (privateIdentifiers.size() == 1) {
-        final FudgeMsg data = getPrivateDataStore().get(privateIdentifiers.get(0));
-        rawValues.put(privateIdentifiers.get(0), data);
+      if (isPrivate) {
+        fetch[privateCount++] = i;
       } else {
-        rawValues.putAll(getPrivateDataStore().get(privateIdentifiers));
+        fetch[--sharedStart] = i;
       }
     }
     final FudgeDeserializer deserializer = new FudgeDeserializer(getFudgeContext());
-    for (Map.Entry<ValueSpecification, Long> identifier : identifiers.entrySet()) {
-      final FudgeMsg data = rawValues.get(identifier.getValue());
-      if (data != null) {
-        Object value = deserializeValue(deserializer, data);
-        cacheValueSize(identifier.getKey(), data, value);
-        returnValues.add(Pair.of(identifier.getKey(), value));
-      } else {
-        returnValues.add(Pair.of(identifier.getKey(), null));
-      }
+    // TODO Can we overlay the fetch of shared and private data?
+    if (sharedStart < specs.length) {
+      fetchValues(deserializer, specs, identifiers, fetch, sharedStart, specs.length, getSharedDataStore(), false, returnValues);
+    }
+    if (privateCount > 0) {
+      fetchValues(deserializer, specs, identifiers, fetch, 0, privateCount, getPrivateDataStore(), true, returnValues);
     }
     return returnValues;
   }
@@ -311,6 +397,7 @@ public class DefaultViewComputationCache implements ViewComputationCache,
     Object obj = value.getValue();
     final FudgeMsg data = serializeValue(serializer, obj);
     cacheValueSize(value.getSpecification(), data, obj);
+    invalidateDecodedValue(identifier);
     dataStore.put(identifier, data);
   }
 
@@ -329,22 +416,29 @@ public class DefaultViewComputationCache implements ViewComputationCache,
     AbstractViewComputationCache.putValue(this, value, filter);
   }
 
-  protected void putValues(final Collection<ComputedValue> values, final FudgeMessageStore dataStore) {
-    ArgumentChecker.notNull(values, "values");
-    final Collection<ValueSpecification> specifications = new ArrayList<ValueSpecification>(values.size());
+  private static ValueSpecification[] getSpecifications(final Collection<ComputedValue> values) {
+    final ValueSpecification[] specifications = new ValueSpecification[values.size()];
+    int i = 0;
     for (ComputedValue value : values) {
-      specifications.add(value.getSpecification());
+      specifications[i++] = value.getSpecification();
     }
-    final Map<ValueSpecification, Long> identifiers = getIdentifierMap().getIdentifiers(specifications);
-    final Map<Long, FudgeMsg> data = new HashMap<Long, FudgeMsg>();
+    return specifications;
+  }
+
+  protected void putValues(final Collection<ComputedValue> values, final FudgeMessageStore dataStore) {
+    ArgumentChecker.notNull(values, "values");
+    final long[] identifiers = getIdentifierMap().getIdentifiers(getSpecifications(values));
+    final FudgeMsg[] data = new FudgeMsg[identifiers.length];
     final FudgeSerializer serializer = new FudgeSerializer(getFudgeContext());
+    int i = 0;
     for (ComputedValue value : values) {
       Object obj = value.getValue();
       final FudgeMsg valueData = serializeValue(serializer, obj);
       cacheValueSize(value.getSpecification(), valueData, obj);
-      data.put(identifiers.get(value.getSpecification()), valueData);
+      invalidateDecodedValue(identifiers[i]);
+      data[i++] = valueData;
     }
-    dataStore.put(data);
+    dataStore.put(identifiers, data);
   }
 
   @Override
@@ -360,37 +454,110 @@ public class DefaultViewComputationCache implements ViewComputationCache,
   @Override
   public void putValues(final Collection<ComputedValue> values, final CacheSelectHint filter) {
     ArgumentChecker.notNull(values, "values");
-    final Collection<ValueSpecification> specifications = new ArrayList<ValueSpecification>(values.size());
-    for (ComputedValue value : values) {
-      specifications.add(value.getSpecification());
-    }
-    final Map<ValueSpecification, Long> identifiers = getIdentifierMap().getIdentifiers(specifications);
+    final long[] identifiers = getIdentifierMap().getIdentifiers(getSpecifications(values));
     final FudgeSerializer serializer = new FudgeSerializer(getFudgeContext());
-    Map<Long, FudgeMsg> privateData = null;
-    Map<Long, FudgeMsg> sharedData = null;
+    // Private values fill from the start of the arrays and shared values from the end
+    final long[] putIdentifiers = new long[identifiers.length];
+    final FudgeMsg[] putData = new FudgeMsg[identifiers.length];
+    int privateCount = 0;
+    int sharedStart = identifiers.length;
+    int i = 0;
     for (ComputedValue value : values) {
       Object obj = value.getValue();
       final FudgeMsg valueData = serializeValue(serializer, obj);
       cacheValueSize(value.getSpecification(), valueData, value.getValue());
+      final long identifier = identifiers[i++];
+      invalidateDecodedValue(identifier);
       if (filter.isPrivateValue(value.getSpecification())) {
-        if (privateData == null) {
-          privateData = new HashMap<Long, FudgeMsg>();
-        }
-        privateData.put(identifiers.get(value.getSpecification()), valueData);
+        putIdentifiers[privateCount] = identifier;
+        putData[privateCount++] = valueData;
       } else {
-        if (sharedData == null) {
-          sharedData = new HashMap<Long, FudgeMsg>();
-        }
-        sharedData.put(identifiers.get(value.getSpecification()), valueData);
+        putIdentifiers[--sharedStart] = identifier;
+        putData[sharedStart] = valueData;
       }
     }
     // TODO 2010-08-31 Andrew -- can we overlay the shared and private puts ?
-    if (sharedData != null) {
-      getSharedDataStore().put(sharedData);
+    if (sharedStart < identifiers.length) {
+      getSharedDataStore().put(Arrays.copyOfRange(putIdentifiers, sharedStart, identifiers.length), Arrays.copyOfRange(putData, sharedStart, identifiers.length));
+    }
+    if (privateCount > 0) {
+      getPrivateDataStore().put(Arrays.copyOf(putIdentifiers, privateCount), Arrays.copyOf(putData, privateCount));
+    }
+  }
+
+  /**
+   * Copies values from another cache into the shared data store of this one. The encoded messages are transferred
+   * without being decoded and re-encoded so, with an in-memory binary store, the underlying data is shared by reference
+   * between the two caches. Any decoded forms held by the other cache are carried over in the same way. Values are
+   * taken from the shared data store of the other cache, or its private data store if not found there.
+   *
+   * @param source the cache to copy from, not null
+   * @param specifications the values to copy, not null
+   * @return the values that were not found in the other cache's data stores, not null
+   */
+  public Collection<ValueSpecification> copySharedValues(final DefaultViewComputationCache source, final Collection<ValueSpecification> specifications) {
+    ArgumentChecker.notNull(source, "source");
+    ArgumentChecker.notNull(specifications, "specifications");
+    final ValueSpecification[] specs = specifications.toArray(new ValueSpecification[specifications.size()]);
+    final long[] sourceIdentifiers = source.getIdentifierMap().getIdentifiers(specs);
+    FudgeMsg[] data = source.getSharedDataStore().get(sourceIdentifiers);
+    if (source.getPrivateDataStore() != source.getSharedDataStore()) {
+      final int[] misses = new int[specs.length];
+      int missCount = 0;
+      for (int i = 0; i < specs.length; i++) {
+        if (data[i] == null) {
+          misses[missCount++] = i;
+        }
+      }
+      if (missCount > 0) {
+        final long[] missIdentifiers = new long[missCount];
+        for (int i = 0; i < missCount; i++) {
+          missIdentifiers[i] = sourceIdentifiers[misses[i]];
+        }
+        final FudgeMsg[] missData = source.getPrivateDataStore().get(missIdentifiers);
+        for (int i = 0; i < missCount; i++) {
+          data[misses[i]] = missData[i];
+        }
+      }
+    }
+    // Compact the arrays to just the values found
+    final Collection<ValueSpecification> notFound = new ArrayList<ValueSpecification>();
+    int count = 0;
+    for (int i = 0; i < specs.length; i++) {
+      if (data[i] != null) {
+        specs[count] = specs[i];
+        sourceIdentifiers[count] = sourceIdentifiers[i];
+        data[count++] = data[i];
+      } else {
+        notFound.add(specs[i]);
+      }
+    }
+    if (count == 0) {
+      return notFound;
     }
-    if (privateData != null) {
-      getPrivateDataStore().put(privateData);
+    final long[] identifiers;
+    if (source.getIdentifierMap() == getIdentifierMap()) {
+      identifiers = trim(sourceIdentifiers, count);
+    } else {
+      identifiers = getIdentifierMap().getIdentifiers((count == specs.length) ? specs : Arrays.copyOf(specs, count));
+    }
+    if (count < data.length) {
+      data = Arrays.copyOf(data, count);
+    }
+    final DecodedValueCache decodedValues = getDecodedValueCache();
+    final DecodedValueCache sourceDecodedValues = source.getDecodedValueCache();
+    for (int i = 0; i < count; i++) {
+      invalidateDecodedValue(identifiers[i]);
+      if ((decodedValues != null) && (sourceDecodedValues != null)) {
+        final Object value = sourceDecodedValues.get(sourceIdentifiers[i]);
+        if (value != null) {
+          final int size = (data[i] instanceof FudgeEncoded) ? ((FudgeEncoded) data[i]).getFudgeEncoded().length : FudgeSize.calculateMessageSize(data[i]);
+          decodedValues.put(identifiers[i], value, size, false);
+        }
+      }
     }
+    getSharedDataStore().put(identifiers, data);
+    return notFound;
   }
 
   protected static FudgeMsg serializeValue(final FudgeSerializer serializer, final Object value) {
@@ -444,6 +611,10 @@ public class DefaultViewComputationCache implements ViewComputationCache,
    */
   public void delete() {
     _valueSizeCache.remove(); //TODO this is not right
+    final DecodedValueCache decodedValues = getDecodedValueCache();
+    if (decodedValues != null) {
+      decodedValues.clear();
+    }
     getPrivateDataStore().delete();
     if (getSharedDataStore() != getPrivateDataStore()) {
       getSharedDataStore().delete();
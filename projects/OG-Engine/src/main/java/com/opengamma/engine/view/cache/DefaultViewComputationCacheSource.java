@@ -60,6 +60,7 @@ public class DefaultViewComputationCacheSource implements ViewComputationCacheSo
 
   private ReleaseCachesCallback _releaseCachesCallback;
   private MissingValueLoader _missingValueLoader;
+  private long _decodedValueCacheSize;
 
   protected DefaultViewComputationCacheSource(final IdentifierMap identifierMap, final FudgeContext fudgeContext,
       final FudgeMessageStoreFactory dataStoreFactory) {
@@ -106,6 +107,19 @@ public class DefaultViewComputationCacheSource implements ViewComputationCacheSo
     return new DefaultViewComputationCache(identifierMap, dataStore, dataStore, getFudgeContext());
   }
 
+  @Override
+  public Collection<ValueSpecification> copyValues(final UniqueId sourceViewCycleId, final UniqueId targetViewCycleId,
+      final String calculationConfigurationName, final Collection<ValueSpecification> specifications) {
+    ArgumentChecker.notNull(sourceViewCycleId, "sourceViewCycleId");
+    ArgumentChecker.notNull(targetViewCycleId, "targetViewCycleId");
+    ArgumentChecker.notNull(specifications, "specifications");
+    final DefaultViewComputationCache source = findCache(sourceViewCycleId, calculationConfigurationName);
+    if (source == null) {
+      return specifications;
+    }
+    return getCache(targetViewCycleId, calculationConfigurationName).copySharedValues(source, specifications);
+  }
+
   @Override
   public DefaultViewComputationCache getCache(UniqueId viewCycleId, String calculationConfigurationName) {
     return getCache(new ViewComputationCacheKey(viewCycleId, calculationConfigurationName));
@@ -145,6 +159,9 @@ public class DefaultViewComputationCacheSource implements ViewComputationCacheSo
           _activeCachesByCycle.put(key.getViewCycleId(), caches);
         }
         caches.add(key);
+        if (getDecodedValueCacheSize() > 0) {
+          cache.setDecodedValueCache(new DecodedValueCache(getDecodedValueCacheSize()));
+        }
         final MissingValueLoader loader = getMissingValueLoader();
         if (loader != null) {
           cache.setMissingValueLoader(new DefaultViewComputationCache.MissingValueLoader() {
@@ -225,4 +242,19 @@ public class DefaultViewComputationCacheSource implements ViewComputationCacheSo
     return _missingValueLoader;
   }
 
+  /**
+   * Sets the size, in bytes of encoded data, of the {@link DecodedValueCache} given to each cache constructed. If
+   * zero, the default, no decoded values are cached.
+   * 
+   * @param decodedValueCacheSize the maximum size of the decoded value cache for each cache, or zero to disable
+   */
+  public void setDecodedValueCacheSize(final long decodedValueCacheSize) {
+    ArgumentChecker.isTrue(decodedValueCacheSize >= 0, "decodedValueCacheSize must not be negative");
+    _decodedValueCacheSize = decodedValueCacheSize;
+  }
+
+  public long getDecodedValueCacheSize() {
+    return _decodedValueCacheSize;
+  }
+
 }
@@ -0,0 +1,209 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * An implementation of {@link BinaryDataStore} that holds values outside of the Java heap in direct
+ * {@link ByteBuffer} slabs. Each value is appended to the current slab with a length prefix and its
+ * location recorded against the identifier in a primitive map. Values larger than a slab are given a
+ * dedicated buffer.
+ * <p>
+ * Space is never reclaimed from a slab when a value is overwritten; the store is expected to live for a
+ * single cycle and {@link #delete} releases all of the slabs back to the owning factory in one operation.
+ * <p>
+ * This class is internally synchronized.
+ */
+public class DirectBufferBinaryDataStore extends AbstractBinaryDataStore implements BinaryDataStore {
+
+  private static final long NO_LOCATION = -1L;
+
+  private static final int LENGTH_PREFIX = 4;
+
+  private final DirectBufferBinaryDataStoreFactory _factory;
+  private final ReadWriteLock _lock = new ReentrantReadWriteLock();
+  private final Long2LongOpenHashMap _locations = new Long2LongOpenHashMap();
+  private final List<ByteBuffer> _slabs = new ArrayList<ByteBuffer>();
+  private ByteBuffer _currentSlab;
+  private int _currentSlabIndex;
+
+  public DirectBufferBinaryDataStore(final DirectBufferBinaryDataStoreFactory factory) {
+    ArgumentChecker.notNull(factory, "factory");
+    _factory = factory;
+    _locations.defaultReturnValue(NO_LOCATION);
+  }
+
+  private DirectBufferBinaryDataStoreFactory getFactory() {
+    return _factory;
+  }
+
+  /**
+   * Returns the number of slabs, including dedicated buffers for large values, currently held.
+   *
+   * @return the number of slabs
+   */
+  public int getSlabCount() {
+    final Lock lock = _lock.readLock();
+    lock.lock();
+    try {
+      return _slabs.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void delete() {
+    final Lock lock = _lock.writeLock();
+    lock.lock();
+    try {
+      for (ByteBuffer slab : _slabs) {
+        getFactory().releaseSlab(slab);
+      }
+      _slabs.clear();
+      _locations.clear();
+      _currentSlab = null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Caller must hold the read lock
+  private byte[] getImpl(final long identifier) {
+    final long location = _locations.get(identifier);
+    if (location == NO_LOCATION) {
+      return null;
+    }
+    final ByteBuffer slab = _slabs.get((int) (location >>> 32)).duplicate();
+    final int offset = (int) location;
+    final byte[] data = new byte[slab.getInt(offset)];
+    slab.position(offset + LENGTH_PREFIX);
+    slab.get(data);
+    return data;
+  }
+
+  @Override
+  public byte[] get(final long identifier) {
+    final Lock lock = _lock.readLock();
+    lock.lock();
+    try {
+      return getImpl(identifier);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Map<Long, byte[]> get(final Collection<Long> identifiers) {
+    final Map<Long, byte[]> result = new HashMap<Long, byte[]>();
+    final Lock lock = _lock.readLock();
+    lock.lock();
+    try {
+      for (Long identifier : identifiers) {
+        final byte[] data = getImpl(identifier);
+        if (data != null) {
+          result.put(identifier, data);
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+    return result;
+  }
+
+  @Override
+  public byte[][] get(final long[] identifiers) {
+    final byte[][] result = new byte[identifiers.length][];
+    final Lock lock = _lock.readLock();
+    lock.lock();
+    try {
+      for (int i = 0; i < identifiers.length; i++) {
+        result[i] = getImpl(identifiers[i]);
+      }
+    } finally {
+      lock.unlock();
+    }
+    return result;
+  }
+
+  // Caller must hold the write lock
+  private void putImpl(final long identifier, final byte[] data) {
+    final int required = data.length + LENGTH_PREFIX;
+    final ByteBuffer slab;
+    final int slabIndex;
+    if (required > getFactory().getSlabSize()) {
+      slab = ByteBuffer.allocateDirect(required);
+      slabIndex = _slabs.size();
+      _slabs.add(slab);
+    } else {
+      if ((_currentSlab == null) || (_currentSlab.remaining() < required)) {
+        _currentSlab = getFactory().allocateSlab();
+        _currentSlabIndex = _slabs.size();
+        _slabs.add(_currentSlab);
+      }
+      slab = _currentSlab;
+      slabIndex = _currentSlabIndex;
+    }
+    final int offset = slab.position();
+    slab.putInt(data.length);
+    slab.put(data);
+    _locations.put(identifier, ((long) slabIndex << 32) | offset);
+  }
+
+  @Override
+  public void put(final long identifier, final byte[] data) {
+    ArgumentChecker.notNull(data, "data to store");
+    final Lock lock = _lock.writeLock();
+    lock.lock();
+    try {
+      putImpl(identifier, data);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void put(final Map<Long, byte[]> data) {
+    final Lock lock = _lock.writeLock();
+    lock.lock();
+    try {
+      for (Map.Entry<Long, byte[]> pair : data.entrySet()) {
+        ArgumentChecker.notNull(pair.getValue(), "data to store");
+        putImpl(pair.getKey(), pair.getValue());
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void put(final long[] identifiers, final byte[][] data) {
+    final Lock lock = _lock.writeLock();
+    lock.lock();
+    try {
+      for (int i = 0; i < identifiers.length; i++) {
+        ArgumentChecker.notNull(data[i], "data to store");
+        putImpl(identifiers[i], data[i]);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+}
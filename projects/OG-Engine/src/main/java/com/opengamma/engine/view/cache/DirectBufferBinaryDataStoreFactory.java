@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Creates {@link DirectBufferBinaryDataStore} instances. Slabs released when a store is deleted at the end of
+ * a cycle are pooled so that the next cycle does not have to allocate fresh direct memory.
+ */
+public class DirectBufferBinaryDataStoreFactory implements BinaryDataStoreFactory {
+
+  /**
+   * Default size of each slab, in bytes.
+   */
+  public static final int DEFAULT_SLAB_SIZE = 1024 * 1024;
+
+  /**
+   * Default number of slabs to retain for reuse.
+   */
+  public static final int DEFAULT_MAX_POOLED_SLABS = 256;
+
+  private final int _slabSize;
+  private final int _maxPooledSlabs;
+  private final Queue<ByteBuffer> _pooledSlabs = new ConcurrentLinkedQueue<ByteBuffer>();
+  private final AtomicInteger _pooledSlabCount = new AtomicInteger();
+
+  public DirectBufferBinaryDataStoreFactory() {
+    this(DEFAULT_SLAB_SIZE, DEFAULT_MAX_POOLED_SLABS);
+  }
+
+  public DirectBufferBinaryDataStoreFactory(final int slabSize, final int maxPooledSlabs) {
+    ArgumentChecker.isTrue(slabSize > 0, "slabSize must be positive");
+    ArgumentChecker.isTrue(maxPooledSlabs >= 0, "maxPooledSlabs must not be negative");
+    _slabSize = slabSize;
+    _maxPooledSlabs = maxPooledSlabs;
+  }
+
+  public int getSlabSize() {
+    return _slabSize;
+  }
+
+  public int getMaxPooledSlabs() {
+    return _maxPooledSlabs;
+  }
+
+  /**
+   * Returns the number of slabs currently held in the pool.
+   *
+   * @return the number of pooled slabs
+   */
+  public int getPooledSlabCount() {
+    return _pooledSlabCount.get();
+  }
+
+  /**
+   * Obtains an empty slab, either from the pool or by allocating more direct memory.
+   *
+   * @return the slab, not null
+   */
+  protected ByteBuffer allocateSlab() {
+    final ByteBuffer slab = _pooledSlabs.poll();
+    if (slab != null) {
+      _pooledSlabCount.decrementAndGet();
+      slab.clear();
+      return slab;
+    }
+    return ByteBuffer.allocateDirect(getSlabSize());
+  }
+
+  /**
+   * Returns a slab that is no longer referenced by a data store. If the pool is full the slab is discarded
+   * and its memory reclaimed when the buffer is garbage collected.
+   *
+   * @param slab the slab to release, not null
+   */
+  protected void releaseSlab(final ByteBuffer slab) {
+    if (slab.capacity() != getSlabSize()) {
+      return;
+    }
+    if (_pooledSlabCount.incrementAndGet() <= getMaxPooledSlabs()) {
+      _pooledSlabs.add(slab);
+    } else {
+      _pooledSlabCount.decrementAndGet();
+    }
+  }
+
+  @Override
+  public BinaryDataStore createDataStore(final ViewComputationCacheKey cacheKey) {
+    return new DirectBufferBinaryDataStore(this);
+  }
+
+}
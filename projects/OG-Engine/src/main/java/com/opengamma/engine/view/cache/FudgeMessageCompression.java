@@ -0,0 +1,223 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeField;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.MutableFudgeMsg;
+import org.fudgemsg.wire.EncodedFudgeMsg;
+import org.fudgemsg.wire.FudgeDataOutputStreamWriter;
+import org.fudgemsg.wire.FudgeEncoded;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Compresses large messages before they are written to a cache, or sent to a remote one.
+ * <p>
+ * A message whose encoding is at least the threshold size is replaced by a message containing the deflated encoding. The
+ * replacement is itself a Fudge message so can be stored and transported like any other. Compressed messages are recognized
+ * and expanded whatever the threshold, so any store sharing data with one that compresses must also be wrapped with a
+ * {@link CompressingFudgeMessageStore}.
+ * <p>
+ * The byte counts before and after compression are gathered to show the saving.
+ */
+public class FudgeMessageCompression {
+
+  /**
+   * Default size, in bytes, of the smallest message encoding that will be compressed.
+   */
+  public static final int DEFAULT_THRESHOLD = 4096;
+
+  private static final int DEFLATED_ORDINAL = Short.MIN_VALUE;
+  private static final int LENGTH_ORDINAL = Short.MIN_VALUE + 1;
+
+  private final FudgeContext _fudgeContext;
+  private final int _threshold;
+  private final AtomicLong _messagesCompressed = new AtomicLong();
+  private final AtomicLong _bytesBeforeCompression = new AtomicLong();
+  private final AtomicLong _bytesAfterCompression = new AtomicLong();
+  private final AtomicLong _messagesExpanded = new AtomicLong();
+
+  public FudgeMessageCompression(final FudgeContext fudgeContext) {
+    this(fudgeContext, DEFAULT_THRESHOLD);
+  }
+
+  /**
+   * Creates a new codec.
+   *
+   * @param fudgeContext the context to encode and decode messages with, not null
+   * @param threshold the size, in bytes, of the smallest message encoding to compress
+   */
+  public FudgeMessageCompression(final FudgeContext fudgeContext, final int threshold) {
+    ArgumentChecker.notNull(fudgeContext, "fudgeContext");
+    ArgumentChecker.notNegative(threshold, "threshold");
+    _fudgeContext = fudgeContext;
+    _threshold = threshold;
+  }
+
+  public FudgeContext getFudgeContext() {
+    return _fudgeContext;
+  }
+
+  public int getThreshold() {
+    return _threshold;
+  }
+
+  /**
+   * Returns the number of messages compressed.
+   *
+   * @return the number of messages
+   */
+  public long getMessagesCompressed() {
+    return _messagesCompressed.get();
+  }
+
+  /**
+   * Returns the total size of the encodings of the messages compressed.
+   *
+   * @return the number of bytes
+   */
+  public long getBytesBeforeCompression() {
+    return _bytesBeforeCompression.get();
+  }
+
+  /**
+   * Returns the total size of the compressed encodings.
+   *
+   * @return the number of bytes
+   */
+  public long getBytesAfterCompression() {
+    return _bytesAfterCompression.get();
+  }
+
+  /**
+   * Returns the number of compressed messages expanded.
+   *
+   * @return the number of messages
+   */
+  public long getMessagesExpanded() {
+    return _messagesExpanded.get();
+  }
+
+  private byte[] encode(final FudgeMsg message) {
+    if (message instanceof FudgeEncoded) {
+      return ((FudgeEncoded) message).getFudgeEncoded();
+    }
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    final FudgeDataOutputStreamWriter writer = new FudgeDataOutputStreamWriter(getFudgeContext(), baos);
+    writer.writeFields(message);
+    return baos.toByteArray();
+  }
+
+  private FudgeMsg encoded(final FudgeMsg message, final byte[] data) {
+    if (message instanceof FudgeEncoded) {
+      return message;
+    }
+    return new EncodedFudgeMsg(data, getFudgeContext());
+  }
+
+  /**
+   * Compresses a message if its encoding is large enough and compression would reduce it. A message that is not compressed
+   * is returned in its encoded form so that a store writing it does not have to encode it again.
+   *
+   * @param message the message to compress, not null
+   * @return the compressed message, or the original message, possibly as an {@link EncodedFudgeMsg}, if it was not compressed
+   */
+  public FudgeMsg compress(final FudgeMsg message) {
+    if (isCompressed(message)) {
+      return message;
+    }
+    final byte[] data = encode(message);
+    if (data.length < getThreshold()) {
+      return encoded(message, data);
+    }
+    final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    final byte[] deflated;
+    try {
+      deflater.setInput(data);
+      deflater.finish();
+      final byte[] buffer = new byte[data.length];
+      int length = 0;
+      while (!deflater.finished() && (length < buffer.length)) {
+        length += deflater.deflate(buffer, length, buffer.length - length);
+      }
+      if (!deflater.finished()) {
+        // No smaller than the original
+        return encoded(message, data);
+      }
+      deflated = new byte[length];
+      System.arraycopy(buffer, 0, deflated, 0, length);
+    } finally {
+      deflater.end();
+    }
+    _messagesCompressed.incrementAndGet();
+    _bytesBeforeCompression.addAndGet(data.length);
+    _bytesAfterCompression.addAndGet(deflated.length);
+    final MutableFudgeMsg compressed = getFudgeContext().newMessage();
+    compressed.add(null, DEFLATED_ORDINAL, deflated);
+    compressed.add(null, LENGTH_ORDINAL, data.length);
+    return compressed;
+  }
+
+  /**
+   * Tests whether a message was produced by {@link #compress}.
+   *
+   * @param message the message to test, not null
+   * @return true if the message is compressed
+   */
+  public static boolean isCompressed(final FudgeMsg message) {
+    // Look for the marker fields first; counting the fields would fully decode a lazily decoded message that isn't compressed
+    final FudgeField deflated = message.getByOrdinal(DEFLATED_ORDINAL);
+    if ((deflated == null) || !(deflated.getValue() instanceof byte[]) || (message.getInt(LENGTH_ORDINAL) == null)) {
+      return false;
+    }
+    return message.getNumFields() == 2;
+  }
+
+  /**
+   * Expands a message produced by {@link #compress}. Any other message is returned unchanged.
+   *
+   * @param message the message to expand, null for none
+   * @return the original message, or null if the message was null
+   */
+  public FudgeMsg expand(final FudgeMsg message) {
+    if ((message == null) || !isCompressed(message)) {
+      return message;
+    }
+    final byte[] deflated = (byte[]) message.getByOrdinal(DEFLATED_ORDINAL).getValue();
+    final byte[] data = new byte[message.getInt(LENGTH_ORDINAL)];
+    final Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(deflated);
+      int length = 0;
+      while (!inflater.finished() && (length < data.length)) {
+        final int count = inflater.inflate(data, length, data.length - length);
+        if ((count == 0) && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        length += count;
+      }
+      if (length != data.length) {
+        throw new OpenGammaRuntimeException("Compressed message truncated; expected " + data.length + " bytes, got " + length);
+      }
+    } catch (DataFormatException e) {
+      throw new OpenGammaRuntimeException("Invalid compressed message", e);
+    } finally {
+      inflater.end();
+    }
+    _messagesExpanded.incrementAndGet();
+    return new EncodedFudgeMsg(data, getFudgeContext());
+  }
+
+}
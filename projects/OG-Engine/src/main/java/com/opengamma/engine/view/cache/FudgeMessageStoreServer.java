@@ -49,6 +49,9 @@ import com.opengamma.util.ArgumentChecker;
 /**
  * Server for {@link RemoteFudgeMessageStore} clients created by a {@link RemoteFudgeMessageStoreFactory}.
  * The underlying is the shared data store component of a {@link DefaultViewComputationCache}.
+ * <p>
+ * If the shared data store is a {@link CompressingFudgeMessageStore}, values are exchanged with the clients
+ * in their compressed form; the clients must then also use a compressing store.
  */
 public class FudgeMessageStoreServer implements FudgeConnectionReceiver, ReleaseCachesCallback, MissingValueLoader, FudgeConnectionStateListener {
 
@@ -110,6 +113,21 @@ public class FudgeMessageStoreServer implements FudgeConnectionReceiver, Release
     return _connections;
   }
 
+  /**
+   * Returns the store that values exchanged with the clients are read from and written to. This bypasses any compression layer
+   * so that compressed values are neither expanded nor compressed again by the server.
+   * 
+   * @param cache the cache, not null
+   * @return the store, not null
+   */
+  protected FudgeMessageStore getTransportDataStore(final DefaultViewComputationCache cache) {
+    final FudgeMessageStore store = cache.getSharedDataStore();
+    if (store instanceof CompressingFudgeMessageStore) {
+      return ((CompressingFudgeMessageStore) store).getUnderlying();
+    }
+    return store;
+  }
+
   /**
    * Asynchronously sends a message to all open connections.
    * 
@@ -266,7 +284,7 @@ public class FudgeMessageStoreServer implements FudgeConnectionReceiver, Release
       // [ENG-256] Remove/replace this. Propogate the overall "releaseCache" message only rather than the component "delete" operations.
       final DefaultViewComputationCache cache = getUnderlying().findCache(request.getViewCycleId(), request.getCalculationConfigurationName());
       if (cache != null) {
-        cache.getSharedDataStore().delete();
+        getTransportDataStore(cache).delete();
       }
       return null;
     }
@@ -281,7 +299,7 @@ public class FudgeMessageStoreServer implements FudgeConnectionReceiver, Release
         s_logger.warn("Get request on invalid cache - {}", request);
         response = Collections.singleton(FudgeContext.EMPTY_MESSAGE);
       } else {
-        final FudgeMessageStore store = cache.getSharedDataStore();
+        final FudgeMessageStore store = getTransportDataStore(cache);
         if (identifiers.size() == 1) {
           FudgeMsg data = store.get(identifiers.get(0));
           if (data == null) {
@@ -309,7 +327,7 @@ public class FudgeMessageStoreServer implements FudgeConnectionReceiver, Release
       final List<FudgeMsg> data = request.getData();
       final ViewComputationCacheKey key = new ViewComputationCacheKey(request.getViewCycleId(), request.getCalculationConfigurationName());
       // Review 2010-10-19 Andrew -- This causes cache creation. This is bad if messages were delayed and the cache has already been released.
-      final FudgeMessageStore store = getUnderlying().getCache(key).getSharedDataStore();
+      final FudgeMessageStore store = getTransportDataStore(getUnderlying().getCache(key));
       if (identifiers.size() == 1) {
         store.put(identifiers.get(0), data.get(0));
       } else {
@@ -54,4 +54,20 @@ public interface IdentifierMap {
    */
   Long2ObjectMap<ValueSpecification> getValueSpecifications(LongCollection identifiers);
 
+  /**
+   * Version of {@link #getIdentifiers(Collection)} that avoids boxing the identifiers.
+   * 
+   * @param specs The specifications to lookup or allocate identifiers for, not null
+   * @return The identifiers, in the same order as the specifications, not null.
+   */
+  long[] getIdentifiers(ValueSpecification[] specs);
+
+  /**
+   * Inverse of {@link #getIdentifiers(ValueSpecification[])}.
+   * 
+   * @param identifiers The identifiers to look up, not null
+   * @return The specifications, in the same order as the identifiers, not null.
+   */
+  ValueSpecification[] getValueSpecifications(long[] identifiers);
+
 }
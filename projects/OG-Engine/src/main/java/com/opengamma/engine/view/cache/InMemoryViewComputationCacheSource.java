@@ -16,9 +16,25 @@ public class InMemoryViewComputationCacheSource extends DefaultViewComputationCa
    * @param fudgeContext Fudge context to use for serialization
    */
   public InMemoryViewComputationCacheSource(final FudgeContext fudgeContext) {
+    this(fudgeContext, null);
+  }
+
+  /**
+   * @param fudgeContext Fudge context to use for serialization
+   * @param compression the codec for shared values, or null to hold them uncompressed. This should match the codec used by any
+   *                    {@link RemoteViewComputationCacheSource} connected to this source through a {@link ViewComputationCacheServer}.
+   */
+  public InMemoryViewComputationCacheSource(final FudgeContext fudgeContext, final FudgeMessageCompression compression) {
     super(new InMemoryIdentifierMap(), fudgeContext, new DefaultFudgeMessageStoreFactory(
-        new InMemoryBinaryDataStoreFactory(), fudgeContext), new DefaultFudgeMessageStoreFactory(
-            new InMemoryBinaryDataStoreFactory(), fudgeContext));
+        new InMemoryBinaryDataStoreFactory(), fudgeContext), createSharedDataStoreFactory(fudgeContext, compression));
+  }
+
+  private static FudgeMessageStoreFactory createSharedDataStoreFactory(final FudgeContext fudgeContext, final FudgeMessageCompression compression) {
+    final FudgeMessageStoreFactory shared = new DefaultFudgeMessageStoreFactory(new InMemoryBinaryDataStoreFactory(), fudgeContext);
+    if (compression != null) {
+      return new CompressingFudgeMessageStoreFactory(shared, compression);
+    }
+    return shared;
   }
 
 }
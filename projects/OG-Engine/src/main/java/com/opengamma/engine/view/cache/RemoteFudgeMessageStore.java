@@ -5,9 +5,11 @@
  */
 package com.opengamma.engine.view.cache;
 
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,15 +24,67 @@ import com.opengamma.engine.view.cache.msg.PutRequest;
 
 /**
  * Client to a {@link FudgeMessageStoreServer}. These are created by a {@link RemoteFudgeMessageStoreFactory}.
+ * <p>
+ * Only a limited number of get and put requests are outstanding at once. Further requests, for example from other jobs executing on the same
+ * node, are combined and sent as a single request when one of the outstanding requests completes.
  */
 public class RemoteFudgeMessageStore implements FudgeMessageStore {
 
+  private static final class GetOperation {
+
+    private final long[] _identifiers;
+    private final FudgeMsg[] _data;
+
+    public GetOperation(final long[] identifiers) {
+      _identifiers = identifiers;
+      _data = new FudgeMsg[identifiers.length];
+    }
+
+  }
+
+  private static final class PutOperation {
+
+    private final long[] _identifiers;
+    private final FudgeMsg[] _data;
+
+    public PutOperation(final long[] identifiers, final FudgeMsg[] data) {
+      _identifiers = identifiers;
+      _data = data;
+    }
+
+  }
+
   private final RemoteCacheClient _client;
   private final ViewComputationCacheKey _cacheKey;
+  private final RequestCoalescer<GetOperation> _gets;
+  private final RequestCoalescer<PutOperation> _puts;
 
   public RemoteFudgeMessageStore(final RemoteCacheClient client, final ViewComputationCacheKey cacheKey) {
+    this(client, cacheKey, RequestCoalescer.DEFAULT_MAX_OUTSTANDING);
+  }
+
+  /**
+   * Creates a new store client.
+   * 
+   * @param client the connection to the server, not null
+   * @param cacheKey the cache to access, not null
+   * @param maxOutstandingRequests the number of get, and put, requests that may be outstanding before further requests are combined
+   */
+  public RemoteFudgeMessageStore(final RemoteCacheClient client, final ViewComputationCacheKey cacheKey, final int maxOutstandingRequests) {
     _client = client;
     _cacheKey = cacheKey;
+    _gets = new RequestCoalescer<GetOperation>(maxOutstandingRequests) {
+      @Override
+      protected void send(final List<GetOperation> operations) {
+        sendGet(operations);
+      }
+    };
+    _puts = new RequestCoalescer<PutOperation>(maxOutstandingRequests) {
+      @Override
+      protected void send(final List<PutOperation> operations) {
+        sendPut(operations);
+      }
+    };
   }
 
   protected RemoteCacheClient getRemoteCacheClient() {
@@ -41,6 +95,60 @@ public class RemoteFudgeMessageStore implements FudgeMessageStore {
     return _cacheKey;
   }
 
+  private void sendGet(final List<GetOperation> operations) {
+    final LongArrayList identifiers;
+    if (operations.size() == 1) {
+      identifiers = LongArrayList.wrap(operations.get(0)._identifiers);
+    } else {
+      int count = 0;
+      for (GetOperation operation : operations) {
+        count += operation._identifiers.length;
+      }
+      identifiers = new LongArrayList(count);
+      for (GetOperation operation : operations) {
+        identifiers.addElements(identifiers.size(), operation._identifiers);
+      }
+    }
+    final GetRequest request = new GetRequest(getCacheKey().getViewCycleId(), getCacheKey().getCalculationConfigurationName(), identifiers);
+    final GetResponse response = getRemoteCacheClient().sendGetMessage(request, GetResponse.class);
+    final List<FudgeMsg> values = response.getData();
+    if (values.size() != identifiers.size()) {
+      // An error at the server end, possibly an invalid cache (gives a result with just one null in)
+      return;
+    }
+    int i = 0;
+    for (GetOperation operation : operations) {
+      for (int j = 0; j < operation._data.length; j++) {
+        final FudgeMsg value = values.get(i++);
+        if (!value.isEmpty()) {
+          operation._data[j] = value;
+        }
+      }
+    }
+  }
+
+  private void sendPut(final List<PutOperation> operations) {
+    final PutRequest request;
+    if (operations.size() == 1) {
+      final PutOperation operation = operations.get(0);
+      request = new PutRequest(getCacheKey().getViewCycleId(), getCacheKey().getCalculationConfigurationName(), LongArrayList.wrap(operation._identifiers),
+          Arrays.asList(operation._data));
+    } else {
+      int count = 0;
+      for (PutOperation operation : operations) {
+        count += operation._identifiers.length;
+      }
+      final LongArrayList identifiers = new LongArrayList(count);
+      final List<FudgeMsg> data = new ArrayList<FudgeMsg>(count);
+      for (PutOperation operation : operations) {
+        identifiers.addElements(identifiers.size(), operation._identifiers);
+        data.addAll(Arrays.asList(operation._data));
+      }
+      request = new PutRequest(getCacheKey().getViewCycleId(), getCacheKey().getCalculationConfigurationName(), identifiers, data);
+    }
+    getRemoteCacheClient().sendPutMessage(request, CacheMessage.class);
+  }
+
   @Override
   public void delete() {
     // [ENG-256] Don't need the delete messages if we propogate at the releaseCaches level
@@ -50,53 +158,53 @@ public class RemoteFudgeMessageStore implements FudgeMessageStore {
 
   @Override
   public FudgeMsg get(long identifier) {
-    final GetRequest request = new GetRequest(getCacheKey().getViewCycleId(), getCacheKey()
-        .getCalculationConfigurationName(), Collections.singleton(identifier));
-    final GetResponse response = getRemoteCacheClient().sendGetMessage(request, GetResponse.class);
-    final FudgeMsg data = response.getData().get(0);
-    return data.isEmpty() ? null : data;
+    return get(new long[] {identifier })[0];
   }
 
   @Override
   public Map<Long, FudgeMsg> get(Collection<Long> identifiers) {
-    final GetRequest request = new GetRequest(getCacheKey().getViewCycleId(), getCacheKey()
-        .getCalculationConfigurationName(), identifiers);
-    final GetResponse response = getRemoteCacheClient().sendGetMessage(request, GetResponse.class);
-    final Map<Long, FudgeMsg> result = new HashMap<Long, FudgeMsg>();
-    final List<FudgeMsg> values = response.getData();
-    if (values.size() != identifiers.size()) {
-      // An error at the server end, possibly an invalid cache (gives a result with just one null in)
-      return Collections.emptyMap();
-    }
+    final long[] identifierArray = new long[identifiers.size()];
     int i = 0;
-    for (Long identifier : request.getIdentifier()) {
-      final FudgeMsg value = values.get(i++);
-      if (!value.isEmpty()) {
-        result.put(identifier, value);
+    for (Long identifier : identifiers) {
+      identifierArray[i++] = identifier;
+    }
+    final FudgeMsg[] values = get(identifierArray);
+    final Map<Long, FudgeMsg> result = new HashMap<Long, FudgeMsg>();
+    for (i = 0; i < identifierArray.length; i++) {
+      if (values[i] != null) {
+        result.put(identifierArray[i], values[i]);
       }
     }
     return result;
   }
 
+  @Override
+  public FudgeMsg[] get(final long[] identifiers) {
+    final GetOperation operation = new GetOperation(identifiers);
+    _gets.execute(operation);
+    return operation._data;
+  }
+
   @Override
   public void put(long identifier, FudgeMsg data) {
-    final PutRequest request = new PutRequest(getCacheKey().getViewCycleId(), getCacheKey()
-        .getCalculationConfigurationName(), Collections.singleton(identifier),
-        Collections.singleton(data));
-    getRemoteCacheClient().sendPutMessage(request, CacheMessage.class);
+    put(new long[] {identifier }, new FudgeMsg[] {data });
   }
 
   @Override
   public void put(Map<Long, FudgeMsg> data) {
-    final List<Long> identifiers = new ArrayList<Long>(data.size());
-    final List<FudgeMsg> values = new ArrayList<FudgeMsg>(data.size());
+    final long[] identifiers = new long[data.size()];
+    final FudgeMsg[] values = new FudgeMsg[data.size()];
+    int i = 0;
     for (Map.Entry<Long, FudgeMsg> entry : data.entrySet()) {
-      identifiers.add(entry.getKey());
-      values.add(entry.getValue());
+      identifiers[i] = entry.getKey();
+      values[i++] = entry.getValue();
     }
-    final PutRequest request = new PutRequest(getCacheKey().getViewCycleId(), getCacheKey()
-        .getCalculationConfigurationName(), identifiers, values);
-    getRemoteCacheClient().sendPutMessage(request, CacheMessage.class);
+    put(identifiers, values);
+  }
+
+  @Override
+  public void put(final long[] identifiers, final FudgeMsg[] data) {
+    _puts.execute(new PutOperation(identifiers, data));
   }
 
 }
@@ -5,12 +5,15 @@
  */
 package com.opengamma.engine.view.cache;
 
+import com.opengamma.util.ArgumentChecker;
+
 /**
  * Creates {@link RemoteFudgeMessageStore} clients to connect to a {@link FudgeMessageStoreServer}.
  */
 public class RemoteFudgeMessageStoreFactory implements FudgeMessageStoreFactory {
 
   private final RemoteCacheClient _client;
+  private int _maxOutstandingRequests = RequestCoalescer.DEFAULT_MAX_OUTSTANDING;
 
   public RemoteFudgeMessageStoreFactory(final RemoteCacheClient client) {
     _client = client;
@@ -20,9 +23,23 @@ public class RemoteFudgeMessageStoreFactory implements FudgeMessageStoreFactory
     return _client;
   }
 
+  /**
+   * Sets the number of get, and put, requests each store may have outstanding before further requests are combined.
+   * 
+   * @param maxOutstandingRequests the number of requests, must be positive
+   */
+  public void setMaxOutstandingRequests(final int maxOutstandingRequests) {
+    ArgumentChecker.isTrue(maxOutstandingRequests > 0, "maxOutstandingRequests must be positive");
+    _maxOutstandingRequests = maxOutstandingRequests;
+  }
+
+  public int getMaxOutstandingRequests() {
+    return _maxOutstandingRequests;
+  }
+
   @Override
   public FudgeMessageStore createMessageStore(final ViewComputationCacheKey cacheKey) {
-    return new RemoteFudgeMessageStore(getRemoteCacheClient(), cacheKey);
+    return new RemoteFudgeMessageStore(getRemoteCacheClient(), cacheKey, getMaxOutstandingRequests());
   }
 
 }
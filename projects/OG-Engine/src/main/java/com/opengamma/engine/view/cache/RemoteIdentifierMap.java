@@ -7,10 +7,12 @@ package com.opengamma.engine.view.cache;
 
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.longs.LongCollection;
 import it.unimi.dsi.fastutil.objects.Object2LongMap;
 import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -77,4 +79,28 @@ public class RemoteIdentifierMap implements IdentifierMap {
     return specificationMap;
   }
 
+  @Override
+  public long[] getIdentifiers(final ValueSpecification[] specs) {
+    final IdentifierLookupRequest request = new IdentifierLookupRequest(Arrays.asList(specs));
+    final IdentifierLookupResponse response = getRemoteCacheClient().sendGetMessage(request, IdentifierLookupResponse.class);
+    final List<Long> identifiers = response.getIdentifier();
+    final long[] result = new long[specs.length];
+    for (int i = 0; i < specs.length; i++) {
+      result[i] = identifiers.get(i);
+    }
+    return result;
+  }
+
+  @Override
+  public ValueSpecification[] getValueSpecifications(final long[] identifiers) {
+    final SpecificationLookupRequest request = new SpecificationLookupRequest(LongArrayList.wrap(identifiers));
+    final SpecificationLookupResponse response = getRemoteCacheClient().sendGetMessage(request, SpecificationLookupResponse.class);
+    final List<ValueSpecification> specifications = response.getSpecification();
+    final ValueSpecification[] result = new ValueSpecification[identifiers.length];
+    for (int i = 0; i < identifiers.length; i++) {
+      result[i] = MemoryUtils.instance(specifications.get(i));
+    }
+    return result;
+  }
+
 }
@@ -45,8 +45,24 @@ public class RemoteViewComputationCacheSource extends DefaultViewComputationCach
   public RemoteViewComputationCacheSource(final RemoteCacheClient client,
       final FudgeMessageStoreFactory privateDataStoreFactory, final FudgeContext fudgeContext,
       final CacheManager cacheManager) {
+    this(client, privateDataStoreFactory, fudgeContext, cacheManager, null);
+  }
+
+  /**
+   * @param client the connection to a {@link ViewComputationCacheServer}
+   * @param privateDataStoreFactory the private data store - the shared data store will be the remote one
+   * @param fudgeContext the Fudge context the {@link DefaultViewComputationCache} will use for object encoding. This may be the same as the
+   *                     one attached to the client's transport or different.
+   * @param cacheManager the EH cache manager to use for the remote binary data store
+   * @param compression the codec for values sent to the remote data store, or null to send them uncompressed. Every other client of the
+   *                    server, and the cache source behind the server (see {@link InMemoryViewComputationCacheSource}), must also be
+   *                    configured with a codec.
+   */
+  public RemoteViewComputationCacheSource(final RemoteCacheClient client,
+      final FudgeMessageStoreFactory privateDataStoreFactory, final FudgeContext fudgeContext,
+      final CacheManager cacheManager, final FudgeMessageCompression compression) {
     super(createIdentifierMap(client), fudgeContext, privateDataStoreFactory, createFudgeMessageStoreFactory(client,
-        cacheManager));
+        cacheManager, compression));
     client.setAsynchronousMessageReceiver(this);
   }
 
@@ -55,8 +71,11 @@ public class RemoteViewComputationCacheSource extends DefaultViewComputationCach
   }
 
   private static FudgeMessageStoreFactory createFudgeMessageStoreFactory(final RemoteCacheClient client,
-      final CacheManager cacheManager) {
-    final RemoteFudgeMessageStoreFactory remote = new RemoteFudgeMessageStoreFactory(client);
+      final CacheManager cacheManager, final FudgeMessageCompression compression) {
+    FudgeMessageStoreFactory remote = new RemoteFudgeMessageStoreFactory(client);
+    if (compression != null) {
+      remote = new CompressingFudgeMessageStoreFactory(remote, compression);
+    }
     return new CachingFudgeMessageStoreFactory(remote, cacheManager);
   }
 
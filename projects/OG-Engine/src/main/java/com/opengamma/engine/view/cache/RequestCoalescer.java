@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Limits the number of requests outstanding to a remote cache component, combining requests made while the limit is reached into a single
+ * request. Requests from concurrently executing jobs can then share a round trip instead of each paying for their own.
+ * <p>
+ * A request made while there is capacity is sent immediately by the calling thread. Otherwise it joins the pending batch. The first thread to
+ * join a batch sends it, on behalf of the others, as soon as capacity is available. All callers block until their request has been sent and
+ * the response processed.
+ *
+ * @param <T> the request type
+ */
+/* package */abstract class RequestCoalescer<T> {
+
+  /**
+   * Default number of requests that may be outstanding at once.
+   */
+  public static final int DEFAULT_MAX_OUTSTANDING = 2;
+
+  private static final class Batch<T> {
+
+    private final List<T> _requests = new ArrayList<T>();
+    private boolean _complete;
+    private RuntimeException _failure;
+
+    public Batch(final T request) {
+      _requests.add(request);
+    }
+
+    public void add(final T request) {
+      _requests.add(request);
+    }
+
+    public List<T> getRequests() {
+      return _requests;
+    }
+
+    public synchronized void complete(final RuntimeException failure) {
+      _complete = true;
+      _failure = failure;
+      notifyAll();
+    }
+
+    public synchronized void await() {
+      try {
+        while (!_complete) {
+          wait();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new OpenGammaRuntimeException("Interrupted waiting for request", e);
+      }
+      if (_failure != null) {
+        throw _failure;
+      }
+    }
+
+  }
+
+  private final int _maxOutstanding;
+  private int _outstanding;
+  private Batch<T> _pending;
+
+  public RequestCoalescer() {
+    this(DEFAULT_MAX_OUTSTANDING);
+  }
+
+  public RequestCoalescer(final int maxOutstanding) {
+    ArgumentChecker.isTrue(maxOutstanding > 0, "maxOutstanding must be positive");
+    _maxOutstanding = maxOutstanding;
+  }
+
+  public int getMaxOutstanding() {
+    return _maxOutstanding;
+  }
+
+  /**
+   * Sends the requests as a single request to the remote component and processes the response.
+   *
+   * @param requests the requests to send, not null and not empty
+   */
+  protected abstract void send(List<T> requests);
+
+  /**
+   * Executes a request, returning when it has been sent and the response processed.
+   *
+   * @param request the request, not null
+   */
+  public void execute(final T request) {
+    final Batch<T> batch;
+    final boolean leader;
+    synchronized (this) {
+      if (_pending == null) {
+        if (_outstanding < _maxOutstanding) {
+          _outstanding++;
+          batch = null;
+        } else {
+          _pending = new Batch<T>(request);
+          batch = _pending;
+        }
+        leader = true;
+      } else {
+        _pending.add(request);
+        batch = _pending;
+        leader = false;
+      }
+    }
+    if (batch == null) {
+      try {
+        send(Collections.singletonList(request));
+      } finally {
+        release();
+      }
+    } else if (leader) {
+      sendBatch(batch);
+    } else {
+      // The thread that started the batch will send it
+      batch.await();
+    }
+  }
+
+  private void sendBatch(final Batch<T> batch) {
+    synchronized (this) {
+      try {
+        while (_outstanding >= _maxOutstanding) {
+          wait();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        // Fail the whole batch; the other callers will see the failure
+        final OpenGammaRuntimeException failure = new OpenGammaRuntimeException("Interrupted waiting to send request", e);
+        if (_pending == batch) {
+          _pending = null;
+        }
+        batch.complete(failure);
+        throw failure;
+      }
+      // No more requests can join the batch
+      _pending = null;
+      _outstanding++;
+    }
+    try {
+      send(batch.getRequests());
+      batch.complete(null);
+    } catch (RuntimeException e) {
+      batch.complete(e);
+      throw e;
+    } finally {
+      release();
+    }
+  }
+
+  private synchronized void release() {
+    _outstanding--;
+    notifyAll();
+  }
+
+}
@@ -5,6 +5,9 @@
  */
 package com.opengamma.engine.view.cache;
 
+import java.util.Collection;
+
+import com.opengamma.engine.value.ValueSpecification;
 import com.opengamma.id.UniqueId;
 
 /**
@@ -33,6 +36,20 @@ public interface ViewComputationCacheSource {
    */
   ViewComputationCache cloneCache(UniqueId viewCycleId, String calculationConfigurationName);
   
+  /**
+   * Carries values forward from the cache of one view cycle into the shared data of another, typically from the previous cycle
+   * when performing a delta cycle. Values should be transferred without decoding and re-encoding them, sharing the underlying
+   * data by reference where the implementation allows.
+   * 
+   * @param sourceViewCycleId  the unique identifier of the view cycle to copy from, not null
+   * @param targetViewCycleId  the unique identifier of the view cycle to copy to, not null
+   * @param calculationConfigurationName  the name of the view calculation configuration, not null
+   * @param specifications  the values to copy, not null
+   * @return the values that could not be copied and must be written to the target cache by the caller, not null
+   */
+  Collection<ValueSpecification> copyValues(UniqueId sourceViewCycleId, UniqueId targetViewCycleId, String calculationConfigurationName,
+      Collection<ValueSpecification> specifications);
+  
   /**
    * Releases all caches previously generated using {@link #getCache(UniqueId, String)} for the given
    * view cycle.
@@ -11,6 +11,7 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
@@ -29,14 +30,20 @@ import com.opengamma.engine.view.calcnode.CalculationJobResult;
 import com.opengamma.engine.view.calcnode.CalculationJobResultItem;
 import com.opengamma.engine.view.calcnode.CalculationJobSpecification;
 import com.opengamma.engine.view.calcnode.JobResultReceiver;
+import com.opengamma.engine.view.calcnode.PartialJobResultReceiver;
 import com.opengamma.util.async.Cancelable;
 
 /**
  * State shared among all fragments of a dependency graph for execution. Also implements
  * the {@link JobResultReceiver} interface to coordinate responses and try to support
  * cancellation of an executing graph.
+ * <p>
+ * Partial results from jobs still executing are passed to the result queue as they arrive
+ * so that values can be published before the job completes. Only the items not already
+ * reported are passed on when the full result arrives. Dependent fragments are still only
+ * released when the full result arrives.
  */
-/*package*/ class GraphFragmentContext implements JobResultReceiver {
+/*package*/ class GraphFragmentContext implements JobResultReceiver, PartialJobResultReceiver {
 
   private static final Logger s_logger = LoggerFactory.getLogger(GraphFragmentContext.class);
 
@@ -51,6 +58,8 @@ import com.opengamma.util.async.Cancelable;
   // TODO: don't need the full spec in the keys here -- just the job identifier will do
   private final Map<CalculationJobSpecification, Cancelable> _cancels = new ConcurrentHashMap<CalculationJobSpecification, Cancelable>();
   private Map<CalculationJobSpecification, GraphFragment<?>> _job2fragment;
+  // Number of leading result items already passed to the result queue for jobs that have reported partial results
+  private final ConcurrentMap<CalculationJobSpecification, AtomicInteger> _reportedItems = new ConcurrentHashMap<CalculationJobSpecification, AtomicInteger>();
   private volatile boolean _cancelled;
   private final Queue<ExecutionResult> _executionResultQueue;
   private final ExecutionLogModeSource _logModeSource;
@@ -104,13 +113,61 @@ import com.opengamma.util.async.Cancelable;
     _job2fragment.put(jobspec, fragment);
   }
 
+  private static CalculationJobResult subResult(final CalculationJobResult result, final int fromIndex) {
+    final List<CalculationJobResultItem> items = result.getResultItems();
+    return new CalculationJobResult(result.getSpecification(), result.getDuration(), items.subList(fromIndex, items.size()), result.getComputeNodeId());
+  }
+
+  @Override
+  public void partialResultReceived(final CalculationJobResult result, final int offset) {
+    final GraphFragment<?> fragment = _job2fragment.get(result.getSpecification());
+    if (fragment == null) {
+      return;
+    }
+    AtomicInteger reported = _reportedItems.get(result.getSpecification());
+    if (reported == null) {
+      reported = new AtomicInteger();
+      final AtomicInteger existing = _reportedItems.putIfAbsent(result.getSpecification(), reported);
+      if (existing != null) {
+        reported = existing;
+      }
+    }
+    final int end = offset + result.getResultItems().size();
+    synchronized (reported) {
+      if (!_job2fragment.containsKey(result.getSpecification())) {
+        // Full result arrived concurrently
+        _reportedItems.remove(result.getSpecification(), reported);
+        return;
+      }
+      final int start = reported.get();
+      if ((offset > start) || (end <= start) || (end > fragment.getNodes().size())) {
+        // Out of sequence, already reported (e.g. the job was retried) or the full result has arrived
+        s_logger.debug("Ignoring items {} to {} of {}", new Object[] {offset, end, result.getSpecification() });
+        return;
+      }
+      reported.set(end);
+      getExecutionResultQueue().offer(new ExecutionResult(Collections.unmodifiableList(fragment.getNodes().subList(start, end)), subResult(result, start - offset)));
+    }
+  }
+
   @Override
   public void resultReceived(final CalculationJobResult result) {
     _cancels.remove(result.getSpecification());
     final GraphFragment<?> fragment = _job2fragment.remove(result.getSpecification());
     if (fragment != null) {
-      // Put result into the queue
-      getExecutionResultQueue().offer(new ExecutionResult(Collections.unmodifiableList(fragment.getNodes()), result));
+      // Put result into the queue, omitting anything already reported as a partial result
+      final AtomicInteger reported = _reportedItems.remove(result.getSpecification());
+      if (reported == null) {
+        getExecutionResultQueue().offer(new ExecutionResult(Collections.unmodifiableList(fragment.getNodes()), result));
+      } else {
+        synchronized (reported) {
+          final int start = reported.getAndSet(Integer.MAX_VALUE);
+          if (start < result.getResultItems().size()) {
+            final List<DependencyNode> nodes = fragment.getNodes();
+            getExecutionResultQueue().offer(new ExecutionResult(Collections.unmodifiableList(nodes.subList(start, nodes.size())), subResult(result, start)));
+          }
+        }
+      }
       fragment.resultReceived(this, result);
       // Mark nodes as good or bad - the result items are in the same order as the request items (the dependency nodes)
       final Iterator<CalculationJobResultItem> itrResult = result.getResultItems().iterator();
@@ -5,8 +5,13 @@
  */
 package com.opengamma.engine.view.calc;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.lang.ObjectUtils;
@@ -24,6 +29,10 @@ import com.opengamma.util.tuple.Pair;
  * Determines which nodes in a graph have changed. A node has 'changed' if and only 
  * if its subtree contains a node for which PreviousLiveDataInput != CurrentLiveDataInput.
  * Note that this excludes changes due to passage of the system clock. 
+ * <p>
+ * The market data values are fetched from both caches in bulk and changes are propagated
+ * forward from the nodes that consume them, marking the dirty cone below any market data
+ * that has changed.
  */
 public class LiveDataDeltaCalculator {
 
@@ -76,47 +85,67 @@ public class LiveDataDeltaCalculator {
       throw new IllegalStateException("Cannot determine delta twice");
     }
 
-    for (DependencyNode rootNode : _graph.getRootNodes()) {
-      computeDelta(rootNode);
+    final Map<ValueSpecification, Collection<DependencyNode>> marketDataNodes = new HashMap<ValueSpecification, Collection<DependencyNode>>();
+    for (DependencyNode node : _graph.getDependencyNodes()) {
+      final Pair<ValueRequirement, ValueSpecification> liveData = node.getRequiredMarketData();
+      if (liveData != null) {
+        Collection<DependencyNode> nodes = marketDataNodes.get(liveData.getSecond());
+        if (nodes == null) {
+          nodes = new ArrayList<DependencyNode>(1);
+          marketDataNodes.put(liveData.getSecond(), nodes);
+        }
+        nodes.add(node);
+      }
+    }
+
+    if (!marketDataNodes.isEmpty()) {
+      // Market data is always in the shared cache
+      final Map<ValueSpecification, Object> oldValues = getValues(_previousCache, marketDataNodes.keySet());
+      final Map<ValueSpecification, Object> newValues = getValues(_cache, marketDataNodes.keySet());
+      for (Map.Entry<ValueSpecification, Collection<DependencyNode>> marketData : marketDataNodes.entrySet()) {
+        if (!ObjectUtils.equals(oldValues.get(marketData.getKey()), newValues.get(marketData.getKey()))) {
+          for (DependencyNode node : marketData.getValue()) {
+            markChanged(node);
+          }
+        }
+      }
+    }
+
+    for (DependencyNode node : _graph.getDependencyNodes()) {
+      if (!_changedNodes.contains(node)) {
+        _unchangedNodes.add(node);
+      }
     }
 
     _done = true;
   }
 
-  private boolean computeDelta(DependencyNode node) {
-    if (_changedNodes.contains(node)) {
-      return true;
-    }
-    if (_unchangedNodes.contains(node)) {
-      return false;
+  private static Map<ValueSpecification, Object> getValues(final ViewComputationCache cache, final Collection<ValueSpecification> specifications) {
+    final Collection<Pair<ValueSpecification, Object>> values = cache.getValues(specifications, CacheSelectHint.allShared());
+    final Map<ValueSpecification, Object> result = new HashMap<ValueSpecification, Object>();
+    for (Pair<ValueSpecification, Object> value : values) {
+      result.put(value.getFirst(), value.getSecond());
     }
+    return result;
+  }
 
-    boolean hasChanged = false;
-    for (DependencyNode inputNode : node.getInputNodes()) {
-      // if any children changed, this node automatically requires recomputation.
-      hasChanged |= computeDelta(inputNode);
+  /**
+   * Marks a node as changed, along with the cone of nodes below it that consume its outputs either directly or indirectly.
+   */
+  private void markChanged(final DependencyNode node) {
+    if (!_changedNodes.add(node)) {
+      return;
     }
-
-    if (!hasChanged) {
-      // if no children changed, the node may still require recomputation
-      // due to market data changes affecting the function of the node.
-      Pair<ValueRequirement, ValueSpecification> liveData = node.getRequiredMarketData();
-      if (liveData != null) {
-        // Market data is always in the shared cache
-        Object oldValue = _previousCache.getValue(liveData.getSecond(), CacheSelectHint.allShared());
-        Object newValue = _cache.getValue(liveData.getSecond(), CacheSelectHint.allShared());
-        if (!ObjectUtils.equals(oldValue, newValue)) {
-          hasChanged = true;
+    final LinkedList<DependencyNode> pending = new LinkedList<DependencyNode>();
+    pending.add(node);
+    do {
+      // if any input changed, the dependent nodes automatically require recomputation.
+      for (DependencyNode dependentNode : pending.removeFirst().getDependentNodes()) {
+        if (_graph.containsNode(dependentNode) && _changedNodes.add(dependentNode)) {
+          pending.add(dependentNode);
         }
       }
-    }
-
-    if (hasChanged) {
-      _changedNodes.add(node);
-    } else {
-      _unchangedNodes.add(node);
-    }
-
-    return hasChanged;
+    } while (!pending.isEmpty());
   }
+
 }
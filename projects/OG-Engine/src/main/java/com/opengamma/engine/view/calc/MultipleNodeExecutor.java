@@ -46,17 +46,24 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
 
   private static final Logger s_logger = LoggerFactory.getLogger(MultipleNodeExecutor.class);
 
+  /**
+   * Number of fragments each calculation node should expect to execute when the graph is balanced. Having more than one
+   * leaves room for errors in the function cost estimates.
+   */
+  private static final int FRAGMENTS_PER_NODE = 4;
+
   private final SingleComputationCycle _cycle;
   private final int _minJobItems;
   private final int _maxJobItems;
   private final long _minJobCost;
   private final long _maxJobCost;
   private final int _maxConcurrency;
+  private final int _nodeCount;
   private final FunctionCosts _functionCosts;
   private final ExecutionPlanCache _cache;
 
   protected MultipleNodeExecutor(final SingleComputationCycle cycle, final int minimumJobItems, final int maximumJobItems, final long minimumJobCost, final long maximumJobCost,
-      final int maximumConcurrency, final FunctionCosts functionCosts, final ExecutionPlanCache cache) {
+      final int maximumConcurrency, final int nodeCount, final FunctionCosts functionCosts, final ExecutionPlanCache cache) {
     // Don't check for null as the factory does this, plus for testing we don't have a cycle and override the methods that use it
     _cycle = cycle;
     _minJobItems = minimumJobItems;
@@ -64,6 +71,7 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
     _minJobCost = minimumJobCost;
     _maxJobCost = maximumJobCost;
     _maxConcurrency = maximumConcurrency;
+    _nodeCount = nodeCount;
     _functionCosts = functionCosts;
     _cache = cache;
   }
@@ -139,9 +147,10 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
       root.getOutputFragments().add(logicalRoot);
       logicalRoot.getInputFragments().add(root);
     }
+    final long maxConcurrentJobCost = getMaxConcurrentJobCost(allFragments);
     int failCount = 0;
     do {
-      if (mergeSharedInputs(logicalRoot, allFragments)) {
+      if (mergeSharedInputs(logicalRoot, allFragments, maxConcurrentJobCost)) {
         failCount = 0;
       } else {
         if (++failCount >= 2) {
@@ -178,8 +187,10 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
     statistics.graphProcessed(context.getGraph().getCalculationConfigurationName(), count, (double) totalSize / (double) count,
         (double) totalInvocationCost / (double) count, (double) totalDataCost / (double) count);
     // printFragment(logicalRoot);
-    // Execute anything left (leaf nodes)
-    for (MutableGraphFragment fragment : allFragments) {
+    // Execute anything left (leaf nodes), starting with those on the longest paths through the graph
+    final List<MutableGraphFragment> leafFragments = new ArrayList<MutableGraphFragment>(allFragments);
+    Collections.sort(leafFragments, MutableGraphFragment.CRITICAL_PATH_FIRST);
+    for (MutableGraphFragment fragment : leafFragments) {
       fragment.execute(context);
     }
     return logicalRoot;
@@ -246,10 +257,42 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
     return _maxConcurrency;
   }
 
+  public int getNodeCount() {
+    return _nodeCount;
+  }
+
   public FunctionCosts getFunctionCosts() {
     return _functionCosts;
   }
 
+  /**
+   * Calculates the largest cost that fragments which could otherwise execute concurrently may be merged up to. Merging siblings
+   * serializes their execution, so if the number of calculation nodes is known they are only merged up to a balanced share of the
+   * total graph cost (or the cost of the most expensive single fragment if that is greater). This stops a few expensive functions
+   * from being queued into one long running job while other nodes are idle. Merging a fragment into its only dependent does not
+   * lengthen the critical path and saves shared cache traffic so is always allowed up to the maximum job cost.
+   * 
+   * @param fragments the unmerged fragments, one per dependency node
+   * @return the maximum cost of a fragment produced by merging siblings
+   */
+  protected long getMaxConcurrentJobCost(final Collection<MutableGraphFragment> fragments) {
+    if (getNodeCount() <= 0) {
+      return getMaxJobCost();
+    }
+    long totalCost = 0;
+    long largestCost = getMinJobCost();
+    for (MutableGraphFragment fragment : fragments) {
+      final long cost = fragment.getJobCost();
+      totalCost += cost;
+      if (cost > largestCost) {
+        largestCost = cost;
+      }
+    }
+    final long balancedCost = Math.max(totalCost / ((long) getNodeCount() * FRAGMENTS_PER_NODE), largestCost);
+    s_logger.debug("Balanced job cost for {} nodes is {}", getNodeCount(), balancedCost);
+    return Math.min(balancedCost, getMaxJobCost());
+  }
+
   private Collection<MutableGraphFragment> graphToFragments(final MutableGraphFragmentContext context, final DependencyGraph graph, final Set<MutableGraphFragment> allFragments) {
     final Map<DependencyNode, MutableGraphFragment> node2fragment = new HashMap<DependencyNode, MutableGraphFragment>();
     final Collection<DependencyNode> rootNodes = graph.getRootNodes();
@@ -285,7 +328,7 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
   /**
    * Finds pairs of nodes with the same input set (i.e. that would execute concurrently) that are below the minimum job size and merge them together.
    */
-  private boolean mergeSharedInputs(final MutableGraphFragment logicalRoot, final Set<MutableGraphFragment> allFragments) {
+  private boolean mergeSharedInputs(final MutableGraphFragment logicalRoot, final Set<MutableGraphFragment> allFragments, final long maxJobCost) {
     final Map<Set<MutableGraphFragment>, MutableGraphFragment> possibleCandidates = new HashMap<Set<MutableGraphFragment>, MutableGraphFragment>();
     // REVIEW 2010-08-27 Andrew -- Should we only create validCandidates when we're ready to use it?
     final Map<MutableGraphFragment, MutableGraphFragment> validCandidates = new HashMap<MutableGraphFragment, MutableGraphFragment>();
@@ -303,7 +346,7 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
         }
         final MutableGraphFragment mergeCandidate = possibleCandidates.get(fragment.getInputFragments());
         if (mergeCandidate != null) {
-          if (mergeCandidate.canAppendFragment(fragment, getMaxJobItems(), getMaxJobCost())) {
+          if (mergeCandidate.canAppendFragment(fragment, getMaxJobItems(), maxJobCost)) {
             // Defer the merge because we're iterating through the dependent's inputs at the moment
             validCandidates.put(fragment, mergeCandidate);
             // Stop using the merge candidate
@@ -428,6 +471,8 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
         }
       }
       if (event.getFirst() != null) {
+        // Give the fragments on the longest paths the first chance to continue an existing execution
+        Collections.sort(event.getFirst(), MutableGraphFragment.CRITICAL_PATH_FIRST);
         for (MutableGraphFragment starting : event.getFirst()) {
           if (starting.getInputFragments().isEmpty()) {
             // No inputs, so we're a leaf node = new graph color
@@ -25,6 +25,7 @@ public class MultipleNodeExecutorFactory implements DependencyGraphExecutorFacto
   private long _minimumJobCost = 1;
   private long _maximumJobCost = Long.MAX_VALUE;
   private int _maximumConcurrency = Integer.MAX_VALUE;
+  private int _nodeCount;
   private FunctionCosts _functionCosts;
   
   public void setCacheManager(CacheManager cacheManager) {
@@ -89,6 +90,21 @@ public class MultipleNodeExecutorFactory implements DependencyGraphExecutorFacto
     return _maximumConcurrency;
   }
 
+  /**
+   * Sets the number of calculation nodes available across all job invokers. When known, sibling fragments are only merged up to a
+   * balanced share of the total graph cost so that expensive functions are spread across the nodes rather than queued in one job.
+   * 
+   * @param nodeCount the number of calculation nodes, or zero if not known
+   */
+  public void setNodeCount(final int nodeCount) {
+    _nodeCount = nodeCount;
+    invalidateExecutionPlanCache();
+  }
+
+  public int getNodeCount() {
+    return _nodeCount;
+  }
+
   public void setFunctionCosts(final FunctionCosts functionCosts) {
     ArgumentChecker.notNull(functionCosts, "functionCosts");
     _functionCosts = functionCosts;
@@ -102,7 +118,8 @@ public class MultipleNodeExecutorFactory implements DependencyGraphExecutorFacto
   @Override
   public MultipleNodeExecutor createExecutor(final SingleComputationCycle cycle) {
     ArgumentChecker.notNull(cycle, "cycle");
-    return new MultipleNodeExecutor(cycle, getMinimumJobItems(), getMaximumJobItems(), getMinimumJobCost(), getMaximumJobCost(), getMaximumConcurrency(), getFunctionCosts(), _executionPlanCache);
+    return new MultipleNodeExecutor(cycle, getMinimumJobItems(), getMaximumJobItems(), getMinimumJobCost(), getMaximumJobCost(), getMaximumConcurrency(), getNodeCount(),
+        getFunctionCosts(), _executionPlanCache);
   }
 
   @Override
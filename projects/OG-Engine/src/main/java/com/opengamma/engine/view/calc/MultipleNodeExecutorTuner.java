@@ -34,6 +34,9 @@ import com.opengamma.util.ArgumentChecker;
  * 
  * <p>Set maximum concurrency to the average node count of the job invokers. Requires a {@link JobDispatcher}.</p>
  * 
+ * <p>Set the node count to the total node count of the job invokers so that graphs are partitioned for the size of
+ * the cluster. Requires a {@link JobDispatcher}.</p>
+ * 
  * <p>TODO: [ENG-200] Tuning of job size and cost parameters</p>
  */
 public class MultipleNodeExecutorTuner implements Runnable {
@@ -130,6 +133,11 @@ public class MultipleNodeExecutorTuner implements Runnable {
           s_logger.info("Changing maximum concurrency to {}", newMaxConcurrency);
           getFactory().setMaximumConcurrency(newMaxConcurrency);
         }
+        final int nodeCount = (int) nodesPerInvoker;
+        if (nodeCount != getFactory().getNodeCount()) {
+          s_logger.info("Changing node count to {}", nodeCount);
+          getFactory().setNodeCount(nodeCount);
+        }
       }
     }
     if (getGraphExecutionStatistics() != null) {
@@ -7,6 +7,7 @@ package com.opengamma.engine.view.calc;
 
 import java.io.PrintStream;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -38,10 +39,24 @@ import com.opengamma.engine.view.calcnode.stats.FunctionInvocationStatistics;
    */
   private static final boolean PRINT_EXECUTION_PLAN = false; // Don't check in with != false
 
+  /**
+   * Orders fragments by descending {@link #getCriticalPath} so that those most likely to delay completion of the graph are
+   * dispatched first.
+   */
+  public static final Comparator<MutableGraphFragment> CRITICAL_PATH_FIRST = new Comparator<MutableGraphFragment>() {
+    @Override
+    public int compare(final MutableGraphFragment o1, final MutableGraphFragment o2) {
+      final long p1 = o1.getCriticalPath();
+      final long p2 = o2.getCriticalPath();
+      return (p1 > p2) ? -1 : ((p1 < p2) ? 1 : 0);
+    }
+  };
+
   private final Map<ValueSpecification, Integer> _inputValues = new HashMap<ValueSpecification, Integer>();
   private final Map<ValueSpecification, Integer> _outputValues = new HashMap<ValueSpecification, Integer>();
   private Set<ValueSpecification> _localPrivateValues = new HashSet<ValueSpecification>();
   private long _startTime = -1;
+  private long _criticalPath = -1;
   private long _invocationCost;
   private long _dataInputCost;
   private long _dataOutputCost;
@@ -110,6 +125,27 @@ import com.opengamma.engine.view.calcnode.stats.FunctionInvocationStatistics;
     return latest;
   }
 
+  /**
+   * Returns the estimated time from this fragment starting to the graph completing, following the most expensive chain of
+   * fragments that depend on it. This is cached so must only be used once the fragments have been merged.
+   * 
+   * @return the cost of the longest path from this fragment to the end of the graph
+   */
+  public long getCriticalPath() {
+    if (_criticalPath >= 0) {
+      return _criticalPath;
+    }
+    long longest = 0;
+    for (MutableGraphFragment output : getOutputFragments()) {
+      final long path = output.getCriticalPath();
+      if (path > longest) {
+        longest = path;
+      }
+    }
+    _criticalPath = longest + getJobCost();
+    return _criticalPath;
+  }
+
   public void addTail(final MutableGraphFragment fragment) {
     Collection<MutableGraphFragment> tail = getTail();
     if (tail == null) {
@@ -304,7 +340,7 @@ import com.opengamma.engine.view.calcnode.stats.FunctionInvocationStatistics;
 
   @Override
   public String toString() {
-    return super.toString() + ", earliestStart=" + _startTime + ", executionCost=" + _invocationCost;
+    return super.toString() + ", earliestStart=" + _startTime + ", criticalPath=" + _criticalPath + ", executionCost=" + _invocationCost;
   }
 
   public static class Root extends MutableGraphFragment {
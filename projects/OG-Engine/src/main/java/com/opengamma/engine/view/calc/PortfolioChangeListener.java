@@ -0,0 +1,31 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ * 
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calc;
+
+import com.opengamma.core.change.ChangeEvent;
+import com.opengamma.core.change.ChangeListener;
+
+/**
+ * Change listener for the portfolios, positions and securities used by a view which notifies a computation job.
+ */
+public class PortfolioChangeListener implements ChangeListener {
+
+  private final ViewComputationJob _computationJob;
+
+  public PortfolioChangeListener(ViewComputationJob computationJob) {
+    _computationJob = computationJob;
+  }
+
+  @Override
+  public void entityChanged(ChangeEvent event) {
+    getViewComputationJob().dirtyPortfolio(event);
+  }
+
+  private ViewComputationJob getViewComputationJob() {
+    return _computationJob;
+  }
+
+}
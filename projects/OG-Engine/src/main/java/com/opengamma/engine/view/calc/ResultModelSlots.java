@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calc;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.opengamma.engine.value.ComputedValueResult;
+import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.engine.view.InMemoryViewComputationResultModel;
+import com.opengamma.engine.view.compilation.CompiledViewDefinitionWithGraphsImpl;
+import com.opengamma.engine.view.compilation.ResultModelLayout;
+
+/**
+ * Holds the values for the full result model of a cycle as they are produced.
+ * <p>
+ * There is a slot for each value in the {@link ResultModelLayout} so values can be stored from any thread without locking
+ * and without the structure growing. The result model is populated from the slots once, when the cycle completes.
+ */
+/* package */class ResultModelSlots {
+
+  private final ResultModelLayout _layout;
+  private final Map<String, AtomicReferenceArray<ComputedValueResult>> _values;
+
+  public ResultModelSlots(final ResultModelLayout layout) {
+    _layout = layout;
+    _values = new HashMap<String, AtomicReferenceArray<ComputedValueResult>>();
+    for (String calcConfigurationName : layout.getCalculationConfigurationNames()) {
+      _values.put(calcConfigurationName, new AtomicReferenceArray<ComputedValueResult>(layout.getSize(calcConfigurationName)));
+    }
+  }
+
+  public ResultModelLayout getLayout() {
+    return _layout;
+  }
+
+  /**
+   * Tests whether a value is one to be included in the result model.
+   *
+   * @param calcConfigurationName the calculation configuration name, not null
+   * @param valueSpecification the value, not null
+   * @return true if the value is output, false otherwise
+   */
+  public boolean isOutput(final String calcConfigurationName, final ValueSpecification valueSpecification) {
+    return getLayout().getIndex(calcConfigurationName, valueSpecification) >= 0;
+  }
+
+  /**
+   * Stores a value, replacing any previous value in its slot.
+   *
+   * @param calcConfigurationName the calculation configuration name, not null
+   * @param value the value, not null
+   * @return true if the value was stored, false if it is not one to be included in the result model
+   */
+  public boolean put(final String calcConfigurationName, final ComputedValueResult value) {
+    final int index = getLayout().getIndex(calcConfigurationName, value.getSpecification());
+    if (index < 0) {
+      return false;
+    }
+    _values.get(calcConfigurationName).set(index, value);
+    return true;
+  }
+
+  /**
+   * Returns a stored value.
+   *
+   * @param calcConfigurationName the calculation configuration name, not null
+   * @param valueSpecification the value, not null
+   * @return the value, or null if there is none
+   */
+  public ComputedValueResult get(final String calcConfigurationName, final ValueSpecification valueSpecification) {
+    final int index = getLayout().getIndex(calcConfigurationName, valueSpecification);
+    if (index < 0) {
+      return null;
+    }
+    return _values.get(calcConfigurationName).get(index);
+  }
+
+  /**
+   * Adds the stored values, and the requirements they satisfy, to a result model. The model for each calculation configuration
+   * is sized from the layout before its first value is added. The requirements satisfied by terminal outputs of executed nodes
+   * that have no stored value are added to the result model as the nodes complete.
+   *
+   * @param compiledViewDefinition the compiled view definition the layout was produced from, not null
+   * @param resultModel the result model to populate, not null
+   */
+  public void populate(final CompiledViewDefinitionWithGraphsImpl compiledViewDefinition, final InMemoryViewComputationResultModel resultModel) {
+    for (Map.Entry<String, AtomicReferenceArray<ComputedValueResult>> configuration : _values.entrySet()) {
+      final String calcConfigurationName = configuration.getKey();
+      final Map<ValueSpecification, Set<ValueRequirement>> terminalOutputs = compiledViewDefinition.getDependencyGraph(calcConfigurationName).getTerminalOutputs();
+      final AtomicReferenceArray<ComputedValueResult> values = configuration.getValue();
+      boolean empty = true;
+      for (int i = 0; i < values.length(); i++) {
+        final ComputedValueResult value = values.get(i);
+        if (value != null) {
+          if (empty) {
+            resultModel.ensureCapacity(calcConfigurationName, getLayout().getTargetCount(calcConfigurationName));
+            empty = false;
+          }
+          final ValueSpecification valueSpecification = getLayout().getValueSpecification(calcConfigurationName, i);
+          resultModel.addValue(calcConfigurationName, value);
+          resultModel.addRequirements(terminalOutputs.get(valueSpecification), valueSpecification);
+        }
+      }
+    }
+  }
+
+}
@@ -67,6 +67,7 @@ import com.opengamma.engine.view.calcnode.CalculationJobResultItem;
 import com.opengamma.engine.view.calcnode.MissingInput;
 import com.opengamma.engine.view.calcnode.MutableExecutionLog;
 import com.opengamma.engine.view.compilation.CompiledViewDefinitionWithGraphsImpl;
+import com.opengamma.engine.view.compilation.ResultModelLayout;
 import com.opengamma.engine.view.execution.ViewCycleExecutionOptions;
 import com.opengamma.engine.view.listener.ComputationResultListener;
 import com.opengamma.id.UniqueId;
@@ -129,6 +130,7 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
 
   // Output
   private final InMemoryViewComputationResultModel _resultModel;
+  private final ResultModelSlots _results;
 
   public SingleComputationCycle(UniqueId cycleId, UniqueId viewProcessId,
       ComputationResultListener cycleFragmentResultListener, ViewProcessContext viewProcessContext,
@@ -150,13 +152,18 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
     _executionOptions = executionOptions;
     _logModeSource = logModeSource;
     _versionCorrection = versionCorrection;
-    _resultModel = constructTemplateResultModel();
+    final ResultModelLayout layout = compiledViewDefinition.getResultModelLayout();
+    _resultModel = constructTemplateResultModel(new InMemoryViewComputationResultModel(layout.getTargetCount(), layout.getSize()));
+    _results = new ResultModelSlots(layout);
     _dependencyGraphExecutor = getViewProcessContext().getDependencyGraphExecutorFactory().createExecutor(this);
     _statisticsGatherer = getViewProcessContext().getGraphExecutorStatisticsGathererProvider().getStatisticsGatherer(getViewProcessId());
   }
 
   private InMemoryViewComputationResultModel constructTemplateResultModel() {
-    InMemoryViewComputationResultModel result = new InMemoryViewComputationResultModel();
+    return constructTemplateResultModel(new InMemoryViewComputationResultModel());
+  }
+
+  private InMemoryViewComputationResultModel constructTemplateResultModel(final InMemoryViewComputationResultModel result) {
     result.setViewCycleId(getCycleId());
     result.setViewProcessId(getViewProcessId());
     result.setValuationTime(getExecutionOptions().getValuationTime());
@@ -269,6 +276,12 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
     return _compiledViewDefinition;
   }
 
+  /**
+   * Returns the full result model of the cycle. Values are only added to this when the cycle has executed; before then it contains
+   * just the market data.
+   * 
+   * @return the result model, not null
+   */
   @Override
   public InMemoryViewComputationResultModel getResultModel() {
     return _resultModel;
@@ -453,7 +466,7 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
         fragmentResultModel.addMarketData(computedValueResult);
         fullResultModel.addMarketData(computedValueResult);
       }
-      addMarketDataToResults(marketDataSpec, computedValueResult, fragmentResultModel, getResultModel());
+      addMarketDataToResults(marketDataSpec, computedValueResult, fragmentResultModel);
       addToAllCaches(marketDataRequirement, computedValue, cacheMarketDataOperation);
     }
     if (!missingMarketData.isEmpty()) {
@@ -464,13 +477,11 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
   }
   
   private void addMarketDataToResults(ValueSpecification valueSpec, ComputedValueResult computedValueResult,
-      InMemoryViewComputationResultModel fragmentResultModel, InMemoryViewComputationResultModel fullResultModel) {
+      InMemoryViewComputationResultModel fragmentResultModel) {
     // REVIEW jonathan 2011-11-17 -- do we really need to include all market data in the results?
-    for (DependencyGraph depGraph : getCompiledViewDefinition().getAllDependencyGraphs()) {
-      if (depGraph.getTerminalOutputSpecifications().contains(valueSpec)
-          && getViewDefinition().getResultModelDefinition().shouldOutputResult(valueSpec, depGraph)) {
-        fragmentResultModel.addValue(depGraph.getCalculationConfigurationName(), computedValueResult);
-        fullResultModel.addValue(depGraph.getCalculationConfigurationName(), computedValueResult);
+    for (String calcConfigurationName : getAllCalculationConfigurationNames()) {
+      if (_results.put(calcConfigurationName, computedValueResult)) {
+        fragmentResultModel.addValue(calcConfigurationName, computedValueResult);
       }
     }
   }
@@ -525,7 +536,8 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
   /**
    * Determine which live data inputs have changed between iterations, and:
    * <ul>
-   * <li>Copy over all values that can be demonstrated to be the same from the previous iteration (because no input has changed)
+   * <li>Carry forward all values that can be demonstrated to be the same from the previous iteration (because no input has changed)
+   * without decoding and re-encoding them
    * <li>Only recompute the values that could have changed based on live data inputs
    * </ul>
    * 
@@ -536,7 +548,6 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
       throw new IllegalArgumentException("State of previous cycle must be " + ViewCycleState.EXECUTED);
     }
     final InMemoryViewComputationResultModel fragmentResultModel = constructTemplateResultModel();
-    final InMemoryViewComputationResultModel fullResultModel = getResultModel();
     for (String calcConfigurationName : getAllCalculationConfigurationNames()) {
       final DependencyGraph depGraph = getCompiledViewDefinition().getDependencyGraph(calcConfigurationName);
       final ViewComputationCache cache = getComputationCache(calcConfigurationName);
@@ -569,24 +580,47 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
         }
       }
       if (!specsToCopy.isEmpty()) {
-        ComputationCycleQuery reusableResultsQuery = new ComputationCycleQuery();
-        reusableResultsQuery.setCalculationConfigurationName(calcConfigurationName);
-        reusableResultsQuery.setValueSpecifications(specsToCopy);
-        ComputationResultsResponse reusableResultsQueryResponse = previousCycle.queryResults(reusableResultsQuery);
-        Map<ValueSpecification, ComputedValueResult> resultsToReuse = reusableResultsQueryResponse.getResults();
-        Collection<ComputedValue> newValues = new ArrayList<ComputedValue>(resultsToReuse.size());
-        for (ComputedValueResult computedValueResult : resultsToReuse.values()) {
-          final ValueSpecification valueSpec = computedValueResult.getSpecification();
-          if (depGraph.getTerminalOutputSpecifications().contains(valueSpec)
-              && getViewDefinition().getResultModelDefinition().shouldOutputResult(valueSpec, depGraph)) {
-            fragmentResultModel.addValue(calcConfigurationName, computedValueResult);
-            fullResultModel.addValue(calcConfigurationName, computedValueResult);
+        // The unchanged values are carried forward in their encoded form, sharing the previous cycle's data where the cache allows. Only
+        // those which could not be copied, or are terminal outputs missing from the previous result model, need decoding here.
+        final Set<ValueSpecification> specsToQuery = new HashSet<ValueSpecification>(getViewProcessContext().getComputationCacheSource().copyValues(
+            previousCycle.getUniqueId(), getUniqueId(), calcConfigurationName, specsToCopy));
+        for (ValueSpecification valueSpec : specsToCopy) {
+          if (specsToQuery.contains(valueSpec)) {
+            continue;
+          }
+          final DependencyNodeJobExecutionResult previousExecutionResult = previousJobExecutionResultCache.get(valueSpec);
+          if (previousExecutionResult != null) {
+            jobExecutionResultCache.put(valueSpec, previousExecutionResult);
+          }
+          // A terminal output is carried into the result model even if the previous cycle has no execution record for it
+          if (_results.isOutput(calcConfigurationName, valueSpec)) {
+            final ComputedValueResult computedValueResult = previousCycle._results.get(calcConfigurationName, valueSpec);
+            if (computedValueResult != null) {
+              fragmentResultModel.addValue(calcConfigurationName, computedValueResult);
+              _results.put(calcConfigurationName, computedValueResult);
+            } else {
+              specsToQuery.add(valueSpec);
+            }
+          }
+        }
+        if (!specsToQuery.isEmpty()) {
+          ComputationCycleQuery reusableResultsQuery = new ComputationCycleQuery();
+          reusableResultsQuery.setCalculationConfigurationName(calcConfigurationName);
+          reusableResultsQuery.setValueSpecifications(specsToQuery);
+          ComputationResultsResponse reusableResultsQueryResponse = previousCycle.queryResults(reusableResultsQuery);
+          Map<ValueSpecification, ComputedValueResult> resultsToReuse = reusableResultsQueryResponse.getResults();
+          Collection<ComputedValue> newValues = new ArrayList<ComputedValue>(resultsToReuse.size());
+          for (ComputedValueResult computedValueResult : resultsToReuse.values()) {
+            final ValueSpecification valueSpec = computedValueResult.getSpecification();
+            if (_results.put(calcConfigurationName, computedValueResult)) {
+              fragmentResultModel.addValue(calcConfigurationName, computedValueResult);
+            }
+            Object previousValue = computedValueResult.getValue() != null ? computedValueResult.getValue() : NotCalculatedSentinel.EVALUATION_ERROR;
+            newValues.add(new ComputedValue(valueSpec, previousValue));
+            jobExecutionResultCache.put(valueSpec, previousJobExecutionResultCache.get(valueSpec));
           }
-          Object previousValue = computedValueResult.getValue() != null ? computedValueResult.getValue() : NotCalculatedSentinel.EVALUATION_ERROR;
-          newValues.add(new ComputedValue(valueSpec, previousValue));
-          jobExecutionResultCache.put(valueSpec, previousJobExecutionResultCache.get(valueSpec));
+          cache.putSharedValues(newValues);
         }
-        cache.putSharedValues(newValues);
       }
       if (!errors.isEmpty()) {
         cache.putSharedValues(errors);
@@ -598,6 +632,7 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
   }
 
   private void completeResultModel() {
+    _results.populate(getCompiledViewDefinition(), getResultModel());
     getResultModel().setCalculationTime(Instant.now());
     getResultModel().setCalculationDuration(getDuration());
   }
@@ -633,12 +668,12 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
   private ViewComputationResultModel processExecutionResults(List<ExecutionResult> calculationJobResults) {
     InMemoryViewComputationResultModel fragmentResultModel = constructTemplateResultModel();
     for (ExecutionResult calculationJobResult : calculationJobResults) {
-      processExecutionResult(calculationJobResult, fragmentResultModel, getResultModel());
+      processExecutionResult(calculationJobResult, fragmentResultModel);
     }
     return !fragmentResultModel.getAllResults().isEmpty() ? fragmentResultModel : null;
   }
 
-  private void processExecutionResult(ExecutionResult executionResult, InMemoryViewComputationResultModel fragmentResultModel, InMemoryViewComputationResultModel fullResultModel) {
+  private void processExecutionResult(ExecutionResult executionResult, InMemoryViewComputationResultModel fragmentResultModel) {
     final String calcConfigurationName = executionResult.getResult().getSpecification().getCalcConfigName();
     final DependencyGraph depGraph = getCompiledViewDefinition().getDependencyGraph(calcConfigurationName);
     final ViewComputationCache computationCache = getComputationCache(calcConfigurationName);
@@ -651,27 +686,26 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
       DependencyNode node = itrNode.next();
       String computeNodeId = executionResult.getResult().getComputeNodeId();
       DependencyNodeJobExecutionResult jobExecutionResult = new DependencyNodeJobExecutionResult(computeNodeId, jobResultItem);
-      processDependencyNodeResult(jobExecutionResult, depGraph, node, computationCache, fragmentResultModel, fullResultModel, jobExecutionResultCache);
+      processDependencyNodeResult(jobExecutionResult, depGraph, node, computationCache, fragmentResultModel, jobExecutionResultCache);
     }
   }
 
   private void processDependencyNodeResult(DependencyNodeJobExecutionResult jobExecutionResult, DependencyGraph depGraph,
       DependencyNode node, ViewComputationCache computationCache,
-      InMemoryViewComputationResultModel fragmentResultModel, InMemoryViewComputationResultModel fullResultModel,
-      DependencyNodeJobExecutionResultCache jobExecutionResultCache) {
+      InMemoryViewComputationResultModel fragmentResultModel, DependencyNodeJobExecutionResultCache jobExecutionResultCache) {
     Set<ValueSpecification> specifications = node.getOutputValues();
     Map<ValueSpecification, Set<ValueRequirement>> specToRequirements = submapByKeySet(depGraph.getTerminalOutputs(), specifications);
     fragmentResultModel.addRequirements(specToRequirements);
-    fullResultModel.addRequirements(specToRequirements);
+    // Every terminal output of an executed node is mapped, even if it has no value or is not output
+    getResultModel().addRequirements(specToRequirements);
     for (Pair<ValueSpecification, Object> value : computationCache.getValues(specifications, CacheSelectHint.allShared())) {
       final ValueSpecification valueSpec = value.getFirst();
       final Object calculatedValue = value.getSecond();
       jobExecutionResultCache.put(valueSpec, jobExecutionResult);
-      if (calculatedValue != null && specToRequirements.containsKey(valueSpec) &&
-          getViewDefinition().getResultModelDefinition().shouldOutputResult(valueSpec, depGraph)) {
+      if (calculatedValue != null && _results.isOutput(depGraph.getCalculationConfigurationName(), valueSpec)) {
         ComputedValueResult computedValueResult = createComputedValueResult(valueSpec, calculatedValue, jobExecutionResult);
         fragmentResultModel.addValue(depGraph.getCalculationConfigurationName(), computedValueResult);
-        fullResultModel.addValue(depGraph.getCalculationConfigurationName(), computedValueResult);
+        _results.put(depGraph.getCalculationConfigurationName(), computedValueResult);
       }
     }
   }
@@ -746,6 +780,7 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
       dumpComputationCachesToDisk();
     }
     getViewProcessContext().getComputationCacheSource().releaseCaches(getUniqueId());
+    getViewProcessContext().getComputationJobDispatcher().viewCycleReleased(getUniqueId());
     _state = ViewCycleState.DESTROYED;
   }
 
@@ -13,8 +13,10 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -30,7 +32,16 @@ import org.slf4j.LoggerFactory;
 import com.google.common.collect.Sets;
 import com.opengamma.DataNotFoundException;
 import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.core.change.ChangeEvent;
 import com.opengamma.core.change.ChangeListener;
+import com.opengamma.core.change.ChangeProvider;
+import com.opengamma.core.position.Portfolio;
+import com.opengamma.core.position.PortfolioNode;
+import com.opengamma.core.position.Position;
+import com.opengamma.core.position.PositionSource;
+import com.opengamma.core.position.Trade;
+import com.opengamma.core.security.Security;
+import com.opengamma.core.security.SecuritySource;
 import com.opengamma.engine.ComputationTargetSpecification;
 import com.opengamma.engine.depgraph.DependencyGraph;
 import com.opengamma.engine.marketdata.MarketDataListener;
@@ -53,12 +64,14 @@ import com.opengamma.engine.view.calc.trigger.ViewCycleTrigger;
 import com.opengamma.engine.view.calc.trigger.ViewCycleTriggerResult;
 import com.opengamma.engine.view.calc.trigger.ViewCycleType;
 import com.opengamma.engine.view.compilation.CompiledViewDefinitionWithGraphsImpl;
+import com.opengamma.engine.view.compilation.PersistentCompiledViewDefinitionCache;
 import com.opengamma.engine.view.compilation.ViewCompilationServices;
 import com.opengamma.engine.view.compilation.ViewDefinitionCompiler;
 import com.opengamma.engine.view.execution.ViewCycleExecutionOptions;
 import com.opengamma.engine.view.execution.ViewExecutionFlags;
 import com.opengamma.engine.view.execution.ViewExecutionOptions;
 import com.opengamma.engine.view.listener.ComputationResultListener;
+import com.opengamma.id.ObjectId;
 import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
 import com.opengamma.util.ArgumentChecker;
@@ -88,11 +101,20 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
 
   private ViewDefinition _viewDefinition;
   private CompiledViewDefinitionWithGraphsImpl _latestCompiledViewDefinition;
+  /**
+   * The object identifiers of the portfolio, nodes, positions, trades and securities of the cached compiled view definition, or null if
+   * changes can't be filtered against them.
+   */
+  private Set<ObjectId> _latestPortfolioObjectIds;
   private final Set<ValueRequirement> _marketDataSubscriptions = new HashSet<ValueRequirement>();
   private final Set<ValueRequirement> _pendingSubscriptions = Collections.newSetFromMap(new ConcurrentHashMap<ValueRequirement, Boolean>());
   private CountDownLatch _pendingSubscriptionLatch;
 
   private ChangeListener _viewDefinitionChangeListener;
+  private ChangeListener _portfolioChangeListener;
+  private final List<ChangeProvider> _portfolioChangeProviders = new ArrayList<ChangeProvider>(2);
+  private final Queue<ChangeEvent> _portfolioChanges = new ConcurrentLinkedQueue<ChangeEvent>();
+  private boolean _checkPersistedCompilation = true;
 
   private volatile boolean _wakeOnMarketDataChanged;
   private volatile boolean _marketDataChanged = true;
@@ -126,6 +148,7 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
     _executeCycles = !getExecutionOptions().getFlags().contains(ViewExecutionFlags.COMPILE_ONLY);
     updateViewDefinitionIfRequired();
     subscribeToViewDefinition();
+    subscribeToPortfolio();
   }
 
   private ViewCycleTrigger createViewCycleTrigger(final ViewExecutionOptions executionOptions) {
@@ -489,6 +512,7 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
       _previousCycleReference.release();
     }
     unsubscribeFromViewDefinition();
+    unsubscribeFromPortfolio();
     removeMarketDataProvider();
     invalidateCachedCompiledViewDefinition();
   }
@@ -529,6 +553,17 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
     _compilationDirty = true;
   }
 
+  /**
+   * Indicates that a portfolio, position or security used by the view may have changed. The affected parts of the view definition will be
+   * recompiled before the next cycle.
+   * 
+   * @param change the change, not null
+   */
+  public void dirtyPortfolio(final ChangeEvent change) {
+    s_logger.debug("Portfolio change {} for view process {}", change, getViewProcess());
+    _portfolioChanges.add(change);
+  }
+
   public synchronized void triggerCycle() {
     s_logger.debug("Cycle triggered manually");
     _forceTriggerCycle = true;
@@ -581,6 +616,16 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
   private CompiledViewDefinitionWithGraphsImpl getCompiledViewDefinition(final Instant valuationTime, final VersionCorrection versionCorrection) {
     final long functionInitId = getProcessContext().getFunctionCompilationService().getFunctionCompilationContext().getFunctionInitId();
     CompiledViewDefinitionWithGraphsImpl compiledViewDefinition;
+    final List<ChangeEvent> portfolioChanges = new ArrayList<ChangeEvent>();
+    ChangeEvent portfolioChange = _portfolioChanges.poll();
+    while (portfolioChange != null) {
+      if ((_latestPortfolioObjectIds == null) || _latestPortfolioObjectIds.contains(portfolioChange.getObjectId())) {
+        portfolioChanges.add(portfolioChange);
+      } else {
+        s_logger.debug("Ignoring change to {} which is not in the portfolio", portfolioChange.getObjectId());
+      }
+      portfolioChange = _portfolioChanges.poll();
+    }
     updateViewDefinitionIfRequired();
     if (_compilationDirty) {
       _compilationDirty = false;
@@ -590,14 +635,37 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
       compiledViewDefinition = getCachedCompiledViewDefinition();
     }
     if (compiledViewDefinition != null && compiledViewDefinition.isValidFor(valuationTime) && functionInitId == compiledViewDefinition.getFunctionInitId()) {
-      // Existing cached model is valid (an optimisation for the common case of similar, increasing valuation times)
-      return compiledViewDefinition;
+      if (portfolioChanges.isEmpty()) {
+        // Existing cached model is valid (an optimisation for the common case of similar, increasing valuation times)
+        return compiledViewDefinition;
+      }
+    } else {
+      compiledViewDefinition = null;
+    }
+    final CompiledViewDefinitionWithGraphsImpl cachedCompiledViewDefinition = compiledViewDefinition;
+    final PersistentCompiledViewDefinitionCache persistentCache = getProcessContext().getCompiledViewDefinitionCache();
+    CompiledViewDefinitionWithGraphsImpl persistedCompiledViewDefinition = null;
+    if ((cachedCompiledViewDefinition == null) && (persistentCache != null) && _checkPersistedCompilation) {
+      // Only worth checking on the first compilation; later ones are because something has changed
+      _checkPersistedCompilation = false;
+      try {
+        persistedCompiledViewDefinition = persistentCache.get(_viewDefinition, _marketDataProvider.getMarketDataSpecifications(), getProcessContext().getFunctionCompilationService(),
+            valuationTime);
+      } catch (final RuntimeException e) {
+        s_logger.warn("Couldn't read persisted compilation of view definition {}: {}", getViewProcess().getDefinitionId(), e.getMessage());
+      }
     }
+    final CompiledViewDefinitionWithGraphsImpl previousCompiledViewDefinition = (cachedCompiledViewDefinition != null) ? cachedCompiledViewDefinition : persistedCompiledViewDefinition;
 
     try {
       final MarketDataAvailabilityProvider availabilityProvider = _marketDataProvider.getAvailabilityProvider();
       final ViewCompilationServices compilationServices = getProcessContext().asCompilationServices(availabilityProvider);
-      _compilationTask = ViewDefinitionCompiler.compileTask(_viewDefinition, compilationServices, valuationTime, versionCorrection);
+      if (previousCompiledViewDefinition != null) {
+        // Only the portfolio may have changed; reuse what we can of the existing graphs
+        _compilationTask = ViewDefinitionCompiler.incrementalCompileTask(previousCompiledViewDefinition, portfolioChanges, compilationServices, valuationTime, versionCorrection);
+      } else {
+        _compilationTask = ViewDefinitionCompiler.compileTask(_viewDefinition, compilationServices, valuationTime, versionCorrection);
+      }
       try {
         if (!isTerminated()) {
           compiledViewDefinition = _compilationTask.get();
@@ -612,6 +680,13 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
       viewDefinitionCompilationFailed(valuationTime, new OpenGammaRuntimeException(message, e));
       throw new OpenGammaRuntimeException(message, e);
     }
+    if (compiledViewDefinition == cachedCompiledViewDefinition) {
+      // None of the changes affected the compilation
+      return compiledViewDefinition;
+    }
+    if ((persistentCache != null) && (compiledViewDefinition != persistedCompiledViewDefinition)) {
+      persistentCache.putAsynchronously(compiledViewDefinition, _marketDataProvider.getMarketDataSpecifications(), getProcessContext().getFunctionCompilationService());
+    }
     setCachedCompiledViewDefinition(compiledViewDefinition);
     // [PLAT-984]
     // Assume that valuation times are increasing in real-time towards the expiry of the view definition, so that we
@@ -654,6 +729,7 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
 
   private void invalidateCachedCompiledViewDefinition() {
     _latestCompiledViewDefinition = null;
+    _latestPortfolioObjectIds = null;
   }
 
   /**
@@ -665,6 +741,50 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
    */
   public void setCachedCompiledViewDefinition(final CompiledViewDefinitionWithGraphsImpl latestCompiledViewDefinition) {
     _latestCompiledViewDefinition = latestCompiledViewDefinition;
+    _latestPortfolioObjectIds = ((latestCompiledViewDefinition != null) && (latestCompiledViewDefinition.getPortfolio() != null))
+        ? getPortfolioObjectIds(latestCompiledViewDefinition.getPortfolio()) : null;
+  }
+
+  /**
+   * Gathers the object identifiers of everything in a portfolio that a change could affect the compilation through.
+   *
+   * @param portfolio the resolved portfolio, not null
+   * @return the identifiers, or null if a security has not been resolved so security changes cannot be filtered
+   */
+  private static Set<ObjectId> getPortfolioObjectIds(final Portfolio portfolio) {
+    final Set<ObjectId> objectIds = new HashSet<ObjectId>();
+    objectIds.add(portfolio.getUniqueId().getObjectId());
+    return addPortfolioObjectIds(portfolio.getRootNode(), objectIds) ? objectIds : null;
+  }
+
+  private static boolean addPortfolioObjectIds(final PortfolioNode node, final Set<ObjectId> objectIds) {
+    objectIds.add(node.getUniqueId().getObjectId());
+    for (Position position : node.getPositions()) {
+      objectIds.add(position.getUniqueId().getObjectId());
+      if (!addSecurityObjectId(position.getSecurity(), objectIds)) {
+        return false;
+      }
+      for (Trade trade : position.getTrades()) {
+        objectIds.add(trade.getUniqueId().getObjectId());
+        if ((trade.getSecurity() != null) && !addSecurityObjectId(trade.getSecurity(), objectIds)) {
+          return false;
+        }
+      }
+    }
+    for (PortfolioNode child : node.getChildNodes()) {
+      if (!addPortfolioObjectIds(child, objectIds)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean addSecurityObjectId(final Security security, final Set<ObjectId> objectIds) {
+    if ((security == null) || (security.getUniqueId() == null)) {
+      return false;
+    }
+    objectIds.add(security.getUniqueId().getObjectId());
+    return true;
   }
 
   /**
@@ -703,6 +823,36 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
     _viewDefinitionChangeListener = null;
   }
 
+  private void subscribeToPortfolio() {
+    if (_portfolioChangeListener != null) {
+      return;
+    }
+    final PositionSource positionSource = getProcessContext().getComputationTargetResolver().getPositionSource();
+    if (positionSource == null) {
+      return;
+    }
+    _portfolioChangeListener = new PortfolioChangeListener(this);
+    positionSource.changeManager().addChangeListener(_portfolioChangeListener);
+    _portfolioChangeProviders.add(positionSource);
+    // Positions are not changed when their securities are, so security changes must be listened to separately
+    final SecuritySource securitySource = getProcessContext().getComputationTargetResolver().getSecuritySource();
+    if (securitySource != null) {
+      securitySource.changeManager().addChangeListener(_portfolioChangeListener);
+      _portfolioChangeProviders.add(securitySource);
+    }
+  }
+
+  private void unsubscribeFromPortfolio() {
+    if (_portfolioChangeListener == null) {
+      return;
+    }
+    for (ChangeProvider provider : _portfolioChangeProviders) {
+      provider.changeManager().removeChangeListener(_portfolioChangeListener);
+    }
+    _portfolioChangeProviders.clear();
+    _portfolioChangeListener = null;
+  }
+
   //-------------------------------------------------------------------------
   private void replaceMarketDataProvider(final List<MarketDataSpecification> marketDataSpecs) {
     removeMarketDataProvider();
@@ -165,6 +165,28 @@ import com.opengamma.util.async.Cancelable;
     }
   }
 
+  /**
+   * Returns the receiver that partial results from the job should be passed to. Partial results are only meaningful if the receiver will accept items
+   * at the offsets reported by the node, so this must return null if the job executing is not the one the receiver originally dispatched.
+   * 
+   * @param result the partial result, not null
+   * @return the receiver, or null if partial results are not to be passed on
+   */
+  protected JobResultReceiver getPartialResultReceiver(final CalculationJobResult result) {
+    return null;
+  }
+
+  @Override
+  public void jobPartiallyCompleted(final CalculationJobResult result, final int offset) {
+    final JobResultReceiver resultReceiver = getPartialResultReceiver(result);
+    if (resultReceiver instanceof PartialJobResultReceiver) {
+      s_logger.debug("Job {} partially completed on node {}", this, result.getComputeNodeId());
+      // The job is making progress, so we can extend the timeout period
+      extendTimeout(getDispatcher().getMaxJobExecutionTime(), true);
+      ((PartialJobResultReceiver) resultReceiver).partialResultReceived(result, offset);
+    }
+  }
+
   protected abstract DispatchableJob prepareRetryJob(JobInvoker jobInvoker);
 
   @Override
@@ -269,7 +291,7 @@ import com.opengamma.util.async.Cancelable;
     }
   }
 
-  private CapabilityRequirements getRequirements() {
+  public CapabilityRequirements getRequirements() {
     return _capabilityRequirements;
   }
 
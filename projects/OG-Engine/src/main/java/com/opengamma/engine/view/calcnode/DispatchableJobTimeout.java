@@ -5,9 +5,6 @@
  */
 package com.opengamma.engine.view.calcnode;
 
-import java.util.concurrent.RunnableScheduledFuture;
-import java.util.concurrent.TimeUnit;
-
 /* package */class DispatchableJobTimeout implements Runnable {
 
   private static final class Placeholder extends DispatchableJobTimeout {
@@ -44,7 +41,7 @@ import java.util.concurrent.TimeUnit;
 
   private DispatchableJob _dispatchJob;
   private JobInvoker _jobInvoker;
-  private RunnableScheduledFuture<?> _future;
+  private JobTimeoutWheel.Timeout _scheduled;
   private long _timeAccrued;
 
   private DispatchableJobTimeout() {
@@ -64,9 +61,9 @@ import java.util.concurrent.TimeUnit;
 
   private void setTimeout(final long timeoutMillis) {
     if (timeoutMillis > 0) {
-      _future = (RunnableScheduledFuture<?>) _dispatchJob.getDispatcher().getJobTimeoutExecutor().schedule(this, timeoutMillis, TimeUnit.MILLISECONDS);
+      _scheduled = _dispatchJob.getDispatcher().getJobTimeoutExecutor().schedule(this, timeoutMillis);
     } else {
-      _future = null;
+      _scheduled = null;
     }
   }
 
@@ -76,15 +73,15 @@ import java.util.concurrent.TimeUnit;
   }
 
   public synchronized void cancel() {
-    if (_future != null) {
-      _dispatchJob.getDispatcher().getJobTimeoutExecutor().remove(_future);
-      _future = null;
+    if (_scheduled != null) {
+      _scheduled.cancel();
+      _scheduled = null;
     }
   }
 
   public synchronized void extend(final long timeoutMillis, final boolean resetAccruedTime) {
-    if (_future != null) {
-      _dispatchJob.getDispatcher().getJobTimeoutExecutor().remove(_future);
+    if (_scheduled != null) {
+      _scheduled.cancel();
       if (resetAccruedTime) {
         _timeAccrued = timeoutMillis;
       } else {
@@ -13,7 +13,8 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,11 +23,18 @@ import com.opengamma.engine.function.blacklist.DummyFunctionBlacklistMaintainer;
 import com.opengamma.engine.function.blacklist.FunctionBlacklistMaintainer;
 import com.opengamma.engine.view.calcnode.stats.CalculationNodeStatisticsGatherer;
 import com.opengamma.engine.view.calcnode.stats.DiscardingNodeStatisticsGatherer;
+import com.opengamma.id.UniqueId;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.async.Cancelable;
 
 /**
  * Manages a set of JobInvokers and dispatches jobs to them for execution.
+ * <p>
+ * Dispatch does not take a lock. A job is offered directly to the invokers and only queued if none will accept it.
+ * Queued jobs are held in a queue for their {@link CapabilityRequirements} so that once the head of a queue has been
+ * refused the rest of that queue need not be tried. Retries of the queued jobs are made by one thread at a time; any
+ * other thread that registers an invoker or queues a job while a retry is in progress leaves it to that thread to make
+ * a further pass.
  */
 public class JobDispatcher implements JobInvokerRegister {
 
@@ -36,7 +44,9 @@ public class JobDispatcher implements JobInvokerRegister {
   /* package */static final long DEFAULT_MAX_JOB_EXECUTION_QUERY_TIMEOUT = 5000;
   /* package */static final String DEFAULT_JOB_FAILURE_NODE_ID = "NOT EXECUTED";
 
-  private final Queue<DispatchableJob> _pending = new LinkedList<DispatchableJob>();
+  private final ConcurrentMap<CapabilityRequirements, Queue<DispatchableJob>> _pending = new ConcurrentHashMap<CapabilityRequirements, Queue<DispatchableJob>>();
+  private final AtomicInteger _pendingCount = new AtomicInteger();
+  private final AtomicInteger _retryRequests = new AtomicInteger();
   private final Queue<JobInvoker> _invokers = new ConcurrentLinkedQueue<JobInvoker>();
   private final Map<JobInvoker, Collection<Capability>> _capabilityCache = new ConcurrentHashMap<JobInvoker, Collection<Capability>>();
 
@@ -54,9 +64,10 @@ public class JobDispatcher implements JobInvokerRegister {
    * How often to query an invoker that has outstanding jobs.
    */
   private long _maxJobExecutionTimeQuery = DEFAULT_MAX_JOB_EXECUTION_QUERY_TIMEOUT;
-  private ScheduledThreadPoolExecutor _jobTimeoutExecutor;
+  private volatile JobTimeoutWheel _jobTimeoutExecutor;
   private CalculationNodeStatisticsGatherer _statisticsGatherer = new DiscardingNodeStatisticsGatherer();
   private FunctionBlacklistMaintainer _blacklistUpdate = new DummyFunctionBlacklistMaintainer();
+  private SharedCacheLocality _sharedCacheLocality;
 
   public JobDispatcher() {
   }
@@ -100,7 +111,7 @@ public class JobDispatcher implements JobInvokerRegister {
     _blacklistUpdate = blacklistUpdate;
   }
 
-  protected ScheduledThreadPoolExecutor getJobTimeoutExecutor() {
+  /* package */JobTimeoutWheel getJobTimeoutExecutor() {
     return _jobTimeoutExecutor;
   }
 
@@ -115,8 +126,7 @@ public class JobDispatcher implements JobInvokerRegister {
     _maxJobExecutionTime = maxJobExecutionTime;
     if (maxJobExecutionTime > 0) {
       if (_jobTimeoutExecutor == null) {
-        _jobTimeoutExecutor = new ScheduledThreadPoolExecutor(1);
-        _jobTimeoutExecutor.setMaximumPoolSize(1);
+        _jobTimeoutExecutor = new JobTimeoutWheel();
       }
     }
   }
@@ -140,6 +150,32 @@ public class JobDispatcher implements JobInvokerRegister {
     return _statisticsGatherer;
   }
 
+  /**
+   * Sets the shared cache locality tracker. If set, a job will be offered first to the invoker that produced most of its shared inputs.
+   * 
+   * @param sharedCacheLocality the tracker, or null to dispatch without regard to locality
+   */
+  public void setSharedCacheLocality(final SharedCacheLocality sharedCacheLocality) {
+    _sharedCacheLocality = sharedCacheLocality;
+  }
+
+  public SharedCacheLocality getSharedCacheLocality() {
+    return _sharedCacheLocality;
+  }
+
+  /**
+   * Notifies the dispatcher that a view cycle has been released, so that any information held about the placement of its jobs
+   * can be discarded.
+   * 
+   * @param viewCycleId the view cycle, not null
+   */
+  public void viewCycleReleased(final UniqueId viewCycleId) {
+    final SharedCacheLocality locality = getSharedCacheLocality();
+    if (locality != null) {
+      locality.releaseCycle(viewCycleId);
+    }
+  }
+
   public void setCapabilityRequirementsProvider(final CapabilityRequirementsProvider capabilityRequirementsProvider) {
     ArgumentChecker.notNull(capabilityRequirementsProvider, "capabilityRequirementsProvider");
     _capabilityRequirementsProvider = capabilityRequirementsProvider;
@@ -149,7 +185,7 @@ public class JobDispatcher implements JobInvokerRegister {
     return _capabilityRequirementsProvider;
   }
 
-  protected Queue<DispatchableJob> getPending() {
+  protected ConcurrentMap<CapabilityRequirements, Queue<DispatchableJob>> getPending() {
     return _pending;
   }
 
@@ -162,34 +198,70 @@ public class JobDispatcher implements JobInvokerRegister {
   }
 
   @Override
-  public synchronized void registerJobInvoker(final JobInvoker invoker) {
+  public void registerJobInvoker(final JobInvoker invoker) {
     ArgumentChecker.notNull(invoker, "invoker");
     s_logger.debug("Registering job invoker {}", invoker);
     getInvokers().add(invoker);
     getCapabilityCache().put(invoker, invoker.getCapabilities());
-    if (!getPending().isEmpty()) {
+    if (_pendingCount.get() > 0) {
       retryPending(0L);
     }
   }
 
-  // caller must already own monitor
+  private void addPending(final DispatchableJob job) {
+    Queue<DispatchableJob> pending = getPending().get(job.getRequirements());
+    if (pending == null) {
+      pending = new ConcurrentLinkedQueue<DispatchableJob>();
+      final Queue<DispatchableJob> existing = getPending().putIfAbsent(job.getRequirements(), pending);
+      if (existing != null) {
+        pending = existing;
+      }
+    }
+    // Count first so that a concurrent retry never sees the job without the count
+    _pendingCount.incrementAndGet();
+    pending.add(job);
+  }
+
+  /**
+   * Retries the pending jobs. If another thread is already doing so, it is left to make another pass on our behalf.
+   */
   private void retryPending(final long failJobsBefore) {
+    if (_retryRequests.getAndIncrement() > 0) {
+      return;
+    }
+    int requests;
+    do {
+      requests = _retryRequests.get();
+      retryPendingImpl(failJobsBefore);
+    } while (_retryRequests.addAndGet(-requests) > 0);
+  }
+
+  // only one thread at a time will call this
+  private void retryPendingImpl(final long failJobsBefore) {
     s_logger.debug("Retrying pending operations");
-    final Iterator<DispatchableJob> iterator = getPending().iterator();
-    while (iterator.hasNext()) {
-      final DispatchableJob job = iterator.next();
-      if (invoke(job)) {
-        iterator.remove();
-      } else {
-        if (failJobsBefore <= 0) {
-          if (getInvokers().isEmpty()) {
-            s_logger.debug("No invokers available - not retrying operations");
+    for (Queue<DispatchableJob> pending : getPending().values()) {
+      DispatchableJob job = pending.peek();
+      while (job != null) {
+        if (invoke(job)) {
+          pending.poll();
+          _pendingCount.decrementAndGet();
+        } else {
+          if (failJobsBefore <= 0) {
+            // Everything else in this queue has the same requirements so will also be refused
+            break;
+          } else if (job.getJobCreationTime() < failJobsBefore) {
+            pending.poll();
+            _pendingCount.decrementAndGet();
+            job.abort(null, "no invokers available after timeout");
+          } else {
             break;
           }
-        } else if (job.getJobCreationTime() < failJobsBefore) {
-          iterator.remove();
-          job.abort(null, "no invokers available after timeout");
         }
+        job = pending.peek();
+      }
+      if (getInvokers().isEmpty()) {
+        s_logger.debug("No invokers available - not retrying operations");
+        break;
       }
     }
   }
@@ -198,12 +270,29 @@ public class JobDispatcher implements JobInvokerRegister {
   // TODO [ENG-42] the invoker selection logic is inefficient; it's likely that capability requirements objects won't vary much so comparison against the capabilities of invokers should be cached
   // TODO [ENG-42] job dispatch should not be O(n) on number of invokers; the caching of capabilities should allow a nearer O(1) selection
 
-  // caller must already own monitor
+  // may be called concurrently; the invokers must tolerate concurrent calls to invoke
   private boolean invoke(final DispatchableJob job) {
     if (job.isCompleted()) {
       s_logger.info("Job {} cancelled", job);
       return true;
     }
+    final SharedCacheLocality locality = getSharedCacheLocality();
+    if (locality != null) {
+      for (JobInvoker jobInvoker : locality.getPreferredInvokers(job.getJob())) {
+        // only offer to invokers still registered; those that refuse are left for the normal pass
+        if (getInvokers().contains(jobInvoker) && job.canRunOn(jobInvoker)) {
+          if (job.runOn(jobInvoker)) {
+            jobAccepted(job, jobInvoker);
+            return true;
+          } else {
+            s_logger.debug("Preferred invoker {} refused to execute job {}", jobInvoker, job);
+            if (getInvokers().remove(jobInvoker) && jobInvoker.notifyWhenAvailable(this)) {
+              getInvokers().add(jobInvoker);
+            }
+          }
+        }
+      }
+    }
     Collection<JobInvoker> retry = null;
     do {
       final Iterator<JobInvoker> iterator = getInvokers().iterator();
@@ -211,15 +300,12 @@ public class JobDispatcher implements JobInvokerRegister {
         final JobInvoker jobInvoker = iterator.next();
         if (job.canRunOn(jobInvoker)) {
           if (job.runOn(jobInvoker)) {
-            s_logger.debug("Invoker {} accepted job {}", jobInvoker, job);
-            // put invoker to the end of the list
-            iterator.remove();
-            getInvokers().add(jobInvoker);
+            jobAccepted(job, jobInvoker);
             return true;
           } else {
             s_logger.debug("Invoker {} refused to execute job {}", jobInvoker, job);
-            iterator.remove();
-            if (jobInvoker.notifyWhenAvailable(this)) {
+            // only the thread that unregisters the invoker asks it to notify us when available
+            if (getInvokers().remove(jobInvoker) && jobInvoker.notifyWhenAvailable(this)) {
               s_logger.info("Invoker {} requested immediate retry", jobInvoker);
               if (retry == null) {
                 retry = new LinkedList<JobInvoker>();
@@ -240,13 +326,24 @@ public class JobDispatcher implements JobInvokerRegister {
     return false;
   }
 
-  protected synchronized void dispatchJobImpl(final DispatchableJob job) {
-    if (!invoke(job)) {
+  private void jobAccepted(final DispatchableJob job, final JobInvoker jobInvoker) {
+    s_logger.debug("Invoker {} accepted job {}", jobInvoker, job);
+    final SharedCacheLocality locality = getSharedCacheLocality();
+    if (locality != null) {
+      locality.jobDispatched(job.getJob(), jobInvoker);
+    }
+    // put invoker to the end of the list, unless another thread has already moved or unregistered it
+    if (getInvokers().remove(jobInvoker)) {
+      getInvokers().add(jobInvoker);
+    }
+  }
+
+  protected void dispatchJobImpl(final DispatchableJob job) {
+    // Offer the job straight to the invokers unless others are already waiting
+    if ((_pendingCount.get() > 0) || !invoke(job)) {
       s_logger.debug("Adding job to pending set");
-      getPending().add(job);
-      if (getInvokers() != null) {
-        retryPending(0L);
-      }
+      addPending(job);
+      retryPending(0L);
     }
   }
 
@@ -18,6 +18,15 @@ public interface JobInvocationReceiver {
    */
   void jobCompleted(CalculationJobResult result);
 
+  /**
+   * Some of the job's items have been executed. The job is still running and {@link #jobCompleted} or {@link #jobFailed} will follow. Partial
+   * results are advisory; the final result will contain all of the items, including any already reported.
+   * 
+   * @param result the items executed since the previous partial result
+   * @param offset the index within the job's items of the first item in the result
+   */
+  void jobPartiallyCompleted(CalculationJobResult result, int offset);
+
   /**
    * The job may not have been executed successfully. The job may not have been run at all, run but crashed the remote calculation node, or the calculation node started but did not finish the
    * execution. It is also possible the the execution was completed successfully but a failure in the communication channel results in this instead of the {@link #jobCompleted} notification.
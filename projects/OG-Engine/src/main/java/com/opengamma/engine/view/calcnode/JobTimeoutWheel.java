@@ -0,0 +1,166 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calcnode;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Hashed timer wheel for the job timeouts managed by a {@link JobDispatcher}.
+ * <p>
+ * Every dispatched job has a timeout scheduled and almost all of them are cancelled or extended before they fire. With
+ * a {@link java.util.concurrent.ScheduledThreadPoolExecutor} each of those operations takes the executor's queue lock
+ * and removal is a linear scan of the queue. Here scheduling adds to a lock-free bucket and cancellation just marks
+ * the entry; cancelled entries are discarded when the wheel next passes their bucket. The cost is that timeouts fire
+ * on the first tick at or after their deadline rather than exactly at it.
+ * <p>
+ * Timeout actions are run on the wheel's own thread so, as with the single threaded executor this replaces, they
+ * should be short.
+ */
+/* package */class JobTimeoutWheel {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(JobTimeoutWheel.class);
+
+  /**
+   * Default resolution of the wheel in milliseconds.
+   */
+  public static final long DEFAULT_TICK_MILLIS = 100;
+
+  /**
+   * Default number of buckets in the wheel.
+   */
+  public static final int DEFAULT_WHEEL_SIZE = 512;
+
+  /**
+   * Handle to a scheduled timeout.
+   */
+  public static final class Timeout {
+
+    private final Runnable _action;
+    private final long _deadline;
+    private volatile boolean _cancelled;
+
+    private Timeout(final Runnable action, final long deadline) {
+      _action = action;
+      _deadline = deadline;
+    }
+
+    /**
+     * Cancels the timeout. If the action is already running it will not be interrupted.
+     */
+    public void cancel() {
+      _cancelled = true;
+    }
+
+    public boolean isCancelled() {
+      return _cancelled;
+    }
+
+  }
+
+  private final long _tickMillis;
+  private final Queue<Timeout>[] _wheel;
+  private final Thread _thread;
+  private volatile long _tick;
+
+  public JobTimeoutWheel() {
+    this(DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+  }
+
+  @SuppressWarnings("unchecked")
+  public JobTimeoutWheel(final long tickMillis, final int wheelSize) {
+    ArgumentChecker.isTrue(tickMillis > 0, "tickMillis must be positive");
+    ArgumentChecker.isTrue(wheelSize > 0, "wheelSize must be positive");
+    _tickMillis = tickMillis;
+    _wheel = new Queue[wheelSize];
+    for (int i = 0; i < wheelSize; i++) {
+      _wheel[i] = new ConcurrentLinkedQueue<Timeout>();
+    }
+    _thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        runWheel();
+      }
+    }, "JobTimeoutWheel");
+    _thread.setDaemon(true);
+    _thread.start();
+  }
+
+  public long getTickMillis() {
+    return _tickMillis;
+  }
+
+  /**
+   * Schedules an action to run after a delay.
+   *
+   * @param action the action to run, not null
+   * @param delayMillis the delay in milliseconds
+   * @return the handle for cancelling the timeout, not null
+   */
+  public Timeout schedule(final Runnable action, final long delayMillis) {
+    ArgumentChecker.notNull(action, "action");
+    // Round up, and count from the next tick as part of the current one may already have passed, so that the action
+    // never fires early. The deadline is absolute so an entry added to the bucket being expired is left for a later
+    // revolution rather than being seen as due.
+    final long ticks = Math.max((delayMillis + _tickMillis - 1) / _tickMillis, 0);
+    final long deadline = _tick + 1 + ticks;
+    final Timeout timeout = new Timeout(action, deadline);
+    _wheel[(int) (deadline % _wheel.length)].add(timeout);
+    return timeout;
+  }
+
+  /**
+   * Stops the wheel. Any timeouts still pending will not fire.
+   */
+  public void shutdown() {
+    _thread.interrupt();
+  }
+
+  private void runWheel() {
+    long next = System.nanoTime();
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        next += _tickMillis * 1000000L;
+        final long sleep = next - System.nanoTime();
+        if (sleep > 0) {
+          Thread.sleep(sleep / 1000000L, (int) (sleep % 1000000L));
+        } else {
+          // Running late; don't catch up, as ticks closer together than the resolution would fire timeouts early
+          next = System.nanoTime();
+        }
+        final long tick = _tick + 1;
+        _tick = tick;
+        expire(_wheel[(int) (tick % _wheel.length)], tick);
+      }
+    } catch (InterruptedException e) {
+      s_logger.info("Timeout wheel stopped");
+    }
+  }
+
+  private void expire(final Queue<Timeout> bucket, final long tick) {
+    final Iterator<Timeout> itr = bucket.iterator();
+    while (itr.hasNext()) {
+      final Timeout timeout = itr.next();
+      if (timeout.isCancelled()) {
+        itr.remove();
+      } else if (timeout._deadline <= tick) {
+        itr.remove();
+        try {
+          timeout._action.run();
+        } catch (RuntimeException e) {
+          s_logger.error("Caught exception from timeout action", e);
+        }
+      }
+    }
+  }
+
+}
@@ -95,6 +95,11 @@ public class LocalNodeJobInvoker extends SimpleCalculationNodeInvocationContaine
     }
     final ExecutionReceiver executionReceiver = new ExecutionReceiver() {
 
+      @Override
+      public void partialResultReceived(CalculationJobResult result, int offset) {
+        receiver.jobPartiallyCompleted(result, offset);
+      }
+
       @Override
       public void executionComplete(CalculationJobResult result) {
         receiver.jobCompleted(result);
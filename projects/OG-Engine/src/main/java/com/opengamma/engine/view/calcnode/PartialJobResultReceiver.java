@@ -0,0 +1,25 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calcnode;
+
+/**
+ * A call-back interface for the result items of a job that is still executing.
+ * <p>
+ * Partial results are advisory. The full result of the job will still be delivered when it completes and may repeat
+ * items already seen. A partial result is only sent once the values its items produced are visible in the shared
+ * cache.
+ */
+public interface PartialJobResultReceiver {
+
+  /**
+   * Receives a batch of result items.
+   *
+   * @param result the result items completed since the previous batch, not null
+   * @param offset the index within the job's items of the first item in the result
+   */
+  void partialResultReceived(CalculationJobResult result, int offset);
+
+}
@@ -26,6 +26,7 @@ import com.opengamma.engine.view.calcnode.msg.Execute;
 import com.opengamma.engine.view.calcnode.msg.Failure;
 import com.opengamma.engine.view.calcnode.msg.Init;
 import com.opengamma.engine.view.calcnode.msg.IsAlive;
+import com.opengamma.engine.view.calcnode.msg.PartialResult;
 import com.opengamma.engine.view.calcnode.msg.Ready;
 import com.opengamma.engine.view.calcnode.msg.RemoteCalcNodeMessage;
 import com.opengamma.engine.view.calcnode.msg.RemoteCalcNodeMessageVisitor;
@@ -72,6 +73,12 @@ public class RemoteNodeClient extends SimpleCalculationNodeInvocationContainer i
       AbstractIdentifierMap.resolveIdentifiers(getIdentifierMap(), job);
       addJob(job, new ExecutionReceiver() {
 
+        @Override
+        public void partialResultReceived(final CalculationJobResult result, final int offset) {
+          AbstractIdentifierMap.convertIdentifiers(getIdentifierMap(), result);
+          sendMessage(new PartialResult(result, offset));
+        }
+
         @Override
         public void executionComplete(final CalculationJobResult result) {
           AbstractIdentifierMap.convertIdentifiers(getIdentifierMap(), result);
@@ -37,6 +37,7 @@ import com.opengamma.engine.view.calcnode.msg.Execute;
 import com.opengamma.engine.view.calcnode.msg.Failure;
 import com.opengamma.engine.view.calcnode.msg.Invocations;
 import com.opengamma.engine.view.calcnode.msg.IsAlive;
+import com.opengamma.engine.view.calcnode.msg.PartialResult;
 import com.opengamma.engine.view.calcnode.msg.Ready;
 import com.opengamma.engine.view.calcnode.msg.RemoteCalcNodeMessage;
 import com.opengamma.engine.view.calcnode.msg.RemoteCalcNodeMessageVisitor;
@@ -161,6 +162,19 @@ import com.opengamma.transport.FudgeMessageSender;
       }
     }
 
+    @Override
+    protected void visitPartialResultMessage(final PartialResult message) {
+      s_logger.debug("Received partial result for job {}", message.getResult().getSpecification());
+      final JobInfo job = getPendingJobs().get(message.getResult().getSpecification());
+      if (job == null) {
+        s_logger.debug("Partial result for completed or cancelled job {} ignored", message.getResult().getSpecification());
+        return;
+      }
+      final CalculationJobResult result = message.getResult();
+      AbstractIdentifierMap.resolveIdentifiers(getIdentifierMap(), result);
+      job.getReceiver().jobPartiallyCompleted(result, message.getOffset());
+    }
+
     @Override
     protected void visitResultMessage(final Result message) {
       s_logger.info("Received result for job {}", message.getResult().getSpecification());
@@ -0,0 +1,275 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calcnode;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.engine.view.cache.CacheSelectHint;
+import com.opengamma.id.UniqueId;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Tracks which invoker produced each shared value so that jobs can be placed with the invoker that already holds their inputs.
+ * <p>
+ * The calculation nodes behind an invoker share a local cache in front of the shared cache. A value written to the shared cache
+ * by one of those nodes can be read back by the others without a network fetch; a node behind any other invoker must fetch it.
+ * The {@link JobDispatcher} uses this to try the invoker holding most of a job's shared inputs first, before offering the job to
+ * the others as normal. An invoker at capacity will refuse the job, so the preference gives way to load balancing under load.
+ * <p>
+ * Values are recorded for a view cycle until it is released with {@link #releaseCycle}, when the shared values will also have been
+ * released. The number of the job inputs that were, or were not, held by the invoker the job was placed with is counted for each
+ * cycle and logged when the cycle is released. A limit on the number of cycles held guards against cycles that are never released.
+ */
+public class SharedCacheLocality {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(SharedCacheLocality.class);
+
+  /**
+   * Default number of unreleased view cycles to hold information for. This should comfortably exceed the number of view
+   * processes executing cycles concurrently.
+   */
+  public static final int DEFAULT_MAX_CYCLES = 256;
+
+  /**
+   * Shared cache hit statistics for a view cycle.
+   */
+  public static final class Statistics {
+
+    private final long _localInputs;
+    private final long _remoteInputs;
+
+    private Statistics(final long localInputs, final long remoteInputs) {
+      _localInputs = localInputs;
+      _remoteInputs = remoteInputs;
+    }
+
+    /**
+     * Returns the number of job inputs that were produced by the invoker the job was placed with.
+     *
+     * @return the number of inputs
+     */
+    public long getLocalInputs() {
+      return _localInputs;
+    }
+
+    /**
+     * Returns the number of job inputs that were produced by a different invoker to the one the job was placed with.
+     *
+     * @return the number of inputs
+     */
+    public long getRemoteInputs() {
+      return _remoteInputs;
+    }
+
+    /**
+     * Returns the proportion of shared inputs that were local to the invoker the job was placed with.
+     *
+     * @return the ratio, between 0 and 1
+     */
+    public double getLocalRatio() {
+      final long total = _localInputs + _remoteInputs;
+      return (total > 0) ? (double) _localInputs / (double) total : 0;
+    }
+
+    @Override
+    public String toString() {
+      return "Statistics[local=" + _localInputs + ", remote=" + _remoteInputs + "]";
+    }
+
+  }
+
+  private static final class Cycle {
+
+    private final ConcurrentMap<String, ConcurrentMap<ValueSpecification, JobInvoker>> _producers = new ConcurrentHashMap<String, ConcurrentMap<ValueSpecification, JobInvoker>>();
+    private final AtomicLong _localInputs = new AtomicLong();
+    private final AtomicLong _remoteInputs = new AtomicLong();
+
+    public ConcurrentMap<ValueSpecification, JobInvoker> getProducers(final String calcConfig) {
+      ConcurrentMap<ValueSpecification, JobInvoker> producers = _producers.get(calcConfig);
+      if (producers == null) {
+        producers = new ConcurrentHashMap<ValueSpecification, JobInvoker>();
+        final ConcurrentMap<ValueSpecification, JobInvoker> existing = _producers.putIfAbsent(calcConfig, producers);
+        if (existing != null) {
+          producers = existing;
+        }
+      }
+      return producers;
+    }
+
+    public Statistics getStatistics() {
+      return new Statistics(_localInputs.get(), _remoteInputs.get());
+    }
+
+  }
+
+  private final Map<UniqueId, Cycle> _cycles;
+
+  public SharedCacheLocality() {
+    this(DEFAULT_MAX_CYCLES);
+  }
+
+  public SharedCacheLocality(final int maxCycles) {
+    ArgumentChecker.isTrue(maxCycles > 0, "maxCycles must be positive");
+    _cycles = new LinkedHashMap<UniqueId, Cycle>() {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<UniqueId, Cycle> eldest) {
+        if (size() > maxCycles) {
+          s_logger.warn("Discarding view cycle {} that was not released; {}", eldest.getKey(), eldest.getValue().getStatistics());
+          return true;
+        }
+        return false;
+      }
+
+    };
+  }
+
+  private Cycle getCycle(final UniqueId viewCycleId, final boolean create) {
+    synchronized (_cycles) {
+      Cycle cycle = _cycles.get(viewCycleId);
+      if ((cycle == null) && create) {
+        cycle = new Cycle();
+        _cycles.put(viewCycleId, cycle);
+      }
+      return cycle;
+    }
+  }
+
+  /**
+   * Returns the invokers that produced shared inputs of the job, ordered with the one that produced the most first.
+   *
+   * @param job the job to be dispatched, not null
+   * @return the invokers, empty if none are known
+   */
+  public List<JobInvoker> getPreferredInvokers(final CalculationJob job) {
+    final Cycle cycle = getCycle(job.getSpecification().getViewCycleId(), false);
+    if (cycle == null) {
+      return new ArrayList<JobInvoker>(0);
+    }
+    final Map<ValueSpecification, JobInvoker> producers = cycle.getProducers(job.getSpecification().getCalcConfigName());
+    final Map<JobInvoker, int[]> counts = new HashMap<JobInvoker, int[]>();
+    for (CalculationJobItem item : job.getJobItems()) {
+      for (ValueSpecification input : item.getInputs()) {
+        final JobInvoker producer = producers.get(input);
+        if (producer != null) {
+          final int[] count = counts.get(producer);
+          if (count == null) {
+            counts.put(producer, new int[] {1 });
+          } else {
+            count[0]++;
+          }
+        }
+      }
+    }
+    final List<Map.Entry<JobInvoker, int[]>> entries = new ArrayList<Map.Entry<JobInvoker, int[]>>(counts.entrySet());
+    final List<JobInvoker> invokers = new ArrayList<JobInvoker>(entries.size());
+    while (!entries.isEmpty()) {
+      int best = 0;
+      for (int i = 1; i < entries.size(); i++) {
+        if (entries.get(i).getValue()[0] > entries.get(best).getValue()[0]) {
+          best = i;
+        }
+      }
+      invokers.add(entries.remove(best).getKey());
+    }
+    return invokers;
+  }
+
+  /**
+   * Records the placement of a job, and any tail jobs, with an invoker. The shared outputs will be local to that invoker and the
+   * shared inputs are counted as local or remote hits.
+   *
+   * @param job the job that has been accepted by the invoker, not null
+   * @param invoker the invoker, not null
+   */
+  public void jobDispatched(final CalculationJob job, final JobInvoker invoker) {
+    final Cycle cycle = getCycle(job.getSpecification().getViewCycleId(), true);
+    final ConcurrentMap<ValueSpecification, JobInvoker> producers = cycle.getProducers(job.getSpecification().getCalcConfigName());
+    long local = 0;
+    long remote = 0;
+    for (CalculationJobItem item : job.getJobItems()) {
+      for (ValueSpecification input : item.getInputs()) {
+        final JobInvoker producer = producers.get(input);
+        if (producer == invoker) {
+          local++;
+        } else if (producer != null) {
+          remote++;
+        }
+      }
+    }
+    if (local > 0) {
+      cycle._localInputs.addAndGet(local);
+    }
+    if (remote > 0) {
+      cycle._remoteInputs.addAndGet(remote);
+    }
+    s_logger.debug("Job {} placed with {} local and {} remote shared inputs", new Object[] {job.getSpecification().getJobId(), local, remote });
+    recordOutputs(job, invoker, producers);
+  }
+
+  private void recordOutputs(final CalculationJob job, final JobInvoker invoker, final ConcurrentMap<ValueSpecification, JobInvoker> producers) {
+    final CacheSelectHint hint = job.getCacheSelectHint();
+    for (CalculationJobItem item : job.getJobItems()) {
+      for (ValueSpecification output : item.getOutputs()) {
+        if (!hint.isPrivateValue(output)) {
+          producers.put(output, invoker);
+        }
+      }
+    }
+    final Collection<CalculationJob> tail = job.getTail();
+    if (tail != null) {
+      for (CalculationJob tailJob : tail) {
+        recordOutputs(tailJob, invoker, producers);
+      }
+    }
+  }
+
+  /**
+   * Returns the shared cache hit statistics for a view cycle.
+   *
+   * @param viewCycleId the view cycle, not null
+   * @return the statistics, or null if the cycle is not known
+   */
+  public Statistics getStatistics(final UniqueId viewCycleId) {
+    final Cycle cycle = getCycle(viewCycleId, false);
+    if (cycle == null) {
+      return null;
+    }
+    return cycle.getStatistics();
+  }
+
+  /**
+   * Discards the information held for a view cycle, logging its shared cache hit statistics. This should be called when the
+   * cycle's shared values are released.
+   *
+   * @param viewCycleId the view cycle, not null
+   */
+  public void releaseCycle(final UniqueId viewCycleId) {
+    ArgumentChecker.notNull(viewCycleId, "viewCycleId");
+    final Cycle cycle;
+    synchronized (_cycles) {
+      cycle = _cycles.remove(viewCycleId);
+    }
+    if (cycle != null) {
+      s_logger.info("Released view cycle {}; {}", viewCycleId, cycle.getStatistics());
+    }
+  }
+
+}
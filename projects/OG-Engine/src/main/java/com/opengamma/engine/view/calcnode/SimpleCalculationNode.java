@@ -15,6 +15,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -90,6 +91,8 @@ public class SimpleCalculationNode extends SimpleCalculationNodeState implements
   private boolean _writeBehindSharedCache;
   private boolean _writeBehindPrivateCache;
   private boolean _asynchronousTargetResolve;
+  private boolean _nonBlockingTargetResolve;
+  private int _partialResultBatchSize;
   private FunctionBlacklistQuery _blacklistQuery = new DummyFunctionBlacklistQuery();
   private FunctionBlacklistMaintainer _blacklistUpdate = new DummyFunctionBlacklistMaintainer();
   private MaximumJobItemExecutionWatchdog _maxJobItemExecution = new MaximumJobItemExecutionWatchdog();
@@ -184,6 +187,43 @@ public class SimpleCalculationNode extends SimpleCalculationNodeState implements
     _asynchronousTargetResolve = asynchronousTargetResolve;
   }
 
+  public int getPartialResultBatchSize() {
+    return _partialResultBatchSize;
+  }
+
+  /**
+   * Sets the number of completed job items after which a partial result is reported while the job is still executing. This lets the view process
+   * results from long jobs as they are produced rather than when the whole job completes. Partial results are not reported when the write-behind
+   * strategy is used on the shared cache as the values would not yet be visible to the view process.
+   * 
+   * @param partialResultBatchSize the number of job items per partial result, or zero to not report partial results
+   */
+  public void setPartialResultBatchSize(final int partialResultBatchSize) {
+    ArgumentChecker.notNegative(partialResultBatchSize, "partialResultBatchSize");
+    _partialResultBatchSize = partialResultBatchSize;
+  }
+
+  public boolean isUseNonBlockingTargetResolve() {
+    return _nonBlockingTargetResolve;
+  }
+
+  /**
+   * Sets whether to suspend a job, rather than block the executing thread, when it is waiting for a target to be resolved. Targets are resolved
+   * on the executor service, each one while the previous job item executes. A suspended job releases the thread to execute other jobs and is resumed
+   * when its target is available, so the number of nodes can reflect the available processors rather than how many threads may be blocked waiting
+   * for resolution. An executor service must be available if this is selected.
+   * 
+   * @param nonBlockingTargetResolve true to suspend jobs waiting for target resolution, false to block
+   */
+  public void setUseNonBlockingTargetResolve(final boolean nonBlockingTargetResolve) {
+    if (nonBlockingTargetResolve) {
+      if (getExecutorService() == null) {
+        throw new IllegalArgumentException("Can't use non-blocking target resolution without an executor service");
+      }
+    }
+    _nonBlockingTargetResolve = nonBlockingTargetResolve;
+  }
+
   public ExecutorService getExecutorService() {
     return _executorService;
   }
@@ -292,8 +332,27 @@ public class SimpleCalculationNode extends SimpleCalculationNodeState implements
    * @throws AsynchronousHandleExecution if the job is completing asynchronously
    */
   public CalculationJobResult executeJob(final CalculationJob job) throws AsynchronousHandleExecution, AsynchronousExecution {
+    return executeJob(job, null);
+  }
+
+  /**
+   * Invokes all of the items from a calculation job on this node, reporting batches of completed items to a receiver as execution progresses. Partial
+   * results are only reported if a batch size has been set and the shared cache is not write-behind. Exceptions are as for {@link #executeJob(CalculationJob)}.
+   * 
+   * @param job the job to execute
+   * @param partialResultReceiver the receiver for partial results, null for none
+   * @return the job result
+   * @throws AsynchronousHandleExecution if the job is completing asynchronously
+   */
+  public CalculationJobResult executeJob(final CalculationJob job, final PartialJobResultReceiver partialResultReceiver) throws AsynchronousHandleExecution, AsynchronousExecution {
     s_logger.info("Executing {} on {}", job, _nodeId);
     setJob(job);
+    if ((getPartialResultBatchSize() > 0) && !isUseWriteBehindSharedCache()) {
+      setPartialResultReceiver(partialResultReceiver);
+    } else {
+      setPartialResultReceiver(null);
+    }
+    setPartialResultOffset(0);
     final CalculationJobSpecification spec = job.getSpecification();
     getFunctionExecutionContext().setViewProcessorQuery(new ViewProcessorQuery(getViewProcessorQuerySender(), spec));
     getFunctionExecutionContext().setValuationTime(spec.getValuationTime());
@@ -371,63 +430,187 @@ public class SimpleCalculationNode extends SimpleCalculationNodeState implements
   }
 
   //-------------------------------------------------------------------------
+  /**
+   * Reports the items completed since the last partial result if there are enough of them. The values from the items have already been written to the
+   * cache, so will be visible to the receiver when the cache is not write-behind.
+   */
+  private void reportPartialResult(final List<CalculationJobResultItem> resultItems) {
+    final PartialJobResultReceiver receiver = getPartialResultReceiver();
+    if (receiver == null) {
+      return;
+    }
+    final int offset = getPartialResultOffset();
+    final int size = resultItems.size();
+    if (size - offset < getPartialResultBatchSize()) {
+      return;
+    }
+    final CalculationJobResult partialResult = new CalculationJobResult(getJob().getSpecification(), System.nanoTime() - getExecutionStartTime(),
+        new ArrayList<CalculationJobResultItem>(resultItems.subList(offset, size)), getNodeId());
+    setPartialResultOffset(size);
+    s_logger.debug("Reporting items {} to {} of {}", new Object[] {offset, size, getJob() });
+    try {
+      receiver.partialResultReceived(partialResult, offset);
+    } catch (RuntimeException e) {
+      s_logger.warn("Couldn't report partial result for {}: {}", getJob(), e.getMessage());
+    }
+  }
+
+  /**
+   * Executes a single job item, adding its result to the list. If the function completes asynchronously the job is suspended and the handle
+   * continues the remainder of the job once the item's result has been added.
+   */
+  private void executeJobItem(final CalculationJobItem jobItem, final Future<ComputationTarget> targetFuture, final List<CalculationJobResultItem> resultItems,
+      final AsynchronousHandle<List<CalculationJobResultItem>> resume) throws AsynchronousHandleExecution {
+    final MutableExecutionLog executionLog = new MutableExecutionLog(jobItem.getLogMode());
+    final CalculationJobResultItemBuilder resultItemBuilder = CalculationJobResultItemBuilder.of(executionLog);
+    if (getFunctionBlacklistQuery().isBlacklisted(jobItem)) {
+      invocationBlacklisted(jobItem, resultItemBuilder);
+    } else {
+      getMaxJobItemExecution().jobExecutionStarted(jobItem);
+      try {
+        // Can only use this thread's logs during the synchronous attempt
+        attachLog(executionLog);
+        try {
+          invoke(jobItem, targetFuture, new DeferredInvocationStatistics(getFunctionInvocationStatistics(), getConfiguration()), resultItemBuilder);
+        } finally {
+          detachLog();
+        }
+      } catch (AsynchronousExecution e) {
+        final AsynchronousHandleOperation<List<CalculationJobResultItem>> async = new AsynchronousHandleOperation<List<CalculationJobResultItem>>();
+        e.setResultListener(new ResultListener<Void>() {
+          @Override
+          public void operationComplete(final AsynchronousResult<Void> result) {
+            try {
+              result.getResult();
+            } catch (Throwable t) {
+              invocationFailure(t, jobItem, resultItemBuilder);
+            }
+            resultItems.add(resultItemBuilder.toResultItem());
+            async.getCallback().setResult(resume);
+          }
+        });
+        // Discard the handle -- it contains the same state that the caller's loop already has
+        async.getResultHandle();
+        // Completed successfully so result item would have been added in the callback
+        return;
+      } catch (Throwable t) {
+        invocationFailure(t, jobItem, resultItemBuilder);
+      } finally {
+        getMaxJobItemExecution().jobExecutionStopped();
+      }
+    }
+    resultItems.add(resultItemBuilder.toResultItem());
+  }
+
   private List<CalculationJobResultItem> executeJobItems(final Iterator<CalculationJobItem> jobItemItr, final List<CalculationJobResultItem> resultItems) throws AsynchronousHandleExecution {
+    final AsynchronousHandle<List<CalculationJobResultItem>> resume = new AsynchronousHandle<List<CalculationJobResultItem>>() {
+      @Override
+      public List<CalculationJobResultItem> get() throws AsynchronousHandleExecution {
+        return executeJobItems(jobItemItr, resultItems);
+      }
+    };
     while (jobItemItr.hasNext()) {
       if (getJob().isCancelled()) {
         return null;
       }
-      final CalculationJobItem jobItem = jobItemItr.next();
-      // TODO: start resolving the next target while this item executes -- can we "poll" an iterator?
-      final MutableExecutionLog executionLog = new MutableExecutionLog(jobItem.getLogMode());
-      final CalculationJobResultItemBuilder resultItemBuilder = CalculationJobResultItemBuilder.of(executionLog);
-      if (getFunctionBlacklistQuery().isBlacklisted(jobItem)) {
-        invocationBlacklisted(jobItem, resultItemBuilder);
-      } else {
-        getMaxJobItemExecution().jobExecutionStarted(jobItem);
-        try {
-          // Can only use this thread's logs during the synchronous attempt
-          attachLog(executionLog);
-          try {
-            invoke(jobItem, new DeferredInvocationStatistics(getFunctionInvocationStatistics(), getConfiguration()), resultItemBuilder);
-          } finally {
-            detachLog();
-          }
-        } catch (AsynchronousExecution e) {
-          final AsynchronousHandleOperation<List<CalculationJobResultItem>> async = new AsynchronousHandleOperation<List<CalculationJobResultItem>>();
-          e.setResultListener(new ResultListener<Void>() {
-            @Override
-            public void operationComplete(final AsynchronousResult<Void> result) {
-              try {
-                result.getResult();
-              } catch (Throwable t) {
-                invocationFailure(t, jobItem, resultItemBuilder);
+      // Only report while there are items left; the remainder go with the full result
+      reportPartialResult(resultItems);
+      executeJobItem(jobItemItr.next(), null, resultItems, resume);
+    }
+    return resultItems;
+  }
+
+  /**
+   * Resolution of a job item's target on the executor service. Completion is signalled so that a job suspended waiting for it can be resumed.
+   */
+  private static final class TargetResolution extends FutureTask<ComputationTarget> {
+
+    private final CalculationJobItem _jobItem;
+    private final AsynchronousOperation<Void> _resolved = new AsynchronousOperation<Void>();
+
+    public TargetResolution(final CalculationJobItem jobItem, final Callable<ComputationTarget> resolve) {
+      super(resolve);
+      _jobItem = jobItem;
+    }
+
+    public CalculationJobItem getJobItem() {
+      return _jobItem;
+    }
+
+    public void waitForResolution() throws AsynchronousExecution {
+      _resolved.getResult();
+    }
+
+    @Override
+    protected void done() {
+      _resolved.getCallback().setResult(null);
+    }
+
+  }
+
+  private TargetResolution resolveTarget(final CalculationJobItem jobItem) {
+    final TargetResolution resolution = new TargetResolution(jobItem, new Callable<ComputationTarget>() {
+      @Override
+      public ComputationTarget call() {
+        return getTargetResolver().resolve(jobItem.getComputationTargetSpecification());
+      }
+    });
+    getExecutorService().execute(resolution);
+    return resolution;
+  }
+
+  /**
+   * Executes the job items, resolving the target of each item while the previous one executes. If a target has not been resolved when it is
+   * needed the job is suspended rather than blocking the thread, leaving it free to execute other jobs. The job is resumed, on whichever node
+   * thread is then free, once the target is available.
+   */
+  private List<CalculationJobResultItem> executeJobItemsNonBlocking(final Iterator<CalculationJobItem> jobItemItr, final TargetResolution current,
+      final List<CalculationJobResultItem> resultItems) throws AsynchronousHandleExecution {
+    TargetResolution resolution = current;
+    while (resolution != null) {
+      if (getJob().isCancelled()) {
+        resolution.cancel(false);
+        return null;
+      }
+      reportPartialResult(resultItems);
+      try {
+        resolution.waitForResolution();
+      } catch (AsynchronousExecution e) {
+        final TargetResolution pending = resolution;
+        final AsynchronousHandleOperation<List<CalculationJobResultItem>> async = new AsynchronousHandleOperation<List<CalculationJobResultItem>>();
+        e.setResultListener(new ResultListener<Void>() {
+          @Override
+          public void operationComplete(final AsynchronousResult<Void> result) {
+            async.getCallback().setResult(new AsynchronousHandle<List<CalculationJobResultItem>>() {
+              @Override
+              public List<CalculationJobResultItem> get() throws AsynchronousHandleExecution {
+                return executeJobItemsNonBlocking(jobItemItr, pending, resultItems);
               }
-              resultItems.add(resultItemBuilder.toResultItem());
-              async.getCallback().setResult(new AsynchronousHandle<List<CalculationJobResultItem>>() {
-                @Override
-                public List<CalculationJobResultItem> get() throws AsynchronousHandleExecution {
-                  return executeJobItems(jobItemItr, resultItems);
-                }
-              });
-            }
-          });
-          // Discard the handle -- it contains the same state that this loop already has
-          async.getResultHandle();
-          // Completed successfully so result item would have been added in the callback
-          continue;
-        } catch (Throwable t) {
-          invocationFailure(t, jobItem, resultItemBuilder);
-        } finally {
-          getMaxJobItemExecution().jobExecutionStopped();
-        }
+            });
+          }
+        });
+        return async.getHandleResult();
       }
-      resultItems.add(resultItemBuilder.toResultItem());
+      final TargetResolution next = jobItemItr.hasNext() ? resolveTarget(jobItemItr.next()) : null;
+      executeJobItem(resolution.getJobItem(), resolution, resultItems, new AsynchronousHandle<List<CalculationJobResultItem>>() {
+        @Override
+        public List<CalculationJobResultItem> get() throws AsynchronousHandleExecution {
+          return executeJobItemsNonBlocking(jobItemItr, next, resultItems);
+        }
+      });
+      resolution = next;
     }
     return resultItems;
   }
 
   private List<CalculationJobResultItem> executeJobItems() throws AsynchronousHandleExecution {
-    return executeJobItems(getJob().getJobItems().iterator(), new ArrayList<CalculationJobResultItem>());
+    final Iterator<CalculationJobItem> jobItemItr = getJob().getJobItems().iterator();
+    final List<CalculationJobResultItem> resultItems = new ArrayList<CalculationJobResultItem>();
+    if (isUseNonBlockingTargetResolve()) {
+      return executeJobItemsNonBlocking(jobItemItr, jobItemItr.hasNext() ? resolveTarget(jobItemItr.next()) : null, resultItems);
+    } else {
+      return executeJobItems(jobItemItr, resultItems);
+    }
   }
 
   private DeferredViewComputationCache getDeferredViewComputationCache(final ViewComputationCache cache) {
@@ -490,23 +673,26 @@ public class SimpleCalculationNode extends SimpleCalculationNodeState implements
     getCache().putValues(results, getJob().getCacheSelectHint(), statistics);
   }
 
-  private void invoke(final CalculationJobItem jobItem, final DeferredInvocationStatistics statistics,
+  private void invoke(final CalculationJobItem jobItem, final Future<ComputationTarget> resolvedTarget, final DeferredInvocationStatistics statistics,
       final CalculationJobResultItemBuilder resultItemBuilder) throws AsynchronousExecution {
     final String functionUniqueId = jobItem.getFunctionUniqueIdentifier();
-    Future<ComputationTarget> targetFuture = null;
+    // The target future will be non-null if resolution was started before the item was invoked
+    Future<ComputationTarget> targetFuture = resolvedTarget;
     ComputationTarget target = null;
-    if (isUseAsynchronousTargetResolve()) {
-      targetFuture = getExecutorService().submit(new Callable<ComputationTarget>() {
-        @Override
-        public ComputationTarget call() {
-          return getTargetResolver().resolve(jobItem.getComputationTargetSpecification());
+    if (targetFuture == null) {
+      if (isUseAsynchronousTargetResolve()) {
+        targetFuture = getExecutorService().submit(new Callable<ComputationTarget>() {
+          @Override
+          public ComputationTarget call() {
+            return getTargetResolver().resolve(jobItem.getComputationTargetSpecification());
+          }
+        });
+      } else {
+        target = LazyComputationTargetResolver.resolve(getTargetResolver(), jobItem.getComputationTargetSpecification());
+        if (target == null) {
+          resultItemBuilder.withException(ERROR_CANT_RESOLVE, "Unable to resolve target " + jobItem.getComputationTargetSpecification());
+          return;
         }
-      });
-    } else {
-      target = LazyComputationTargetResolver.resolve(getTargetResolver(), jobItem.getComputationTargetSpecification());
-      if (target == null) {
-        resultItemBuilder.withException(ERROR_CANT_RESOLVE, "Unable to resolve target " + jobItem.getComputationTargetSpecification());
-        return;
       }
     }
     final FunctionInvoker invoker = getFunctions().getInvoker(functionUniqueId);
@@ -37,6 +37,8 @@ public class SimpleCalculationNodeFactory implements InitializingBean {
   private boolean _useWriteBehindSharedCache;
   private boolean _useWriteBehindPrivateCache;
   private boolean _useAsynchronousTargetResolve;
+  private boolean _useNonBlockingTargetResolve;
+  private int _partialResultBatchSize;
   private FunctionBlacklistQuery _blacklistQuery;
   private FunctionBlacklistMaintainer _blacklistUpdate;
   private MaximumJobItemExecutionWatchdog _maxJobItemExecution;
@@ -126,6 +128,22 @@ public class SimpleCalculationNodeFactory implements InitializingBean {
     _useAsynchronousTargetResolve = useAsynchronousTargetResolve;
   }
 
+  public boolean isUseNonBlockingTargetResolve() {
+    return _useNonBlockingTargetResolve;
+  }
+
+  public void setUseNonBlockingTargetResolve(final boolean useNonBlockingTargetResolve) {
+    _useNonBlockingTargetResolve = useNonBlockingTargetResolve;
+  }
+
+  public int getPartialResultBatchSize() {
+    return _partialResultBatchSize;
+  }
+
+  public void setPartialResultBatchSize(final int partialResultBatchSize) {
+    _partialResultBatchSize = partialResultBatchSize;
+  }
+
   public void setNodeIdentifier(final String nodeIdentifier) {
     _nodeIdentifier = nodeIdentifier;
   }
@@ -180,6 +198,8 @@ public class SimpleCalculationNodeFactory implements InitializingBean {
     node.setUseWriteBehindSharedCache(isUseWriteBehindSharedCache());
     node.setUseWriteBehindPrivateCache(isUseWriteBehindPrivateCache());
     node.setUseAsynchronousTargetResolve(isUseAsynchronousTargetResolve());
+    node.setUseNonBlockingTargetResolve(isUseNonBlockingTargetResolve());
+    node.setPartialResultBatchSize(getPartialResultBatchSize());
     if (getFunctionBlacklistQuery() != null) {
       node.setFunctionBlacklistQuery(getFunctionBlacklistQuery());
     }
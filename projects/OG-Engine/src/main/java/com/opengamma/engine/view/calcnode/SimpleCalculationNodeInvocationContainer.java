@@ -48,9 +48,9 @@ public abstract class SimpleCalculationNodeInvocationContainer {
   private static final Logger s_logger = LoggerFactory.getLogger(SimpleCalculationNodeInvocationContainer.class);
 
   /**
-   * 
+   * Receives the outcome of a job execution. Partial results may be received while the job executes if the node has been configured to report them.
    */
-  protected interface ExecutionReceiver {
+  protected interface ExecutionReceiver extends PartialJobResultReceiver {
 
     void executionFailed(SimpleCalculationNode node, Exception exception);
 
@@ -585,7 +585,7 @@ public abstract class SimpleCalculationNodeInvocationContainer {
       if (job.getExecution().threadBusy(job.getJob())) {
         try {
           if (resumeJob == null) {
-            result = node.executeJob(job.getJob());
+            result = node.executeJob(job.getJob(), job.getReceiver());
           } else {
             node.restoreState(resumeJob.getNodeState());
             result = resumeJob.getHandle().getResult().get();
@@ -20,6 +20,8 @@ import com.opengamma.engine.view.cache.DeferredViewComputationCache;
   private DeferredViewComputationCache _cache;
   private String _calculationConfiguration;
   private long _executionTime;
+  private PartialJobResultReceiver _partialResultReceiver;
+  private int _partialResultOffset;
 
   private SimpleCalculationNodeState(final SimpleCalculationNodeState copyFrom) {
     restoreState(copyFrom);
@@ -42,6 +44,8 @@ import com.opengamma.engine.view.cache.DeferredViewComputationCache;
     setCache(state.getCache());
     setConfiguration(state.getConfiguration());
     setExecutionStartTime(state.getExecutionStartTime());
+    setPartialResultReceiver(state.getPartialResultReceiver());
+    setPartialResultOffset(state.getPartialResultOffset());
   }
 
   protected void setFunctionExecutionContext(FunctionExecutionContext functionExecutionContext) {
@@ -92,4 +96,20 @@ import com.opengamma.engine.view.cache.DeferredViewComputationCache;
     _executionTime = executionTime;
   }
 
+  protected PartialJobResultReceiver getPartialResultReceiver() {
+    return _partialResultReceiver;
+  }
+
+  protected void setPartialResultReceiver(final PartialJobResultReceiver partialResultReceiver) {
+    _partialResultReceiver = partialResultReceiver;
+  }
+
+  protected int getPartialResultOffset() {
+    return _partialResultOffset;
+  }
+
+  protected void setPartialResultOffset(final int partialResultOffset) {
+    _partialResultOffset = partialResultOffset;
+  }
+
 }
@@ -74,6 +74,12 @@ import com.opengamma.util.tuple.Triple;
     return _resultReceivers.remove(result.getSpecification());
   }
 
+  @Override
+  protected JobResultReceiver getPartialResultReceiver(final CalculationJobResult result) {
+    // A retry on another node will report from the start of the job again; the receiver must discard anything it has already seen
+    return _resultReceivers.get(result.getSpecification());
+  }
+
   @Override
   protected boolean isLastResult() {
     return _resultReceivers.isEmpty();
@@ -37,6 +37,10 @@ public abstract class RemoteCalcNodeMessageVisitor {
     visitUnexpectedMessage(message);
   }
 
+  protected void visitPartialResultMessage(PartialResult message) {
+    visitUnexpectedMessage(message);
+  }
+
   protected void visitReadyMessage(Ready message) {
     visitUnexpectedMessage(message);
   }
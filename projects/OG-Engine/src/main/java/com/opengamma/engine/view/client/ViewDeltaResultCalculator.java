@@ -5,22 +5,25 @@
  */
 package com.opengamma.engine.view.client;
 
-import java.util.Map;
+import java.util.BitSet;
+import java.util.List;
 
-import com.opengamma.engine.ComputationTargetSpecification;
 import com.opengamma.engine.value.ComputedValueResult;
-import com.opengamma.engine.value.ValueProperties;
+import com.opengamma.engine.view.DeltaComparer;
 import com.opengamma.engine.view.DeltaDefinition;
 import com.opengamma.engine.view.InMemoryViewDeltaResultModel;
-import com.opengamma.engine.view.ViewCalculationResultModel;
+import com.opengamma.engine.view.NumberDeltaComparer;
 import com.opengamma.engine.view.ViewComputationResultModel;
 import com.opengamma.engine.view.ViewDefinition;
 import com.opengamma.engine.view.ViewDeltaResultModel;
 import com.opengamma.engine.view.ViewResultModel;
-import com.opengamma.util.tuple.Pair;
 
 /**
  * Produces {@link ViewDeltaResultModel} instances by comparing two {@link ViewComputationResultModel}.
+ * <p>
+ * The comparison is made on the columnar form of the results, {@link ViewResultColumns}. Numeric values in a calculation
+ * configuration whose {@link DeltaDefinition} uses a {@link NumberDeltaComparer} are compared directly from the
+ * primitive columns; everything else is compared using the {@link DeltaDefinition}.
  */
 public class ViewDeltaResultCalculator {
 
@@ -33,67 +36,84 @@ public class ViewDeltaResultCalculator {
    * @return  the delta between the two results, not null
    */
   public static ViewDeltaResultModel computeDeltaModel(ViewDefinition viewDefinition, ViewResultModel previousResult, ViewResultModel result) {
-    InMemoryViewDeltaResultModel deltaModel = new InMemoryViewDeltaResultModel();
-    deltaModel.setValuationTime(result.getValuationTime());
-    deltaModel.setCalculationTime(result.getCalculationTime());
-    deltaModel.setCalculationDuration(result.getCalculationDuration());
-    deltaModel.setVersionCorrection(result.getVersionCorrection());
-    deltaModel.setViewCycleId(result.getViewCycleId());
-    deltaModel.setViewProcessId(result.getViewProcessId());
-    
-    if (previousResult != null) {
-      deltaModel.setPreviousCalculationTime(previousResult.getCalculationTime());
-    }
-    for (ComputationTargetSpecification targetSpec : result.getAllTargets()) {
-      computeDeltaModel(viewDefinition, deltaModel, targetSpec, previousResult, result);
-    }
-    return deltaModel;
-  }
-  
-  private static void computeDeltaModel(ViewDefinition viewDefinition, InMemoryViewDeltaResultModel deltaModel, ComputationTargetSpecification targetSpec,
-      ViewResultModel previousResult, ViewResultModel result) {
-    for (String calcConfigName : result.getCalculationConfigurationNames()) {
-      DeltaDefinition deltaDefinition = viewDefinition.getCalculationConfiguration(calcConfigName).getDeltaDefinition();
-      ViewCalculationResultModel resultCalcModel = result.getCalculationResult(calcConfigName);
-      ViewCalculationResultModel previousCalcModel = previousResult != null ? previousResult.getCalculationResult(calcConfigName) : null;      
-      computeDeltaModel(deltaDefinition, deltaModel, targetSpec, calcConfigName, previousCalcModel, resultCalcModel);
-    }
+    return computeDeltaModel(viewDefinition, (previousResult != null) ? ViewResultColumns.of(previousResult) : null, ViewResultColumns.of(result));
   }
 
-  private static void computeDeltaModel(DeltaDefinition deltaDefinition, InMemoryViewDeltaResultModel deltaModel, ComputationTargetSpecification targetSpec,
-      String calcConfigName, ViewCalculationResultModel previousCalcModel, ViewCalculationResultModel resultCalcModel) {
-    final Map<Pair<String, ValueProperties>, ComputedValueResult> resultValues = resultCalcModel.getValues(targetSpec);
-    if (resultValues != null) {
-      if (previousCalcModel == null) {
-        // Everything is new/delta because this is a new calculation context.
-        for (Map.Entry<Pair<String, ValueProperties>, ComputedValueResult> resultEntry : resultValues.entrySet()) {
-          deltaModel.addValue(calcConfigName, resultEntry.getValue());
+  /**
+   * Computes the delta between old and new results that are already in columnar form. Callers that keep the columns of
+   * the previous result can use this to avoid rebuilding them for each delta.
+   * 
+   * @param viewDefinition  the view definition to which the results apply
+   * @param previousResult  the previous result, null if there is none
+   * @param result  the new result, not null
+   * @return  the delta between the two results, not null
+   */
+  public static ViewDeltaResultModel computeDeltaModel(ViewDefinition viewDefinition, ViewResultColumns previousResult, ViewResultColumns result) {
+    InMemoryViewDeltaResultModel deltaModel = new InMemoryViewDeltaResultModel();
+    final ViewResultModel resultModel = result.getResultModel();
+    deltaModel.setValuationTime(resultModel.getValuationTime());
+    deltaModel.setCalculationTime(resultModel.getCalculationTime());
+    deltaModel.setCalculationDuration(resultModel.getCalculationDuration());
+    deltaModel.setVersionCorrection(resultModel.getVersionCorrection());
+    deltaModel.setViewCycleId(resultModel.getViewCycleId());
+    deltaModel.setViewProcessId(resultModel.getViewProcessId());
+    final int rowCount = result.getRowCount();
+    if (previousResult == null) {
+      // Everything is new/delta
+      for (int row = 0; row < rowCount; row++) {
+        final ComputedValueResult value = result.getValue(row);
+        if (value != null) {
+          deltaModel.addValue(result.getCalculationConfiguration(row), value);
         }
+      }
+      return deltaModel;
+    }
+    deltaModel.setPreviousCalculationTime(previousResult.getResultModel().getCalculationTime());
+    final List<String> calcConfigurations = result.getCalculationConfigurations();
+    final DeltaDefinition[] deltaDefinitions = new DeltaDefinition[calcConfigurations.size()];
+    final NumberDeltaComparer[] numberComparers = new NumberDeltaComparer[deltaDefinitions.length];
+    for (int i = 0; i < deltaDefinitions.length; i++) {
+      deltaDefinitions[i] = viewDefinition.getCalculationConfiguration(calcConfigurations.get(i)).getDeltaDefinition();
+      final DeltaComparer<Number> numberComparer = deltaDefinitions[i].getNumberComparer();
+      if (numberComparer instanceof NumberDeltaComparer) {
+        numberComparers[i] = (NumberDeltaComparer) numberComparer;
+      }
+    }
+    final int[] previousRows = result.matchRows(previousResult);
+    final double[] numbers = result.getNumbers();
+    final BitSet numeric = result.getNumeric();
+    final double[] previousNumbers = previousResult.getNumbers();
+    final BitSet previousNumeric = previousResult.getNumeric();
+    for (int row = 0; row < rowCount; row++) {
+      final ComputedValueResult value = result.getValue(row);
+      if (value == null) {
+        continue;
+      }
+      final int previousRow = previousRows[row];
+      final boolean delta;
+      if (previousRow < 0) {
+        // Everything is new/delta because this is a new calculation context, target or value.
+        delta = true;
       } else {
-        final Map<Pair<String, ValueProperties>, ComputedValueResult> previousValues = previousCalcModel.getValues(targetSpec);
-        if (previousValues == null) {
-          // Everything is new/delta because this is a new target.
-          for (ComputedValueResult result : resultValues.values()) {
-            deltaModel.addValue(calcConfigName, result);
-          }
+        // REVIEW jonathan 2010-05-07 -- The previous value that we're comparing with is the value from the last
+        // computation cycle, not the value that we last emitted as a delta. It is therefore important that the
+        // DeltaComparers take this into account in their implementation of isDelta. E.g. they should compare the
+        // values after truncation to the required decimal place, rather than testing whether the difference of the
+        // full values is greater than some threshold; this way, there will always be a point beyond which a change
+        // is detected, even in the event of gradual creep.
+        final int calcConfiguration = result.getCalculationConfigurationIndex(row);
+        final NumberDeltaComparer numberComparer = numberComparers[calcConfiguration];
+        if ((numberComparer != null) && numeric.get(row) && previousNumeric.get(previousRow)) {
+          delta = numberComparer.isDelta(previousNumbers[previousRow], numbers[row]);
         } else {
-          // Have to individual delta.
-          for (Map.Entry<Pair<String, ValueProperties>, ComputedValueResult> resultEntry : resultValues.entrySet()) {
-            ComputedValueResult resultValue = resultEntry.getValue();
-            ComputedValueResult previousValue = previousValues.get(resultEntry.getKey());
-            // REVIEW jonathan 2010-05-07 -- The previous value that we're comparing with is the value from the last
-            // computation cycle, not the value that we last emitted as a delta. It is therefore important that the
-            // DeltaComparers take this into account in their implementation of isDelta. E.g. they should compare the
-            // values after truncation to the required decimal place, rather than testing whether the difference of the
-            // full values is greater than some threshold; this way, there will always be a point beyond which a change
-            // is detected, even in the event of gradual creep.
-            if (deltaDefinition.isDelta(previousValue, resultValue)) {
-              deltaModel.addValue(calcConfigName, resultEntry.getValue());
-            }
-          }
+          delta = deltaDefinitions[calcConfiguration].isDelta(previousResult.getValue(previousRow), value);
         }
       }
+      if (delta) {
+        deltaModel.addValue(result.getCalculationConfiguration(row), value);
+      }
     }
+    return deltaModel;
   }
-  
+
 }
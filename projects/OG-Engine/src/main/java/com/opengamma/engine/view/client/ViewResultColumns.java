@@ -0,0 +1,221 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.client;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.value.ComputedValueResult;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.engine.view.ViewResultEntry;
+import com.opengamma.engine.view.ViewResultModel;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * A columnar form of the values in a {@link ViewResultModel}.
+ * <p>
+ * Each value is a row, with the calculation configuration and target held as indices into tables of the distinct
+ * configurations and targets. Numeric values are also held in a primitive column so that they can be compared in bulk,
+ * for example by {@link ViewDeltaResultCalculator}, without unboxing each one.
+ */
+public final class ViewResultColumns {
+
+  private final ViewResultModel _model;
+  private final List<String> _calcConfigurations = new ArrayList<String>();
+  private final List<ComputationTargetSpecification> _targets = new ArrayList<ComputationTargetSpecification>();
+  private final int[] _calcConfigurationIndex;
+  private final int[] _targetIndex;
+  private final ComputedValueResult[] _values;
+  private final double[] _numbers;
+  private final BitSet _numeric;
+  private final Map<String, Object2IntMap<ValueSpecification>> _rows = new HashMap<String, Object2IntMap<ValueSpecification>>();
+
+  private ViewResultColumns(final ViewResultModel model) {
+    _model = model;
+    final List<ViewResultEntry> results = model.getAllResults();
+    final int size = results.size();
+    _calcConfigurationIndex = new int[size];
+    _targetIndex = new int[size];
+    _values = new ComputedValueResult[size];
+    _numbers = new double[size];
+    _numeric = new BitSet(size);
+    final Object2IntMap<String> calcConfigurations = new Object2IntOpenHashMap<String>();
+    calcConfigurations.defaultReturnValue(-1);
+    final Object2IntMap<ComputationTargetSpecification> targets = new Object2IntOpenHashMap<ComputationTargetSpecification>();
+    targets.defaultReturnValue(-1);
+    int row = 0;
+    for (ViewResultEntry result : results) {
+      final String calcConfiguration = result.getCalculationConfiguration();
+      int calcConfigurationIndex = calcConfigurations.getInt(calcConfiguration);
+      Object2IntMap<ValueSpecification> rows;
+      if (calcConfigurationIndex < 0) {
+        calcConfigurationIndex = _calcConfigurations.size();
+        _calcConfigurations.add(calcConfiguration);
+        calcConfigurations.put(calcConfiguration, calcConfigurationIndex);
+        rows = new Object2IntOpenHashMap<ValueSpecification>();
+        rows.defaultReturnValue(-1);
+        _rows.put(calcConfiguration, rows);
+      } else {
+        rows = _rows.get(calcConfiguration);
+      }
+      final ComputedValueResult value = result.getComputedValue();
+      final ComputationTargetSpecification target = value.getSpecification().getTargetSpecification();
+      int targetIndex = targets.getInt(target);
+      if (targetIndex < 0) {
+        targetIndex = _targets.size();
+        _targets.add(target);
+        targets.put(target, targetIndex);
+      }
+      _calcConfigurationIndex[row] = calcConfigurationIndex;
+      _targetIndex[row] = targetIndex;
+      _values[row] = value;
+      if (value.getValue() instanceof Number) {
+        _numbers[row] = ((Number) value.getValue()).doubleValue();
+        _numeric.set(row);
+      }
+      // A later entry for the same value replaces an earlier one, as it would in the result model
+      final int previous = rows.put(value.getSpecification(), row);
+      if (previous >= 0) {
+        _values[previous] = null;
+      }
+      row++;
+    }
+  }
+
+  /**
+   * Creates the columnar form of a result model.
+   *
+   * @param model the result model, not null
+   * @return the columns, not null
+   */
+  public static ViewResultColumns of(final ViewResultModel model) {
+    ArgumentChecker.notNull(model, "model");
+    return new ViewResultColumns(model);
+  }
+
+  /**
+   * Returns the result model the columns were created from.
+   *
+   * @return the result model, not null
+   */
+  public ViewResultModel getResultModel() {
+    return _model;
+  }
+
+  /**
+   * Returns the number of rows. A row whose value was replaced by a later one for the same specification has a null value.
+   *
+   * @return the number of rows
+   */
+  public int getRowCount() {
+    return _values.length;
+  }
+
+  /**
+   * Returns the row holding a value.
+   *
+   * @param calcConfiguration the calculation configuration name, not null
+   * @param valueSpecification the value specification, not null
+   * @return the row index, or -1 if there is no such value
+   */
+  public int getRow(final String calcConfiguration, final ValueSpecification valueSpecification) {
+    final Object2IntMap<ValueSpecification> rows = _rows.get(calcConfiguration);
+    return (rows != null) ? rows.getInt(valueSpecification) : -1;
+  }
+
+  public String getCalculationConfiguration(final int row) {
+    return _calcConfigurations.get(_calcConfigurationIndex[row]);
+  }
+
+  public int getCalculationConfigurationIndex(final int row) {
+    return _calcConfigurationIndex[row];
+  }
+
+  public List<String> getCalculationConfigurations() {
+    return _calcConfigurations;
+  }
+
+  public ComputationTargetSpecification getTarget(final int row) {
+    return _targets.get(_targetIndex[row]);
+  }
+
+  public int getTargetIndex(final int row) {
+    return _targetIndex[row];
+  }
+
+  public List<ComputationTargetSpecification> getTargets() {
+    return _targets;
+  }
+
+  public ComputedValueResult getValue(final int row) {
+    return _values[row];
+  }
+
+  /**
+   * Tests whether a row holds a numeric value.
+   *
+   * @param row the row index
+   * @return true if the value is a {@link Number}
+   */
+  public boolean isNumeric(final int row) {
+    return _numeric.get(row);
+  }
+
+  /**
+   * Returns the numeric value of a row, as a double.
+   *
+   * @param row the row index
+   * @return the value, or 0 if the row is not numeric
+   */
+  public double getNumber(final int row) {
+    return _numbers[row];
+  }
+
+  /**
+   * Matches the rows of this result against those of another.
+   *
+   * @param other the other columns, not null
+   * @return the row in {@code other} holding the same value as each row of this, or -1 if there is none
+   */
+  /* package */int[] matchRows(final ViewResultColumns other) {
+    final int[] matched = new int[_values.length];
+    final Object2IntMap<ValueSpecification>[] otherRows = getOtherRows(other);
+    for (int row = 0; row < matched.length; row++) {
+      final Object2IntMap<ValueSpecification> rows = otherRows[_calcConfigurationIndex[row]];
+      if ((rows != null) && (_values[row] != null)) {
+        matched[row] = rows.getInt(_values[row].getSpecification());
+      } else {
+        matched[row] = -1;
+      }
+    }
+    return matched;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Object2IntMap<ValueSpecification>[] getOtherRows(final ViewResultColumns other) {
+    final Object2IntMap<ValueSpecification>[] otherRows = new Object2IntMap[_calcConfigurations.size()];
+    for (int i = 0; i < otherRows.length; i++) {
+      otherRows[i] = other._rows.get(_calcConfigurations.get(i));
+    }
+    return otherRows;
+  }
+
+  /* package */double[] getNumbers() {
+    return _numbers;
+  }
+
+  /* package */BitSet getNumeric() {
+    return _numeric;
+  }
+
+}
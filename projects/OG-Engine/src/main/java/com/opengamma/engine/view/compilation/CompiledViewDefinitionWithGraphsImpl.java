@@ -29,6 +29,7 @@ public class CompiledViewDefinitionWithGraphsImpl extends CompiledViewDefinition
 
   private final Map<String, DependencyGraph> _graphsByConfiguration;
   private final long _functionInitId;
+  private volatile ResultModelLayout _resultModelLayout;
 
   /**
    * Constructs an instance.
@@ -96,6 +97,21 @@ public class CompiledViewDefinitionWithGraphsImpl extends CompiledViewDefinition
     return _functionInitId;
   }
 
+  /**
+   * Gets the layout of the values that cycles of this view definition will output, computing it on first use.
+   * 
+   * @return the result model layout, not null
+   */
+  public ResultModelLayout getResultModelLayout() {
+    ResultModelLayout layout = _resultModelLayout;
+    if (layout == null) {
+      // Computing it twice concurrently is harmless
+      layout = ResultModelLayout.of(this);
+      _resultModelLayout = layout;
+    }
+    return layout;
+  }
+
   //-------------------------------------------------------------------------
   
   @Override
@@ -0,0 +1,293 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.compilation;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.core.position.Portfolio;
+import com.opengamma.core.position.PortfolioNode;
+import com.opengamma.core.position.Position;
+import com.opengamma.core.position.Trade;
+import com.opengamma.core.position.impl.PortfolioNodeTraverser;
+import com.opengamma.core.security.Security;
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.ComputationTargetType;
+import com.opengamma.engine.depgraph.DependencyGraph;
+import com.opengamma.engine.depgraph.DependencyGraphBuilder;
+import com.opengamma.engine.depgraph.DependencyNode;
+import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.engine.view.ResultModelDefinition;
+import com.opengamma.engine.view.ResultOutputMode;
+import com.opengamma.engine.view.ViewCalculationConfiguration;
+import com.opengamma.id.ObjectId;
+import com.opengamma.id.UniqueId;
+import com.opengamma.id.VersionCorrection;
+
+/**
+ * Recompiles the portfolio requirements of a view definition after changes to its portfolio, reusing the parts of the previously compiled
+ * dependency graphs that are not affected.
+ * <p>
+ * A target is dirty if it is a position that has changed, or references a security that has changed, or a position, trade or portfolio node
+ * that was not in the previous portfolio. Trades of dirty positions, and the portfolio nodes containing dirty or removed positions, are also
+ * dirty. Nodes in the previous graphs for dirty or removed targets, and any nodes that depend on them, are discarded. The remaining nodes are
+ * copied into the new graph builders and the previous resolutions of terminal requirements reused so that only the requirements of dirty
+ * targets are resolved again. The portfolio requirements of dirty targets are added again by traversing the portfolio; any specific
+ * requirements on them are added directly.
+ */
+/* package */final class IncrementalPortfolioCompiler {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(IncrementalPortfolioCompiler.class);
+
+  /**
+   * If more than this fraction of the positions are dirty it is likely to be cheaper to perform a full compilation.
+   */
+  private static final double MAX_DIRTY_FRACTION = 0.5;
+
+  private final ViewCompilationContext _context;
+  private final CompiledViewDefinitionWithGraphsImpl _previous;
+  private final Set<ObjectId> _changed;
+  private final Portfolio _portfolio;
+  private final Set<UniqueId> _targets = new HashSet<UniqueId>();
+  private final Set<UniqueId> _dirtyTargets = new HashSet<UniqueId>();
+  private int _positionCount;
+  private int _dirtyPositionCount;
+  private boolean _removedTargets;
+
+  public IncrementalPortfolioCompiler(final ViewCompilationContext context, final CompiledViewDefinitionWithGraphsImpl previous, final Set<ObjectId> changed,
+      final VersionCorrection versionCorrection) {
+    _context = context;
+    _previous = previous;
+    _changed = changed;
+    _portfolio = PortfolioCompiler.getPortfolio(context, versionCorrection);
+    findDirtyTargets();
+  }
+
+  private static void gatherTargets(final PortfolioNode node, final Map<UniqueId, UniqueId> nodeParents, final Map<UniqueId, Position> positions) {
+    nodeParents.put(node.getUniqueId(), node.getParentNodeId());
+    for (Position position : node.getPositions()) {
+      positions.put(position.getUniqueId(), position);
+    }
+    for (PortfolioNode child : node.getChildNodes()) {
+      gatherTargets(child, nodeParents, positions);
+    }
+  }
+
+  private void markDirtyNode(UniqueId nodeId, final Map<UniqueId, UniqueId> nodeParents) {
+    while ((nodeId != null) && _dirtyTargets.add(nodeId)) {
+      nodeId = nodeParents.get(nodeId);
+    }
+  }
+
+  private boolean isChanged(final Position position) {
+    if (_changed.contains(position.getUniqueId().getObjectId())) {
+      return true;
+    }
+    final Security security = position.getSecurity();
+    return (security != null) && (security.getUniqueId() != null) && _changed.contains(security.getUniqueId().getObjectId());
+  }
+
+  private void findDirtyTargets() {
+    final Map<UniqueId, UniqueId> previousNodeParents = new HashMap<UniqueId, UniqueId>();
+    final Map<UniqueId, Position> previousPositions = new HashMap<UniqueId, Position>();
+    gatherTargets(_previous.getPortfolio().getRootNode(), previousNodeParents, previousPositions);
+    final Map<UniqueId, UniqueId> nodeParents = new HashMap<UniqueId, UniqueId>();
+    final Map<UniqueId, Position> positions = new HashMap<UniqueId, Position>();
+    gatherTargets(_portfolio.getRootNode(), nodeParents, positions);
+    _targets.addAll(nodeParents.keySet());
+    for (UniqueId nodeId : nodeParents.keySet()) {
+      if (!previousNodeParents.containsKey(nodeId)) {
+        markDirtyNode(nodeId, nodeParents);
+      }
+    }
+    for (Position position : positions.values()) {
+      _targets.add(position.getUniqueId());
+      for (Trade trade : position.getTrades()) {
+        _targets.add(trade.getUniqueId());
+      }
+      if (!previousPositions.containsKey(position.getUniqueId()) || isChanged(position)) {
+        _dirtyPositionCount++;
+        _dirtyTargets.add(position.getUniqueId());
+        for (Trade trade : position.getTrades()) {
+          _dirtyTargets.add(trade.getUniqueId());
+        }
+        markDirtyNode(position.getParentNodeId(), nodeParents);
+      }
+    }
+    _positionCount = positions.size();
+    for (Position position : previousPositions.values()) {
+      if (!positions.containsKey(position.getUniqueId())) {
+        _removedTargets = true;
+        markDirtyNode(position.getParentNodeId(), nodeParents);
+      }
+    }
+    if (previousNodeParents.size() != nodeParents.size()) {
+      _removedTargets = true;
+    }
+    s_logger.info("{} of {} positions dirty, {} targets to resolve", new Object[] {_dirtyPositionCount, _positionCount, _dirtyTargets.size() });
+  }
+
+  /**
+   * Tests whether an incremental compilation is worthwhile. If too much of the portfolio has changed, a full compilation will be quicker.
+   *
+   * @return true to proceed with the incremental compilation, false to perform a full compilation
+   */
+  public boolean isWorthwhile() {
+    return _dirtyPositionCount <= _positionCount * MAX_DIRTY_FRACTION;
+  }
+
+  /**
+   * Tests whether any of the previously compiled targets are affected by the changes.
+   *
+   * @return true if the graphs must be updated, false if the previous compilation is still valid
+   */
+  public boolean isDirty() {
+    return _removedTargets || !_dirtyTargets.isEmpty();
+  }
+
+  private static boolean isPortfolioTarget(final ComputationTargetSpecification target) {
+    final ComputationTargetType type = target.getType();
+    return (type == ComputationTargetType.PORTFOLIO_NODE) || (type == ComputationTargetType.POSITION) || (type == ComputationTargetType.TRADE);
+  }
+
+  private boolean isDirty(final DependencyNode node) {
+    final ComputationTargetSpecification target = node.getComputationTarget();
+    return isPortfolioTarget(target) && (_dirtyTargets.contains(target.getUniqueId()) || !_targets.contains(target.getUniqueId()));
+  }
+
+  /**
+   * Returns the nodes of the previous graph that are affected by the changes; those on dirty or removed targets and any nodes that depend on
+   * them.
+   */
+  private Set<DependencyNode> getDirtyNodes(final DependencyGraph graph) {
+    final Set<DependencyNode> dirty = new HashSet<DependencyNode>();
+    final LinkedList<DependencyNode> pending = new LinkedList<DependencyNode>();
+    for (DependencyNode node : graph.getDependencyNodes()) {
+      if (isDirty(node) && dirty.add(node)) {
+        pending.add(node);
+      }
+    }
+    while (!pending.isEmpty()) {
+      for (DependencyNode dependent : pending.removeFirst().getDependentNodes()) {
+        if (dirty.add(dependent)) {
+          pending.add(dependent);
+        }
+      }
+    }
+    return dirty;
+  }
+
+  /**
+   * Copies the nodes to be reused. The previous graph may still be in use by a running cycle so its nodes must not be modified by the new build.
+   */
+  private static Collection<DependencyNode> copyNodes(final Collection<DependencyNode> nodes) {
+    final Map<DependencyNode, DependencyNode> copies = new HashMap<DependencyNode, DependencyNode>();
+    for (DependencyNode node : nodes) {
+      final DependencyNode copy = new DependencyNode(node.getComputationTarget());
+      copy.setFunction(node.getFunction());
+      copy.addOutputValues(node.getOutputValues());
+      for (ValueSpecification input : node.getInputValues()) {
+        copy.addInputValue(input);
+      }
+      for (ValueSpecification terminal : node.getTerminalOutputValues()) {
+        copy.addTerminalOutputValue(terminal);
+      }
+      copies.put(node, copy);
+    }
+    for (Map.Entry<DependencyNode, DependencyNode> copy : copies.entrySet()) {
+      for (DependencyNode input : copy.getKey().getInputNodes()) {
+        final DependencyNode inputCopy = copies.get(input);
+        assert inputCopy != null;
+        copy.getValue().addInputNode(inputCopy);
+      }
+    }
+    return copies.values();
+  }
+
+  /**
+   * Seeds the graph builders with the reusable parts of the previous graphs and adds the requirements for the dirty targets.
+   *
+   * @return the portfolio, not null
+   */
+  public Portfolio execute() {
+    final ResultModelDefinition resultModelDefinition = _context.getViewDefinition().getResultModelDefinition();
+    for (ViewCalculationConfiguration calcConfig : _context.getViewDefinition().getAllCalculationConfigurations()) {
+      final DependencyGraphBuilder builder = _context.getBuilder(calcConfig.getName());
+      final DependencyGraph previousGraph = _previous.getDependencyGraph(calcConfig.getName());
+      final Set<UniqueId> targets;
+      if (previousGraph != null) {
+        final Set<DependencyNode> dirtyNodes = getDirtyNodes(previousGraph);
+        final Set<DependencyNode> cleanNodes = new HashSet<DependencyNode>(previousGraph.getDependencyNodes());
+        cleanNodes.removeAll(dirtyNodes);
+        final Map<ValueRequirement, ValueSpecification> resolutions = new HashMap<ValueRequirement, ValueSpecification>();
+        final Set<ValueRequirement> unresolved = new HashSet<ValueRequirement>();
+        final Set<ValueRequirement> specificRequirements = calcConfig.getSpecificRequirements();
+        targets = new HashSet<UniqueId>(_dirtyTargets);
+        for (Map.Entry<ValueSpecification, Set<ValueRequirement>> terminal : previousGraph.getTerminalOutputs().entrySet()) {
+          if (terminal.getValue() == null) {
+            continue;
+          }
+          final DependencyNode node = previousGraph.getNodeProducing(terminal.getKey());
+          if ((node != null) && !dirtyNodes.contains(node)) {
+            for (ValueRequirement requirement : terminal.getValue()) {
+              resolutions.put(requirement, terminal.getKey());
+            }
+          } else {
+            final ComputationTargetSpecification target = terminal.getKey().getTargetSpecification();
+            if (!isPortfolioTarget(target)) {
+              // Specific requirement that depended on something dirty
+              unresolved.addAll(terminal.getValue());
+            } else {
+              // Portfolio target that depended on something dirty; the traversal only adds the portfolio requirements back
+              for (ValueRequirement requirement : terminal.getValue()) {
+                if (specificRequirements.contains(requirement)) {
+                  unresolved.add(requirement);
+                }
+              }
+              if (_targets.contains(target.getUniqueId())) {
+                targets.add(target.getUniqueId());
+              }
+            }
+          }
+        }
+        for (ValueRequirement requirement : specificRequirements) {
+          // Specific requirements on dirty targets that did not resolve before may do now
+          if (_dirtyTargets.contains(requirement.getTargetSpecification().getUniqueId()) && !resolutions.containsKey(requirement)
+              && (resultModelDefinition.getOutputMode(requirement.getTargetSpecification().getType()) != ResultOutputMode.NONE)) {
+            unresolved.add(requirement);
+          }
+        }
+        s_logger.info("Reusing {} of {} nodes for {}", new Object[] {cleanNodes.size(), previousGraph.getSize(), calcConfig.getName() });
+        builder.addExistingNodes(copyNodes(cleanNodes), resolutions);
+        if (!unresolved.isEmpty()) {
+          builder.addTarget(unresolved);
+        }
+      } else {
+        targets = null;
+      }
+      if (calcConfig.getAllPortfolioRequirements().size() > 0) {
+        final PortfolioCompilerTraversalCallback traversalCallback = new PortfolioCompilerTraversalCallback(calcConfig, builder, targets);
+        PortfolioNodeTraverser.parallel(traversalCallback, _context.getServices().getExecutorService()).traverse(_portfolio.getRootNode());
+      }
+      try {
+        builder.waitForDependencyGraphBuild();
+      } catch (InterruptedException e) {
+        throw new OpenGammaRuntimeException("Interrupted", e);
+      }
+    }
+    return _portfolio;
+  }
+
+}
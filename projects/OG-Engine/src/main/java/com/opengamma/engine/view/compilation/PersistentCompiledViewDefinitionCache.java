@@ -0,0 +1,397 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.compilation;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import javax.time.Instant;
+
+import org.apache.commons.io.IOUtils;
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeField;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.MutableFudgeMsg;
+import org.fudgemsg.mapping.FudgeDeserializer;
+import org.fudgemsg.mapping.FudgeSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.core.position.Portfolio;
+import com.opengamma.engine.depgraph.DependencyGraph;
+import com.opengamma.engine.depgraph.DependencyNode;
+import com.opengamma.engine.function.CompiledFunctionDefinition;
+import com.opengamma.engine.function.CompiledFunctionRepository;
+import com.opengamma.engine.function.CompiledFunctionService;
+import com.opengamma.engine.function.FunctionDefinition;
+import com.opengamma.engine.function.FunctionParameters;
+import com.opengamma.engine.function.ParameterizedFunction;
+import com.opengamma.engine.marketdata.spec.MarketDataSpecification;
+import com.opengamma.engine.view.ViewDefinition;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.NamedThreadPoolFactory;
+import com.opengamma.util.tuple.Triple;
+
+/**
+ * Stores snapshots of compiled view definitions on disk so that a view processor can avoid recompiling its views from scratch after a
+ * restart. One snapshot is kept for each view definition and set of market data specifications, holding the definition, portfolio and
+ * dependency graphs. The market data specifications are part of the key as the availability of market data they imply shapes the graphs.
+ * <p>
+ * A snapshot is only returned if the view definition, market data specifications and the function repository are the same as when it was
+ * written. The function
+ * repository is identified by a digest of the function identifiers, implementation classes and default parameters; the initialization
+ * identifier is not used as it changes with each restart. The implementation classes are identified by a digest of their class files, so a
+ * changed implementation invalidates the snapshots even if the function identifiers are unchanged. The functions referenced by the stored graphs are bound to the current compiled function repository when loaded. The portfolio
+ * in the snapshot may be out of date, so the caller should check it against the current portfolio, for example with an incremental
+ * compilation from {@link ViewDefinitionCompiler#incrementalCompileTask}.
+ */
+public class PersistentCompiledViewDefinitionCache {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(PersistentCompiledViewDefinitionCache.class);
+
+  private static final String FILE_SUFFIX = ".fudge";
+
+  private static final String FUNCTIONS_FIELD = "functions";
+  private static final String VIEW_DEFINITION_FIELD = "viewDefinition";
+  private static final String MARKET_DATA_FIELD = "marketData";
+  private static final String PORTFOLIO_FIELD = "portfolio";
+  private static final String GRAPH_FIELD = "graph";
+
+  private final File _directory;
+  private final FudgeContext _fudgeContext;
+  private final ConcurrentMap<Class<?>, String> _classDigests = new ConcurrentHashMap<Class<?>, String>();
+  private final ConcurrentMap<File, Triple<CompiledViewDefinitionWithGraphsImpl, List<MarketDataSpecification>, CompiledFunctionService>> _pendingWrites =
+      new ConcurrentHashMap<File, Triple<CompiledViewDefinitionWithGraphsImpl, List<MarketDataSpecification>, CompiledFunctionService>>();
+  private Executor _writer;
+
+  public PersistentCompiledViewDefinitionCache(final File directory, final FudgeContext fudgeContext) {
+    ArgumentChecker.notNull(directory, "directory");
+    ArgumentChecker.notNull(fudgeContext, "fudgeContext");
+    if (!directory.exists() && !directory.mkdirs()) {
+      throw new OpenGammaRuntimeException("Couldn't create " + directory);
+    }
+    _directory = directory;
+    _fudgeContext = fudgeContext;
+  }
+
+  public File getDirectory() {
+    return _directory;
+  }
+
+  public FudgeContext getFudgeContext() {
+    return _fudgeContext;
+  }
+
+  /**
+   * Returns a digest identifying the functions available from the repository.
+   *
+   * @param functions the function compilation service, not null
+   * @return the digest, not null
+   */
+  protected String getFunctionRepositoryDigest(final CompiledFunctionService functions) {
+    final List<String> identifiers = new ArrayList<String>();
+    for (FunctionDefinition function : functions.getFunctionRepository().getAllFunctions()) {
+      identifiers.add(function.getUniqueId() + "/" + function.getShortName() + "/" + getClassDigest(function.getClass()) + "/" + getParametersDigest(function.getDefaultParameters()));
+    }
+    Collections.sort(identifiers);
+    final MessageDigest digest = createDigest();
+    for (String identifier : identifiers) {
+      digest.update(toBytes(identifier));
+      digest.update((byte) 0);
+    }
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Returns a digest of a function implementation, from the class files of the class and its superclasses. A class file that can't be found
+   * contributes only its name.
+   *
+   * @param clazz the function class, not null
+   * @return the digest, not null
+   */
+  protected String getClassDigest(final Class<?> clazz) {
+    String result = _classDigests.get(clazz);
+    if (result == null) {
+      final MessageDigest digest = createDigest();
+      for (Class<?> c = clazz; (c != null) && (c != Object.class); c = c.getSuperclass()) {
+        digest.update(toBytes(c.getName()));
+        final InputStream in = c.getResourceAsStream("/" + c.getName().replace('.', '/') + ".class");
+        if (in != null) {
+          try {
+            digest.update(IOUtils.toByteArray(in));
+          } catch (IOException e) {
+            s_logger.debug("Couldn't read class file of {}: {}", c, e.getMessage());
+          } finally {
+            IOUtils.closeQuietly(in);
+          }
+        }
+      }
+      result = toHex(digest.digest());
+      _classDigests.putIfAbsent(clazz, result);
+    }
+    return result;
+  }
+
+  private String getParametersDigest(final FunctionParameters parameters) {
+    if (parameters == null) {
+      return "";
+    }
+    try {
+      return toHex(createDigest().digest(getFudgeContext().toByteArray(new FudgeSerializer(getFudgeContext()).objectToFudgeMsg(parameters))));
+    } catch (RuntimeException e) {
+      // Not encodable; the hash code is at least stable for parameters that implement it
+      return parameters.getClass().getName() + ":" + parameters.hashCode();
+    }
+  }
+
+  private static MessageDigest createDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new OpenGammaRuntimeException("Couldn't create digest", e);
+    }
+  }
+
+  private static byte[] toBytes(final String str) {
+    try {
+      return str.getBytes("UTF-8");
+    } catch (IOException e) {
+      throw new OpenGammaRuntimeException("Couldn't create digest", e);
+    }
+  }
+
+  private static String toHex(final byte[] bytes) {
+    final StringBuilder sb = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Returns a digest identifying a set of market data specifications.
+   *
+   * @param marketDataSpecifications the market data specifications, not null
+   * @return the digest, not null
+   */
+  protected String getMarketDataDigest(final List<MarketDataSpecification> marketDataSpecifications) {
+    final FudgeSerializer serializer = new FudgeSerializer(getFudgeContext());
+    final MessageDigest digest = createDigest();
+    for (MarketDataSpecification marketDataSpecification : marketDataSpecifications) {
+      digest.update(toBytes(marketDataSpecification.getClass().getName()));
+      digest.update(getFudgeContext().toByteArray(serializer.objectToFudgeMsg(marketDataSpecification)));
+      digest.update((byte) 0);
+    }
+    return toHex(digest.digest());
+  }
+
+  protected File getFile(final ViewDefinition viewDefinition, final List<MarketDataSpecification> marketDataSpecifications) {
+    final String key = (viewDefinition.getUniqueId() != null) ? viewDefinition.getUniqueId().getObjectId().toString() : viewDefinition.getName();
+    final String marketDataKey = getMarketDataDigest(marketDataSpecifications);
+    final StringBuilder sb = new StringBuilder(key.length() + marketDataKey.length() + FILE_SUFFIX.length() + 1);
+    for (int i = 0; i < key.length(); i++) {
+      final char c = key.charAt(i);
+      sb.append(Character.isLetterOrDigit(c) || (c == '-') || (c == '.') ? c : '_');
+    }
+    sb.append('-').append(marketDataKey).append(FILE_SUFFIX);
+    return new File(getDirectory(), sb.toString());
+  }
+
+  /**
+   * Sets the executor used by {@link #putAsynchronously}. By default a single background thread is used.
+   *
+   * @param writer the executor, not null
+   */
+  public synchronized void setWriter(final Executor writer) {
+    ArgumentChecker.notNull(writer, "writer");
+    _writer = writer;
+  }
+
+  protected synchronized Executor getWriter() {
+    if (_writer == null) {
+      _writer = Executors.newSingleThreadExecutor(new NamedThreadPoolFactory("CompiledViewDefinitionCache", true));
+    }
+    return _writer;
+  }
+
+  /**
+   * Writes a snapshot of a compiled view definition in the background, replacing any previous snapshot of the same view definition and
+   * market data specifications. If further snapshots are requested before the write starts, only the latest is written. This keeps the
+   * encoding and disk I/O off the caller's thread, which is typically a view computation job.
+   *
+   * @param compiledViewDefinition the compiled view definition, not null
+   * @param marketDataSpecifications the market data specifications the view definition was compiled against, not null
+   * @param functions the function compilation service used to compile the view definition, not null
+   */
+  public void putAsynchronously(final CompiledViewDefinitionWithGraphsImpl compiledViewDefinition, final List<MarketDataSpecification> marketDataSpecifications,
+      final CompiledFunctionService functions) {
+    ArgumentChecker.notNull(compiledViewDefinition, "compiledViewDefinition");
+    ArgumentChecker.notNull(marketDataSpecifications, "marketDataSpecifications");
+    ArgumentChecker.notNull(functions, "functions");
+    final File file = getFile(compiledViewDefinition.getViewDefinition(), marketDataSpecifications);
+    if (_pendingWrites.put(file, Triple.of(compiledViewDefinition, marketDataSpecifications, functions)) == null) {
+      getWriter().execute(new Runnable() {
+        @Override
+        public void run() {
+          final Triple<CompiledViewDefinitionWithGraphsImpl, List<MarketDataSpecification>, CompiledFunctionService> pending = _pendingWrites.remove(file);
+          if (pending != null) {
+            try {
+              put(pending.getFirst(), pending.getSecond(), pending.getThird());
+            } catch (RuntimeException e) {
+              s_logger.warn("Couldn't write compiled view definition to {}: {}", file, e.getMessage());
+            }
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * Writes a snapshot of a compiled view definition, replacing any previous snapshot of the same view definition and market data
+   * specifications. Failure to write the snapshot is logged but not reported to the caller.
+   *
+   * @param compiledViewDefinition the compiled view definition, not null
+   * @param marketDataSpecifications the market data specifications the view definition was compiled against, not null
+   * @param functions the function compilation service used to compile the view definition, not null
+   */
+  public void put(final CompiledViewDefinitionWithGraphsImpl compiledViewDefinition, final List<MarketDataSpecification> marketDataSpecifications,
+      final CompiledFunctionService functions) {
+    ArgumentChecker.notNull(compiledViewDefinition, "compiledViewDefinition");
+    ArgumentChecker.notNull(marketDataSpecifications, "marketDataSpecifications");
+    ArgumentChecker.notNull(functions, "functions");
+    final FudgeSerializer serializer = new FudgeSerializer(getFudgeContext());
+    final MutableFudgeMsg msg = serializer.newMessage();
+    msg.add(FUNCTIONS_FIELD, getFunctionRepositoryDigest(functions));
+    serializer.addToMessage(msg, VIEW_DEFINITION_FIELD, null, compiledViewDefinition.getViewDefinition());
+    for (MarketDataSpecification marketDataSpecification : marketDataSpecifications) {
+      serializer.addToMessageWithClassHeaders(msg, MARKET_DATA_FIELD, null, marketDataSpecification, MarketDataSpecification.class);
+    }
+    if (compiledViewDefinition.getPortfolio() != null) {
+      serializer.addToMessage(msg, PORTFOLIO_FIELD, null, compiledViewDefinition.getPortfolio());
+    }
+    for (DependencyGraph graph : compiledViewDefinition.getAllDependencyGraphs()) {
+      serializer.addToMessage(msg, GRAPH_FIELD, null, graph);
+    }
+    final File file = getFile(compiledViewDefinition.getViewDefinition(), marketDataSpecifications);
+    final File temp = new File(file.getPath() + ".tmp");
+    OutputStream out = null;
+    try {
+      out = new FileOutputStream(temp);
+      out.write(getFudgeContext().toByteArray(msg));
+      out.close();
+      out = null;
+      if (file.exists() && !file.delete()) {
+        throw new IOException("Couldn't delete " + file);
+      }
+      if (!temp.renameTo(file)) {
+        throw new IOException("Couldn't rename " + temp + " to " + file);
+      }
+      s_logger.info("Wrote compiled view definition {} to {}", compiledViewDefinition.getViewDefinition().getName(), file);
+    } catch (IOException e) {
+      s_logger.warn("Couldn't write compiled view definition to {}: {}", file, e.getMessage());
+      temp.delete();
+    } finally {
+      IOUtils.closeQuietly(out);
+    }
+  }
+
+  /**
+   * Reads the snapshot of a compiled view definition, if there is one that is still applicable.
+   *
+   * @param viewDefinition the view definition, not null
+   * @param marketDataSpecifications the market data specifications the compilation will be used with, not null
+   * @param functions the function compilation service to bind the functions from, not null
+   * @param valuationTime the valuation time the compilation will be used for, not null
+   * @return the compiled view definition, or null if there is no applicable snapshot
+   */
+  public CompiledViewDefinitionWithGraphsImpl get(final ViewDefinition viewDefinition, final List<MarketDataSpecification> marketDataSpecifications,
+      final CompiledFunctionService functions, final Instant valuationTime) {
+    ArgumentChecker.notNull(viewDefinition, "viewDefinition");
+    ArgumentChecker.notNull(marketDataSpecifications, "marketDataSpecifications");
+    ArgumentChecker.notNull(functions, "functions");
+    ArgumentChecker.notNull(valuationTime, "valuationTime");
+    final File file = getFile(viewDefinition, marketDataSpecifications);
+    if (!file.exists()) {
+      return null;
+    }
+    final FudgeMsg msg;
+    InputStream in = null;
+    try {
+      in = new FileInputStream(file);
+      msg = getFudgeContext().deserialize(in).getMessage();
+    } catch (IOException e) {
+      s_logger.warn("Couldn't read compiled view definition from {}: {}", file, e.getMessage());
+      return null;
+    } catch (RuntimeException e) {
+      s_logger.warn("Couldn't read compiled view definition from {}: {}", file, e.getMessage());
+      return null;
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+    if (!getFunctionRepositoryDigest(functions).equals(msg.getString(FUNCTIONS_FIELD))) {
+      s_logger.info("Function repository has changed since {} was written", file);
+      return null;
+    }
+    final FudgeDeserializer deserializer = new FudgeDeserializer(getFudgeContext());
+    final ViewDefinition storedViewDefinition = deserializer.fieldValueToObject(ViewDefinition.class, msg.getByName(VIEW_DEFINITION_FIELD));
+    if (!viewDefinition.equals(storedViewDefinition)) {
+      s_logger.info("View definition has changed since {} was written", file);
+      return null;
+    }
+    final List<MarketDataSpecification> storedMarketDataSpecifications = new ArrayList<MarketDataSpecification>();
+    for (FudgeField marketDataField : msg.getAllByName(MARKET_DATA_FIELD)) {
+      storedMarketDataSpecifications.add(deserializer.fieldValueToObject(MarketDataSpecification.class, marketDataField));
+    }
+    if (!marketDataSpecifications.equals(storedMarketDataSpecifications)) {
+      s_logger.info("Market data specifications differ from those {} was written for", file);
+      return null;
+    }
+    final FudgeField portfolioField = msg.getByName(PORTFOLIO_FIELD);
+    final Portfolio portfolio = (portfolioField != null) ? deserializer.fieldValueToObject(Portfolio.class, portfolioField) : null;
+    final CompiledFunctionRepository functionRepository = functions.compileFunctionRepository(valuationTime);
+    final Map<String, DependencyGraph> graphs = new HashMap<String, DependencyGraph>();
+    for (FudgeField graphField : msg.getAllByName(GRAPH_FIELD)) {
+      final DependencyGraph graph = deserializer.fieldValueToObject(DependencyGraph.class, graphField);
+      for (DependencyNode node : graph.getDependencyNodes()) {
+        final ParameterizedFunction stub = node.getFunction();
+        final CompiledFunctionDefinition function = functionRepository.getDefinition(stub.getFunction().getFunctionDefinition().getUniqueId());
+        if (function == null) {
+          s_logger.info("Function {} referenced from {} is not available", stub.getFunction().getFunctionDefinition().getShortName(), file);
+          return null;
+        }
+        final ParameterizedFunction parameterizedFunction = new ParameterizedFunction(function, stub.getParameters());
+        parameterizedFunction.setUniqueId(stub.getUniqueId());
+        node.setFunction(parameterizedFunction);
+      }
+      graphs.put(graph.getCalculationConfigurationName(), graph);
+    }
+    final CompiledViewDefinitionWithGraphsImpl compiledViewDefinition = new CompiledViewDefinitionWithGraphsImpl(viewDefinition, graphs, portfolio, functions
+        .getFunctionCompilationContext().getFunctionInitId());
+    if (!compiledViewDefinition.isValidFor(valuationTime)) {
+      s_logger.info("Compiled view definition from {} is not valid for {}", file, valuationTime);
+      return null;
+    }
+    s_logger.info("Read compiled view definition {} from {}", viewDefinition.getName(), file);
+    return compiledViewDefinition;
+  }
+
+}
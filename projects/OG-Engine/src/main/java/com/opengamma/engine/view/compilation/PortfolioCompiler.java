@@ -89,7 +89,7 @@ public final class PortfolioCompiler {
    * @param viewDefinition  the view definition
    * @return true if there is at least one portfolio target
    */
-  private static boolean isPortfolioOutputEnabled(ViewDefinition viewDefinition) {
+  /* package */static boolean isPortfolioOutputEnabled(ViewDefinition viewDefinition) {
     ResultModelDefinition resultModelDefinition = viewDefinition.getResultModelDefinition();
     return resultModelDefinition.getPositionOutputMode() != ResultOutputMode.NONE || resultModelDefinition.getAggregatePositionOutputMode() != ResultOutputMode.NONE;
   }
@@ -102,7 +102,7 @@ public final class PortfolioCompiler {
    * @param compilationContext  the compilation context containing the view being compiled, not null
    * @param versionCorrection  the version-correction at which the portfolio is required, not null
    */
-  private static Portfolio getPortfolio(ViewCompilationContext compilationContext, VersionCorrection versionCorrection) {
+  /* package */static Portfolio getPortfolio(ViewCompilationContext compilationContext, VersionCorrection versionCorrection) {
     UniqueId portfolioId = compilationContext.getViewDefinition().getPortfolioId();
     if (portfolioId == null) {
       throw new OpenGammaRuntimeException("The view definition '" + compilationContext.getViewDefinition().getName() + "' contains required portfolio outputs, but it does not reference a portfolio.");
@@ -36,15 +36,31 @@ import com.opengamma.util.tuple.Pair;
   private final ResultModelDefinition _resultModelDefinition;
   private final ConcurrentMap<UniqueId, Set<Pair<String, ValueProperties>>> _nodeRequirements = new ConcurrentHashMap<UniqueId, Set<Pair<String, ValueProperties>>>();
   private final DependencyGraphBuilder _builder;
+  private final Set<UniqueId> _includeTargets;
 
   public PortfolioCompilerTraversalCallback(final ViewCalculationConfiguration calculationConfiguration, final DependencyGraphBuilder builder) {
+    this(calculationConfiguration, builder, null);
+  }
+
+  /**
+   * Creates a callback that only adds requirements for some of the portfolio targets, for example when the rest are already present
+   * in the graph being built.
+   * 
+   * @param calculationConfiguration the calculation configuration, not null
+   * @param builder the graph builder to add requirements to, not null
+   * @param includeTargets the identifiers of the targets to add requirements for, or null for all targets
+   */
+  public PortfolioCompilerTraversalCallback(final ViewCalculationConfiguration calculationConfiguration, final DependencyGraphBuilder builder, final Set<UniqueId> includeTargets) {
     _calculationConfiguration = calculationConfiguration;
     _resultModelDefinition = calculationConfiguration.getViewDefinition().getResultModelDefinition();
     _builder = builder;
+    _includeTargets = includeTargets;
   }
 
   protected void addValueRequirement(final ValueRequirement valueRequirement) {
-    _builder.addTarget(valueRequirement);
+    if ((_includeTargets == null) || _includeTargets.contains(valueRequirement.getTargetSpecification().getUniqueId())) {
+      _builder.addTarget(valueRequirement);
+    }
   }
 
   @Override
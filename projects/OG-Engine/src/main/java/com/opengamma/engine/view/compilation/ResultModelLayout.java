@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.compilation;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.depgraph.DependencyGraph;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.engine.view.ResultModelDefinition;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * The positions of the values that may appear in the results of a compiled view definition.
+ * <p>
+ * These are the terminal outputs of each calculation configuration that the result model definition allows to be output.
+ * Each has a fixed index so that a cycle can hold its results in an array, filled from any thread without locking, instead
+ * of a map that is grown as results arrive.
+ */
+public final class ResultModelLayout {
+
+  private static final class Configuration {
+
+    private final Object2IntMap<ValueSpecification> _slots;
+    private final ValueSpecification[] _specifications;
+    private final int _targets;
+
+    public Configuration(final DependencyGraph graph, final ResultModelDefinition resultModelDefinition, final Set<ComputationTargetSpecification> allTargets) {
+      final Set<ValueSpecification> terminalOutputs = graph.getTerminalOutputSpecifications();
+      _slots = new Object2IntOpenHashMap<ValueSpecification>(terminalOutputs.size());
+      _slots.defaultReturnValue(-1);
+      final Set<ComputationTargetSpecification> targets = new HashSet<ComputationTargetSpecification>();
+      int index = 0;
+      for (ValueSpecification terminalOutput : terminalOutputs) {
+        if (resultModelDefinition.shouldOutputResult(terminalOutput, graph)) {
+          _slots.put(terminalOutput, index++);
+          targets.add(terminalOutput.getTargetSpecification());
+        }
+      }
+      _specifications = new ValueSpecification[index];
+      for (Object2IntMap.Entry<ValueSpecification> slot : _slots.object2IntEntrySet()) {
+        _specifications[slot.getIntValue()] = slot.getKey();
+      }
+      _targets = targets.size();
+      allTargets.addAll(targets);
+    }
+
+  }
+
+  private final Map<String, Configuration> _configurations;
+  private final int _size;
+  private final int _targets;
+
+  private ResultModelLayout(final Map<String, Configuration> configurations, final int targets) {
+    _configurations = configurations;
+    _targets = targets;
+    int size = 0;
+    for (Configuration configuration : configurations.values()) {
+      size += configuration._specifications.length;
+    }
+    _size = size;
+  }
+
+  /**
+   * Computes the layout for a compiled view definition.
+   *
+   * @param compiledViewDefinition the compiled view definition, not null
+   * @return the layout, not null
+   */
+  public static ResultModelLayout of(final CompiledViewDefinitionWithGraphsImpl compiledViewDefinition) {
+    ArgumentChecker.notNull(compiledViewDefinition, "compiledViewDefinition");
+    final ResultModelDefinition resultModelDefinition = compiledViewDefinition.getViewDefinition().getResultModelDefinition();
+    final Map<String, Configuration> configurations = new HashMap<String, Configuration>();
+    final Set<ComputationTargetSpecification> targets = new HashSet<ComputationTargetSpecification>();
+    for (Map.Entry<String, DependencyGraph> graph : compiledViewDefinition.getDependencyGraphsByConfiguration().entrySet()) {
+      configurations.put(graph.getKey(), new Configuration(graph.getValue(), resultModelDefinition, targets));
+    }
+    return new ResultModelLayout(configurations, targets.size());
+  }
+
+  /**
+   * Returns the calculation configurations in the layout.
+   *
+   * @return the calculation configuration names, not null
+   */
+  public Collection<String> getCalculationConfigurationNames() {
+    return Collections.unmodifiableSet(_configurations.keySet());
+  }
+
+  /**
+   * Returns the index of a value within the results of a calculation configuration.
+   *
+   * @param calcConfigurationName the calculation configuration name, not null
+   * @param valueSpecification the value, not null
+   * @return the index, or -1 if the value is not one that is output
+   */
+  public int getIndex(final String calcConfigurationName, final ValueSpecification valueSpecification) {
+    final Configuration configuration = _configurations.get(calcConfigurationName);
+    if (configuration == null) {
+      return -1;
+    }
+    return configuration._slots.getInt(valueSpecification);
+  }
+
+  /**
+   * Returns the value at an index within the results of a calculation configuration.
+   *
+   * @param calcConfigurationName the calculation configuration name, not null
+   * @param index the index
+   * @return the value, not null
+   */
+  public ValueSpecification getValueSpecification(final String calcConfigurationName, final int index) {
+    return _configurations.get(calcConfigurationName)._specifications[index];
+  }
+
+  /**
+   * Returns the number of values that may be output by a calculation configuration.
+   *
+   * @param calcConfigurationName the calculation configuration name, not null
+   * @return the number of values, zero if the configuration is not known
+   */
+  public int getSize(final String calcConfigurationName) {
+    final Configuration configuration = _configurations.get(calcConfigurationName);
+    return (configuration != null) ? configuration._specifications.length : 0;
+  }
+
+  /**
+   * Returns the number of distinct targets of the values that may be output by a calculation configuration.
+   *
+   * @param calcConfigurationName the calculation configuration name, not null
+   * @return the number of targets, zero if the configuration is not known
+   */
+  public int getTargetCount(final String calcConfigurationName) {
+    final Configuration configuration = _configurations.get(calcConfigurationName);
+    return (configuration != null) ? configuration._targets : 0;
+  }
+
+  /**
+   * Returns the total number of values that may be output.
+   *
+   * @return the number of values
+   */
+  public int getSize() {
+    return _size;
+  }
+
+  /**
+   * Returns the number of distinct targets of all the values that may be output.
+   *
+   * @return the number of targets
+   */
+  public int getTargetCount() {
+    return _targets;
+  }
+
+}
@@ -8,7 +8,9 @@ package com.opengamma.engine.view.compilation;
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
@@ -23,6 +25,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Supplier;
 import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.core.change.ChangeEvent;
 import com.opengamma.core.position.Portfolio;
 import com.opengamma.core.security.SecuritySource;
 import com.opengamma.engine.ComputationTargetType;
@@ -35,6 +38,7 @@ import com.opengamma.engine.value.ValueRequirement;
 import com.opengamma.engine.value.ValueSpecification;
 import com.opengamma.engine.view.ViewCalculationConfiguration;
 import com.opengamma.engine.view.ViewDefinition;
+import com.opengamma.id.ObjectId;
 import com.opengamma.id.VersionCorrection;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.monitor.OperationTimer;
@@ -112,6 +116,69 @@ public final class ViewDefinitionCompiler {
 
   }
 
+  /**
+   * Base for the compilation task returned to the caller. The work is performed by the thread that calls {@link #get}.
+   */
+  private abstract static class CompilationTask implements Future<CompiledViewDefinitionWithGraphsImpl> {
+
+    private final ViewCompilationContext _viewCompilationContext;
+    private volatile CompiledViewDefinitionWithGraphsImpl _result;
+
+    protected CompilationTask(final ViewCompilationContext viewCompilationContext) {
+      _viewCompilationContext = viewCompilationContext;
+    }
+
+    protected ViewCompilationContext getViewCompilationContext() {
+      return _viewCompilationContext;
+    }
+
+    protected abstract CompiledViewDefinitionWithGraphsImpl compile();
+
+    /**
+     * Cancels any active builders.
+     */
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+      boolean result = true;
+      for (DependencyGraphBuilder builder : getViewCompilationContext().getBuilders()) {
+        result &= builder.cancel(mayInterruptIfRunning);
+      }
+      return result;
+    }
+
+    /**
+     * Tests if any of the builders have been canceled.
+     */
+    @Override
+    public boolean isCancelled() {
+      boolean result = false;
+      for (DependencyGraphBuilder builder : getViewCompilationContext().getBuilders()) {
+        result |= builder.isCancelled();
+      }
+      return result;
+    }
+
+    /**
+     * Tests if all of the builders have completed.
+     */
+    @Override
+    public boolean isDone() {
+      return _result != null;
+    }
+
+    @Override
+    public CompiledViewDefinitionWithGraphsImpl get() throws InterruptedException, ExecutionException {
+      _result = compile();
+      return _result;
+    }
+
+    @Override
+    public CompiledViewDefinitionWithGraphsImpl get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+      throw new UnsupportedOperationException();
+    }
+
+  }
+
   //-------------------------------------------------------------------------
   public static Future<CompiledViewDefinitionWithGraphsImpl> compileTask(final ViewDefinition viewDefinition, final ViewCompilationServices compilationServices, final Instant valuationTime,
       final VersionCorrection versionCorrection) {
@@ -124,77 +191,102 @@ public final class ViewDefinitionCompiler {
       new CompilationCompletionEstimate(viewCompilationContext);
     }
     // TODO: return a Future that provides access to a completion metric to feedback to any interactive user
-    return new Future<CompiledViewDefinitionWithGraphsImpl>() {
-      
-      private volatile CompiledViewDefinitionWithGraphsImpl _result;
-
-      /**
-       * Cancels any active builders.
-       */
+    return new CompilationTask(viewCompilationContext) {
       @Override
-      public boolean cancel(final boolean mayInterruptIfRunning) {
-        boolean result = true;
-        for (DependencyGraphBuilder builder : viewCompilationContext.getBuilders()) {
-          result &= builder.cancel(mayInterruptIfRunning);
-        }
-        return result;
+      protected CompiledViewDefinitionWithGraphsImpl compile() {
+        return fullCompile(viewCompilationContext, versionCorrection, timer);
       }
+    };
+  }
 
-      /**
-       * Tests if any of the builders have been canceled.
-       */
+  /**
+   * Recompiles a view definition after changes to its portfolio, or the positions and securities within it. The parts of the previously compiled
+   * dependency graphs that are not affected by the changes are reused. If the previous compilation is not compatible, or too much of the
+   * portfolio has changed, a full compilation is performed instead. If none of the changes affect the compiled view the previous compilation is
+   * returned.
+   * 
+   * @param previous the previous compilation of the view definition, not null
+   * @param changes the changes since the previous compilation, not null
+   * @param compilationServices the compilation services, not null
+   * @param valuationTime the valuation time, not null
+   * @param versionCorrection the version-correction at which to compile, not null
+   * @return the compilation task, not null
+   */
+  public static Future<CompiledViewDefinitionWithGraphsImpl> incrementalCompileTask(final CompiledViewDefinitionWithGraphsImpl previous, final Collection<ChangeEvent> changes,
+      final ViewCompilationServices compilationServices, final Instant valuationTime, final VersionCorrection versionCorrection) {
+    ArgumentChecker.notNull(previous, "previous");
+    ArgumentChecker.notNull(changes, "changes");
+    ArgumentChecker.notNull(compilationServices, "compilationServices");
+    final ViewDefinition viewDefinition = previous.getViewDefinition();
+    s_logger.debug("Incrementally compiling {} for use with {}", viewDefinition.getName(), valuationTime);
+    final OperationTimer timer = new OperationTimer(s_logger, "Incrementally compiling ViewDefinition: {}", viewDefinition.getName());
+    final ViewCompilationContext viewCompilationContext = new ViewCompilationContext(viewDefinition, compilationServices, valuationTime);
+    final Set<ObjectId> changed = new HashSet<ObjectId>();
+    for (ChangeEvent change : changes) {
+      changed.add(change.getObjectId());
+    }
+    return new CompilationTask(viewCompilationContext) {
       @Override
-      public boolean isCancelled() {
-        boolean result = false;
-        for (DependencyGraphBuilder builder : viewCompilationContext.getBuilders()) {
-          result |= builder.isCancelled();
+      protected CompiledViewDefinitionWithGraphsImpl compile() {
+        if ((previous.getPortfolio() == null) || !PortfolioCompiler.isPortfolioOutputEnabled(viewDefinition)) {
+          s_logger.debug("No portfolio in {}; previous compilation is still valid", viewDefinition.getName());
+          return previous;
         }
-        return result;
-      }
-
-      /**
-       * Tests if all of the builders have completed.
-       */
-      @Override
-      public boolean isDone() {
-        return _result != null;
-      }
-      
-      @Override
-      public CompiledViewDefinitionWithGraphsImpl get() throws InterruptedException, ExecutionException {
-        long t = -System.nanoTime();
-        EnumSet<ComputationTargetType> specificTargetTypes = SpecificRequirementsCompiler.execute(viewCompilationContext);
-        t += System.nanoTime();
-        s_logger.info("Added specific requirements after {}ms", (double) t / 1e6);
-        t -= System.nanoTime();
-        boolean requirePortfolioResolution = specificTargetTypes.contains(ComputationTargetType.PORTFOLIO_NODE) || specificTargetTypes.contains(ComputationTargetType.POSITION);
-        Portfolio portfolio = PortfolioCompiler.execute(viewCompilationContext, versionCorrection, requirePortfolioResolution);
-        t += System.nanoTime();
-        s_logger.info("Added portfolio requirements after {}ms", (double) t / 1e6);
-        t -= System.nanoTime();
-        Map<String, DependencyGraph> graphsByConfiguration = processDependencyGraphs(viewCompilationContext);
-        t += System.nanoTime();
-        s_logger.info("Processed dependency graphs after {}ms", (double) t / 1e6);
-        timer.finished();
-        _result = new CompiledViewDefinitionWithGraphsImpl(viewDefinition, graphsByConfiguration, portfolio, compilationServices.getFunctionCompilationContext().getFunctionInitId());
-        if (OUTPUT_DEPENDENCY_GRAPHS) {
-          outputDependencyGraphs(graphsByConfiguration);
+        if (previous.getFunctionInitId() != compilationServices.getFunctionCompilationContext().getFunctionInitId()) {
+          s_logger.info("Function repository changed; performing full compilation");
+          return fullCompile(viewCompilationContext, versionCorrection, timer);
         }
-        if (OUTPUT_LIVE_DATA_REQUIREMENTS) {
-          outputLiveDataRequirements(graphsByConfiguration, compilationServices.getComputationTargetResolver().getSecuritySource());
+        final IncrementalPortfolioCompiler compiler = new IncrementalPortfolioCompiler(viewCompilationContext, previous, changed, versionCorrection);
+        if (!compiler.isDirty()) {
+          s_logger.info("No changes to {}; previous compilation is still valid", viewDefinition.getName());
+          timer.finished();
+          return previous;
         }
-        if (OUTPUT_FAILURE_REPORTS) {
-          outputFailureReports(viewCompilationContext.getBuilders());
+        if (!compiler.isWorthwhile()) {
+          s_logger.info("Too many changes to {}; performing full compilation", viewDefinition.getName());
+          return fullCompile(viewCompilationContext, versionCorrection, timer);
         }
-        return _result;
+        long t = -System.nanoTime();
+        final Portfolio portfolio = compiler.execute();
+        t += System.nanoTime();
+        s_logger.info("Updated portfolio requirements after {}ms", (double) t / 1e6);
+        return complete(viewCompilationContext, portfolio, timer);
       }
+    };
+  }
 
-      @Override
-      public CompiledViewDefinitionWithGraphsImpl get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-        throw new UnsupportedOperationException();
-      }
+  private static CompiledViewDefinitionWithGraphsImpl fullCompile(final ViewCompilationContext viewCompilationContext, final VersionCorrection versionCorrection, final OperationTimer timer) {
+    long t = -System.nanoTime();
+    EnumSet<ComputationTargetType> specificTargetTypes = SpecificRequirementsCompiler.execute(viewCompilationContext);
+    t += System.nanoTime();
+    s_logger.info("Added specific requirements after {}ms", (double) t / 1e6);
+    t -= System.nanoTime();
+    boolean requirePortfolioResolution = specificTargetTypes.contains(ComputationTargetType.PORTFOLIO_NODE) || specificTargetTypes.contains(ComputationTargetType.POSITION);
+    Portfolio portfolio = PortfolioCompiler.execute(viewCompilationContext, versionCorrection, requirePortfolioResolution);
+    t += System.nanoTime();
+    s_logger.info("Added portfolio requirements after {}ms", (double) t / 1e6);
+    return complete(viewCompilationContext, portfolio, timer);
+  }
 
-    };
+  private static CompiledViewDefinitionWithGraphsImpl complete(final ViewCompilationContext viewCompilationContext, final Portfolio portfolio, final OperationTimer timer) {
+    long t = -System.nanoTime();
+    Map<String, DependencyGraph> graphsByConfiguration = processDependencyGraphs(viewCompilationContext);
+    t += System.nanoTime();
+    s_logger.info("Processed dependency graphs after {}ms", (double) t / 1e6);
+    timer.finished();
+    final ViewCompilationServices compilationServices = viewCompilationContext.getServices();
+    final CompiledViewDefinitionWithGraphsImpl result = new CompiledViewDefinitionWithGraphsImpl(viewCompilationContext.getViewDefinition(), graphsByConfiguration, portfolio,
+        compilationServices.getFunctionCompilationContext().getFunctionInitId());
+    if (OUTPUT_DEPENDENCY_GRAPHS) {
+      outputDependencyGraphs(graphsByConfiguration);
+    }
+    if (OUTPUT_LIVE_DATA_REQUIREMENTS) {
+      outputLiveDataRequirements(graphsByConfiguration, compilationServices.getComputationTargetResolver().getSecuritySource());
+    }
+    if (OUTPUT_FAILURE_REPORTS) {
+      outputFailureReports(viewCompilationContext.getBuilders());
+    }
+    return result;
   }
 
   public static CompiledViewDefinitionWithGraphsImpl compile(ViewDefinition viewDefinition, ViewCompilationServices compilationServices, Instant valuationTime, VersionCorrection versionCorrection) {
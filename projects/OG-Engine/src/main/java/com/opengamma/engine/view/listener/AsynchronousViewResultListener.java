@@ -0,0 +1,499 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.listener;
+
+import java.util.LinkedList;
+import java.util.ListIterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.time.Instant;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Function;
+import com.opengamma.engine.view.ViewComputationResultModel;
+import com.opengamma.engine.view.ViewDeltaResultModel;
+import com.opengamma.engine.view.calc.ViewCycleMetadata;
+import com.opengamma.engine.view.compilation.CompiledViewDefinition;
+import com.opengamma.engine.view.execution.ViewCycleExecutionOptions;
+import com.opengamma.livedata.UserPrincipal;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Delivers view process updates to an underlying listener from an executor, so that the thread producing the updates
+ * is not held up by a slow consumer.
+ * <p>
+ * Updates are queued in the order they arrive and delivered one at a time, so the underlying listener is never called
+ * concurrently. The queue is bounded by a capacity on the number of pending calls; what happens to a result when the
+ * queue is full is decided by the {@link OverflowPolicy}. Calls other than results are always queued, as there are
+ * few of them and their order matters.
+ * <p>
+ * Results are only ever coalesced with those of the same cycle, or of a whole cycle that is still pending. When the
+ * queue is full and a cycle starts while the previous cycle's calls are all still pending, that cycle is reopened: its
+ * cycle started call takes the new cycle's metadata, the new cycle's fragments are merged into its last fragment and
+ * its completed call is held back until the new cycle completes and can be combined with it. The listener so sees
+ * one cycle in place of the two.
+ */
+public class AsynchronousViewResultListener implements ViewResultListener {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(AsynchronousViewResultListener.class);
+
+  /**
+   * What to do with a result when the queue of pending calls is full.
+   */
+  public static enum OverflowPolicy {
+    /**
+     * Replace the pending result with the latest one. A replaced full result is discarded along with its delta, so the
+     * delta delivered only describes the changes in the latest cycle.
+     */
+    CONFLATE,
+    /**
+     * Merge the latest result into the pending one, combining the deltas with a
+     * {@link com.opengamma.engine.view.client.merging.ViewDeltaResultModelMerger}.
+     */
+    MERGE,
+    /**
+     * Block the caller until there is space in the queue.
+     */
+    BLOCK
+  }
+
+  private static final class PendingCall {
+
+    private final Function<ViewResultListener, ?> _call;
+    private final long _enqueueNanos;
+
+    public PendingCall(final Function<ViewResultListener, ?> call) {
+      this(call, System.nanoTime());
+    }
+
+    public PendingCall(final Function<ViewResultListener, ?> call, final long enqueueNanos) {
+      _call = call;
+      _enqueueNanos = enqueueNanos;
+    }
+
+  }
+
+  private final ViewResultListener _underlying;
+  private final Executor _executor;
+  private final int _capacity;
+  private final OverflowPolicy _overflowPolicy;
+  private final ReentrantLock _lock = new ReentrantLock();
+  private final Condition _notFull = _lock.newCondition();
+  private final LinkedList<PendingCall> _queue = new LinkedList<PendingCall>();
+  private final Runnable _deliver = new Runnable() {
+    @Override
+    public void run() {
+      deliver();
+    }
+  };
+  private boolean _delivering;
+  /**
+   * The completed call of a pending cycle that has been reopened, to be combined with the result of the cycle that
+   * reopened it. Not in the queue while held.
+   */
+  private PendingCall _heldCompleted;
+  private int _maxQueueDepth;
+  private long _deliveredCount;
+  private long _coalescedCount;
+  private long _lastDeliveryLagNanos;
+  private long _maxDeliveryLagNanos;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param underlying the listener to deliver to, not null
+   * @param executor the executor to deliver from, not null
+   * @param capacity the maximum number of pending results before the overflow policy applies, at least 1
+   * @param overflowPolicy the overflow policy, not null
+   */
+  public AsynchronousViewResultListener(final ViewResultListener underlying, final Executor executor, final int capacity, final OverflowPolicy overflowPolicy) {
+    ArgumentChecker.notNull(underlying, "underlying");
+    ArgumentChecker.notNull(executor, "executor");
+    ArgumentChecker.isTrue(capacity > 0, "capacity");
+    ArgumentChecker.notNull(overflowPolicy, "overflowPolicy");
+    _underlying = underlying;
+    _executor = executor;
+    _capacity = capacity;
+    _overflowPolicy = overflowPolicy;
+  }
+
+  public ViewResultListener getUnderlying() {
+    return _underlying;
+  }
+
+  public int getCapacity() {
+    return _capacity;
+  }
+
+  public OverflowPolicy getOverflowPolicy() {
+    return _overflowPolicy;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Returns the number of calls waiting to be delivered.
+   *
+   * @return the queue depth
+   */
+  public int getQueueDepth() {
+    _lock.lock();
+    try {
+      return _queue.size();
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the largest number of calls there have been waiting to be delivered.
+   *
+   * @return the maximum queue depth
+   */
+  public int getMaxQueueDepth() {
+    _lock.lock();
+    try {
+      return _maxQueueDepth;
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the number of calls delivered to the underlying listener.
+   *
+   * @return the delivered count
+   */
+  public long getDeliveredCount() {
+    _lock.lock();
+    try {
+      return _deliveredCount;
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the number of results that were conflated or merged into a pending result rather than queued.
+   *
+   * @return the coalesced count
+   */
+  public long getCoalescedCount() {
+    _lock.lock();
+    try {
+      return _coalescedCount;
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * Returns how long the oldest pending call has been waiting to be delivered. A result that others have been conflated
+   * or merged into keeps the age of the first.
+   *
+   * @return the current lag in milliseconds, 0 if nothing is waiting
+   */
+  public long getCurrentLagMillis() {
+    _lock.lock();
+    try {
+      if (_queue.isEmpty()) {
+        return 0;
+      }
+      return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - _queue.getFirst()._enqueueNanos);
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * Returns how long the most recently delivered call waited before delivery started.
+   *
+   * @return the lag in milliseconds
+   */
+  public long getLastDeliveryLagMillis() {
+    _lock.lock();
+    try {
+      return TimeUnit.NANOSECONDS.toMillis(_lastDeliveryLagNanos);
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the longest that any delivered call waited before delivery started.
+   *
+   * @return the lag in milliseconds
+   */
+  public long getMaxDeliveryLagMillis() {
+    _lock.lock();
+    try {
+      return TimeUnit.NANOSECONDS.toMillis(_maxDeliveryLagNanos);
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * Discards any calls that have not yet been delivered. A call that is being delivered will complete.
+   */
+  public void discard() {
+    _lock.lock();
+    try {
+      _queue.clear();
+      _heldCompleted = null;
+      _notFull.signalAll();
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  private void enqueue(final Function<ViewResultListener, ?> call) {
+    _lock.lock();
+    try {
+      releaseHeldCompleted();
+      enqueueLocked(call);
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  private void enqueueLocked(final Function<ViewResultListener, ?> call) {
+    // Caller must hold the lock
+    enqueueLocked(new PendingCall(call));
+  }
+
+  private void enqueueLocked(final PendingCall pending) {
+    // Caller must hold the lock
+    _queue.add(pending);
+    if (_queue.size() > _maxQueueDepth) {
+      _maxQueueDepth = _queue.size();
+    }
+    if (!_delivering) {
+      _delivering = true;
+      _executor.execute(_deliver);
+    }
+  }
+
+  /**
+   * Queues the completed call of a reopened cycle if the cycle that reopened it is not going to complete normally.
+   */
+  private void releaseHeldCompleted() {
+    // Caller must hold the lock
+    if (_heldCompleted != null) {
+      enqueueLocked(_heldCompleted);
+      _heldCompleted = null;
+    }
+  }
+
+  /**
+   * Returns the last pending call if it is of a given type. Only the last call can be coalesced with, anything before it
+   * belonging to an earlier cycle or being separated from the new call by a cycle boundary.
+   */
+  private PendingCall getLastPending(final Class<?> callType) {
+    // Caller must hold the lock
+    if (_queue.isEmpty()) {
+      return null;
+    }
+    final PendingCall last = _queue.getLast();
+    return callType.isInstance(last._call) ? last : null;
+  }
+
+  /**
+   * Reopens the last pending cycle if all of its calls, from its cycle started call to its cycle completed call, are still
+   * pending.
+   */
+  private boolean reopenPendingCycle(final ViewCycleMetadata cycleMetadata) {
+    // Caller must hold the lock
+    if (getLastPending(CycleCompletedCall.class) == null) {
+      return false;
+    }
+    final ListIterator<PendingCall> itr = _queue.listIterator(_queue.size() - 1);
+    while (itr.hasPrevious()) {
+      final PendingCall pending = itr.previous();
+      if (pending._call instanceof CycleStartedCall) {
+        itr.set(new PendingCall(new CycleStartedCall(cycleMetadata), pending._enqueueNanos));
+        _heldCompleted = _queue.removeLast();
+        return true;
+      }
+      if (!(pending._call instanceof CycleFragmentCompletedCall)) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  private boolean isFull() {
+    // Caller must hold the lock
+    return _queue.size() >= _capacity;
+  }
+
+  private void awaitNotFull() {
+    // Caller must hold the lock
+    while (isFull()) {
+      try {
+        _notFull.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  private void deliver() {
+    while (true) {
+      final PendingCall call;
+      _lock.lock();
+      try {
+        call = _queue.poll();
+        if (call == null) {
+          _delivering = false;
+          return;
+        }
+        _notFull.signalAll();
+        _lastDeliveryLagNanos = System.nanoTime() - call._enqueueNanos;
+        if (_lastDeliveryLagNanos > _maxDeliveryLagNanos) {
+          _maxDeliveryLagNanos = _lastDeliveryLagNanos;
+        }
+        _deliveredCount++;
+      } finally {
+        _lock.unlock();
+      }
+      try {
+        call._call.apply(getUnderlying());
+      } catch (Exception e) {
+        s_logger.error("Error while calling listener " + getUnderlying(), e);
+      }
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public UserPrincipal getUser() {
+    return getUnderlying().getUser();
+  }
+
+  @Override
+  public void viewDefinitionCompiled(final CompiledViewDefinition compiledViewDefinition, final boolean hasMarketDataPermissions) {
+    enqueue(new ViewDefinitionCompiledCall(compiledViewDefinition, hasMarketDataPermissions));
+  }
+
+  @Override
+  public void viewDefinitionCompilationFailed(final Instant valuationTime, final Exception exception) {
+    enqueue(new ViewDefinitionCompilationFailedCall(valuationTime, exception));
+  }
+
+  @Override
+  public void cycleStarted(final ViewCycleMetadata cycleMetadata) {
+    _lock.lock();
+    try {
+      // A reopened cycle that never completed is delivered as it was
+      releaseHeldCompleted();
+      if (isFull()) {
+        if (getOverflowPolicy() == OverflowPolicy.BLOCK) {
+          awaitNotFull();
+        } else if (reopenPendingCycle(cycleMetadata)) {
+          _coalescedCount++;
+          return;
+        }
+      }
+      enqueueLocked(new CycleStartedCall(cycleMetadata));
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  @Override
+  public void cycleFragmentCompleted(final ViewComputationResultModel fullFragment, final ViewDeltaResultModel deltaFragment) {
+    _lock.lock();
+    try {
+      if (isFull()) {
+        if (getOverflowPolicy() == OverflowPolicy.BLOCK) {
+          awaitNotFull();
+        } else {
+          // Fragments are disjoint so are always merged; conflating them would lose values
+          final PendingCall pending = getLastPending(CycleFragmentCompletedCall.class);
+          if (pending != null) {
+            ((CycleFragmentCompletedCall) pending._call).update(fullFragment, deltaFragment);
+            _coalescedCount++;
+            return;
+          }
+        }
+      }
+      enqueueLocked(new CycleFragmentCompletedCall(fullFragment, deltaFragment));
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  @Override
+  public void cycleCompleted(final ViewComputationResultModel fullResult, final ViewDeltaResultModel deltaResult) {
+    _lock.lock();
+    try {
+      PendingCall pending = _heldCompleted;
+      if (pending != null) {
+        // Completes the reopened cycle, whether or not the queue is still full
+        _heldCompleted = null;
+        enqueueLocked(coalesceCompleted(pending, fullResult, deltaResult));
+        return;
+      }
+      if (isFull()) {
+        if (getOverflowPolicy() == OverflowPolicy.BLOCK) {
+          awaitNotFull();
+        } else {
+          pending = getLastPending(CycleCompletedCall.class);
+          if (pending != null) {
+            _queue.set(_queue.size() - 1, coalesceCompleted(pending, fullResult, deltaResult));
+            _coalescedCount++;
+            return;
+          }
+        }
+      }
+      enqueueLocked(new CycleCompletedCall(fullResult, deltaResult));
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  private PendingCall coalesceCompleted(final PendingCall pending, final ViewComputationResultModel fullResult, final ViewDeltaResultModel deltaResult) {
+    if (getOverflowPolicy() == OverflowPolicy.MERGE) {
+      ((CycleCompletedCall) pending._call).update(fullResult, deltaResult);
+      return pending;
+    } else {
+      return new PendingCall(new CycleCompletedCall(fullResult, deltaResult), pending._enqueueNanos);
+    }
+  }
+
+  @Override
+  public void cycleExecutionFailed(final ViewCycleExecutionOptions executionOptions, final Exception exception) {
+    enqueue(new CycleExecutionFailedCall(executionOptions, exception));
+  }
+
+  @Override
+  public void processCompleted() {
+    enqueue(new ProcessCompletedCall());
+  }
+
+  @Override
+  public void processTerminated(final boolean executionInterrupted) {
+    enqueue(new ProcessTerminatedCall(executionInterrupted));
+  }
+
+  @Override
+  public void clientShutdown(final Exception e) {
+    enqueue(new ClientShutdownCall(e));
+  }
+
+  @Override
+  public String toString() {
+    return "AsynchronousViewResultListener[" + getUnderlying() + "]";
+  }
+
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.depgraph;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.time.Instant;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Supplier;
+import com.opengamma.engine.ComputationTarget;
+import com.opengamma.engine.MapComputationTargetResolver;
+import com.opengamma.engine.function.CachingFunctionRepositoryCompiler;
+import com.opengamma.engine.function.CompiledFunctionService;
+import com.opengamma.engine.function.FunctionCompilationContext;
+import com.opengamma.engine.function.FunctionExecutionContext;
+import com.opengamma.engine.function.FunctionInputs;
+import com.opengamma.engine.function.InMemoryFunctionRepository;
+import com.opengamma.engine.function.resolver.DefaultFunctionResolver;
+import com.opengamma.engine.marketdata.availability.FixedMarketDataAvailabilityProvider;
+import com.opengamma.engine.value.ComputedValue;
+import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.id.UniqueId;
+import com.opengamma.util.test.Benchmark;
+
+/**
+ * Times the construction of a dependency graph for a synthetic portfolio of 100,000 targets with each of the run queue implementations, logging the
+ * {@link BuildFractionEstimate} as the build progresses. The build times are also recorded with {@link Benchmark}. This is not run as part of the normal build.
+ */
+@Test(enabled = false)
+public class DependencyGraphBuildSpeedTest extends AbstractDependencyGraphBuilderTest {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(DependencyGraphBuildSpeedTest.class);
+
+  private static final int TARGETS = 100000;
+  private static final long SAMPLE_PERIOD = 250L;
+
+  private static final String VALUE = "Value";
+  private static final String INPUT = "Input";
+
+  private final Benchmark _benchmark = new Benchmark("DependencyGraphBuilder", 1, 3);
+
+  private static final class ValueFunction extends TestFunction {
+
+    @Override
+    public Set<ComputedValue> execute(FunctionExecutionContext executionContext, FunctionInputs inputs, ComputationTarget target, Set<ValueRequirement> desiredValues) {
+      return null;
+    }
+
+    @Override
+    public Set<ValueRequirement> getRequirements(FunctionCompilationContext context, ComputationTarget target, ValueRequirement desiredValue) {
+      return Collections.singleton(new ValueRequirement(INPUT, target.toSpecification()));
+    }
+
+    @Override
+    public Set<ValueSpecification> getResults(FunctionCompilationContext context, ComputationTarget target) {
+      return Collections.singleton(new ValueSpecification(VALUE, target.toSpecification(), createValueProperties().get()));
+    }
+
+  }
+
+  private static final class InputFunction extends TestFunction {
+
+    @Override
+    public Set<ComputedValue> execute(FunctionExecutionContext executionContext, FunctionInputs inputs, ComputationTarget target, Set<ValueRequirement> desiredValues) {
+      return null;
+    }
+
+    @Override
+    public Set<ValueRequirement> getRequirements(FunctionCompilationContext context, ComputationTarget target, ValueRequirement desiredValue) {
+      return Collections.emptySet();
+    }
+
+    @Override
+    public Set<ValueSpecification> getResults(FunctionCompilationContext context, ComputationTarget target) {
+      return Collections.singleton(new ValueSpecification(INPUT, target.toSpecification(), createValueProperties().get()));
+    }
+
+  }
+
+  private DependencyGraphBuilder createBuilder(final RunQueueFactory runQueue, final Set<ValueRequirement> requirements) {
+    final DependencyGraphBuilderFactory factory = new DependencyGraphBuilderFactory();
+    factory.setRunQueueFactory(runQueue);
+    final DependencyGraphBuilder builder = factory.newInstance();
+    builder.setMarketDataAvailabilityProvider(new FixedMarketDataAvailabilityProvider());
+    final FunctionCompilationContext context = new FunctionCompilationContext();
+    final MapComputationTargetResolver targetResolver = new MapComputationTargetResolver();
+    context.setComputationTargetResolver(targetResolver);
+    builder.setCompilationContext(context);
+    final InMemoryFunctionRepository functions = new InMemoryFunctionRepository();
+    functions.addFunction(new ValueFunction());
+    functions.addFunction(new InputFunction());
+    final CompiledFunctionService compilationService = new CompiledFunctionService(functions, new CachingFunctionRepositoryCompiler(), context);
+    compilationService.initialize();
+    builder.setFunctionResolver(new DefaultFunctionResolver(compilationService).compile(Instant.now()));
+    builder.setCalculationConfigurationName("Default");
+    for (int i = 0; i < TARGETS; i++) {
+      final ComputationTarget target = new ComputationTarget(UniqueId.of("Test", Integer.toString(i)));
+      targetResolver.addTarget(target);
+      requirements.add(new ValueRequirement(VALUE, target.toSpecification()));
+    }
+    return builder;
+  }
+
+  private void testBuild(final String name, final RunQueueFactory runQueue) throws InterruptedException {
+    final Set<ValueRequirement> requirements = new HashSet<ValueRequirement>();
+    final DependencyGraphBuilder builder = createBuilder(runQueue, requirements);
+    final Supplier<Double> estimate = builder.buildFractionEstimate();
+    final long start = System.nanoTime();
+    builder.addTarget(requirements);
+    while (!builder.isGraphBuilt()) {
+      s_logger.info("{} at {}ms: {}", new Object[] {name, (System.nanoTime() - start) / 1000000L, estimate.get() });
+      Thread.sleep(SAMPLE_PERIOD);
+    }
+    final DependencyGraph graph = builder.getDependencyGraph();
+    s_logger.info("{} built {} nodes in {}ms", new Object[] {name, graph.getSize(), (System.nanoTime() - start) / 1000000L });
+    assertEquals(TARGETS * 2, graph.getSize());
+  }
+
+  private void benchmarkBuild(final String name, final RunQueueFactory runQueue) {
+    _benchmark.run(name, TARGETS, new Benchmark.Task() {
+      @Override
+      public Object run() {
+        final Set<ValueRequirement> requirements = new HashSet<ValueRequirement>();
+        final DependencyGraphBuilder builder = createBuilder(runQueue, requirements);
+        builder.addTarget(requirements);
+        return builder.getDependencyGraph();
+      }
+    });
+  }
+
+  public void testBenchmark() {
+    benchmarkBuild("ConcurrentLinkedQueue", RunQueueFactory.getConcurrentLinkedQueue());
+    benchmarkBuild("ConcurrentStack", RunQueueFactory.getConcurrentStack());
+    benchmarkBuild("Ordered", RunQueueFactory.getOrdered());
+    benchmarkBuild("WorkStealing", RunQueueFactory.getWorkStealing());
+  }
+
+  public void testConcurrentLinkedQueue() throws InterruptedException {
+    testBuild("ConcurrentLinkedQueue", RunQueueFactory.getConcurrentLinkedQueue());
+  }
+
+  public void testConcurrentStack() throws InterruptedException {
+    testBuild("ConcurrentStack", RunQueueFactory.getConcurrentStack());
+  }
+
+  public void testOrdered() throws InterruptedException {
+    testBuild("Ordered", RunQueueFactory.getOrdered());
+  }
+
+  public void testWorkStealing() throws InterruptedException {
+    testBuild("WorkStealing", RunQueueFactory.getWorkStealing());
+  }
+
+}
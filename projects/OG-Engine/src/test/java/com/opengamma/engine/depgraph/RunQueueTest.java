@@ -7,10 +7,12 @@ package com.opengamma.engine.depgraph;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -174,4 +176,29 @@ public class RunQueueTest {
     testLIFO(RunQueueFactory.getOrdered());
   }
 
+  public void testWorkStealingRunQueue() {
+    testSpeed(RunQueueFactory.getWorkStealing());
+    testLIFO(RunQueueFactory.getWorkStealing());
+  }
+
+  public void testWorkStealingRunQueueSteal() throws Exception {
+    final RunQueue queue = new WorkStealingRunQueue(4);
+    final ContextRunnable r1 = runnable();
+    final ContextRunnable r2 = runnable();
+    queue.add(r1);
+    queue.add(r2);
+    // Another thread will take from its own deque or steal from this thread's deque
+    final ContextRunnable stolen = _executor.submit(new Callable<ContextRunnable>() {
+      @Override
+      public ContextRunnable call() {
+        return queue.take();
+      }
+    }).get();
+    assertTrue((stolen == r1) || (stolen == r2));
+    assertEquals(queue.size(), 1);
+    assertSame(queue.take(), (stolen == r1) ? r2 : r1);
+    assertTrue(queue.isEmpty());
+    assertNull(queue.take());
+  }
+
 }
@@ -38,6 +38,7 @@ public class DependencyGraphBuilderTest extends AbstractFudgeBuilderTestCase {
     assertEquals(graph.getOutputSpecifications(), cycledGraph.getOutputSpecifications());
     assertEquals(graph.getSize(), cycledGraph.getSize());
     assertEquals(graph.getTerminalOutputSpecifications(), cycledGraph.getTerminalOutputSpecifications());
+    assertEquals(graph.getTerminalOutputs(), cycledGraph.getTerminalOutputs());
     
     for (DependencyNode node : graph.getDependencyNodes()) {
       boolean isRoot = graph.getRootNodes().contains(node);
@@ -311,6 +311,16 @@ public class ValuePropertiesTest {
   
 
   
+  public void testInterned() {
+    final ValueProperties a = ValueProperties.with("A", "1", "2").with("B", "3").withOptional("C").get();
+    final ValueProperties b = ValueProperties.with("B", "3").with("A", "2").with("A", "1").withOptional("C").get();
+    assertSame(a, b);
+    assertSame(a, ValueProperties.parse(a.toString()));
+    assertSame(a.getValues("B"), ValueProperties.with("B", "3").get().getValues("B"));
+    final ValueProperties composed = ValueProperties.with("A", "1", "2").get().compose(ValueProperties.with("A", "1").get());
+    assertSame(ValueProperties.with("A", "1").get(), composed);
+  }
+
   @Test(expectedExceptions = IllegalArgumentException.class)
   public void testParseInvalidNoValue() {
     ValueProperties.parse("ValueName=[");
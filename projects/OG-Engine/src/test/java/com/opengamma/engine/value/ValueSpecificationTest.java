@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.value;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotSame;
+import static org.testng.AssertJUnit.assertSame;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.ComputationTargetType;
+import com.opengamma.id.UniqueId;
+
+/**
+ * Tests for the {@link ValueSpecification} class.
+ */
+@Test
+public class ValueSpecificationTest {
+
+  private static ValueSpecification create(final String value, final String function) {
+    return new ValueSpecification(value, new ComputationTargetSpecification(ComputationTargetType.PRIMITIVE, UniqueId.of("Test", "1")), ValueProperties.with(
+        ValuePropertyNames.FUNCTION, function).get());
+  }
+
+  public void testEquals() {
+    final ValueSpecification a = create("Foo", "F1");
+    final ValueSpecification b = create("Foo", "F1");
+    assertNotSame(a, b);
+    assertEquals(a, b);
+    assertEquals(a.hashCode(), b.hashCode());
+    assertSame(a.getProperties(), b.getProperties());
+    assertFalse(a.equals(create("Bar", "F1")));
+    assertFalse(a.equals(create("Foo", "F2")));
+  }
+
+  public void testInterned() {
+    final ValueSpecification a = ValueSpecification.getInterned(create("Foo", "F1"));
+    assertSame(a, ValueSpecification.getInterned(create("Foo", "F1")));
+    assertSame(a, ValueSpecification.getInterned(a));
+    assertNotSame(a, ValueSpecification.getInterned(create("Foo", "F2")));
+  }
+
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.value;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.ComputationTargetType;
+import com.opengamma.id.UniqueId;
+import com.opengamma.util.test.Benchmark;
+
+/**
+ * Benchmarks the {@link ValueProperties} and {@link ValueSpecification} operations used heavily during graph construction and
+ * execution. This is not run as part of the normal build.
+ */
+@Test(enabled = false)
+public class ValueSpeedTest {
+
+  private static final int OPERATIONS = 100000;
+
+  private final Benchmark _benchmark = new Benchmark("Value");
+
+  private static ValueProperties[] createProperties() {
+    final ValueProperties[] properties = new ValueProperties[16];
+    for (int i = 0; i < properties.length; i++) {
+      properties[i] = ValueProperties.with(ValuePropertyNames.FUNCTION, "Function" + i).with(ValuePropertyNames.CURRENCY, "USD")
+          .with(ValuePropertyNames.CURVE, "Curve" + (i % 4)).with("Method", "A", "B").get();
+    }
+    return properties;
+  }
+
+  public void testCompose() {
+    final ValueProperties[] properties = createProperties();
+    final ValueProperties requirement = ValueProperties.with(ValuePropertyNames.CURRENCY, "USD").withAny(ValuePropertyNames.CURVE).with("Method", "A").get();
+    _benchmark.run("compose", OPERATIONS, new Benchmark.Task() {
+      @Override
+      public Object run() {
+        int hash = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+          hash += properties[i & 15].compose(requirement).hashCode();
+        }
+        return hash;
+      }
+    });
+  }
+
+  public void testIsSatisfiedBy() {
+    final ValueProperties[] properties = createProperties();
+    final ValueProperties requirement = ValueProperties.with(ValuePropertyNames.CURRENCY, "USD").with(ValuePropertyNames.CURVE, "Curve1").get();
+    _benchmark.run("isSatisfiedBy", OPERATIONS, new Benchmark.Task() {
+      @Override
+      public Object run() {
+        int satisfied = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+          if (requirement.isSatisfiedBy(properties[i & 15])) {
+            satisfied++;
+          }
+        }
+        return satisfied;
+      }
+    });
+  }
+
+  public void testSpecificationHashCode() {
+    final ValueProperties[] properties = createProperties();
+    final ComputationTargetSpecification[] targets = new ComputationTargetSpecification[256];
+    for (int i = 0; i < targets.length; i++) {
+      targets[i] = new ComputationTargetSpecification(ComputationTargetType.PRIMITIVE, UniqueId.of("Test", Integer.toString(i)));
+    }
+    _benchmark.run("ValueSpecification.hashCode", OPERATIONS, new Benchmark.Task() {
+      @Override
+      public Object run() {
+        int hash = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+          // A new specification each time as the hash code is cached
+          hash += new ValueSpecification(ValueRequirementNames.PRESENT_VALUE, targets[i & 255], properties[i & 15]).hashCode();
+        }
+        return hash;
+      }
+    });
+  }
+
+  public void testSpecificationSet() {
+    final ValueProperties[] properties = createProperties();
+    final ValueSpecification[] specifications = new ValueSpecification[OPERATIONS];
+    for (int i = 0; i < specifications.length; i++) {
+      final ComputationTargetSpecification target = new ComputationTargetSpecification(ComputationTargetType.PRIMITIVE, UniqueId.of("Test", Integer.toString(i)));
+      specifications[i] = new ValueSpecification(ValueRequirementNames.PRESENT_VALUE, target, properties[i & 15]);
+    }
+    _benchmark.run("ValueSpecification.HashSet", OPERATIONS, new Benchmark.Task() {
+      @Override
+      public Object run() {
+        final Set<ValueSpecification> set = new HashSet<ValueSpecification>();
+        for (ValueSpecification specification : specifications) {
+          set.add(specification);
+        }
+        return set.size();
+      }
+    });
+  }
+
+}
@@ -6,6 +6,7 @@
 package com.opengamma.engine.view.cache;
 
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
 import it.unimi.dsi.fastutil.longs.LongArraySet;
 
 import java.util.Arrays;
@@ -95,4 +96,40 @@ public class CachingValueSpecificationIdentifierSourceTest {
     
   }
 
+  @Test
+  public void arrayOperation() {
+    final AtomicBoolean shouldFail = new AtomicBoolean(false);
+    final ValueSpecification[] valueSpec = new ValueSpecification[6];
+    for (int i = 0; i < valueSpec.length; i++) {
+      valueSpec[i] = new ValueSpecification(new ValueRequirement("value" + i, new ComputationTargetSpecification(ComputationTargetType.PRIMITIVE, UniqueId.of("scheme", "fibble"))), "mockFunctionId");
+    }
+    final IdentifierMap underlying = new AbstractIdentifierMap() {
+
+      @Override
+      public long getIdentifier(ValueSpecification spec) {
+        if (shouldFail.get()) {
+          AssertJUnit.fail("Should not have called underlying.");
+        }
+        return Arrays.asList(valueSpec).indexOf(spec);
+      }
+
+      @Override
+      public ValueSpecification getValueSpecification(long identifier) {
+        if (shouldFail.get()) {
+          AssertJUnit.fail("Should not have called underlying.");
+        }
+        return valueSpec[(int) identifier];
+      }
+
+    };
+    final CachingIdentifierMap cachingSource = new CachingIdentifierMap(underlying);
+    assertEquals(2L, cachingSource.getIdentifier(valueSpec[2]));
+    assertTrue(Arrays.equals(new long[] {3L, 2L, 1L }, cachingSource.getIdentifiers(new ValueSpecification[] {valueSpec[3], valueSpec[2], valueSpec[1] })));
+    assertTrue(Arrays.equals(new ValueSpecification[] {valueSpec[5], valueSpec[3], valueSpec[4] }, cachingSource.getValueSpecifications(new long[] {5L, 3L, 4L })));
+    assertEquals(valueSpec[0], cachingSource.getValueSpecification(0L));
+    shouldFail.set(true);
+    assertTrue(Arrays.equals(new long[] {0L, 1L, 2L, 3L, 4L, 5L }, cachingSource.getIdentifiers(valueSpec)));
+    assertTrue(Arrays.equals(valueSpec, cachingSource.getValueSpecifications(new long[] {0L, 1L, 2L, 3L, 4L, 5L })));
+  }
+
 }
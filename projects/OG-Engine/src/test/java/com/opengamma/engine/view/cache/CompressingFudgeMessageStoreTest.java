@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.MutableFudgeMsg;
+import org.fudgemsg.wire.FudgeEncoded;
+import org.testng.annotations.Test;
+
+import com.opengamma.id.UniqueId;
+import com.opengamma.transport.DirectFudgeConnection;
+import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
+
+/**
+ * Tests the {@link CompressingFudgeMessageStore} and {@link FudgeMessageCompression} classes, locally and through a {@link FudgeMessageStoreServer}.
+ */
+@Test
+public class CompressingFudgeMessageStoreTest {
+
+  private final FudgeContext _fudgeContext = OpenGammaFudgeContext.getInstance();
+
+  private FudgeMsg createMessage(final int size) {
+    final MutableFudgeMsg msg = _fudgeContext.newMessage();
+    for (int i = 0; i < size; i++) {
+      msg.add("label", "com.opengamma.util.time.Tenor");
+      msg.add("value", (double) i);
+    }
+    return msg;
+  }
+
+  private void assertMessage(final int size, final FudgeMsg msg) {
+    assertEquals(size * 2, msg.getNumFields());
+    assertEquals((double) (size - 1), msg.getAllByName("value").get(size - 1).getValue());
+  }
+
+  public void testSmallMessage() {
+    final FudgeMessageCompression compression = new FudgeMessageCompression(_fudgeContext, 1024);
+    final FudgeMsg msg = createMessage(1);
+    final FudgeMsg uncompressed = compression.compress(msg);
+    assertFalse(FudgeMessageCompression.isCompressed(uncompressed));
+    // Passed on in the encoded form so the store need not encode it again
+    assertTrue(uncompressed instanceof FudgeEncoded);
+    assertTrue(uncompressed == compression.compress(uncompressed));
+    assertMessage(1, uncompressed);
+    assertEquals(0, compression.getMessagesCompressed());
+  }
+
+  public void testLargeMessage() {
+    final FudgeMessageCompression compression = new FudgeMessageCompression(_fudgeContext, 1024);
+    final FudgeMsg msg = createMessage(1000);
+    final FudgeMsg compressed = compression.compress(msg);
+    assertTrue(FudgeMessageCompression.isCompressed(compressed));
+    assertFalse(FudgeMessageCompression.isCompressed(msg));
+    assertEquals(1, compression.getMessagesCompressed());
+    assertTrue(compression.getBytesAfterCompression() < compression.getBytesBeforeCompression());
+    assertMessage(1000, compression.expand(compressed));
+    assertEquals(1, compression.getMessagesExpanded());
+  }
+
+  public void testStore() {
+    final FudgeMessageCompression compression = new FudgeMessageCompression(_fudgeContext, 1024);
+    final DefaultFudgeMessageStore underlying = new DefaultFudgeMessageStore(new InMemoryBinaryDataStore(), _fudgeContext);
+    final CompressingFudgeMessageStore store = new CompressingFudgeMessageStore(underlying, compression);
+    final FudgeMsg small = createMessage(1);
+    final FudgeMsg large = createMessage(1000);
+    store.put(1L, small);
+    store.put(new long[] {2L }, new FudgeMsg[] {large });
+    assertFalse(FudgeMessageCompression.isCompressed(underlying.get(1L)));
+    assertTrue(FudgeMessageCompression.isCompressed(underlying.get(2L)));
+    final FudgeMsg[] values = store.get(new long[] {1L, 2L, 3L });
+    assertMessage(1, values[0]);
+    assertMessage(1000, values[1]);
+    assertNull(values[2]);
+    assertMessage(1000, store.get(2L));
+  }
+
+  public void testRemote() {
+    final FudgeMessageCompression serverCompression = new FudgeMessageCompression(_fudgeContext, 1024);
+    final InMemoryViewComputationCacheSource server = new InMemoryViewComputationCacheSource(_fudgeContext, serverCompression);
+    final DirectFudgeConnection conduit = new DirectFudgeConnection(_fudgeContext);
+    conduit.connectEnd2(new ViewComputationCacheServer(server));
+    final RemoteCacheClient client = new RemoteCacheClient(conduit.getEnd1());
+    final ViewComputationCacheKey key = new ViewComputationCacheKey(UniqueId.of("Test", "ViewCycle"), "Default");
+    final FudgeMessageStore remote = new RemoteFudgeMessageStoreFactory(client).createMessageStore(key);
+    final FudgeMessageCompression clientCompression = new FudgeMessageCompression(_fudgeContext, 1024);
+    final FudgeMessageStore store = new CompressingFudgeMessageStore(remote, clientCompression);
+    // Written by a calculation node; held by the server as sent
+    store.put(1L, createMessage(1));
+    store.put(2L, createMessage(1000));
+    assertEquals(1, clientCompression.getMessagesCompressed());
+    final DefaultViewComputationCache cache = server.getCache(key);
+    final FudgeMessageStore serverStore = cache.getSharedDataStore();
+    assertTrue(FudgeMessageCompression.isCompressed(((CompressingFudgeMessageStore) serverStore).getUnderlying().get(2L)));
+    // Read by the view processor
+    assertMessage(1, serverStore.get(1L));
+    assertMessage(1000, serverStore.get(2L));
+    assertEquals(0, serverCompression.getMessagesCompressed());
+    // Written by the view processor; sent to the calculation nodes compressed
+    serverStore.put(3L, createMessage(1000));
+    assertEquals(1, serverCompression.getMessagesCompressed());
+    assertTrue(FudgeMessageCompression.isCompressed(remote.get(3L)));
+    assertTrue(FudgeMessageCompression.isCompressed(remote.get(2L)));
+    final FudgeMsg[] values = store.get(new long[] {1L, 2L, 3L });
+    assertMessage(1, values[0]);
+    assertMessage(1000, values[1]);
+    assertMessage(1000, values[2]);
+  }
+
+}
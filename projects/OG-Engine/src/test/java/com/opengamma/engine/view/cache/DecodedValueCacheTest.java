@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests the {@link DecodedValueCache} class.
+ */
+@Test
+public class DecodedValueCacheTest {
+
+  public void testPrivateShared() {
+    final DecodedValueCache cache = new DecodedValueCache(100, 0);
+    cache.put(1L, "Foo", 10, true);
+    cache.put(2L, "Bar", 10, false);
+    assertEquals("Foo", cache.get(1L));
+    assertEquals("Foo", cache.get(1L, true));
+    assertNull(cache.get(1L, false));
+    assertEquals("Bar", cache.get(2L));
+    assertEquals("Bar", cache.get(2L, false));
+    assertNull(cache.get(2L, true));
+  }
+
+  public void testMinimumSize() {
+    final DecodedValueCache cache = new DecodedValueCache(100, 10);
+    cache.put(1L, "Foo", 9, true);
+    cache.put(2L, "Bar", -1, true);
+    cache.put(3L, "Cow", 101, true);
+    assertNull(cache.get(1L));
+    assertNull(cache.get(2L));
+    assertNull(cache.get(3L));
+    assertEquals(0, cache.getSize());
+  }
+
+  public void testEviction() {
+    final DecodedValueCache cache = new DecodedValueCache(100, 0);
+    cache.put(1L, "A", 40, true);
+    cache.put(2L, "B", 40, true);
+    // Touch the first so that the second is the least recently used
+    assertEquals("A", cache.get(1L));
+    cache.put(3L, "C", 40, true);
+    assertEquals(80, cache.getSize());
+    assertEquals("A", cache.get(1L));
+    assertNull(cache.get(2L));
+    assertEquals("C", cache.get(3L));
+  }
+
+  public void testRemoveAndClear() {
+    final DecodedValueCache cache = new DecodedValueCache(100, 0);
+    cache.put(1L, "A", 40, true);
+    cache.put(2L, "B", 40, true);
+    cache.put(2L, "B2", 30, true);
+    assertEquals(70, cache.getSize());
+    cache.remove(1L);
+    assertNull(cache.get(1L));
+    assertEquals(30, cache.getSize());
+    cache.clear();
+    assertNull(cache.get(2L));
+    assertEquals(0, cache.getSize());
+  }
+
+}
@@ -8,6 +8,7 @@ package com.opengamma.engine.view.cache;
 import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertNotNull;
 import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -218,4 +219,58 @@ public class DefaultViewComputationCacheTest {
     assertPutValues (2, CacheSelectHint.sharedValues(Arrays.asList (valueSpecFoo)), CacheSelectHint.privateValues(Arrays.asList(valueSpecFoo)));
   }
 
+  @Test
+  public void testDecodedValuesPrivate() {
+    _viewComputationCache.setDecodedValueCache(new DecodedValueCache(1024, 0));
+    assertPutValues (0, CacheSelectHint.allPrivate (), CacheSelectHint.allShared ());
+  }
+
+  @Test
+  public void testDecodedValuesShared() {
+    _viewComputationCache.setDecodedValueCache(new DecodedValueCache(1024, 0));
+    assertPutValues (1, CacheSelectHint.allShared (), CacheSelectHint.allPrivate ());
+  }
+
+  @Test
+  public void testDecodedValueReused() {
+    _viewComputationCache.setDecodedValueCache(new DecodedValueCache(1024, 0));
+    final ValueSpecification valueSpec = new ValueSpecification(new ValueRequirement("foo", new ComputationTargetSpecification(null)), "mockFunctionId");
+    final Bean bean = new Bean();
+    bean.setFoo(42.0);
+    _viewComputationCache.putSharedValue(new ComputedValue(valueSpec, bean));
+    final Object first = _viewComputationCache.getValue(valueSpec);
+    assertEquals(bean, first);
+    assertSame(first, _viewComputationCache.getValue(valueSpec));
+    assertSame(first, _viewComputationCache.getValue(valueSpec, CacheSelectHint.allShared()));
+    assertNull(_viewComputationCache.getValue(valueSpec, CacheSelectHint.allPrivate()));
+    // A new value must replace the decoded one
+    bean.setFoo(1.0);
+    _viewComputationCache.putSharedValue(new ComputedValue(valueSpec, bean));
+    assertEquals(bean, _viewComputationCache.getValue(valueSpec));
+  }
+
+  @Test
+  public void testCopySharedValues() {
+    _viewComputationCache.setDecodedValueCache(new DecodedValueCache(1024, 0));
+    final DefaultViewComputationCache copy = new DefaultViewComputationCache(_viewComputationCache.getIdentifierMap(), new DefaultFudgeMessageStore(
+        new InMemoryBinaryDataStore(), FudgeContext.GLOBAL_DEFAULT), new DefaultFudgeMessageStore(new InMemoryBinaryDataStore(), FudgeContext.GLOBAL_DEFAULT),
+        FudgeContext.GLOBAL_DEFAULT);
+    copy.setDecodedValueCache(new DecodedValueCache(1024, 0));
+    final ValueSpecification valueSpecFoo = new ValueSpecification(new ValueRequirement("foo", new ComputationTargetSpecification(null)), "mockFunctionId");
+    final ValueSpecification valueSpecBar = new ValueSpecification(new ValueRequirement("bar", new ComputationTargetSpecification(null)), "mockFunctionId");
+    final ValueSpecification valueSpecMissing = new ValueSpecification(new ValueRequirement("missing", new ComputationTargetSpecification(null)), "mockFunctionId");
+    final Bean bean = new Bean();
+    bean.setFoo(42.0);
+    _viewComputationCache.putSharedValue(new ComputedValue(valueSpecFoo, bean));
+    _viewComputationCache.putPrivateValue(new ComputedValue(valueSpecBar, "Bar"));
+    final Object decoded = _viewComputationCache.getValue(valueSpecFoo);
+    final Collection<ValueSpecification> notCopied = copy.copySharedValues(_viewComputationCache, Arrays.asList(valueSpecFoo, valueSpecBar, valueSpecMissing));
+    assertEquals(Arrays.asList(valueSpecMissing), notCopied);
+    // The decoded form is carried over rather than deserialized again
+    assertSame(decoded, copy.getValue(valueSpecFoo, CacheSelectHint.allShared()));
+    assertEquals("Bar", copy.getValue(valueSpecBar, CacheSelectHint.allShared()));
+    assertNull(copy.getValue(valueSpecBar, CacheSelectHint.allPrivate()));
+    assertNull(copy.getValue(valueSpecMissing));
+  }
+
 }
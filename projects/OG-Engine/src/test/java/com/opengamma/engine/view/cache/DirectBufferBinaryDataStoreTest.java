@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests the {@link DirectBufferBinaryDataStore} class.
+ */
+@Test
+public class DirectBufferBinaryDataStoreTest {
+
+  private static byte[] data(final int length, final int seed) {
+    final byte[] data = new byte[length];
+    for (int i = 0; i < length; i++) {
+      data[i] = (byte) (seed + i);
+    }
+    return data;
+  }
+
+  public void testSingleValues() {
+    final DirectBufferBinaryDataStoreFactory factory = new DirectBufferBinaryDataStoreFactory(64, 4);
+    final BinaryDataStore store = factory.createDataStore(null);
+    assertNull(store.get(1L));
+    for (int i = 0; i < 20; i++) {
+      store.put(i, data(i, i));
+    }
+    for (int i = 0; i < 20; i++) {
+      assertTrue(Arrays.equals(data(i, i), store.get(i)));
+    }
+    assertNull(store.get(20L));
+  }
+
+  public void testBulkValues() {
+    final DirectBufferBinaryDataStoreFactory factory = new DirectBufferBinaryDataStoreFactory(64, 4);
+    final BinaryDataStore store = factory.createDataStore(null);
+    final Map<Long, byte[]> values = new HashMap<Long, byte[]>();
+    for (int i = 0; i < 20; i++) {
+      values.put((long) i, data(i * 2, i));
+    }
+    store.put(values);
+    final Map<Long, byte[]> result = store.get(Arrays.asList(0L, 5L, 19L, 20L));
+    assertEquals(3, result.size());
+    assertTrue(Arrays.equals(data(0, 0), result.get(0L)));
+    assertTrue(Arrays.equals(data(10, 5), result.get(5L)));
+    assertTrue(Arrays.equals(data(38, 19), result.get(19L)));
+  }
+
+  public void testBulkArrayValues() {
+    final DirectBufferBinaryDataStoreFactory factory = new DirectBufferBinaryDataStoreFactory(64, 4);
+    final BinaryDataStore store = factory.createDataStore(null);
+    final long[] identifiers = new long[20];
+    final byte[][] values = new byte[20][];
+    for (int i = 0; i < 20; i++) {
+      identifiers[i] = i;
+      values[i] = data(i * 2, i);
+    }
+    store.put(identifiers, values);
+    final byte[][] result = store.get(new long[] {19L, 20L, 0L, 5L });
+    assertEquals(4, result.length);
+    assertTrue(Arrays.equals(data(38, 19), result[0]));
+    assertNull(result[1]);
+    assertTrue(Arrays.equals(data(0, 0), result[2]));
+    assertTrue(Arrays.equals(data(10, 5), result[3]));
+  }
+
+  public void testOversizedValue() {
+    final DirectBufferBinaryDataStoreFactory factory = new DirectBufferBinaryDataStoreFactory(64, 4);
+    final BinaryDataStore store = factory.createDataStore(null);
+    store.put(1L, data(10, 1));
+    store.put(2L, data(1000, 2));
+    store.put(3L, data(10, 3));
+    assertTrue(Arrays.equals(data(10, 1), store.get(1L)));
+    assertTrue(Arrays.equals(data(1000, 2), store.get(2L)));
+    assertTrue(Arrays.equals(data(10, 3), store.get(3L)));
+  }
+
+  public void testOverwrite() {
+    final DirectBufferBinaryDataStoreFactory factory = new DirectBufferBinaryDataStoreFactory(64, 4);
+    final BinaryDataStore store = factory.createDataStore(null);
+    store.put(1L, data(10, 1));
+    store.put(1L, data(20, 2));
+    assertTrue(Arrays.equals(data(20, 2), store.get(1L)));
+  }
+
+  public void testDeleteReleasesSlabs() {
+    final DirectBufferBinaryDataStoreFactory factory = new DirectBufferBinaryDataStoreFactory(64, 2);
+    final DirectBufferBinaryDataStore store = (DirectBufferBinaryDataStore) factory.createDataStore(null);
+    for (int i = 0; i < 10; i++) {
+      store.put(i, data(30, i));
+    }
+    store.put(10L, data(1000, 10));
+    assertEquals(11, store.getSlabCount());
+    assertEquals(0, factory.getPooledSlabCount());
+    store.delete();
+    assertEquals(0, store.getSlabCount());
+    assertEquals(2, factory.getPooledSlabCount());
+    assertNull(store.get(0L));
+    final BinaryDataStore next = factory.createDataStore(null);
+    next.put(1L, data(30, 1));
+    assertEquals(1, factory.getPooledSlabCount());
+    assertTrue(Arrays.equals(data(30, 1), next.get(1L)));
+  }
+
+}
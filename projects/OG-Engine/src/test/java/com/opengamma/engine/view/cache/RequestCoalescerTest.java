@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.util.test.Timeout;
+
+/**
+ * Tests the {@link RequestCoalescer}.
+ */
+@Test
+public class RequestCoalescerTest {
+
+  public void testSingleThread() {
+    final AtomicInteger sends = new AtomicInteger();
+    final RequestCoalescer<Integer> coalescer = new RequestCoalescer<Integer>(1) {
+      @Override
+      protected void send(final List<Integer> requests) {
+        assertEquals(requests.size(), 1);
+        sends.incrementAndGet();
+      }
+    };
+    for (int i = 0; i < 10; i++) {
+      coalescer.execute(i);
+    }
+    assertEquals(sends.get(), 10);
+  }
+
+  public void testConcurrent() throws Exception {
+    final int requests = 100;
+    final AtomicInteger sends = new AtomicInteger();
+    final AtomicInteger outstanding = new AtomicInteger();
+    final Set<Integer> sent = new ConcurrentSkipListSet<Integer>();
+    final RequestCoalescer<Integer> coalescer = new RequestCoalescer<Integer>(2) {
+      @Override
+      protected void send(final List<Integer> batch) {
+        assertTrue(outstanding.incrementAndGet() <= 2);
+        sends.incrementAndGet();
+        try {
+          Thread.sleep(5);
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+        sent.addAll(batch);
+        outstanding.decrementAndGet();
+      }
+    };
+    final ExecutorService executor = Executors.newFixedThreadPool(16);
+    try {
+      final CountDownLatch latch = new CountDownLatch(requests);
+      for (int i = 0; i < requests; i++) {
+        final Integer request = i;
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            coalescer.execute(request);
+            // The request must have been sent by the time execute returns
+            if (sent.contains(request)) {
+              latch.countDown();
+            }
+          }
+        });
+      }
+      assertTrue(latch.await(Timeout.standardTimeoutMillis(), TimeUnit.MILLISECONDS));
+      assertEquals(sent.size(), requests);
+      assertTrue(sends.get() < requests);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void testFailure() throws Exception {
+    final RequestCoalescer<Integer> coalescer = new RequestCoalescer<Integer>(1) {
+      @Override
+      protected void send(final List<Integer> batch) {
+        throw new IllegalStateException();
+      }
+    };
+    try {
+      coalescer.execute(1);
+    } catch (IllegalStateException e) {
+      // Expected
+    }
+    // The capacity must have been released
+    final CountDownLatch latch = new CountDownLatch(1);
+    final Thread t = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          coalescer.execute(2);
+        } catch (IllegalStateException e) {
+          latch.countDown();
+        }
+      }
+    });
+    t.start();
+    assertTrue(latch.await(Timeout.standardTimeoutMillis(), TimeUnit.MILLISECONDS));
+  }
+
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.time.calendar.LocalDate;
+
+import org.fudgemsg.FudgeContext;
+import org.testng.annotations.Test;
+
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.ComputationTargetType;
+import com.opengamma.engine.value.ComputedValue;
+import com.opengamma.engine.value.ValueProperties;
+import com.opengamma.engine.value.ValuePropertyNames;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.id.UniqueId;
+import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
+import com.opengamma.util.test.Benchmark;
+import com.opengamma.util.timeseries.DoubleTimeSeries;
+import com.opengamma.util.timeseries.localdate.ArrayLocalDateDoubleTimeSeries;
+
+/**
+ * Benchmarks reading and writing values through a {@link DefaultViewComputationCache}. This is not run as part of the normal build.
+ */
+@Test(enabled = false)
+public class ViewComputationCacheSpeedTest {
+
+  private static final int VALUES = 10000;
+  /** Fewer values for the time series benchmarks, as each is far larger. */
+  private static final int LARGE_VALUES = 1000;
+  /** Points in each time series; a few years of daily data encodes to well over {@link DecodedValueCache#DEFAULT_MIN_VALUE_SIZE}. */
+  private static final int LARGE_VALUE_POINTS = 1000;
+
+  private final Benchmark _benchmark = new Benchmark("ViewComputationCache");
+
+  private static DefaultViewComputationCache createCache() {
+    return createCache(FudgeContext.GLOBAL_DEFAULT);
+  }
+
+  private static DefaultViewComputationCache createCache(final FudgeContext fudgeContext) {
+    final FudgeMessageStore privateDataStore = new DefaultFudgeMessageStore(new InMemoryBinaryDataStore(), fudgeContext);
+    final FudgeMessageStore sharedDataStore = new DefaultFudgeMessageStore(new InMemoryBinaryDataStore(), fudgeContext);
+    return new DefaultViewComputationCache(new InMemoryIdentifierMap(), privateDataStore, sharedDataStore, fudgeContext);
+  }
+
+  private static List<ComputedValue> createValues() {
+    final ValueProperties properties = ValueProperties.with(ValuePropertyNames.FUNCTION, "Test").get();
+    final List<ComputedValue> values = new ArrayList<ComputedValue>(VALUES);
+    for (int i = 0; i < VALUES; i++) {
+      final ComputationTargetSpecification target = new ComputationTargetSpecification(ComputationTargetType.PRIMITIVE, UniqueId.of("Test", Integer.toString(i)));
+      values.add(new ComputedValue(new ValueSpecification("Value", target, properties), (double) i));
+    }
+    return values;
+  }
+
+  /**
+   * Creates time series values, representative of the large inputs such as histories, curves and surfaces that the decoded value cache is
+   * for. Small values like doubles are never held by it.
+   */
+  private static List<ComputedValue> createLargeValues() {
+    final ValueProperties properties = ValueProperties.with(ValuePropertyNames.FUNCTION, "Test").get();
+    final LocalDate[] dates = new LocalDate[LARGE_VALUE_POINTS];
+    for (int i = 0; i < LARGE_VALUE_POINTS; i++) {
+      dates[i] = LocalDate.of(2010, 1, 1).plusDays(i);
+    }
+    final List<ComputedValue> values = new ArrayList<ComputedValue>(LARGE_VALUES);
+    for (int i = 0; i < LARGE_VALUES; i++) {
+      final double[] points = new double[LARGE_VALUE_POINTS];
+      for (int j = 0; j < LARGE_VALUE_POINTS; j++) {
+        points[j] = i + j / 1000d;
+      }
+      final ComputationTargetSpecification target = new ComputationTargetSpecification(ComputationTargetType.PRIMITIVE, UniqueId.of("Test", Integer.toString(i)));
+      values.add(new ComputedValue(new ValueSpecification("TimeSeries", target, properties), new ArrayLocalDateDoubleTimeSeries(dates, points)));
+    }
+    return values;
+  }
+
+  private static List<ValueSpecification> getSpecifications(final Collection<ComputedValue> values) {
+    final List<ValueSpecification> specifications = new ArrayList<ValueSpecification>(values.size());
+    for (ComputedValue value : values) {
+      specifications.add(value.getSpecification());
+    }
+    return specifications;
+  }
+
+  public void testPut() {
+    final List<ComputedValue> values = createValues();
+    _benchmark.run("putSharedValue", VALUES, new Benchmark.Task() {
+      @Override
+      public Object run() {
+        final DefaultViewComputationCache cache = createCache();
+        for (ComputedValue value : values) {
+          cache.putSharedValue(value);
+        }
+        return cache;
+      }
+    });
+  }
+
+  public void testPutBulk() {
+    final List<ComputedValue> values = createValues();
+    _benchmark.run("putSharedValues", VALUES, new Benchmark.Task() {
+      @Override
+      public Object run() {
+        final DefaultViewComputationCache cache = createCache();
+        cache.putSharedValues(values);
+        return cache;
+      }
+    });
+  }
+
+  public void testGet() {
+    final List<ComputedValue> values = createValues();
+    final List<ValueSpecification> specifications = getSpecifications(values);
+    final DefaultViewComputationCache cache = createCache();
+    cache.putSharedValues(values);
+    _benchmark.run("getValue", VALUES, new Benchmark.Task() {
+      @Override
+      public Object run() {
+        double total = 0;
+        for (ValueSpecification specification : specifications) {
+          total += (Double) cache.getValue(specification);
+        }
+        return total;
+      }
+    });
+  }
+
+  public void testGetBulk() {
+    final List<ComputedValue> values = createValues();
+    final List<ValueSpecification> specifications = getSpecifications(values);
+    final DefaultViewComputationCache cache = createCache();
+    cache.putSharedValues(values);
+    _benchmark.run("getValues", VALUES, new Benchmark.Task() {
+      @Override
+      public Object run() {
+        return cache.getValues(specifications).size();
+      }
+    });
+  }
+
+  private void benchmarkGetLarge(final String name, final DecodedValueCache decodedValueCache) {
+    final List<ComputedValue> values = createLargeValues();
+    final List<ValueSpecification> specifications = getSpecifications(values);
+    final DefaultViewComputationCache cache = createCache(OpenGammaFudgeContext.getInstance());
+    cache.setDecodedValueCache(decodedValueCache);
+    cache.putSharedValues(values);
+    _benchmark.run(name, LARGE_VALUES, new Benchmark.Task() {
+      @Override
+      public Object run() {
+        double total = 0;
+        for (ValueSpecification specification : specifications) {
+          total += ((DoubleTimeSeries<?>) cache.getValue(specification)).getValueAt(LARGE_VALUE_POINTS - 1);
+        }
+        return total;
+      }
+    });
+  }
+
+  public void testGetLarge() {
+    benchmarkGetLarge("getLargeValue", null);
+  }
+
+  public void testGetLargeDecoded() {
+    benchmarkGetLarge("getLargeValueDecoded", new DecodedValueCache(Long.MAX_VALUE));
+  }
+
+}
@@ -53,7 +53,7 @@ public class ExecutionPlanTest {
   private static final Logger s_logger = LoggerFactory.getLogger(ExecutionPlanTest.class);
 
   private MultipleNodeExecutor createExecutor() {
-    return new MultipleNodeExecutor(null, 0, 0, 0, 0, 0, new FunctionCosts(), null) {
+    return new MultipleNodeExecutor(null, 0, 0, 0, 0, 0, 0, new FunctionCosts(), null) {
 
       @Override
       protected long getFunctionInitId() {
@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calc;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import javax.time.Instant;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.opengamma.engine.ComputationTarget;
+import com.opengamma.engine.depgraph.DependencyGraph;
+import com.opengamma.engine.depgraph.DependencyNode;
+import com.opengamma.engine.view.calcnode.CalculationJobResult;
+import com.opengamma.engine.view.calcnode.CalculationJobResultItem;
+import com.opengamma.engine.view.calcnode.CalculationJobSpecification;
+import com.opengamma.engine.view.calcnode.stats.FunctionCosts;
+import com.opengamma.id.UniqueId;
+
+/**
+ * Tests the handling of partial results by {@link GraphFragmentContext}.
+ */
+@Test
+public class GraphFragmentContextTest {
+
+  private static final int NODES = 4;
+
+  private static final class TestGraphFragment extends GraphFragment<TestGraphFragment> {
+
+    public TestGraphFragment(final GraphFragmentContext context, final Collection<DependencyNode> nodes) {
+      super(context, nodes);
+    }
+
+  }
+
+  private final List<DependencyNode> _executed = new ArrayList<DependencyNode>();
+  private final Queue<ExecutionResult> _results = new LinkedBlockingQueue<ExecutionResult>();
+  private final CalculationJobSpecification _jobSpec = new CalculationJobSpecification(UniqueId.of("Test", "ViewCycle"), "Default", Instant.now(), 1L);
+  private List<DependencyNode> _nodes;
+  private GraphFragmentContext _context;
+
+  @BeforeMethod
+  public void setUp() {
+    _executed.clear();
+    _results.clear();
+    final MultipleNodeExecutor executor = new MultipleNodeExecutor(null, 0, 0, 0, 0, 0, 0, new FunctionCosts(), null) {
+
+      @Override
+      protected long getFunctionInitId() {
+        return 0;
+      }
+
+      @Override
+      protected void markExecuted(final DependencyNode node) {
+        _executed.add(node);
+      }
+
+    };
+    _context = new GraphFragmentContext(executor, new DependencyGraph("Default"), _results, null);
+    _nodes = new ArrayList<DependencyNode>(NODES);
+    for (int i = 0; i < NODES; i++) {
+      _nodes.add(new DependencyNode(new ComputationTarget(UniqueId.of("Test", Integer.toString(i)))));
+    }
+    _context.allocateFragmentMap(1);
+    _context.registerCallback(_jobSpec, new TestGraphFragment(_context, _nodes));
+  }
+
+  private CalculationJobResult result(final int items) {
+    final List<CalculationJobResultItem> resultItems = new ArrayList<CalculationJobResultItem>(items);
+    for (int i = 0; i < items; i++) {
+      resultItems.add(CalculationJobResultItem.success());
+    }
+    return new CalculationJobResult(_jobSpec, 0, resultItems, "Node");
+  }
+
+  private void assertReported(final int from, final int to) {
+    final ExecutionResult result = _results.poll();
+    assertEquals(result.getNodes(), _nodes.subList(from, to));
+    assertEquals(result.getResult().getResultItems().size(), to - from);
+    assertEquals(result.getResult().getSpecification(), _jobSpec);
+  }
+
+  //-------------------------------------------------------------------------
+  public void testPartialThenFinal() {
+    _context.partialResultReceived(result(2), 0);
+    assertReported(0, 2);
+    // Overlapping the items already reported; only the new one is passed on
+    _context.partialResultReceived(result(2), 1);
+    assertReported(2, 3);
+    _context.resultReceived(result(NODES));
+    assertReported(3, NODES);
+    assertNull(_results.poll());
+    // Every node is marked, whether or not it was reported early
+    assertEquals(_executed, _nodes);
+    // Anything arriving after the full result is ignored
+    _context.partialResultReceived(result(1), 3);
+    _context.resultReceived(result(NODES));
+    assertNull(_results.poll());
+    assertEquals(_executed.size(), NODES);
+  }
+
+  public void testPartialsCoverEverything() {
+    _context.partialResultReceived(result(NODES), 0);
+    assertReported(0, NODES);
+    _context.resultReceived(result(NODES));
+    // Nothing left to report, but the nodes are still marked
+    assertNull(_results.poll());
+    assertEquals(_executed, _nodes);
+  }
+
+  public void testPartialThenRetry() {
+    _context.partialResultReceived(result(2), 0);
+    assertReported(0, 2);
+    // The job is retried on another node, which reports from the start again
+    _context.partialResultReceived(result(1), 0);
+    assertNull(_results.poll());
+    _context.partialResultReceived(result(3), 0);
+    assertReported(2, 3);
+    // Carries on from the last item reported
+    _context.partialResultReceived(result(1), 3);
+    assertReported(3, 4);
+    _context.resultReceived(result(NODES));
+    assertNull(_results.poll());
+    assertEquals(_executed, _nodes);
+  }
+
+  public void testGapIgnored() {
+    _context.partialResultReceived(result(1), 0);
+    assertReported(0, 1);
+    // Would leave item 1 unreported, so is ignored
+    _context.partialResultReceived(result(1), 2);
+    assertNull(_results.poll());
+    _context.resultReceived(result(NODES));
+    assertReported(1, NODES);
+  }
+
+  public void testFinalOnly() {
+    _context.resultReceived(result(NODES));
+    assertReported(0, NODES);
+    assertNull(_results.poll());
+  }
+
+}
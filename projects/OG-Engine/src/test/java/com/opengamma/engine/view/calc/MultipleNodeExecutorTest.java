@@ -129,7 +129,11 @@ public class MultipleNodeExecutorTest {
   }
 
   private MultipleNodeExecutor createExecutor(final int minimum, final int maximum, final int concurrency) {
-    return new MultipleNodeExecutor(null, minimum, maximum, 0, Integer.MAX_VALUE, concurrency, new FunctionCosts(), new ExecutionPlanCache(null)) {
+    return createExecutor(minimum, maximum, concurrency, 0);
+  }
+
+  private MultipleNodeExecutor createExecutor(final int minimum, final int maximum, final int concurrency, final int nodeCount) {
+    return new MultipleNodeExecutor(null, minimum, maximum, 0, Integer.MAX_VALUE, concurrency, nodeCount, new FunctionCosts(), new ExecutionPlanCache(null)) {
 
       @Override
       protected long getFunctionInitId() {
@@ -349,6 +353,36 @@ public class MultipleNodeExecutorTest {
     assertTrue(hint.isPrivateValue(_testValue34));
   }
 
+  /**
+   * Single-dep merge on N4+N3. With two nodes the input-merges of testMinMax4 would exceed the balanced job cost so don't happen.
+   */
+  public void testMinMax4Balanced() {
+    final MultipleNodeExecutor executor = createExecutor(3, 4, 0, 2);
+    final RootGraphFragmentFuture root = execute(executor, _testGraph);
+    if (PRINT_GRAPHS) {
+      System.out.println("testMinMax4Balanced");
+      MultipleNodeExecutor.printFragment(root.getFragment());
+    }
+    assertEquals(3, root.getFragment().getInputFragments().size());
+    int mask = 0;
+    for (GraphFragment<?> fragment : root.getFragment().getInputFragments()) {
+      assertEquals(1, fragment.getInputFragments().size());
+      assertTrue(singletonFragment(fragment.getInputFragments().iterator().next(), _testNode[2]));
+      if (fragment.getNodes().contains(_testNode[0])) {
+        assertEquals(1, fragment.getNodes().size());
+        mask |= 1;
+      } else if (fragment.getNodes().contains(_testNode[1])) {
+        assertEquals(1, fragment.getNodes().size());
+        mask |= 2;
+      } else if (fragment.getNodes().contains(_testNode[3]) && fragment.getNodes().contains(_testNode[4])) {
+        mask |= 4;
+      } else {
+        Assert.fail();
+      }
+    }
+    assertEquals(7, mask);
+  }
+
   /**
    * Single-dep merge N4+N3, single tail on N2 (one of N0, N1 or N(4+3)).
    */
@@ -0,0 +1,236 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calcnode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.time.Instant;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.mapping.FudgeDeserializer;
+import org.fudgemsg.mapping.FudgeSerializer;
+import org.testng.annotations.Test;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.core.position.PositionSource;
+import com.opengamma.core.security.SecuritySource;
+import com.opengamma.engine.ComputationTarget;
+import com.opengamma.engine.ComputationTargetResolver;
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.function.FunctionExecutionContext;
+import com.opengamma.engine.test.CalculationNodeUtils;
+import com.opengamma.engine.test.MockFunction;
+import com.opengamma.engine.test.TestCalculationNode;
+import com.opengamma.engine.value.ComputedValue;
+import com.opengamma.engine.view.ExecutionLogMode;
+import com.opengamma.engine.view.cache.AbstractIdentifierMap;
+import com.opengamma.engine.view.cache.CacheSelectHint;
+import com.opengamma.engine.view.cache.IdentifierMap;
+import com.opengamma.engine.view.cache.InMemoryIdentifierMap;
+import com.opengamma.engine.view.calcnode.stats.DiscardingInvocationStatisticsGatherer;
+import com.opengamma.id.UniqueId;
+import com.opengamma.util.async.AsynchronousExecution;
+import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
+import com.opengamma.util.log.ThreadLocalLogEventListener;
+import com.opengamma.util.test.Benchmark;
+
+/**
+ * Benchmarks job execution by a {@link SimpleCalculationNode} and the Fudge encoding of the {@link CalculationJobResult} it produces.
+ * Also compares the throughput of a set of nodes, one per core, when target resolution blocks the node's thread and when it suspends the job.
+ * This is not run as part of the normal build.
+ */
+@Test(enabled = false)
+public class CalculationNodeSpeedTest {
+
+  private static final int JOBS = 1000;
+  private static final int RESULT_ITEMS = 1000;
+  private static final int INVOKED_JOBS = 200;
+  private static final int INVOKED_JOB_ITEMS = 20;
+  private static final long TARGET_RESOLUTION_MILLIS = 1;
+
+  private static final FudgeContext s_fudgeContext = OpenGammaFudgeContext.getInstance();
+
+  private final Benchmark _benchmark = new Benchmark("CalculationNode");
+
+  public void testExecuteJob() {
+    final MockFunction mockFunction = CalculationNodeUtils.getMockFunction();
+    final TestCalculationNode calcNode = CalculationNodeUtils.getTestCalcNode(mockFunction);
+    final CalculationJob calcJob = CalculationNodeUtils.getCalculationJob(mockFunction, ExecutionLogMode.INDICATORS);
+    calcNode.getCache(calcJob.getSpecification()).putSharedValue(new ComputedValue(mockFunction.getRequirements().iterator().next(), "Input"));
+    _benchmark.run("executeJob", JOBS, new Benchmark.Task() {
+      @Override
+      public Object run() {
+        try {
+          int items = 0;
+          for (int i = 0; i < JOBS; i++) {
+            items += calcNode.executeJob(calcJob).getResultItems().size();
+          }
+          return items;
+        } catch (AsynchronousExecution e) {
+          throw new OpenGammaRuntimeException("Unexpected asynchronous execution", e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Resolves targets after a delay, simulating the remote query a real resolver may make.
+   */
+  private static final class SlowTargetResolver implements ComputationTargetResolver {
+
+    private final ComputationTargetResolver _underlying;
+
+    public SlowTargetResolver(final ComputationTargetResolver underlying) {
+      _underlying = underlying;
+    }
+
+    @Override
+    public ComputationTarget resolve(final ComputationTargetSpecification specification) {
+      try {
+        Thread.sleep(TARGET_RESOLUTION_MILLIS);
+      } catch (InterruptedException e) {
+        throw new OpenGammaRuntimeException("Interrupted", e);
+      }
+      return _underlying.resolve(specification);
+    }
+
+    @Override
+    public SecuritySource getSecuritySource() {
+      return _underlying.getSecuritySource();
+    }
+
+    @Override
+    public PositionSource getPositionSource() {
+      return _underlying.getPositionSource();
+    }
+
+  }
+
+  private void invokeJobs(final String name, final boolean nonBlocking) {
+    final MockFunction mockFunction = CalculationNodeUtils.getMockFunction();
+    final TestCalculationNode template = CalculationNodeUtils.getTestCalcNode(mockFunction);
+    final CalculationJob singleJob = CalculationNodeUtils.getCalculationJob(mockFunction, ExecutionLogMode.INDICATORS);
+    template.getCache(singleJob.getSpecification()).putSharedValue(new ComputedValue(mockFunction.getRequirements().iterator().next(), "Input"));
+    final List<CalculationJobItem> jobItems = Collections.nCopies(INVOKED_JOB_ITEMS, singleJob.getJobItems().get(0));
+    final ExecutorService executor = Executors.newCachedThreadPool();
+    final ComputationTargetResolver targetResolver = new SlowTargetResolver(template.getTargetResolver());
+    final int cores = Runtime.getRuntime().availableProcessors();
+    final List<SimpleCalculationNode> nodes = new ArrayList<SimpleCalculationNode>(cores);
+    for (int i = 0; i < cores; i++) {
+      final SimpleCalculationNode node = new SimpleCalculationNode(template.getCacheSource(), template.getFunctionCompilationService(), new FunctionExecutionContext(),
+          targetResolver, template.getViewProcessorQuerySender(), "node" + i, executor, new DiscardingInvocationStatisticsGatherer(),
+          new CalculationNodeLogEventListener(new ThreadLocalLogEventListener()));
+      node.setUseAsynchronousTargetResolve(true);
+      node.setUseNonBlockingTargetResolve(nonBlocking);
+      nodes.add(node);
+    }
+    final LocalNodeJobInvoker invoker = new LocalNodeJobInvoker(nodes);
+    try {
+      _benchmark.run(name, INVOKED_JOBS * INVOKED_JOB_ITEMS, new Benchmark.Task() {
+        @Override
+        public Object run() {
+          final CountDownLatch completed = new CountDownLatch(INVOKED_JOBS);
+          final JobInvocationReceiver receiver = new JobInvocationReceiver() {
+
+            @Override
+            public void jobCompleted(final CalculationJobResult result) {
+              completed.countDown();
+            }
+
+            @Override
+            public void jobPartiallyCompleted(final CalculationJobResult result, final int offset) {
+              // Ignore
+            }
+
+            @Override
+            public void jobFailed(final JobInvoker jobInvoker, final String computeNodeId, final Exception exception) {
+              throw new OpenGammaRuntimeException("Job failed", exception);
+            }
+
+          };
+          for (int i = 0; i < INVOKED_JOBS; i++) {
+            final CalculationJob job = new CalculationJob(singleJob.getSpecification().withJobId(i), 0L, null, jobItems, CacheSelectHint.allShared());
+            while (!invoker.invoke(job, receiver)) {
+              final CountDownLatch available = new CountDownLatch(1);
+              if (!invoker.notifyWhenAvailable(new JobInvokerRegister() {
+                @Override
+                public void registerJobInvoker(final JobInvoker jobInvoker) {
+                  available.countDown();
+                }
+              })) {
+                await(available);
+              }
+            }
+          }
+          await(completed);
+          return completed;
+        }
+      });
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static void await(final CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      throw new OpenGammaRuntimeException("Interrupted", e);
+    }
+  }
+
+  public void testBlockingTargetResolve() {
+    invokeJobs("blockingTargetResolve", false);
+  }
+
+  public void testNonBlockingTargetResolve() {
+    invokeJobs("nonBlockingTargetResolve", true);
+  }
+
+  private static CalculationJobResult createJobResult() {
+    final CalculationJobSpecification spec = new CalculationJobSpecification(UniqueId.of("Test", "ViewCycle"), "config", Instant.now(), 1L);
+    final List<CalculationJobResultItem> items = new ArrayList<CalculationJobResultItem>(RESULT_ITEMS);
+    for (int i = 0; i < RESULT_ITEMS; i++) {
+      if ((i % 10) == 0) {
+        items.add(CalculationJobResultItem.failure("java.lang.RuntimeException", "Failure " + i));
+      } else {
+        items.add(CalculationJobResultItem.success());
+      }
+    }
+    final CalculationJobResult result = new CalculationJobResult(spec, 500, items, "localhost");
+    final IdentifierMap identifierMap = new InMemoryIdentifierMap();
+    AbstractIdentifierMap.convertIdentifiers(identifierMap, result);
+    return result;
+  }
+
+  public void testEncodeJobResult() {
+    final CalculationJobResult result = createJobResult();
+    _benchmark.run("encodeJobResult", RESULT_ITEMS, new Benchmark.Task() {
+      @Override
+      public Object run() {
+        return s_fudgeContext.toByteArray(new FudgeSerializer(s_fudgeContext).objectToFudgeMsg(result));
+      }
+    });
+  }
+
+  public void testDecodeJobResult() {
+    final byte[] encoded = s_fudgeContext.toByteArray(new FudgeSerializer(s_fudgeContext).objectToFudgeMsg(createJobResult()));
+    _benchmark.run("decodeJobResult", RESULT_ITEMS, new Benchmark.Task() {
+      @Override
+      public Object run() {
+        final FudgeMsg msg = s_fudgeContext.deserialize(encoded).getMessage();
+        return new FudgeDeserializer(s_fudgeContext).fudgeMsgToObject(CalculationJobResult.class, msg);
+      }
+    });
+  }
+
+}
@@ -10,13 +10,25 @@ import static org.testng.AssertJUnit.assertFalse;
 import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertNotNull;
 import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.testng.annotations.Test;
 
 import com.google.common.collect.Iterables;
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.core.position.PositionSource;
+import com.opengamma.core.security.SecuritySource;
 import com.opengamma.engine.ComputationTarget;
+import com.opengamma.engine.ComputationTargetResolver;
+import com.opengamma.engine.ComputationTargetSpecification;
 import com.opengamma.engine.ComputationTargetType;
 import com.opengamma.engine.function.FunctionExecutionContext;
 import com.opengamma.engine.function.FunctionInputs;
@@ -28,7 +40,9 @@ import com.opengamma.engine.value.ValueRequirement;
 import com.opengamma.engine.value.ValueSpecification;
 import com.opengamma.engine.view.ExecutionLog;
 import com.opengamma.engine.view.ExecutionLogMode;
+import com.opengamma.engine.view.cache.CacheSelectHint;
 import com.opengamma.engine.view.cache.ViewComputationCache;
+import com.opengamma.engine.view.calcnode.stats.DiscardingInvocationStatisticsGatherer;
 import com.opengamma.util.async.AsynchronousExecution;
 import com.opengamma.util.async.AsynchronousHandleExecution;
 import com.opengamma.util.log.LogBridge;
@@ -36,6 +50,7 @@ import com.opengamma.util.log.LogEvent;
 import com.opengamma.util.log.LogLevel;
 import com.opengamma.util.log.SimpleLogEvent;
 import com.opengamma.util.log.ThreadLocalLogEventListener;
+import com.opengamma.util.test.Timeout;
 
 /**
  * Tests the {@link SimpleCalculationNode} class. Note the name so that Clover doesn't ignore it.
@@ -84,6 +99,124 @@ public class CalculationNodeTest {
     assertEquals("Nothing we care about", cache.getValue(mockFunction.getResultSpec()));
   }
   
+  public void partialResults() throws Exception {
+    MockFunction mockFunction = CalculationNodeUtils.getMockFunction();
+    TestCalculationNode calcNode = CalculationNodeUtils.getTestCalcNode(mockFunction);
+    calcNode.setPartialResultBatchSize(1);
+    CalculationJob singleJob = CalculationNodeUtils.getCalculationJob(mockFunction);
+    CalculationJobItem jobItem = singleJob.getJobItems().get(0);
+    CalculationJob calcJob = new CalculationJob(singleJob.getSpecification(), 0L, null, Arrays.asList(jobItem, jobItem, jobItem), CacheSelectHint.allShared());
+    final List<Integer> offsets = new ArrayList<Integer>();
+    final List<Integer> sizes = new ArrayList<Integer>();
+    CalculationJobResult jobResult = calcNode.executeJob(calcJob, new PartialJobResultReceiver() {
+      @Override
+      public void partialResultReceived(final CalculationJobResult result, final int offset) {
+        offsets.add(offset);
+        sizes.add(result.getResultItems().size());
+      }
+    });
+    assertNotNull(jobResult);
+    assertEquals(3, jobResult.getResultItems().size());
+    // The last item is only reported in the full result
+    assertEquals(Arrays.asList(0, 1), offsets);
+    assertEquals(Arrays.asList(1, 1), sizes);
+  }
+
+  public void partialResultsDisabled() throws Exception {
+    MockFunction mockFunction = CalculationNodeUtils.getMockFunction();
+    TestCalculationNode calcNode = CalculationNodeUtils.getTestCalcNode(mockFunction);
+    CalculationJob singleJob = CalculationNodeUtils.getCalculationJob(mockFunction);
+    CalculationJobItem jobItem = singleJob.getJobItems().get(0);
+    CalculationJob calcJob = new CalculationJob(singleJob.getSpecification(), 0L, null, Arrays.asList(jobItem, jobItem), CacheSelectHint.allShared());
+    CalculationJobResult jobResult = calcNode.executeJob(calcJob, new PartialJobResultReceiver() {
+      @Override
+      public void partialResultReceived(final CalculationJobResult result, final int offset) {
+        fail();
+      }
+    });
+    assertNotNull(jobResult);
+    assertEquals(2, jobResult.getResultItems().size());
+  }
+
+  /**
+   * Resolves targets only once released, so that a job has to wait for them.
+   */
+  private static final class DeferredTargetResolver implements ComputationTargetResolver {
+
+    private final ComputationTargetResolver _underlying;
+    private final CountDownLatch _release = new CountDownLatch(1);
+    private final AtomicInteger _resolved = new AtomicInteger();
+
+    public DeferredTargetResolver(final ComputationTargetResolver underlying) {
+      _underlying = underlying;
+    }
+
+    public void release() {
+      _release.countDown();
+    }
+
+    public int getResolved() {
+      return _resolved.get();
+    }
+
+    @Override
+    public ComputationTarget resolve(final ComputationTargetSpecification specification) {
+      try {
+        if (!_release.await(Timeout.standardTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+          throw new OpenGammaRuntimeException("Not released");
+        }
+      } catch (InterruptedException e) {
+        throw new OpenGammaRuntimeException("Interrupted", e);
+      }
+      final ComputationTarget target = _underlying.resolve(specification);
+      _resolved.incrementAndGet();
+      return target;
+    }
+
+    @Override
+    public SecuritySource getSecuritySource() {
+      return _underlying.getSecuritySource();
+    }
+
+    @Override
+    public PositionSource getPositionSource() {
+      return _underlying.getPositionSource();
+    }
+
+  }
+
+  public void nonBlockingTargetResolve() throws Exception {
+    MockFunction mockFunction = CalculationNodeUtils.getMockFunction();
+    TestCalculationNode template = CalculationNodeUtils.getTestCalcNode(mockFunction);
+    DeferredTargetResolver targetResolver = new DeferredTargetResolver(template.getTargetResolver());
+    SimpleCalculationNode calcNode = new SimpleCalculationNode(template.getCacheSource(), template.getFunctionCompilationService(), new FunctionExecutionContext(),
+        targetResolver, template.getViewProcessorQuerySender(), "node", template.getExecutorService(), new DiscardingInvocationStatisticsGatherer(),
+        new CalculationNodeLogEventListener(new ThreadLocalLogEventListener()));
+    calcNode.setUseNonBlockingTargetResolve(true);
+    CalculationJob singleJob = CalculationNodeUtils.getCalculationJob(mockFunction);
+    CalculationJobItem jobItem = singleJob.getJobItems().get(0);
+    CalculationJob calcJob = new CalculationJob(singleJob.getSpecification(), 0L, null, Arrays.asList(jobItem, jobItem), CacheSelectHint.allShared());
+    calcNode.getCache(calcJob.getSpecification()).putSharedValue(new ComputedValue(mockFunction.getRequirements().iterator().next(), "Input"));
+    AsynchronousHandleExecution suspended = null;
+    try {
+      calcNode.executeJob(calcJob);
+      fail();
+    } catch (AsynchronousHandleExecution e) {
+      // The job is suspended waiting for the first target rather than blocking this thread
+      suspended = e;
+    }
+    assertEquals(0, targetResolver.getResolved());
+    targetResolver.release();
+    CalculationJobResult jobResult = suspended.<CalculationJobResult>getResult();
+    assertNotNull(jobResult);
+    assertEquals(2, targetResolver.getResolved());
+    assertEquals(2, jobResult.getResultItems().size());
+    for (CalculationJobResultItem resultItem : jobResult.getResultItems()) {
+      assertEquals(InvocationResult.SUCCESS, resultItem.getResult());
+    }
+    assertEquals("Nothing we care about", calcNode.getCache(calcJob.getSpecification()).getValue(mockFunction.getResultSpec()));
+  }
+
   //-------------------------------------------------------------------------
   public void testLogIndicators() throws Exception {
     MockFunction mockFunction = getMockLoggingFunction();
@@ -15,6 +15,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -27,6 +30,12 @@ import org.slf4j.LoggerFactory;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.function.EmptyFunctionParameters;
+import com.opengamma.engine.value.ValueProperties;
+import com.opengamma.engine.value.ValuePropertyNames;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.engine.view.ExecutionLogMode;
 import com.opengamma.engine.view.cache.CacheSelectHint;
 import com.opengamma.id.UniqueId;
 import com.opengamma.util.async.Cancelable;
@@ -155,6 +164,69 @@ public class JobDispatcherTest {
     assertNull(node2._callback);
   }
 
+  @Test
+  public void invokeWithSharedCacheLocality() {
+    s_logger.info("invokeWithSharedCacheLocality");
+    final JobDispatcher jobDispatcher = new JobDispatcher();
+    final SharedCacheLocality locality = new SharedCacheLocality();
+    jobDispatcher.setSharedCacheLocality(locality);
+    final TestJobInvoker node1 = new TestJobInvoker("1");
+    final TestJobInvoker node2 = new TestJobInvoker("2");
+    jobDispatcher.registerJobInvoker(node1);
+    jobDispatcher.registerJobInvoker(node2);
+    final ComputationTargetSpecification target = new ComputationTargetSpecification("Foo");
+    final ValueSpecification a = new ValueSpecification("A", target, ValueProperties.with(ValuePropertyNames.FUNCTION, "A").get());
+    final ValueSpecification b = new ValueSpecification("B", target, ValueProperties.with(ValuePropertyNames.FUNCTION, "B").get());
+    final CalculationJob job1 = new CalculationJob(createTestJobSpec(), 0L, null, Collections.singletonList(new CalculationJobItem("A", new EmptyFunctionParameters(), target,
+        Collections.<ValueSpecification>emptySet(), Collections.singleton(a), ExecutionLogMode.INDICATORS)), CacheSelectHint.allShared());
+    TestJobResultReceiver result = new TestJobResultReceiver();
+    jobDispatcher.dispatchJob(job1, result);
+    assertEquals("1", result.waitForResult(TIMEOUT).getComputeNodeId());
+    // Round robin would place this with node 2, but node 1 produced the input
+    final CalculationJob job2 = new CalculationJob(createTestJobSpec(), 0L, null, Collections.singletonList(new CalculationJobItem("B", new EmptyFunctionParameters(), target,
+        Collections.singleton(a), Collections.singleton(b), ExecutionLogMode.INDICATORS)), CacheSelectHint.allShared());
+    result = new TestJobResultReceiver();
+    jobDispatcher.dispatchJob(job2, result);
+    assertEquals("1", result.waitForResult(TIMEOUT).getComputeNodeId());
+    SharedCacheLocality.Statistics statistics = locality.getStatistics(job2.getSpecification().getViewCycleId());
+    assertEquals(1, statistics.getLocalInputs());
+    assertEquals(0, statistics.getRemoteInputs());
+    // Falls back to any other invoker if the preferred one refuses
+    node1._disabled = true;
+    final CalculationJob job3 = new CalculationJob(createTestJobSpec(), 0L, null, Collections.singletonList(new CalculationJobItem("C", new EmptyFunctionParameters(), target,
+        Collections.singleton(b), Collections.<ValueSpecification>emptySet(), ExecutionLogMode.INDICATORS)), CacheSelectHint.allShared());
+    result = new TestJobResultReceiver();
+    jobDispatcher.dispatchJob(job3, result);
+    assertEquals("2", result.waitForResult(TIMEOUT).getComputeNodeId());
+    statistics = locality.getStatistics(job3.getSpecification().getViewCycleId());
+    assertEquals(1, statistics.getLocalInputs());
+    assertEquals(1, statistics.getRemoteInputs());
+    assertEquals(0.5, statistics.getLocalRatio(), 1e-9);
+    // Nothing is held for the cycle once it has been released
+    jobDispatcher.viewCycleReleased(job3.getSpecification().getViewCycleId());
+    assertNull(locality.getStatistics(job3.getSpecification().getViewCycleId()));
+    assertTrue(locality.getPreferredInvokers(job3).isEmpty());
+  }
+
+  @Test
+  public void sharedCacheLocalityHoldsConcurrentCycles() {
+    final SharedCacheLocality locality = new SharedCacheLocality();
+    final TestJobInvoker node = new TestJobInvoker("1");
+    final ComputationTargetSpecification target = new ComputationTargetSpecification("Foo");
+    final ValueSpecification a = new ValueSpecification("A", target, ValueProperties.with(ValuePropertyNames.FUNCTION, "A").get());
+    final int cycles = SharedCacheLocality.DEFAULT_MAX_CYCLES / 2;
+    for (int i = 0; i < cycles; i++) {
+      final CalculationJobSpecification spec = new CalculationJobSpecification(UniqueId.of("Cycle", Integer.toString(i)), "Default", Instant.now(), 1L);
+      locality.jobDispatched(new CalculationJob(spec, 0L, null, Collections.singletonList(new CalculationJobItem("A", new EmptyFunctionParameters(), target,
+          Collections.<ValueSpecification>emptySet(), Collections.singleton(a), ExecutionLogMode.INDICATORS)), CacheSelectHint.allShared()), node);
+    }
+    // The first cycle is still running, so must not have been discarded
+    assertNotNull(locality.getStatistics(UniqueId.of("Cycle", "0")));
+    locality.releaseCycle(UniqueId.of("Cycle", "0"));
+    assertNull(locality.getStatistics(UniqueId.of("Cycle", "0")));
+    assertNotNull(locality.getStatistics(UniqueId.of("Cycle", Integer.toString(cycles - 1))));
+  }
+
   @Test
   public void saturateInvokers() {
     s_logger.info("saturateInvokers");
@@ -235,6 +307,113 @@ public class JobDispatcherTest {
     s_logger.debug("All jobs completed");
   }
 
+  /**
+   * Invoker that runs a limited number of jobs at once, asking to be re-registered when it has capacity again.
+   */
+  private class LimitedJobInvoker extends AbstractJobInvoker {
+
+    private final int _capacity;
+    private final ConcurrentMap<CalculationJobSpecification, AtomicInteger> _invocations;
+    private int _running;
+    private JobInvokerRegister _callback;
+
+    public LimitedJobInvoker(final String nodeId, final int capacity, final ConcurrentMap<CalculationJobSpecification, AtomicInteger> invocations) {
+      super(nodeId);
+      _capacity = capacity;
+      _invocations = invocations;
+    }
+
+    @Override
+    public boolean invoke(final CalculationJob job, final JobInvocationReceiver receiver) {
+      synchronized (this) {
+        if (_running >= _capacity) {
+          return false;
+        }
+        _running++;
+      }
+      final AtomicInteger count = _invocations.putIfAbsent(job.getSpecification(), new AtomicInteger(1));
+      if (count != null) {
+        count.incrementAndGet();
+      }
+      _executorService.execute(new Runnable() {
+        @Override
+        public void run() {
+          receiver.jobCompleted(createTestJobResult(job.getSpecification(), 0L, getInvokerId()));
+          final JobInvokerRegister callback;
+          synchronized (LimitedJobInvoker.this) {
+            _running--;
+            callback = _callback;
+            _callback = null;
+          }
+          if (callback != null) {
+            callback.registerJobInvoker(LimitedJobInvoker.this);
+          }
+        }
+      });
+      return true;
+    }
+
+    @Override
+    public synchronized boolean notifyWhenAvailable(final JobInvokerRegister callback) {
+      if (_running < _capacity) {
+        return true;
+      }
+      _callback = callback;
+      return false;
+    }
+
+  }
+
+  @Test
+  public void concurrentDispatch() throws InterruptedException {
+    s_logger.info("concurrentDispatch");
+    final JobDispatcher jobDispatcher = new JobDispatcher();
+    final ConcurrentMap<CalculationJobSpecification, AtomicInteger> invocations = new ConcurrentHashMap<CalculationJobSpecification, AtomicInteger>();
+    for (int i = 0; i < 3; i++) {
+      jobDispatcher.registerJobInvoker(new LimitedJobInvoker("" + (i + 1), 2, invocations));
+    }
+    final int threadCount = 8;
+    final int jobsPerThread = 100;
+    final CalculationJob[] jobs = new CalculationJob[threadCount * jobsPerThread];
+    final TestJobResultReceiver[] resultReceivers = new TestJobResultReceiver[jobs.length];
+    for (int i = 0; i < jobs.length; i++) {
+      jobs[i] = createTestJob();
+      resultReceivers[i] = new TestJobResultReceiver();
+    }
+    // Dispatch from many threads at once, with no monitor on the dispatcher to serialize them
+    final CountDownLatch start = new CountDownLatch(1);
+    final Thread[] threads = new Thread[threadCount];
+    for (int i = 0; i < threadCount; i++) {
+      final int first = i * jobsPerThread;
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          for (int j = first; j < first + jobsPerThread; j++) {
+            jobDispatcher.dispatchJob(jobs[j], resultReceivers[j]);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (int i = 0; i < jobs.length; i++) {
+      final CalculationJobResult result = resultReceivers[i].waitForResult(TIMEOUT * 2);
+      assertNotNull(result);
+      assertEquals(jobs[i].getSpecification(), result.getSpecification());
+      // Each job placed exactly once; no job lost or duplicated between racing dispatchers
+      assertEquals(1, invocations.get(jobs[i].getSpecification()).get());
+    }
+    assertEquals(jobs.length, invocations.size());
+  }
+
   private class FailingJobInvoker extends AbstractJobInvoker {
 
     private int _failureCount;
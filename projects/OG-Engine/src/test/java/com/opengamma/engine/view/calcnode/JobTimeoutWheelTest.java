@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calcnode;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.util.test.Timeout;
+
+/**
+ * Tests the {@link JobTimeoutWheel}.
+ */
+@Test
+public class JobTimeoutWheelTest {
+
+  public void testFires() throws Exception {
+    final JobTimeoutWheel wheel = new JobTimeoutWheel(10, 8);
+    try {
+      final CountDownLatch latch = new CountDownLatch(1);
+      final long start = System.nanoTime();
+      // Longer than one revolution of the wheel
+      wheel.schedule(new Runnable() {
+        @Override
+        public void run() {
+          latch.countDown();
+        }
+      }, 200);
+      assertTrue(latch.await(Timeout.standardTimeoutMillis(), TimeUnit.MILLISECONDS));
+      assertTrue((System.nanoTime() - start) >= 200000000L);
+    } finally {
+      wheel.shutdown();
+    }
+  }
+
+  public void testCancel() throws Exception {
+    final JobTimeoutWheel wheel = new JobTimeoutWheel(10, 8);
+    try {
+      final AtomicInteger count = new AtomicInteger();
+      final CountDownLatch latch = new CountDownLatch(1);
+      final JobTimeoutWheel.Timeout timeout = wheel.schedule(new Runnable() {
+        @Override
+        public void run() {
+          count.incrementAndGet();
+        }
+      }, 50);
+      timeout.cancel();
+      wheel.schedule(new Runnable() {
+        @Override
+        public void run() {
+          latch.countDown();
+        }
+      }, 100);
+      assertTrue(latch.await(Timeout.standardTimeoutMillis(), TimeUnit.MILLISECONDS));
+      assertTrue(timeout.isCancelled());
+      assertEquals(count.get(), 0);
+    } finally {
+      wheel.shutdown();
+    }
+  }
+
+  public void testNeverEarly() throws Exception {
+    // A delay of exactly one revolution puts the timeout in the bucket the wheel may be expiring at that moment
+    final JobTimeoutWheel wheel = new JobTimeoutWheel(2, 4);
+    try {
+      final int threads = 4;
+      final int timeoutsPerThread = 200;
+      final long delay = 8;
+      final CountDownLatch latch = new CountDownLatch(threads * timeoutsPerThread);
+      final AtomicLong shortest = new AtomicLong(Long.MAX_VALUE);
+      final Thread[] schedulers = new Thread[threads];
+      for (int i = 0; i < threads; i++) {
+        schedulers[i] = new Thread() {
+          @Override
+          public void run() {
+            for (int j = 0; j < timeoutsPerThread; j++) {
+              final long scheduled = System.nanoTime();
+              wheel.schedule(new Runnable() {
+                @Override
+                public void run() {
+                  final long elapsed = System.nanoTime() - scheduled;
+                  long current = shortest.get();
+                  while ((elapsed < current) && !shortest.compareAndSet(current, elapsed)) {
+                    current = shortest.get();
+                  }
+                  latch.countDown();
+                }
+              }, delay);
+              if ((j % 10) == 0) {
+                Thread.yield();
+              }
+            }
+          }
+        };
+        schedulers[i].start();
+      }
+      for (Thread scheduler : schedulers) {
+        scheduler.join();
+      }
+      assertTrue(latch.await(Timeout.standardTimeoutMillis(), TimeUnit.MILLISECONDS));
+      assertTrue(shortest.get() >= delay * 1000000L, "Fired after " + shortest.get() + "ns");
+    } finally {
+      wheel.shutdown();
+    }
+  }
+
+  public void testShutdown() throws Exception {
+    final JobTimeoutWheel wheel = new JobTimeoutWheel(10, 8);
+    final AtomicInteger count = new AtomicInteger();
+    wheel.schedule(new Runnable() {
+      @Override
+      public void run() {
+        count.incrementAndGet();
+      }
+    }, 100);
+    wheel.shutdown();
+    Thread.sleep(200);
+    assertFalse(count.get() > 0);
+  }
+
+}
@@ -21,6 +21,11 @@ public class TestJobInvocationReceiver implements JobInvocationReceiver {
     notify();
   }
 
+  @Override
+  public void jobPartiallyCompleted(final CalculationJobResult result, final int offset) {
+    // Ignore
+  }
+
   @Override
   public synchronized void jobFailed(final JobInvoker jobInvoker, final String nodeId, final Exception failure) {
     _failureResult = failure;
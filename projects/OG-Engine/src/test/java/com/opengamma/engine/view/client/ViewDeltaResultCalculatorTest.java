@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.client;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.ComputationTargetType;
+import com.opengamma.engine.value.ComputedValueResult;
+import com.opengamma.engine.value.ValueProperties;
+import com.opengamma.engine.value.ValuePropertyNames;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.engine.view.ExecutionLog;
+import com.opengamma.engine.view.InMemoryViewComputationResultModel;
+import com.opengamma.engine.view.NumberDeltaComparer;
+import com.opengamma.engine.view.ViewCalculationConfiguration;
+import com.opengamma.engine.view.ViewDefinition;
+import com.opengamma.engine.view.ViewDeltaResultModel;
+import com.opengamma.engine.view.ViewResultEntry;
+import com.opengamma.id.UniqueId;
+
+/**
+ * Tests the {@link ViewDeltaResultCalculator} and {@link ViewResultColumns} classes.
+ */
+@Test
+public class ViewDeltaResultCalculatorTest {
+
+  private static final ComputationTargetSpecification TARGET_1 = new ComputationTargetSpecification(ComputationTargetType.PRIMITIVE, UniqueId.of("Test", "1"));
+  private static final ComputationTargetSpecification TARGET_2 = new ComputationTargetSpecification(ComputationTargetType.PRIMITIVE, UniqueId.of("Test", "2"));
+
+  private static ViewDefinition viewDefinition() {
+    final ViewDefinition viewDefinition = new ViewDefinition("Test", "Test");
+    final ViewCalculationConfiguration numbers = new ViewCalculationConfiguration(viewDefinition, "Numbers");
+    numbers.getDeltaDefinition().setNumberComparer(new NumberDeltaComparer(2));
+    viewDefinition.addViewCalculationConfiguration(numbers);
+    viewDefinition.addViewCalculationConfiguration(new ViewCalculationConfiguration(viewDefinition, "Default"));
+    return viewDefinition;
+  }
+
+  private static ComputedValueResult value(final String name, final ComputationTargetSpecification target, final Object value) {
+    return new ComputedValueResult(new ValueSpecification(name, target, ValueProperties.with(ValuePropertyNames.FUNCTION, "Test").get()), value, ExecutionLog.EMPTY);
+  }
+
+  private static Set<String> deltas(final ViewDeltaResultModel delta) {
+    final Set<String> result = new HashSet<String>();
+    for (ViewResultEntry entry : delta.getAllResults()) {
+      result.add(entry.getCalculationConfiguration() + "/" + entry.getComputedValue().getSpecification().getValueName() + "/" +
+          entry.getComputedValue().getSpecification().getTargetSpecification().getUniqueId().getValue());
+    }
+    return result;
+  }
+
+  public void testColumns() {
+    final InMemoryViewComputationResultModel model = new InMemoryViewComputationResultModel();
+    model.addValue("Numbers", value("A", TARGET_1, 1.5));
+    model.addValue("Numbers", value("B", TARGET_2, "Foo"));
+    model.addValue("Default", value("A", TARGET_1, 2));
+    final ViewResultColumns columns = ViewResultColumns.of(model);
+    assertEquals(3, columns.getRowCount());
+    assertEquals(2, columns.getCalculationConfigurations().size());
+    assertEquals(2, columns.getTargets().size());
+    final int row = columns.getRow("Default", value("A", TARGET_1, null).getSpecification());
+    assertEquals("Default", columns.getCalculationConfiguration(row));
+    assertEquals(TARGET_1, columns.getTarget(row));
+    assertTrue(columns.isNumeric(row));
+    assertEquals(2d, columns.getNumber(row));
+    assertFalse(columns.isNumeric(columns.getRow("Numbers", value("B", TARGET_2, null).getSpecification())));
+    assertEquals(-1, columns.getRow("Default", value("B", TARGET_2, null).getSpecification()));
+    assertEquals(-1, columns.getRow("Missing", value("A", TARGET_1, null).getSpecification()));
+  }
+
+  public void testNoPreviousResult() {
+    final InMemoryViewComputationResultModel model = new InMemoryViewComputationResultModel();
+    model.addValue("Numbers", value("A", TARGET_1, 1.5));
+    model.addValue("Default", value("A", TARGET_2, "Foo"));
+    final ViewDeltaResultModel delta = ViewDeltaResultCalculator.computeDeltaModel(viewDefinition(), (ViewResultColumns) null, ViewResultColumns.of(model));
+    assertNull(delta.getPreviousResultTimestamp());
+    assertEquals(2, delta.getAllResults().size());
+  }
+
+  public void testDelta() {
+    final InMemoryViewComputationResultModel previous = new InMemoryViewComputationResultModel();
+    previous.addValue("Numbers", value("A", TARGET_1, 1.001));
+    previous.addValue("Numbers", value("B", TARGET_1, 1.001));
+    previous.addValue("Numbers", value("C", TARGET_1, "Foo"));
+    previous.addValue("Default", value("A", TARGET_1, 1.001));
+    previous.addValue("Default", value("B", TARGET_1, 1.001));
+    final InMemoryViewComputationResultModel result = new InMemoryViewComputationResultModel();
+    result.addValue("Numbers", value("A", TARGET_1, 1.002));
+    result.addValue("Numbers", value("B", TARGET_1, 1.011));
+    result.addValue("Numbers", value("C", TARGET_1, "Foo"));
+    result.addValue("Numbers", value("A", TARGET_2, 1.001));
+    result.addValue("Default", value("A", TARGET_1, 1.001));
+    result.addValue("Default", value("B", TARGET_1, 1.002));
+    final Set<String> expected = new HashSet<String>();
+    expected.add("Numbers/B/1");
+    expected.add("Numbers/A/2");
+    expected.add("Default/B/1");
+    assertEquals(expected, deltas(ViewDeltaResultCalculator.computeDeltaModel(viewDefinition(), previous, result)));
+  }
+
+}
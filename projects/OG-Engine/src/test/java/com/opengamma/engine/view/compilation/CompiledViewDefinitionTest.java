@@ -6,6 +6,8 @@
 package com.opengamma.engine.view.compilation;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertFalse;
 import static org.testng.AssertJUnit.assertTrue;
 
@@ -28,8 +30,11 @@ import com.opengamma.engine.function.FunctionCompilationContext;
 import com.opengamma.engine.function.FunctionDefinition;
 import com.opengamma.engine.function.FunctionInvoker;
 import com.opengamma.engine.function.FunctionParameters;
+import com.opengamma.engine.value.ValueProperties;
+import com.opengamma.engine.value.ValuePropertyNames;
 import com.opengamma.engine.value.ValueRequirement;
 import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.engine.view.ResultModelDefinition;
 import com.opengamma.engine.view.ViewDefinition;
 
 /**
@@ -228,4 +233,36 @@ public class CompiledViewDefinitionTest {
     assertFalse(model.isValidFor(_time4));
   }
 
+  @Test
+  public void testResultModelLayout() {
+    final DependencyGraph graph = new DependencyGraph("layout");
+    final DependencyNode node = createDependencyNode(null, null);
+    final ValueSpecification a = new ValueSpecification("A", node.getComputationTarget().toSpecification(), ValueProperties.with(ValuePropertyNames.FUNCTION, "Mock").get());
+    final ValueSpecification b = new ValueSpecification("B", node.getComputationTarget().toSpecification(), ValueProperties.with(ValuePropertyNames.FUNCTION, "Mock").get());
+    final ValueSpecification c = new ValueSpecification("C", node.getComputationTarget().toSpecification(), ValueProperties.with(ValuePropertyNames.FUNCTION, "Mock").get());
+    node.addOutputValue(a);
+    node.addOutputValue(b);
+    node.addOutputValue(c);
+    graph.addDependencyNode(node);
+    graph.addTerminalOutput(new ValueRequirement("A", node.getComputationTarget().toSpecification()), a);
+    graph.addTerminalOutput(new ValueRequirement("B", node.getComputationTarget().toSpecification()), b);
+    final ViewDefinition viewDefinition = mock(ViewDefinition.class);
+    when(viewDefinition.getResultModelDefinition()).thenReturn(new ResultModelDefinition());
+    final Map<String, DependencyGraph> graphs = new HashMap<String, DependencyGraph>();
+    graphs.put(graph.getCalculationConfigurationName(), graph);
+    final ResultModelLayout layout = new CompiledViewDefinitionWithGraphsImpl(viewDefinition, graphs, null, 0).getResultModelLayout();
+    assertEquals(2, layout.getSize());
+    assertEquals(2, layout.getSize("layout"));
+    assertEquals(1, layout.getTargetCount("layout"));
+    assertEquals(1, layout.getTargetCount());
+    final int indexA = layout.getIndex("layout", a);
+    final int indexB = layout.getIndex("layout", b);
+    assertTrue(indexA >= 0 && indexA < 2);
+    assertTrue(indexB >= 0 && indexB < 2 && indexA != indexB);
+    assertEquals(a, layout.getValueSpecification("layout", indexA));
+    assertEquals(-1, layout.getIndex("layout", c));
+    assertEquals(-1, layout.getIndex("other", a));
+    assertEquals(0, layout.getSize("other"));
+  }
+
 }
@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.compilation;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import javax.time.Instant;
+import javax.time.calendar.LocalDate;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.opengamma.engine.depgraph.DependencyGraph;
+import com.opengamma.engine.depgraph.DependencyNode;
+import com.opengamma.engine.function.CompiledFunctionService;
+import com.opengamma.engine.marketdata.spec.MarketData;
+import com.opengamma.engine.marketdata.spec.MarketDataSpecification;
+import com.opengamma.engine.test.ViewProcessorTestEnvironment;
+import com.opengamma.engine.view.ViewCalculationConfiguration;
+import com.opengamma.engine.view.ViewDefinition;
+import com.opengamma.id.VersionCorrection;
+import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
+
+/**
+ * Tests the {@link PersistentCompiledViewDefinitionCache} class.
+ */
+@Test
+public class PersistentCompiledViewDefinitionCacheTest {
+
+  private static final List<MarketDataSpecification> LIVE = Collections.<MarketDataSpecification>singletonList(MarketData.live());
+
+  private File _directory;
+
+  @BeforeMethod
+  public void createDirectory() {
+    _directory = new File(new File(System.getProperty("java.io.tmpdir")), "PersistentCompiledViewDefinitionCache-" + System.currentTimeMillis());
+  }
+
+  @AfterMethod
+  public void deleteDirectory() throws IOException {
+    FileUtils.deleteDirectory(_directory);
+  }
+
+  public void testMissing() {
+    final ViewProcessorTestEnvironment env = new ViewProcessorTestEnvironment();
+    env.init();
+    final PersistentCompiledViewDefinitionCache cache = new PersistentCompiledViewDefinitionCache(_directory, OpenGammaFudgeContext.getInstance());
+    assertNull(cache.get(env.getViewDefinition(), LIVE, env.getViewProcessor().getFunctionCompilationService(), Instant.now()));
+  }
+
+  public void testPutGet() {
+    final ViewProcessorTestEnvironment env = new ViewProcessorTestEnvironment();
+    env.init();
+    final Instant now = Instant.now();
+    final CompiledFunctionService functions = env.getViewProcessor().getFunctionCompilationService();
+    final CompiledViewDefinitionWithGraphsImpl compiled = env.compileViewDefinition(now, VersionCorrection.LATEST);
+    final PersistentCompiledViewDefinitionCache cache = new PersistentCompiledViewDefinitionCache(_directory, OpenGammaFudgeContext.getInstance());
+    cache.put(compiled, LIVE, functions);
+    final CompiledViewDefinitionWithGraphsImpl loaded = cache.get(env.getViewDefinition(), LIVE, functions, now);
+    assertNotNull(loaded);
+    assertEquals(compiled.getDependencyGraphsByConfiguration().keySet(), loaded.getDependencyGraphsByConfiguration().keySet());
+    assertEquals(compiled.getMarketDataRequirements(), loaded.getMarketDataRequirements());
+    final DependencyGraph graph = compiled.getDependencyGraph(ViewProcessorTestEnvironment.TEST_CALC_CONFIG_NAME);
+    final DependencyGraph loadedGraph = loaded.getDependencyGraph(ViewProcessorTestEnvironment.TEST_CALC_CONFIG_NAME);
+    assertEquals(graph.getSize(), loadedGraph.getSize());
+    assertEquals(graph.getTerminalOutputs(), loadedGraph.getTerminalOutputs());
+    for (DependencyNode node : graph.getDependencyNodes()) {
+      final DependencyNode loadedNode = loadedGraph.getNodeProducing(node.getOutputValues().iterator().next());
+      // Functions must be bound to the real definitions, not stubs
+      assertEquals(node.getFunction().getFunction().getFunctionDefinition().getClass(), loadedNode.getFunction().getFunction().getFunctionDefinition().getClass());
+    }
+  }
+
+  public void testViewDefinitionChanged() {
+    final ViewProcessorTestEnvironment env = new ViewProcessorTestEnvironment();
+    env.init();
+    final Instant now = Instant.now();
+    final CompiledFunctionService functions = env.getViewProcessor().getFunctionCompilationService();
+    final PersistentCompiledViewDefinitionCache cache = new PersistentCompiledViewDefinitionCache(_directory, OpenGammaFudgeContext.getInstance());
+    cache.put(env.compileViewDefinition(now, VersionCorrection.LATEST), LIVE, functions);
+    final ViewDefinition viewDefinition = env.getViewDefinition();
+    final ViewDefinition changed = new ViewDefinition(viewDefinition.getUniqueId(), viewDefinition.getName(), viewDefinition.getMarketDataUser());
+    changed.addViewCalculationConfiguration(new ViewCalculationConfiguration(changed, "Other"));
+    assertNull(cache.get(changed, LIVE, functions, now));
+    assertNotNull(cache.get(viewDefinition, LIVE, functions, now));
+  }
+
+  public void testMarketDataChanged() {
+    final ViewProcessorTestEnvironment env = new ViewProcessorTestEnvironment();
+    env.init();
+    final Instant now = Instant.now();
+    final CompiledFunctionService functions = env.getViewProcessor().getFunctionCompilationService();
+    final PersistentCompiledViewDefinitionCache cache = new PersistentCompiledViewDefinitionCache(_directory, OpenGammaFudgeContext.getInstance());
+    cache.put(env.compileViewDefinition(now, VersionCorrection.LATEST), LIVE, functions);
+    final List<MarketDataSpecification> historical = Collections.<MarketDataSpecification>singletonList(MarketData.historical(LocalDate.of(2012, 1, 2), "Test"));
+    assertNull(cache.get(env.getViewDefinition(), historical, functions, now));
+    assertNull(cache.get(env.getViewDefinition(), Collections.<MarketDataSpecification>singletonList(MarketData.live("Other")), functions, now));
+    assertNotNull(cache.get(env.getViewDefinition(), LIVE, functions, now));
+    // Snapshots for different market data are kept side by side
+    cache.put(env.compileViewDefinition(now, VersionCorrection.LATEST), historical, functions);
+    assertNotNull(cache.get(env.getViewDefinition(), historical, functions, now));
+    assertNotNull(cache.get(env.getViewDefinition(), LIVE, functions, now));
+  }
+
+  public void testPutAsynchronously() {
+    final ViewProcessorTestEnvironment env = new ViewProcessorTestEnvironment();
+    env.init();
+    final Instant now = Instant.now();
+    final CompiledFunctionService functions = env.getViewProcessor().getFunctionCompilationService();
+    final PersistentCompiledViewDefinitionCache cache = new PersistentCompiledViewDefinitionCache(_directory, OpenGammaFudgeContext.getInstance());
+    final List<Runnable> writes = new ArrayList<Runnable>();
+    cache.setWriter(new Executor() {
+      @Override
+      public void execute(final Runnable command) {
+        writes.add(command);
+      }
+    });
+    cache.putAsynchronously(env.compileViewDefinition(now, VersionCorrection.LATEST), LIVE, functions);
+    cache.putAsynchronously(env.compileViewDefinition(now, VersionCorrection.LATEST), LIVE, functions);
+    // Nothing written on the caller's thread, and the second snapshot replaces the first
+    assertNull(cache.get(env.getViewDefinition(), LIVE, functions, now));
+    assertEquals(1, writes.size());
+    writes.get(0).run();
+    assertNotNull(cache.get(env.getViewDefinition(), LIVE, functions, now));
+  }
+
+  public void testClassDigest() {
+    final PersistentCompiledViewDefinitionCache cache = new PersistentCompiledViewDefinitionCache(_directory, OpenGammaFudgeContext.getInstance());
+    assertEquals(cache.getClassDigest(ViewDefinitionCompiler.class), cache.getClassDigest(ViewDefinitionCompiler.class));
+    assertFalse(cache.getClassDigest(ViewDefinitionCompiler.class).equals(cache.getClassDigest(PortfolioCompiler.class)));
+  }
+
+}
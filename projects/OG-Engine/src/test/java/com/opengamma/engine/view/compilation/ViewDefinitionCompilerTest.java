@@ -8,11 +8,14 @@ package com.opengamma.engine.view.compilation;
 import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertFalse;
 import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNotSame;
+import static org.testng.AssertJUnit.assertSame;
 import static org.testng.AssertJUnit.assertTrue;
 import static org.testng.AssertJUnit.fail;
 
 import java.math.BigDecimal;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.CancellationException;
@@ -24,6 +27,8 @@ import javax.time.Instant;
 
 import org.testng.annotations.Test;
 
+import com.opengamma.core.change.ChangeEvent;
+import com.opengamma.core.change.ChangeType;
 import com.opengamma.core.position.impl.MockPositionSource;
 import com.opengamma.core.position.impl.SimplePortfolio;
 import com.opengamma.core.position.impl.SimplePortfolioNode;
@@ -46,6 +51,7 @@ import com.opengamma.engine.function.InMemoryFunctionRepository;
 import com.opengamma.engine.function.resolver.DefaultFunctionResolver;
 import com.opengamma.engine.marketdata.InMemoryLKVMarketDataProvider;
 import com.opengamma.engine.test.MockFunction;
+import com.opengamma.engine.value.ValueRequirement;
 import com.opengamma.engine.view.ResultOutputMode;
 import com.opengamma.engine.view.ViewCalculationConfiguration;
 import com.opengamma.engine.view.ViewDefinition;
@@ -138,6 +144,111 @@ public class ViewDefinitionCompilerTest {
     assertTargets(compiledViewDefinition, pn.getUniqueId());
   }
 
+  public void testIncrementalCompilation() throws Exception {
+    ExternalId secIdentifier = ExternalId.of("SEC", "1");
+    SimplePosition pos1 = new SimplePosition(new BigDecimal(1), secIdentifier);
+    SimplePosition pos2 = new SimplePosition(new BigDecimal(2), secIdentifier);
+    SimplePortfolioNode pn = new SimplePortfolioNode("node");
+    pn.addPosition(pos1);
+    pn.addPosition(pos2);
+    SimplePortfolio p = new SimplePortfolio(UniqueId.of("FOO", "BAR"), "portfolio");
+    p.setRootNode(pn);
+    MockPositionSource positionSource = new MockPositionSource();
+    positionSource.addPortfolio(p);
+    SimpleSecurity defSec = new SimpleSecurity("My Sec");
+    defSec.addExternalId(secIdentifier);
+    InMemorySecuritySource securitySource = new InMemorySecuritySource();
+    securitySource.addSecurity(defSec);
+    InMemoryLKVMarketDataProvider snapshotProvider = new InMemoryLKVMarketDataProvider();
+    MockFunction fn1 = MockFunction.getMockFunction(new ComputationTarget(pn), 14.2);
+    InMemoryFunctionRepository functionRepo = new InMemoryFunctionRepository();
+    functionRepo.addFunction(fn1);
+    FunctionCompilationContext functionCompilationContext = new FunctionCompilationContext();
+    functionCompilationContext.setFunctionInitId(123);
+    functionCompilationContext.setSecuritySource(securitySource);
+    final CompiledFunctionService cfs = new CompiledFunctionService(functionRepo, new CachingFunctionRepositoryCompiler(), functionCompilationContext);
+    cfs.initialize();
+    DefaultFunctionResolver functionResolver = new DefaultFunctionResolver(cfs);
+    DefaultCachingComputationTargetResolver computationTargetResolver = new DefaultCachingComputationTargetResolver(new DefaultComputationTargetResolver(securitySource, positionSource),
+        EHCacheUtils.createCacheManager());
+    functionCompilationContext.setComputationTargetResolver(computationTargetResolver);
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    ViewCompilationServices vcs = new ViewCompilationServices(snapshotProvider, functionResolver, functionCompilationContext, computationTargetResolver, executorService,
+        new DependencyGraphBuilderFactory());
+    ViewDefinition viewDefinition = new ViewDefinition("My View", UniqueId.of("FOO", "BAR"), "kirk");
+    viewDefinition.getResultModelDefinition().setPositionOutputMode(ResultOutputMode.NONE);
+    ViewCalculationConfiguration calcConfig = new ViewCalculationConfiguration(viewDefinition, "Fibble");
+    calcConfig.addPortfolioRequirementName("My Sec", "OUTPUT");
+    viewDefinition.addViewCalculationConfiguration(calcConfig);
+    final Instant now = Instant.now();
+    CompiledViewDefinitionWithGraphsImpl compiledViewDefinition = ViewDefinitionCompiler.compile(viewDefinition, vcs, now, VersionCorrection.LATEST);
+    assertTargets(compiledViewDefinition, pn.getUniqueId());
+    // No relevant changes; the previous compilation remains valid
+    CompiledViewDefinitionWithGraphsImpl recompiled = ViewDefinitionCompiler.incrementalCompileTask(compiledViewDefinition, Collections.<ChangeEvent>emptySet(), vcs, now,
+        VersionCorrection.LATEST).get();
+    assertSame(compiledViewDefinition, recompiled);
+    // A change to one of the positions requires the aggregate to be resolved again
+    final ChangeEvent change = new ChangeEvent(ChangeType.CHANGED, pos1.getUniqueId().getObjectId(), now, null, now);
+    recompiled = ViewDefinitionCompiler.incrementalCompileTask(compiledViewDefinition, Collections.singleton(change), vcs, now, VersionCorrection.LATEST).get();
+    assertNotSame(compiledViewDefinition, recompiled);
+    assertEquals(1, recompiled.getAllDependencyGraphs().size());
+    assertTargets(recompiled, pn.getUniqueId());
+    assertEquals(compiledViewDefinition.getTerminalValuesRequirements().keySet(), recompiled.getTerminalValuesRequirements().keySet());
+  }
+
+  public void testIncrementalCompilationSpecificRequirement() throws Exception {
+    ExternalId secIdentifier = ExternalId.of("SEC", "1");
+    SimplePosition pos1 = new SimplePosition(new BigDecimal(1), secIdentifier);
+    SimplePosition pos2 = new SimplePosition(new BigDecimal(2), secIdentifier);
+    SimplePortfolioNode pn = new SimplePortfolioNode("node");
+    pn.addPosition(pos1);
+    pn.addPosition(pos2);
+    SimplePortfolio p = new SimplePortfolio(UniqueId.of("FOO", "BAR"), "portfolio");
+    p.setRootNode(pn);
+    MockPositionSource positionSource = new MockPositionSource();
+    positionSource.addPortfolio(p);
+    SimpleSecurity defSec = new SimpleSecurity("My Sec");
+    defSec.addExternalId(secIdentifier);
+    InMemorySecuritySource securitySource = new InMemorySecuritySource();
+    securitySource.addSecurity(defSec);
+    InMemoryLKVMarketDataProvider snapshotProvider = new InMemoryLKVMarketDataProvider();
+    MockFunction fn1 = MockFunction.getMockFunction(new ComputationTarget(pn), 14.2);
+    // A value on one of the positions that isn't a portfolio requirement
+    final ValueRequirement specificRequirement = new ValueRequirement("SPECIFIC", new ComputationTarget(pos2).toSpecification());
+    MockFunction fn2 = new MockFunction("mock2", new ComputationTarget(pos2));
+    fn2.addResult(specificRequirement, 1.0);
+    InMemoryFunctionRepository functionRepo = new InMemoryFunctionRepository();
+    functionRepo.addFunction(fn1);
+    functionRepo.addFunction(fn2);
+    FunctionCompilationContext functionCompilationContext = new FunctionCompilationContext();
+    functionCompilationContext.setFunctionInitId(123);
+    functionCompilationContext.setSecuritySource(securitySource);
+    final CompiledFunctionService cfs = new CompiledFunctionService(functionRepo, new CachingFunctionRepositoryCompiler(), functionCompilationContext);
+    cfs.initialize();
+    DefaultFunctionResolver functionResolver = new DefaultFunctionResolver(cfs);
+    DefaultCachingComputationTargetResolver computationTargetResolver = new DefaultCachingComputationTargetResolver(new DefaultComputationTargetResolver(securitySource, positionSource),
+        EHCacheUtils.createCacheManager());
+    functionCompilationContext.setComputationTargetResolver(computationTargetResolver);
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    ViewCompilationServices vcs = new ViewCompilationServices(snapshotProvider, functionResolver, functionCompilationContext, computationTargetResolver, executorService,
+        new DependencyGraphBuilderFactory());
+    ViewDefinition viewDefinition = new ViewDefinition("My View", UniqueId.of("FOO", "BAR"), "kirk");
+    ViewCalculationConfiguration calcConfig = new ViewCalculationConfiguration(viewDefinition, "Fibble");
+    calcConfig.addPortfolioRequirementName("My Sec", "OUTPUT");
+    calcConfig.addSpecificRequirement(specificRequirement);
+    viewDefinition.addViewCalculationConfiguration(calcConfig);
+    final Instant now = Instant.now();
+    CompiledViewDefinitionWithGraphsImpl compiledViewDefinition = ViewDefinitionCompiler.compile(viewDefinition, vcs, now, VersionCorrection.LATEST);
+    assertTrue(compiledViewDefinition.getTerminalValuesRequirements().containsKey(fn2.getResultSpec()));
+    // A change to the position requires its nodes to be resolved again, including the one for the specific requirement
+    final ChangeEvent change = new ChangeEvent(ChangeType.CHANGED, pos2.getUniqueId().getObjectId(), now, null, now);
+    CompiledViewDefinitionWithGraphsImpl recompiled = ViewDefinitionCompiler.incrementalCompileTask(compiledViewDefinition, Collections.singleton(change), vcs, now,
+        VersionCorrection.LATEST).get();
+    assertNotSame(compiledViewDefinition, recompiled);
+    assertEquals(compiledViewDefinition.getTerminalValuesRequirements(), recompiled.getTerminalValuesRequirements());
+    assertEquals(Collections.singleton(specificRequirement), recompiled.getTerminalValuesRequirements().get(fn2.getResultSpec()));
+  }
+
   public void testSingleValueExternalDependency() {
     ExternalId secIdentifier1 = ExternalId.of("SEC", "1");
     ExternalId secIdentifier2 = ExternalId.of("SEC", "2");
@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.listener;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.engine.ComputationTargetType;
+import com.opengamma.engine.test.TestViewResultListener;
+import com.opengamma.engine.value.ComputedValueResult;
+import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.engine.view.ExecutionLog;
+import com.opengamma.engine.view.InMemoryViewDeltaResultModel;
+import com.opengamma.engine.view.ViewComputationResultModel;
+import com.opengamma.engine.view.ViewDeltaResultModel;
+import com.opengamma.engine.view.calc.ViewCycleMetadata;
+import com.opengamma.engine.view.compilation.CompiledViewDefinitionWithGraphsImpl;
+import com.opengamma.engine.view.listener.AsynchronousViewResultListener.OverflowPolicy;
+import com.opengamma.id.UniqueId;
+
+/**
+ * Tests the {@link AsynchronousViewResultListener} class.
+ */
+@Test
+public class AsynchronousViewResultListenerTest {
+
+  /**
+   * Holds tasks until they are explicitly run, so that the listener appears slow.
+   */
+  private static final class ManualExecutor implements Executor {
+
+    private final LinkedList<Runnable> _tasks = new LinkedList<Runnable>();
+
+    @Override
+    public void execute(final Runnable command) {
+      _tasks.add(command);
+    }
+
+    public void runAll() {
+      while (!_tasks.isEmpty()) {
+        _tasks.poll().run();
+      }
+    }
+
+  }
+
+  private static ViewDeltaResultModel getDeltaResult(final int value) {
+    final InMemoryViewDeltaResultModel deltaResult = new InMemoryViewDeltaResultModel();
+    final ValueRequirement valueRequirement = new ValueRequirement("value" + value, ComputationTargetType.PRIMITIVE, UniqueId.of("Scheme", "value" + value));
+    deltaResult.addValue("DEFAULT", new ComputedValueResult(new ValueSpecification(valueRequirement, "FunctionId"), value, ExecutionLog.EMPTY));
+    return deltaResult;
+  }
+
+  public void testDeliversInOrder() {
+    final TestViewResultListener testListener = new TestViewResultListener();
+    final ManualExecutor executor = new ManualExecutor();
+    final AsynchronousViewResultListener listener = new AsynchronousViewResultListener(testListener, executor, 16, OverflowPolicy.MERGE);
+    listener.viewDefinitionCompiled(mock(CompiledViewDefinitionWithGraphsImpl.class), true);
+    listener.cycleCompleted(mock(ViewComputationResultModel.class), getDeltaResult(1));
+    listener.processCompleted();
+    testListener.assertNoCalls();
+    assertEquals(3, listener.getQueueDepth());
+    executor.runAll();
+    testListener.assertViewDefinitionCompiled();
+    testListener.assertCycleCompleted();
+    testListener.assertProcessCompleted();
+    testListener.assertNoCalls();
+    assertEquals(0, listener.getQueueDepth());
+    assertEquals(3, listener.getMaxQueueDepth());
+    assertEquals(3, listener.getDeliveredCount());
+    assertEquals(0, listener.getCoalescedCount());
+  }
+
+  public void testMergeWhenFull() throws InterruptedException {
+    final TestViewResultListener testListener = new TestViewResultListener();
+    final ManualExecutor executor = new ManualExecutor();
+    final AsynchronousViewResultListener listener = new AsynchronousViewResultListener(testListener, executor, 2, OverflowPolicy.MERGE);
+    listener.viewDefinitionCompiled(mock(CompiledViewDefinitionWithGraphsImpl.class), true);
+    for (int i = 1; i <= 5; i++) {
+      listener.cycleCompleted(mock(ViewComputationResultModel.class), getDeltaResult(i));
+    }
+    assertEquals(2, listener.getQueueDepth());
+    assertEquals(4, listener.getCoalescedCount());
+    executor.runAll();
+    testListener.assertViewDefinitionCompiled();
+    assertEquals(5, testListener.getCycleCompleted(0).getDeltaResult().getAllResults().size());
+    testListener.assertNoCalls();
+  }
+
+  public void testConflateWhenFull() throws InterruptedException {
+    final TestViewResultListener testListener = new TestViewResultListener();
+    final ManualExecutor executor = new ManualExecutor();
+    final AsynchronousViewResultListener listener = new AsynchronousViewResultListener(testListener, executor, 1, OverflowPolicy.CONFLATE);
+    final ViewComputationResultModel latestResult = mock(ViewComputationResultModel.class);
+    listener.cycleCompleted(mock(ViewComputationResultModel.class), getDeltaResult(1));
+    listener.cycleCompleted(latestResult, getDeltaResult(2));
+    assertEquals(1, listener.getQueueDepth());
+    executor.runAll();
+    final CycleCompletedCall call = testListener.getCycleCompleted(0);
+    assertEquals(latestResult, call.getFullResult());
+    assertEquals(1, call.getDeltaResult().getAllResults().size());
+    testListener.assertNoCalls();
+  }
+
+  public void testResultsNotCoalescedAcrossCompilation() {
+    final TestViewResultListener testListener = new TestViewResultListener();
+    final ManualExecutor executor = new ManualExecutor();
+    final AsynchronousViewResultListener listener = new AsynchronousViewResultListener(testListener, executor, 1, OverflowPolicy.MERGE);
+    listener.cycleCompleted(mock(ViewComputationResultModel.class), getDeltaResult(1));
+    listener.viewDefinitionCompiled(mock(CompiledViewDefinitionWithGraphsImpl.class), true);
+    listener.cycleCompleted(mock(ViewComputationResultModel.class), getDeltaResult(2));
+    assertEquals(3, listener.getQueueDepth());
+    executor.runAll();
+    testListener.assertCycleCompleted();
+    testListener.assertViewDefinitionCompiled();
+    testListener.assertCycleCompleted();
+    testListener.assertNoCalls();
+  }
+
+  public void testCyclesCoalescedWhole() throws InterruptedException {
+    final TestViewResultListener testListener = new TestViewResultListener();
+    final ManualExecutor executor = new ManualExecutor();
+    final AsynchronousViewResultListener listener = new AsynchronousViewResultListener(testListener, executor, 3, OverflowPolicy.MERGE);
+    final ViewCycleMetadata[] metadata = new ViewCycleMetadata[3];
+    for (int i = 0; i < 3; i++) {
+      metadata[i] = mock(ViewCycleMetadata.class);
+      listener.cycleStarted(metadata[i]);
+      listener.cycleFragmentCompleted(mock(ViewComputationResultModel.class), getDeltaResult(i));
+      listener.cycleCompleted(mock(ViewComputationResultModel.class), getDeltaResult(i));
+    }
+    // The first cycle was reopened by the second, which was in turn reopened by the third whose fragment was merged
+    assertEquals(4, listener.getQueueDepth());
+    assertEquals(3, listener.getCoalescedCount());
+    executor.runAll();
+    assertEquals(metadata[2], testListener.getCycleStarted(0).getCycleMetadata());
+    assertEquals(1, testListener.getCycleFragmentCompleted(0).getDeltaFragment().getAllResults().size());
+    assertEquals(2, testListener.getCycleFragmentCompleted(0).getDeltaFragment().getAllResults().size());
+    assertEquals(3, testListener.getCycleCompleted(0).getDeltaResult().getAllResults().size());
+    testListener.assertNoCalls();
+  }
+
+  public void testReopenedCycleReleasedOnFailure() throws InterruptedException {
+    final TestViewResultListener testListener = new TestViewResultListener();
+    final ManualExecutor executor = new ManualExecutor();
+    final AsynchronousViewResultListener listener = new AsynchronousViewResultListener(testListener, executor, 2, OverflowPolicy.MERGE);
+    listener.cycleStarted(mock(ViewCycleMetadata.class));
+    listener.cycleCompleted(mock(ViewComputationResultModel.class), getDeltaResult(1));
+    listener.cycleStarted(mock(ViewCycleMetadata.class));
+    assertEquals(1, listener.getQueueDepth());
+    listener.processTerminated(false);
+    executor.runAll();
+    testListener.assertCycleStarted();
+    assertEquals(1, testListener.getCycleCompleted(0).getDeltaResult().getAllResults().size());
+    testListener.assertProcessTerminated();
+    testListener.assertNoCalls();
+  }
+
+  public void testDiscard() {
+    final TestViewResultListener testListener = new TestViewResultListener();
+    final ManualExecutor executor = new ManualExecutor();
+    final AsynchronousViewResultListener listener = new AsynchronousViewResultListener(testListener, executor, 16, OverflowPolicy.BLOCK);
+    listener.cycleCompleted(mock(ViewComputationResultModel.class), getDeltaResult(1));
+    listener.discard();
+    executor.runAll();
+    testListener.assertNoCalls();
+    listener.processCompleted();
+    executor.runAll();
+    testListener.assertProcessCompleted();
+  }
+
+}
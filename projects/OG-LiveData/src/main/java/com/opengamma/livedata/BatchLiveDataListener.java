@@ -0,0 +1,34 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata;
+
+import java.util.Collection;
+
+import com.opengamma.util.PublicAPI;
+
+/**
+ * A {@link LiveDataListener} which can also receive several data updates in one call.
+ * <p>
+ * Clients which conflate updates, such as
+ * {@link com.opengamma.livedata.client.ConflatingLiveDataListener}, deliver each batch
+ * through {@link #valueUpdates(Collection)} rather than calling
+ * {@link #valueUpdate(LiveDataValueUpdate)} once per update.
+ */
+@PublicAPI
+public interface BatchLiveDataListener extends LiveDataListener {
+
+  /**
+   * Called when a batch of data updates has been received from the LiveData server.
+   * <p>
+   * A batch holds at most one update per specification.
+   * <p>
+   * <b>This method must execute quickly.</b>
+   * 
+   * @param valueUpdates  the updated live data, not null
+   */
+  void valueUpdates(Collection<LiveDataValueUpdate> valueUpdates);
+
+}
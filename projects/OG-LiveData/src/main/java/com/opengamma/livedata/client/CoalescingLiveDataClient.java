@@ -0,0 +1,538 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.livedata.LiveDataClient;
+import com.opengamma.livedata.LiveDataListener;
+import com.opengamma.livedata.LiveDataSpecification;
+import com.opengamma.livedata.LiveDataValueUpdate;
+import com.opengamma.livedata.LiveDataValueUpdateBean;
+import com.opengamma.livedata.UserPrincipal;
+import com.opengamma.livedata.msg.LiveDataSubscriptionResponse;
+import com.opengamma.livedata.msg.LiveDataSubscriptionResult;
+import com.opengamma.livedata.msg.SubscriptionType;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.NamedThreadPoolFactory;
+
+/**
+ * An implementation of {@link LiveDataClient} that coalesces subscription requests from many listeners into large
+ * batches to an underlying client.
+ * <p>
+ * Requests are collected for a short period and then sent in batches of at most a given size, each batch as a single
+ * request to the underlying client. Responses are passed to the listeners as each batch completes, rather than after
+ * all of the requests have been answered. Requests are deduplicated by {@link LiveDataSpecification}, for each user, so
+ * the underlying client only holds one subscription for each specification, and ticks are fanned out to the
+ * listeners.
+ * <p>
+ * A listener subscribing to a specification that is already subscribed is sent the original response immediately. Its
+ * ticks are then held until a snapshot of the value has been taken, using the same two-phase approach as
+ * {@link DistributedLiveDataClient}, so that it receives a full initial image.
+ */
+public class CoalescingLiveDataClient implements LiveDataClient {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(CoalescingLiveDataClient.class);
+
+  /**
+   * The default maximum number of specifications in a single request to the underlying client.
+   */
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+
+  /**
+   * The default period to collect requests for before sending them, in milliseconds.
+   */
+  public static final long DEFAULT_LINGER_MILLIS = 10;
+
+  private static final long SNAPSHOT_TIMEOUT = 30000;
+
+  private final LiveDataClient _underlying;
+  private final ExecutorService _executor = Executors.newSingleThreadExecutor(new NamedThreadPoolFactory("CoalescingLiveDataClient", true));
+  private final ConcurrentMap<UserPrincipal, UserSubscriptions> _users = new ConcurrentHashMap<UserPrincipal, UserSubscriptions>();
+  private final Runnable _flush = new Runnable() {
+    @Override
+    public void run() {
+      flush();
+    }
+  };
+  private int _batchSize = DEFAULT_BATCH_SIZE;
+  private long _lingerMillis = DEFAULT_LINGER_MILLIS;
+  private boolean _flushScheduled;
+
+  public CoalescingLiveDataClient(final LiveDataClient underlying) {
+    ArgumentChecker.notNull(underlying, "underlying");
+    _underlying = underlying;
+  }
+
+  public LiveDataClient getUnderlying() {
+    return _underlying;
+  }
+
+  public int getBatchSize() {
+    return _batchSize;
+  }
+
+  public void setBatchSize(final int batchSize) {
+    ArgumentChecker.isTrue(batchSize > 0, "batchSize");
+    _batchSize = batchSize;
+  }
+
+  public long getLingerMillis() {
+    return _lingerMillis;
+  }
+
+  public void setLingerMillis(final long lingerMillis) {
+    ArgumentChecker.isTrue(lingerMillis >= 0, "lingerMillis");
+    _lingerMillis = lingerMillis;
+  }
+
+  private UserSubscriptions getUserSubscriptions(final UserPrincipal user) {
+    UserSubscriptions subscriptions = _users.get(user);
+    if (subscriptions == null) {
+      subscriptions = new UserSubscriptions(user);
+      final UserSubscriptions existing = _users.putIfAbsent(user, subscriptions);
+      if (existing != null) {
+        subscriptions = existing;
+      }
+    }
+    return subscriptions;
+  }
+
+  private synchronized void scheduleFlush() {
+    if (!_flushScheduled) {
+      _flushScheduled = true;
+      _executor.execute(_flush);
+    }
+  }
+
+  private void flush() {
+    if (getLingerMillis() > 0) {
+      try {
+        Thread.sleep(getLingerMillis());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    synchronized (this) {
+      // Anything requested after this point will schedule another flush
+      _flushScheduled = false;
+    }
+    for (UserSubscriptions subscriptions : _users.values()) {
+      try {
+        subscriptions.flush();
+      } catch (RuntimeException e) {
+        s_logger.error("Error sending subscription requests for " + subscriptions.getUser(), e);
+      }
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * The subscriptions for a single user. This is the listener registered with the underlying client.
+   */
+  private final class UserSubscriptions implements LiveDataListener {
+
+    private final UserPrincipal _user;
+    /**
+     * Listeners waiting for a response, keyed by requested specification.
+     */
+    private final Map<LiveDataSpecification, Set<LiveDataListener>> _pending = new HashMap<LiveDataSpecification, Set<LiveDataListener>>();
+    /**
+     * Successful responses, keyed by requested specification.
+     */
+    private final Map<LiveDataSpecification, LiveDataSubscriptionResponse> _responses = new HashMap<LiveDataSpecification, LiveDataSubscriptionResponse>();
+    /**
+     * The requested specifications of the successful responses, keyed by fully qualified specification.
+     */
+    private final Map<LiveDataSpecification, Collection<LiveDataSpecification>> _requested = new HashMap<LiveDataSpecification, Collection<LiveDataSpecification>>();
+    /**
+     * Listeners receiving ticks, keyed by fully qualified specification.
+     */
+    private final ConcurrentMap<LiveDataSpecification, Set<LiveDataListener>> _subscribers = new ConcurrentHashMap<LiveDataSpecification, Set<LiveDataListener>>();
+    /**
+     * Listeners that joined an existing subscription, holding ticks until a snapshot has been taken. Keyed by fully
+     * qualified specification.
+     */
+    private final ConcurrentMap<LiveDataSpecification, Collection<SubscriptionHandle>> _onHold = new ConcurrentHashMap<LiveDataSpecification, Collection<SubscriptionHandle>>();
+    /**
+     * Requested specifications not yet sent to the underlying client.
+     */
+    private final Set<LiveDataSpecification> _toSubscribe = new LinkedHashSet<LiveDataSpecification>();
+    /**
+     * Requested specifications that listeners joining an existing subscription need a snapshot of.
+     */
+    private final Map<LiveDataSpecification, Collection<SubscriptionHandle>> _toSnapshot = new LinkedHashMap<LiveDataSpecification, Collection<SubscriptionHandle>>();
+
+    public UserSubscriptions(final UserPrincipal user) {
+      _user = user;
+    }
+
+    public UserPrincipal getUser() {
+      return _user;
+    }
+
+    public void subscribe(final Collection<LiveDataSpecification> requestedSpecifications, final LiveDataListener listener) {
+      final List<LiveDataSubscriptionResponse> immediate = new ArrayList<LiveDataSubscriptionResponse>();
+      boolean flush = false;
+      synchronized (this) {
+        for (LiveDataSpecification requestedSpecification : requestedSpecifications) {
+          final LiveDataSubscriptionResponse response = _responses.get(requestedSpecification);
+          if (response != null) {
+            immediate.add(response);
+            final Set<LiveDataListener> subscribers = _subscribers.get(response.getFullyQualifiedSpecification());
+            if ((subscribers == null) || !subscribers.contains(listener)) {
+              // Hold the ticks until there is a snapshot for the new listener
+              final SubscriptionHandle handle = new SubscriptionHandle(getUser(), SubscriptionType.NON_PERSISTENT, requestedSpecification, listener);
+              addHandle(_onHold, response.getFullyQualifiedSpecification(), handle);
+              addHandle(_toSnapshot, requestedSpecification, handle);
+              flush = true;
+            }
+          } else {
+            Set<LiveDataListener> listeners = _pending.get(requestedSpecification);
+            if (listeners == null) {
+              listeners = new HashSet<LiveDataListener>();
+              _pending.put(requestedSpecification, listeners);
+              _toSubscribe.add(requestedSpecification);
+              flush = true;
+            }
+            listeners.add(listener);
+          }
+        }
+      }
+      for (LiveDataSubscriptionResponse response : immediate) {
+        listener.subscriptionResultReceived(response);
+      }
+      if (flush) {
+        scheduleFlush();
+      }
+    }
+
+    private void addHandle(final Map<LiveDataSpecification, Collection<SubscriptionHandle>> handles, final LiveDataSpecification specification, final SubscriptionHandle handle) {
+      Collection<SubscriptionHandle> existing = handles.get(specification);
+      if (existing == null) {
+        existing = new ArrayList<SubscriptionHandle>();
+        handles.put(specification, existing);
+      }
+      existing.add(handle);
+    }
+
+    private boolean removeHandle(final Map<LiveDataSpecification, Collection<SubscriptionHandle>> handles, final LiveDataSpecification specification, final SubscriptionHandle handle) {
+      final Collection<SubscriptionHandle> existing = handles.get(specification);
+      if ((existing == null) || !existing.remove(handle)) {
+        return false;
+      }
+      if (existing.isEmpty()) {
+        handles.remove(specification);
+      }
+      return true;
+    }
+
+    public void flush() {
+      while (true) {
+        final List<LiveDataSpecification> batch;
+        synchronized (this) {
+          if (_toSubscribe.isEmpty()) {
+            break;
+          }
+          batch = new ArrayList<LiveDataSpecification>(Math.min(_toSubscribe.size(), getBatchSize()));
+          final Iterator<LiveDataSpecification> itr = _toSubscribe.iterator();
+          while (itr.hasNext() && (batch.size() < getBatchSize())) {
+            batch.add(itr.next());
+            itr.remove();
+          }
+        }
+        s_logger.debug("Subscribing to {} specifications for {}", batch.size(), getUser());
+        try {
+          getUnderlying().subscribe(getUser(), batch, this);
+        } catch (RuntimeException e) {
+          s_logger.error("Couldn't subscribe to " + batch.size() + " specifications", e);
+          for (LiveDataSpecification specification : batch) {
+            subscriptionResultReceived(new LiveDataSubscriptionResponse(specification, LiveDataSubscriptionResult.INTERNAL_ERROR, e.getMessage(), null, null, null));
+          }
+        }
+      }
+      while (true) {
+        final Map<LiveDataSpecification, Collection<SubscriptionHandle>> batch = new HashMap<LiveDataSpecification, Collection<SubscriptionHandle>>();
+        synchronized (this) {
+          if (_toSnapshot.isEmpty()) {
+            break;
+          }
+          final Iterator<Map.Entry<LiveDataSpecification, Collection<SubscriptionHandle>>> itr = _toSnapshot.entrySet().iterator();
+          while (itr.hasNext() && (batch.size() < getBatchSize())) {
+            final Map.Entry<LiveDataSpecification, Collection<SubscriptionHandle>> entry = itr.next();
+            batch.put(entry.getKey(), entry.getValue());
+            itr.remove();
+          }
+        }
+        Collection<LiveDataSubscriptionResponse> snapshots;
+        try {
+          snapshots = getUnderlying().snapshot(getUser(), batch.keySet(), SNAPSHOT_TIMEOUT);
+        } catch (RuntimeException e) {
+          s_logger.error("Couldn't snapshot " + batch.size() + " specifications", e);
+          snapshots = Collections.emptyList();
+        }
+        final Map<LiveDataSpecification, LiveDataValueUpdateBean> snapshotValues = new HashMap<LiveDataSpecification, LiveDataValueUpdateBean>();
+        for (LiveDataSubscriptionResponse snapshot : snapshots) {
+          if (snapshot.getSubscriptionResult() == LiveDataSubscriptionResult.SUCCESS) {
+            snapshotValues.put(snapshot.getRequestedSpecification(), snapshot.getSnapshot());
+          } else {
+            s_logger.warn("Couldn't snapshot {} for a new listener: {}", snapshot.getRequestedSpecification(), snapshot.getUserMessage());
+          }
+        }
+        for (Map.Entry<LiveDataSpecification, Collection<SubscriptionHandle>> entry : batch.entrySet()) {
+          releaseTicksOnHold(entry.getValue(), snapshotValues.get(entry.getKey()));
+        }
+      }
+    }
+
+    private void releaseTicksOnHold(final Collection<SubscriptionHandle> handles, final LiveDataValueUpdateBean snapshot) {
+      for (SubscriptionHandle handle : handles) {
+        synchronized (this) {
+          final LiveDataSubscriptionResponse response = _responses.get(handle.getRequestedSpecification());
+          if (response == null) {
+            // The subscription stopped while waiting for the snapshot
+            continue;
+          }
+          final LiveDataSpecification fullyQualifiedSpecification = response.getFullyQualifiedSpecification();
+          if (!removeHandle(_onHold, fullyQualifiedSpecification, handle)) {
+            // The listener unsubscribed while waiting for the snapshot
+            continue;
+          }
+          if (snapshot != null) {
+            handle.addSnapshotOnHold(snapshot);
+          }
+          handle.releaseTicksOnHold();
+          addSubscriber(fullyQualifiedSpecification, handle.getListener());
+        }
+      }
+    }
+
+    private void addSubscriber(final LiveDataSpecification fullyQualifiedSpecification, final LiveDataListener listener) {
+      Set<LiveDataListener> subscribers = _subscribers.get(fullyQualifiedSpecification);
+      if (subscribers == null) {
+        subscribers = new CopyOnWriteArraySet<LiveDataListener>();
+        _subscribers.put(fullyQualifiedSpecification, subscribers);
+      }
+      subscribers.add(listener);
+    }
+
+    public void unsubscribe(final Collection<LiveDataSpecification> fullyQualifiedSpecifications, final LiveDataListener listener) {
+      final List<LiveDataSpecification> cancel = new ArrayList<LiveDataSpecification>();
+      synchronized (this) {
+        for (LiveDataSpecification fullyQualifiedSpecification : fullyQualifiedSpecifications) {
+          final Set<LiveDataListener> subscribers = _subscribers.get(fullyQualifiedSpecification);
+          boolean removed = (subscribers != null) && subscribers.remove(listener);
+          removed |= removeTicksOnHold(fullyQualifiedSpecification, listener);
+          if (removed && ((subscribers == null) || subscribers.isEmpty()) && !_onHold.containsKey(fullyQualifiedSpecification)) {
+            _subscribers.remove(fullyQualifiedSpecification);
+            removeResponses(fullyQualifiedSpecification);
+            cancel.add(fullyQualifiedSpecification);
+          }
+        }
+      }
+      if (!cancel.isEmpty()) {
+        getUnderlying().unsubscribe(getUser(), cancel, this);
+      }
+      for (LiveDataSpecification fullyQualifiedSpecification : fullyQualifiedSpecifications) {
+        listener.subscriptionStopped(fullyQualifiedSpecification);
+      }
+    }
+
+    /**
+     * Removes a listener's handles that are waiting for a snapshot, so that it is not subscribed when the snapshot
+     * arrives.
+     */
+    private boolean removeTicksOnHold(final LiveDataSpecification fullyQualifiedSpecification, final LiveDataListener listener) {
+      // Caller must hold the monitor
+      final Collection<SubscriptionHandle> onHold = _onHold.get(fullyQualifiedSpecification);
+      if (onHold == null) {
+        return false;
+      }
+      boolean removed = false;
+      for (SubscriptionHandle handle : new ArrayList<SubscriptionHandle>(onHold)) {
+        if (handle.getListener().equals(listener)) {
+          removeHandle(_onHold, fullyQualifiedSpecification, handle);
+          removeHandle(_toSnapshot, handle.getRequestedSpecification(), handle);
+          removed = true;
+        }
+      }
+      return removed;
+    }
+
+    private void removeResponses(final LiveDataSpecification fullyQualifiedSpecification) {
+      // Caller must hold the monitor
+      final Collection<LiveDataSpecification> requestedSpecifications = _requested.remove(fullyQualifiedSpecification);
+      if (requestedSpecifications != null) {
+        for (LiveDataSpecification requestedSpecification : requestedSpecifications) {
+          _responses.remove(requestedSpecification);
+        }
+      }
+    }
+
+    // LiveDataListener
+
+    @Override
+    public void subscriptionResultReceived(final LiveDataSubscriptionResponse subscriptionResult) {
+      final Set<LiveDataListener> listeners;
+      synchronized (this) {
+        listeners = _pending.remove(subscriptionResult.getRequestedSpecification());
+        if (listeners == null) {
+          s_logger.warn("Received subscription result with no corresponding request: {}", subscriptionResult);
+          return;
+        }
+        if (subscriptionResult.getSubscriptionResult() == LiveDataSubscriptionResult.SUCCESS) {
+          _responses.put(subscriptionResult.getRequestedSpecification(), subscriptionResult);
+          Collection<LiveDataSpecification> requestedSpecifications = _requested.get(subscriptionResult.getFullyQualifiedSpecification());
+          if (requestedSpecifications == null) {
+            requestedSpecifications = new ArrayList<LiveDataSpecification>(1);
+            _requested.put(subscriptionResult.getFullyQualifiedSpecification(), requestedSpecifications);
+          }
+          requestedSpecifications.add(subscriptionResult.getRequestedSpecification());
+          for (LiveDataListener listener : listeners) {
+            addSubscriber(subscriptionResult.getFullyQualifiedSpecification(), listener);
+          }
+        }
+      }
+      // The underlying client releases ticks after this returns, so the listeners are subscribed before any arrive
+      for (LiveDataListener listener : listeners) {
+        try {
+          listener.subscriptionResultReceived(subscriptionResult);
+        } catch (RuntimeException e) {
+          s_logger.error("Error notifying " + listener + " of subscription result", e);
+        }
+      }
+    }
+
+    @Override
+    public void subscriptionStopped(final LiveDataSpecification fullyQualifiedSpecification) {
+      final Set<LiveDataListener> listeners;
+      synchronized (this) {
+        listeners = _subscribers.remove(fullyQualifiedSpecification);
+        _onHold.remove(fullyQualifiedSpecification);
+        removeResponses(fullyQualifiedSpecification);
+      }
+      if (listeners != null) {
+        for (LiveDataListener listener : listeners) {
+          listener.subscriptionStopped(fullyQualifiedSpecification);
+        }
+      }
+    }
+
+    @Override
+    public void valueUpdate(final LiveDataValueUpdate valueUpdate) {
+      final Set<LiveDataListener> subscribers;
+      final Iterator<LiveDataListener> listeners;
+      if (_onHold.isEmpty()) {
+        subscribers = _subscribers.get(valueUpdate.getSpecification());
+        listeners = (subscribers != null) ? subscribers.iterator() : null;
+      } else {
+        synchronized (this) {
+          final Collection<SubscriptionHandle> onHold = _onHold.get(valueUpdate.getSpecification());
+          if (onHold != null) {
+            final LiveDataValueUpdateBean tick = (valueUpdate instanceof LiveDataValueUpdateBean) ? (LiveDataValueUpdateBean) valueUpdate
+                : new LiveDataValueUpdateBean(valueUpdate.getSequenceNumber(), valueUpdate.getSpecification(), valueUpdate.getFields());
+            for (SubscriptionHandle handle : onHold) {
+              handle.addTickOnHold(tick);
+            }
+          }
+          // Take the iterator while holding the monitor so that a listener released from hold doesn't also get this tick
+          subscribers = _subscribers.get(valueUpdate.getSpecification());
+          listeners = (subscribers != null) ? subscribers.iterator() : null;
+        }
+      }
+      if (listeners != null) {
+        while (listeners.hasNext()) {
+          final LiveDataListener listener = listeners.next();
+          try {
+            listener.valueUpdate(valueUpdate);
+          } catch (RuntimeException e) {
+            s_logger.error("Error delivering update to " + listener, e);
+          }
+        }
+      }
+    }
+
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public boolean isEntitled(final UserPrincipal user, final LiveDataSpecification requestedSpecification) {
+    return getUnderlying().isEntitled(user, requestedSpecification);
+  }
+
+  @Override
+  public Map<LiveDataSpecification, Boolean> isEntitled(final UserPrincipal user, final Collection<LiveDataSpecification> requestedSpecifications) {
+    return getUnderlying().isEntitled(user, requestedSpecifications);
+  }
+
+  @Override
+  public void subscribe(final UserPrincipal user, final LiveDataSpecification requestedSpecification, final LiveDataListener listener) {
+    subscribe(user, Collections.singleton(requestedSpecification), listener);
+  }
+
+  @Override
+  public void subscribe(final UserPrincipal user, final Collection<LiveDataSpecification> requestedSpecifications, final LiveDataListener listener) {
+    ArgumentChecker.notNull(user, "user");
+    ArgumentChecker.notNull(requestedSpecifications, "requestedSpecifications");
+    ArgumentChecker.notNull(listener, "listener");
+    if (!requestedSpecifications.isEmpty()) {
+      getUserSubscriptions(user).subscribe(requestedSpecifications, listener);
+    }
+  }
+
+  @Override
+  public void unsubscribe(final UserPrincipal user, final LiveDataSpecification fullyQualifiedSpecification, final LiveDataListener listener) {
+    unsubscribe(user, Collections.singleton(fullyQualifiedSpecification), listener);
+  }
+
+  @Override
+  public void unsubscribe(final UserPrincipal user, final Collection<LiveDataSpecification> fullyQualifiedSpecifications, final LiveDataListener listener) {
+    ArgumentChecker.notNull(user, "user");
+    ArgumentChecker.notNull(fullyQualifiedSpecifications, "fullyQualifiedSpecifications");
+    ArgumentChecker.notNull(listener, "listener");
+    getUserSubscriptions(user).unsubscribe(fullyQualifiedSpecifications, listener);
+  }
+
+  @Override
+  public LiveDataSubscriptionResponse snapshot(final UserPrincipal user, final LiveDataSpecification requestedSpecification, final long timeout) {
+    return getUnderlying().snapshot(user, requestedSpecification, timeout);
+  }
+
+  @Override
+  public Collection<LiveDataSubscriptionResponse> snapshot(final UserPrincipal user, final Collection<LiveDataSpecification> requestedSpecifications, final long timeout) {
+    return getUnderlying().snapshot(user, requestedSpecifications, timeout);
+  }
+
+  @Override
+  public String getDefaultNormalizationRuleSetId() {
+    return getUnderlying().getDefaultNormalizationRuleSetId();
+  }
+
+  @Override
+  public void close() {
+    _executor.shutdown();
+    getUnderlying().close();
+  }
+
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.client;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.livedata.BatchLiveDataListener;
+import com.opengamma.livedata.LiveDataListener;
+import com.opengamma.livedata.LiveDataSpecification;
+import com.opengamma.livedata.LiveDataValueUpdate;
+import com.opengamma.livedata.LiveDataValueUpdateBean;
+import com.opengamma.livedata.msg.LiveDataSubscriptionResponse;
+import com.opengamma.livedata.server.FieldHistoryStore;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * A {@link LiveDataListener} which conflates data updates before passing them on.
+ * <p>
+ * Updates are held for a window starting at the first update after the previous delivery.
+ * Updates for a specification already held are merged into it, the latest value of each field
+ * winning. At the end of the window all the held updates are delivered together, by one call to
+ * {@link BatchLiveDataListener#valueUpdates} if the underlying listener accepts batches, or by a
+ * call to {@link LiveDataListener#valueUpdate} for each otherwise. Each specification is
+ * therefore delivered at most once per window, however fast it ticks.
+ * <p>
+ * Delivery happens on the executor's thread. Subscription results and stops are passed on
+ * immediately on the calling thread.
+ */
+public class ConflatingLiveDataListener implements LiveDataListener {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(ConflatingLiveDataListener.class);
+
+  private final LiveDataListener _underlying;
+  private final long _windowMillis;
+  private final ScheduledExecutorService _executor;
+  private final Runnable _flush = new Runnable() {
+    @Override
+    public void run() {
+      flush();
+    }
+  };
+
+  /** Access controlled via this */
+  private Map<LiveDataSpecification, PendingUpdate> _pending = new LinkedHashMap<LiveDataSpecification, PendingUpdate>();
+
+  private final AtomicLong _updatesReceived = new AtomicLong();
+  private final AtomicLong _updatesDelivered = new AtomicLong();
+  private final AtomicLong _batchesDelivered = new AtomicLong();
+
+  /**
+   * Creates an instance.
+   *
+   * @param underlying  the listener to deliver the conflated updates to, not null
+   * @param windowMillis  how long updates are held for, greater than zero
+   * @param executor  the executor delivering the updates, not null
+   */
+  public ConflatingLiveDataListener(LiveDataListener underlying, long windowMillis, ScheduledExecutorService executor) {
+    ArgumentChecker.notNull(underlying, "underlying");
+    ArgumentChecker.isTrue(windowMillis > 0, "windowMillis must be positive");
+    ArgumentChecker.notNull(executor, "executor");
+    _underlying = underlying;
+    _windowMillis = windowMillis;
+    _executor = executor;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the underlying listener.
+   *
+   * @return the listener, not null
+   */
+  public LiveDataListener getUnderlying() {
+    return _underlying;
+  }
+
+  /**
+   * Gets how long updates are held for.
+   *
+   * @return the window in milliseconds
+   */
+  public long getWindowMillis() {
+    return _windowMillis;
+  }
+
+  /**
+   * Gets the number of updates received.
+   *
+   * @return the number of updates received
+   */
+  public long getUpdatesReceived() {
+    return _updatesReceived.get();
+  }
+
+  /**
+   * Gets the number of updates delivered, after conflation.
+   *
+   * @return the number of updates delivered
+   */
+  public long getUpdatesDelivered() {
+    return _updatesDelivered.get();
+  }
+
+  /**
+   * Gets the number of batches delivered.
+   *
+   * @return the number of batches delivered
+   */
+  public long getBatchesDelivered() {
+    return _batchesDelivered.get();
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public void subscriptionResultReceived(LiveDataSubscriptionResponse subscriptionResult) {
+    _underlying.subscriptionResultReceived(subscriptionResult);
+  }
+
+  @Override
+  public void subscriptionStopped(LiveDataSpecification fullyQualifiedSpecification) {
+    _underlying.subscriptionStopped(fullyQualifiedSpecification);
+  }
+
+  @Override
+  public void valueUpdate(LiveDataValueUpdate valueUpdate) {
+    _updatesReceived.incrementAndGet();
+    boolean schedule;
+    synchronized (this) {
+      schedule = _pending.isEmpty();
+      PendingUpdate pending = _pending.get(valueUpdate.getSpecification());
+      if (pending == null) {
+        _pending.put(valueUpdate.getSpecification(), new PendingUpdate(valueUpdate));
+      } else {
+        pending.merge(valueUpdate);
+      }
+    }
+    if (schedule) {
+      _executor.schedule(_flush, _windowMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Delivers the updates held, if any.
+   */
+  public void flush() {
+    Map<LiveDataSpecification, PendingUpdate> pending;
+    synchronized (this) {
+      if (_pending.isEmpty()) {
+        return;
+      }
+      pending = _pending;
+      _pending = new LinkedHashMap<LiveDataSpecification, PendingUpdate>();
+    }
+    List<LiveDataValueUpdate> updates = new ArrayList<LiveDataValueUpdate>(pending.size());
+    for (PendingUpdate update : pending.values()) {
+      updates.add(update.getUpdate());
+    }
+    _updatesDelivered.addAndGet(updates.size());
+    _batchesDelivered.incrementAndGet();
+    try {
+      if (_underlying instanceof BatchLiveDataListener) {
+        ((BatchLiveDataListener) _underlying).valueUpdates(updates);
+      } else {
+        for (LiveDataValueUpdate update : updates) {
+          _underlying.valueUpdate(update);
+        }
+      }
+    } catch (RuntimeException e) {
+      s_logger.error("Failed to deliver conflated updates to " + _underlying, e);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * The updates held for one specification.
+   */
+  private static final class PendingUpdate {
+
+    private LiveDataValueUpdate _latest;
+    private FieldHistoryStore _fields;
+
+    private PendingUpdate(LiveDataValueUpdate update) {
+      _latest = update;
+    }
+
+    private void merge(LiveDataValueUpdate update) {
+      if (_fields == null) {
+        _fields = new FieldHistoryStore(_latest.getFields());
+      }
+      _fields.liveDataReceived(update.getFields());
+      _latest = update;
+    }
+
+    private LiveDataValueUpdate getUpdate() {
+      if (_fields == null) {
+        return _latest;
+      }
+      return new LiveDataValueUpdateBean(_latest.getSequenceNumber(), _latest.getSpecification(), _fields.getLastKnownValues());
+    }
+
+  }
+
+}
@@ -0,0 +1,598 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.firehose;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
+
+/**
+ * A tick journal, as written by {@link TickJournalWriter}, opened for reading.
+ * <p>
+ * A journal is a file holding a header and a sequence of records, in the order written. Each
+ * record is its length, a timestamp, the index of its security and a payload. The first record
+ * for a security is preceded by a dictionary record giving the security's name, so the journal
+ * describes itself. Timestamps never decrease from one record to the next. A record length of
+ * zero, or the end of the file, marks the end of the journal.
+ * <p>
+ * The file is read through memory mapped regions. Opening the journal reads the record headers,
+ * but not the payloads, to build a sparse index by time. The index by security is built the
+ * first time the ticks of a security are asked for. Since the index is built from the journal
+ * itself, a journal whose writer was never closed can still be read up to its last whole record.
+ * <p>
+ * The journal may be read by any number of {@link Cursor cursors} at once, each from its own
+ * thread. A journal written to after it is opened shows only the records present when it was
+ * opened.
+ */
+public class TickJournal implements Closeable {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(TickJournal.class);
+
+  /**
+   * The default size of the regions of the file mapped at a time.
+   */
+  public static final int DEFAULT_REGION_SIZE = 64 << 20;
+
+  /* package */ static final int MAGIC = 0x4F47544A;
+  /* package */ static final int VERSION = 1;
+  /* package */ static final int HEADER_SIZE = 8;
+  /* package */ static final int RECORD_HEADER_SIZE = 16;
+  /* package */ static final int DICTIONARY_ENTRY = -1;
+  /* package */ static final Charset UTF8 = Charset.forName("UTF-8");
+
+  /** One tick in this many is entered in the time index. */
+  private static final int TIME_INDEX_INTERVAL = 256;
+
+  private final FudgeContext _fudgeContext;
+  private final File _file;
+  private final int _regionSize;
+  private final RandomAccessFile _raf;
+  private final FileChannel _channel;
+  private final long _length;
+
+  private final List<String> _securities = new ArrayList<String>();
+  private final Map<String, Integer> _securityIds = new HashMap<String, Integer>();
+  private final LongList _tickCounts = new LongList();
+  private final LongList _timeIndexTimestamps = new LongList();
+  private final LongList _timeIndexOffsets = new LongList();
+  private long _endOffset;
+  private long _tickCount;
+  private long _firstTimestamp;
+  private long _lastTimestamp;
+
+  /** Access controlled via this */
+  private final Map<Integer, long[]> _securityOffsets = new HashMap<Integer, long[]>();
+
+  /**
+   * Opens a journal.
+   *
+   * @param file  the journal file, not null
+   */
+  public TickJournal(File file) {
+    this(OpenGammaFudgeContext.getInstance(), file, DEFAULT_REGION_SIZE);
+  }
+
+  /**
+   * Opens a journal.
+   *
+   * @param fudgeContext  the context to decode payloads with, not null
+   * @param file  the journal file, not null
+   * @param regionSize  the size of the regions of the file mapped at a time, greater than zero
+   */
+  public TickJournal(FudgeContext fudgeContext, File file, int regionSize) {
+    ArgumentChecker.notNull(fudgeContext, "fudgeContext");
+    ArgumentChecker.notNull(file, "file");
+    ArgumentChecker.isTrue(regionSize > 0, "regionSize must be positive");
+    _fudgeContext = fudgeContext;
+    _file = file;
+    _regionSize = regionSize;
+    try {
+      _raf = new RandomAccessFile(file, "r");
+      _channel = _raf.getChannel();
+      _length = _channel.size();
+    } catch (IOException e) {
+      throw new OpenGammaRuntimeException("Cannot open " + file + " for reading", e);
+    }
+    try {
+      buildIndex();
+    } catch (IOException e) {
+      close();
+      throw new OpenGammaRuntimeException("Cannot read " + file, e);
+    } catch (RuntimeException e) {
+      close();
+      throw e;
+    }
+    s_logger.info("Opened {} holding {} ticks for {} securities", new Object[] {file, _tickCount, _securities.size()});
+  }
+
+  private void buildIndex() throws IOException {
+    final Region region = new Region();
+    if (_length < HEADER_SIZE) {
+      throw new OpenGammaRuntimeException(_file + " is not a tick journal");
+    }
+    int index = region.map(0, HEADER_SIZE);
+    if (region.getBuffer().getInt(index) != MAGIC) {
+      throw new OpenGammaRuntimeException(_file + " is not a tick journal");
+    }
+    if (region.getBuffer().getInt(index + 4) != VERSION) {
+      throw new OpenGammaRuntimeException(_file + " is version " + region.getBuffer().getInt(index + 4) + " of the tick journal format, expected " + VERSION);
+    }
+    long offset = HEADER_SIZE;
+    while (offset + RECORD_HEADER_SIZE <= _length) {
+      index = region.map(offset, RECORD_HEADER_SIZE);
+      final MappedByteBuffer buffer = region.getBuffer();
+      final int length = buffer.getInt(index);
+      if (length < RECORD_HEADER_SIZE || offset + length > _length) {
+        // The end marker, or a record whose writing was never finished
+        break;
+      }
+      final long timestamp = buffer.getLong(index + 4);
+      final int security = buffer.getInt(index + 12);
+      if (security == DICTIONARY_ENTRY) {
+        index = region.map(offset, length);
+        final byte[] name = new byte[length - RECORD_HEADER_SIZE];
+        region.getBuffer().position(index + RECORD_HEADER_SIZE);
+        region.getBuffer().get(name);
+        final String securityName = new String(name, UTF8);
+        _securityIds.put(securityName, _securities.size());
+        _securities.add(securityName);
+        _tickCounts.add(0);
+      } else {
+        if (security < 0 || security >= _securities.size()) {
+          throw new OpenGammaRuntimeException("Invalid security " + security + " at offset " + offset + " of " + _file);
+        }
+        if (_tickCount % TIME_INDEX_INTERVAL == 0) {
+          _timeIndexTimestamps.add(timestamp);
+          _timeIndexOffsets.add(offset);
+        }
+        if (_tickCount == 0) {
+          _firstTimestamp = timestamp;
+        }
+        _lastTimestamp = timestamp;
+        _tickCounts.set(security, _tickCounts.get(security) + 1);
+        _tickCount++;
+      }
+      offset += length;
+    }
+    _endOffset = offset;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the journal file.
+   *
+   * @return the file, not null
+   */
+  public File getFile() {
+    return _file;
+  }
+
+  /**
+   * Gets the number of ticks in the journal.
+   *
+   * @return the number of ticks
+   */
+  public long getTickCount() {
+    return _tickCount;
+  }
+
+  /**
+   * Gets the number of ticks in the journal for a security.
+   *
+   * @param security  the security, not null
+   * @return the number of ticks, zero if the security is not in the journal
+   */
+  public long getTickCount(String security) {
+    ArgumentChecker.notNull(security, "security");
+    final Integer id = _securityIds.get(security);
+    return (id != null) ? _tickCounts.get(id) : 0;
+  }
+
+  /**
+   * Gets the timestamp of the first tick.
+   *
+   * @return the timestamp in milliseconds since the epoch, undefined if the journal is empty
+   */
+  public long getFirstTimestamp() {
+    return _firstTimestamp;
+  }
+
+  /**
+   * Gets the timestamp of the last tick.
+   *
+   * @return the timestamp in milliseconds since the epoch, undefined if the journal is empty
+   */
+  public long getLastTimestamp() {
+    return _lastTimestamp;
+  }
+
+  /**
+   * Gets the securities with ticks in the journal.
+   *
+   * @return the securities, not null
+   */
+  public Set<String> getSecurities() {
+    return Collections.unmodifiableSet(_securityIds.keySet());
+  }
+
+  /**
+   * Gets the securities in the order they were first written, which is the order of their indices.
+   *
+   * @return the securities, not null
+   */
+  /* package */ List<String> getSecurityDictionary() {
+    return Collections.unmodifiableList(_securities);
+  }
+
+  /**
+   * Gets the offset after the last whole record, where any further records will be written.
+   *
+   * @return the offset
+   */
+  /* package */ long getEndOffset() {
+    return _endOffset;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Creates a cursor over all the ticks in the journal, positioned before the first tick.
+   *
+   * @return the cursor, not null
+   */
+  public Cursor cursor() {
+    return new Cursor(null);
+  }
+
+  /**
+   * Creates a cursor over the ticks in the journal for some securities, positioned before the
+   * first such tick.
+   *
+   * @param securities  the securities, not null
+   * @return the cursor, not null
+   */
+  public Cursor cursor(Collection<String> securities) {
+    ArgumentChecker.notNull(securities, "securities");
+    final Set<Integer> ids = new HashSet<Integer>();
+    for (String security : securities) {
+      final Integer id = _securityIds.get(security);
+      if (id != null) {
+        ids.add(id);
+      }
+    }
+    return new Cursor(getOffsets(ids));
+  }
+
+  /**
+   * Gets the offsets of the ticks of some securities, in order.
+   *
+   * @param ids  the security indices, not null
+   * @return the offsets, not null
+   */
+  private long[] getOffsets(Set<Integer> ids) {
+    final List<long[]> offsets = new ArrayList<long[]>(ids.size());
+    synchronized (this) {
+      final Set<Integer> missing = new HashSet<Integer>(ids);
+      missing.removeAll(_securityOffsets.keySet());
+      if (!missing.isEmpty()) {
+        indexSecurities(missing);
+      }
+      for (Integer id : ids) {
+        offsets.add(_securityOffsets.get(id));
+      }
+    }
+    if (offsets.size() == 1) {
+      return offsets.get(0);
+    }
+    int count = 0;
+    for (long[] securityOffsets : offsets) {
+      count += securityOffsets.length;
+    }
+    final long[] merged = new long[count];
+    count = 0;
+    for (long[] securityOffsets : offsets) {
+      System.arraycopy(securityOffsets, 0, merged, count, securityOffsets.length);
+      count += securityOffsets.length;
+    }
+    // Offsets are in the order written, which is also time order
+    Arrays.sort(merged);
+    return merged;
+  }
+
+  private void indexSecurities(Set<Integer> ids) {
+    s_logger.debug("Indexing {} securities of {}", ids.size(), _file);
+    final LongList[] offsets = new LongList[_securities.size()];
+    for (Integer id : ids) {
+      offsets[id] = new LongList();
+    }
+    final Region region = new Region();
+    long offset = HEADER_SIZE;
+    while (offset < _endOffset) {
+      final int index = region.map(offset, RECORD_HEADER_SIZE);
+      final int security = region.getBuffer().getInt(index + 12);
+      if (security != DICTIONARY_ENTRY && offsets[security] != null) {
+        offsets[security].add(offset);
+      }
+      offset += region.getBuffer().getInt(index);
+    }
+    for (Integer id : ids) {
+      _securityOffsets.put(id, offsets[id].toArray());
+    }
+  }
+
+  /**
+   * Finds the first record with a timestamp at or after a given time.
+   *
+   * @param region  the region to read the journal through, not null
+   * @param timestamp  the time in milliseconds since the epoch
+   * @return the offset of the record, the end offset if there is none
+   */
+  private long findOffset(Region region, long timestamp) {
+    // The last entry of the time index before the time
+    int low = 0;
+    int high = _timeIndexTimestamps.size() - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      if (_timeIndexTimestamps.get(mid) < timestamp) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    long offset = (high >= 0) ? _timeIndexOffsets.get(high) : HEADER_SIZE;
+    while (offset < _endOffset) {
+      final int index = region.map(offset, RECORD_HEADER_SIZE);
+      if (region.getBuffer().getLong(index + 4) >= timestamp) {
+        break;
+      }
+      offset += region.getBuffer().getInt(index);
+    }
+    return offset;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Closes the journal. Cursors already created may still be read until they need to map another
+   * region of the file.
+   */
+  @Override
+  public void close() {
+    try {
+      _channel.close();
+      _raf.close();
+    } catch (IOException e) {
+      s_logger.warn("Cannot close {} - {}", _file, e.toString());
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * A position in the journal, moved from tick to tick.
+   * <p>
+   * The cursor reads the tick in place in the mapped file. Its accessors describe the current
+   * tick, which is the one found by the most recent call to {@link #next}. A cursor is not
+   * thread-safe.
+   */
+  public final class Cursor {
+
+    private final Region _region = new Region();
+    /** The offsets of the ticks visited, null to visit every tick */
+    private final long[] _offsets;
+    private int _nextIndex;
+    private long _nextOffset = HEADER_SIZE;
+    private int _index = -1;
+    private int _length;
+    private long _timestamp;
+    private int _security;
+
+    private Cursor(long[] offsets) {
+      _offsets = offsets;
+    }
+
+    /**
+     * Moves to the next tick.
+     *
+     * @return true if there is a tick, false if the end of the journal has been reached
+     */
+    public boolean next() {
+      while (true) {
+        final long offset;
+        if (_offsets != null) {
+          if (_nextIndex >= _offsets.length) {
+            return false;
+          }
+          offset = _offsets[_nextIndex++];
+        } else {
+          if (_nextOffset >= _endOffset) {
+            return false;
+          }
+          offset = _nextOffset;
+        }
+        int index = _region.map(offset, RECORD_HEADER_SIZE);
+        final int length = _region.getBuffer().getInt(index);
+        _nextOffset = offset + length;
+        final int security = _region.getBuffer().getInt(index + 12);
+        if (security == DICTIONARY_ENTRY) {
+          continue;
+        }
+        if (length > RECORD_HEADER_SIZE) {
+          index = _region.map(offset, length);
+        }
+        _index = index;
+        _length = length;
+        _timestamp = _region.getBuffer().getLong(index + 4);
+        _security = security;
+        return true;
+      }
+    }
+
+    /**
+     * Positions the cursor before the first tick at or after a given time. The time may be
+     * before or after the current tick.
+     *
+     * @param timestamp  the time in milliseconds since the epoch
+     */
+    public void seek(long timestamp) {
+      final long offset = findOffset(_region, timestamp);
+      if (_offsets != null) {
+        final int found = Arrays.binarySearch(_offsets, offset);
+        _nextIndex = (found >= 0) ? found : -(found + 1);
+      } else {
+        _nextOffset = offset;
+      }
+      _index = -1;
+    }
+
+    private void checkCurrent() {
+      if (_index < 0) {
+        throw new IllegalStateException("No current tick");
+      }
+    }
+
+    /**
+     * Gets the timestamp of the current tick.
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+      checkCurrent();
+      return _timestamp;
+    }
+
+    /**
+     * Gets the security of the current tick.
+     *
+     * @return the security, not null
+     */
+    public String getSecurity() {
+      checkCurrent();
+      return _securities.get(_security);
+    }
+
+    /**
+     * Gets the length of the payload of the current tick.
+     *
+     * @return the number of bytes
+     */
+    public int getPayloadLength() {
+      checkCurrent();
+      return _length - RECORD_HEADER_SIZE;
+    }
+
+    /**
+     * Gets a copy of the payload of the current tick.
+     *
+     * @return the payload, not null
+     */
+    public byte[] getPayload() {
+      final byte[] payload = new byte[getPayloadLength()];
+      _region.getBuffer().position(_index + RECORD_HEADER_SIZE);
+      _region.getBuffer().get(payload);
+      return payload;
+    }
+
+    /**
+     * Decodes the payload of the current tick, as written by
+     * {@link TickJournalWriter#write(long, String, FudgeMsg)}.
+     *
+     * @return the fields, not null
+     */
+    public FudgeMsg getFields() {
+      return _fudgeContext.deserialize(getPayload()).getMessage();
+    }
+
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * A mapped region of the file, moved as records outside it are asked for.
+   */
+  private final class Region {
+
+    private MappedByteBuffer _buffer;
+    private long _start;
+
+    /**
+     * Maps the region holding a range of the file, if it is not mapped already.
+     *
+     * @param offset  the start of the range
+     * @param length  the length of the range
+     * @return the index of the start of the range in the buffer
+     */
+    private int map(long offset, int length) {
+      if (_buffer == null || offset < _start || offset + length > _start + _buffer.capacity()) {
+        final long size = Math.min(Math.max(_regionSize, length), _length - offset);
+        try {
+          _buffer = _channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+        } catch (IOException e) {
+          throw new OpenGammaRuntimeException("Cannot map " + size + " bytes at offset " + offset + " of " + _file, e);
+        }
+        _start = offset;
+      }
+      return (int) (offset - _start);
+    }
+
+    private MappedByteBuffer getBuffer() {
+      return _buffer;
+    }
+
+  }
+
+  /**
+   * A growable list of primitive longs.
+   */
+  private static final class LongList {
+
+    private long[] _values = new long[16];
+    private int _size;
+
+    private void add(long value) {
+      if (_size == _values.length) {
+        _values = Arrays.copyOf(_values, _size * 2);
+      }
+      _values[_size++] = value;
+    }
+
+    private long get(int index) {
+      return _values[index];
+    }
+
+    private void set(int index, long value) {
+      _values[index] = value;
+    }
+
+    private int size() {
+      return _size;
+    }
+
+    private long[] toArray() {
+      return Arrays.copyOf(_values, _size);
+    }
+
+  }
+
+}
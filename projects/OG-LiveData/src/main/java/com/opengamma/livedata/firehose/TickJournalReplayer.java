@@ -0,0 +1,289 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.firehose;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Replays the ticks of a {@link TickJournal} to a listener, keeping to the pace at which they were
+ * recorded, a multiple of it, or as fast as the listener can take them.
+ * <p>
+ * The pace is kept against the first tick replayed, so time spent in the listener is caught up
+ * rather than accumulating. Ticks due less than a millisecond apart are delivered without pausing.
+ * <p>
+ * The replay runs on the thread calling {@link #run}. The speed may be changed, the replay moved
+ * to another time with {@link #seek}, and the replay stopped, from any thread while it runs. These
+ * take effect immediately, even while waiting for a tick that is not yet due; a change of speed
+ * keeps the time reached and paces the remaining ticks from there.
+ * <p>
+ * It has the following properties that may be set before the replay is run:
+ * <dl>
+ *   <dt>securities</dt>
+ *   <dd>The securities whose ticks are replayed. Defaults to all of them.</dd>
+ *   <dt>startTimestamp</dt>
+ *   <dd>The time of the first tick replayed. Defaults to the start of the journal.</dd>
+ *   <dt>endTimestamp</dt>
+ *   <dd>The time after which the replay stops. Defaults to the end of the journal.</dd>
+ * </dl>
+ */
+public class TickJournalReplayer implements Runnable {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(TickJournalReplayer.class);
+
+  /**
+   * The speed replaying ticks at the pace they were recorded.
+   */
+  public static final double REAL_TIME = 1.0;
+  /**
+   * The speed replaying ticks as fast as possible.
+   */
+  public static final double MAXIMUM_SPEED = Double.POSITIVE_INFINITY;
+
+  private static final long NO_SEEK = Long.MIN_VALUE;
+
+  /**
+   * Receives the ticks replayed.
+   */
+  public interface Listener {
+
+    /**
+     * Called for each tick replayed.
+     *
+     * @param tick  the cursor, positioned at the tick, which may only be used until the method returns
+     */
+    void tickReplayed(TickJournal.Cursor tick);
+
+  }
+
+  private final TickJournal _journal;
+  private final Listener _listener;
+  private volatile double _speed = REAL_TIME;
+  private Set<String> _securities;
+  private long _startTimestamp = Long.MIN_VALUE;
+  private long _endTimestamp = Long.MAX_VALUE;
+  private final AtomicLong _seekTo = new AtomicLong(NO_SEEK);
+  private volatile boolean _stopped;
+  private final AtomicLong _ticksReplayed = new AtomicLong();
+  /**
+   * Waited on until the next tick is due, and notified when the speed, seek or stop state changes.
+   */
+  private final Object _signal = new Object();
+  private volatile long _replayTimestamp;
+
+  /**
+   * Creates an instance.
+   *
+   * @param journal  the journal, not null
+   * @param listener  the listener, not null
+   */
+  public TickJournalReplayer(TickJournal journal, Listener listener) {
+    ArgumentChecker.notNull(journal, "journal");
+    ArgumentChecker.notNull(listener, "listener");
+    _journal = journal;
+    _listener = listener;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the speed, as a multiple of the pace the ticks were recorded at.
+   *
+   * @return the speed
+   */
+  public double getSpeed() {
+    return _speed;
+  }
+
+  /**
+   * Sets the speed, as a multiple of the pace the ticks were recorded at. This may be
+   * {@link #REAL_TIME}, any other positive multiple, or {@link #MAXIMUM_SPEED}.
+   *
+   * @param speed  the speed, greater than zero
+   */
+  public void setSpeed(double speed) {
+    ArgumentChecker.isTrue(speed > 0, "speed must be positive");
+    _speed = speed;
+    signal();
+  }
+
+  /**
+   * Gets the securities whose ticks are replayed.
+   *
+   * @return the securities, null for all
+   */
+  public Set<String> getSecurities() {
+    return _securities;
+  }
+
+  /**
+   * Sets the securities whose ticks are replayed.
+   *
+   * @param securities  the securities, null for all
+   */
+  public void setSecurities(Collection<String> securities) {
+    _securities = (securities != null) ? new HashSet<String>(securities) : null;
+  }
+
+  /**
+   * Gets the time of the first tick replayed.
+   *
+   * @return the time in milliseconds since the epoch
+   */
+  public long getStartTimestamp() {
+    return _startTimestamp;
+  }
+
+  /**
+   * Sets the time of the first tick replayed.
+   *
+   * @param startTimestamp  the time in milliseconds since the epoch
+   */
+  public void setStartTimestamp(long startTimestamp) {
+    _startTimestamp = startTimestamp;
+  }
+
+  /**
+   * Gets the time after which the replay stops.
+   *
+   * @return the time in milliseconds since the epoch
+   */
+  public long getEndTimestamp() {
+    return _endTimestamp;
+  }
+
+  /**
+   * Sets the time after which the replay stops.
+   *
+   * @param endTimestamp  the time in milliseconds since the epoch
+   */
+  public void setEndTimestamp(long endTimestamp) {
+    _endTimestamp = endTimestamp;
+  }
+
+  /**
+   * Gets the number of ticks replayed.
+   *
+   * @return the number of ticks
+   */
+  public long getTicksReplayed() {
+    return _ticksReplayed.get();
+  }
+
+  /**
+   * Gets the time of the last tick replayed, which is the time the replay has reached.
+   *
+   * @return the time in milliseconds since the epoch, undefined if no tick has been replayed
+   */
+  public long getReplayTimestamp() {
+    return _replayTimestamp;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Moves the replay to the first tick at or after a given time, which may be before or after
+   * the time reached. The pace is then kept against that tick.
+   *
+   * @param timestamp  the time in milliseconds since the epoch
+   */
+  public void seek(long timestamp) {
+    ArgumentChecker.isTrue(timestamp != NO_SEEK, "invalid timestamp");
+    _seekTo.set(timestamp);
+    signal();
+  }
+
+  /**
+   * Stops the replay after the tick being replayed.
+   */
+  public void stop() {
+    _stopped = true;
+    signal();
+  }
+
+  private void signal() {
+    synchronized (_signal) {
+      _signal.notifyAll();
+    }
+  }
+
+  @Override
+  public void run() {
+    final TickJournal.Cursor cursor = (_securities != null) ? _journal.cursor(_securities) : _journal.cursor();
+    cursor.seek(_startTimestamp);
+    s_logger.info("Replaying {} at {}x", _journal.getFile(), _speed);
+    boolean anchored = false;
+    long originTimestamp = 0;
+    long originNanos = 0;
+    double speed = 0;
+    while (!_stopped) {
+      final long seekTo = _seekTo.getAndSet(NO_SEEK);
+      if (seekTo != NO_SEEK) {
+        s_logger.debug("Seeking to {}", seekTo);
+        cursor.seek(seekTo);
+        anchored = false;
+      }
+      if (!cursor.next()) {
+        break;
+      }
+      final long timestamp = cursor.getTimestamp();
+      if (timestamp > _endTimestamp) {
+        break;
+      }
+      boolean due = true;
+      if (!anchored) {
+        anchored = true;
+        originTimestamp = timestamp;
+        originNanos = System.nanoTime();
+        speed = _speed;
+      } else {
+        synchronized (_signal) {
+          while (true) {
+            if (_stopped || (_seekTo.get() != NO_SEEK)) {
+              // Discard the tick; the cursor is repositioned before the next one is read
+              due = false;
+              break;
+            }
+            final long now = System.nanoTime();
+            final double currentSpeed = _speed;
+            if (currentSpeed != speed) {
+              // Keep the time reached and pace from it at the new speed
+              originTimestamp = (speed != MAXIMUM_SPEED) ? originTimestamp + (long) ((now - originNanos) * speed / 1000000d) : _replayTimestamp;
+              originNanos = now;
+              speed = currentSpeed;
+            }
+            if (speed == MAXIMUM_SPEED) {
+              break;
+            }
+            final long wait = originNanos + (long) ((timestamp - originTimestamp) * 1000000d / speed) - now;
+            if (wait < 1000000L) {
+              break;
+            }
+            try {
+              _signal.wait(wait / 1000000L, (int) (wait % 1000000L));
+            } catch (InterruptedException e) {
+              throw new OpenGammaRuntimeException("Interrupted", e);
+            }
+          }
+        }
+      }
+      if (!due) {
+        continue;
+      }
+      _replayTimestamp = timestamp;
+      _listener.tickReplayed(cursor);
+      _ticksReplayed.incrementAndGet();
+    }
+    s_logger.info("Replayed {} ticks from {}", _ticksReplayed.get(), _journal.getFile());
+  }
+
+}
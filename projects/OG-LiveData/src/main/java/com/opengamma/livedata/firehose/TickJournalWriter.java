@@ -0,0 +1,262 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.firehose;
+
+import static com.opengamma.livedata.firehose.TickJournal.DICTIONARY_ENTRY;
+import static com.opengamma.livedata.firehose.TickJournal.HEADER_SIZE;
+import static com.opengamma.livedata.firehose.TickJournal.MAGIC;
+import static com.opengamma.livedata.firehose.TickJournal.RECORD_HEADER_SIZE;
+import static com.opengamma.livedata.firehose.TickJournal.UTF8;
+import static com.opengamma.livedata.firehose.TickJournal.VERSION;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
+
+/**
+ * Records ticks to a {@link TickJournal journal}, appending to any journal already in the file.
+ * <p>
+ * The file is written through memory mapped regions, so recording a tick copies it into the page
+ * cache and the operating system writes it to disk in the background. A record's length is
+ * written after the rest of it, so a recording interrupted part way through a record leaves the
+ * journal ending at the previous record.
+ * <p>
+ * The timestamps of a journal never decrease. A tick whose timestamp is before that of the
+ * previous tick, such as after the clock has been set back, is recorded with the previous
+ * tick's timestamp.
+ * <p>
+ * This class is thread-safe.
+ */
+public class TickJournalWriter implements Closeable {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(TickJournalWriter.class);
+
+  private final FudgeContext _fudgeContext;
+  private final File _file;
+  private final int _regionSize;
+  private final RandomAccessFile _raf;
+  private final FileChannel _channel;
+  private final Map<String, Integer> _securityIds = new HashMap<String, Integer>();
+  private MappedByteBuffer _region;
+  private long _regionStart;
+  private long _position;
+  private long _lastTimestamp = Long.MIN_VALUE;
+  private long _tickCount;
+  private boolean _closed;
+
+  /**
+   * Opens a journal for writing.
+   *
+   * @param file  the journal file, created if it does not exist, not null
+   */
+  public TickJournalWriter(File file) {
+    this(OpenGammaFudgeContext.getInstance(), file, TickJournal.DEFAULT_REGION_SIZE);
+  }
+
+  /**
+   * Opens a journal for writing.
+   *
+   * @param fudgeContext  the context to encode payloads with, not null
+   * @param file  the journal file, created if it does not exist, not null
+   * @param regionSize  the size of the regions of the file mapped at a time, greater than zero
+   */
+  public TickJournalWriter(FudgeContext fudgeContext, File file, int regionSize) {
+    ArgumentChecker.notNull(fudgeContext, "fudgeContext");
+    ArgumentChecker.notNull(file, "file");
+    ArgumentChecker.isTrue(regionSize > 0, "regionSize must be positive");
+    _fudgeContext = fudgeContext;
+    _file = file;
+    _regionSize = regionSize;
+    final boolean append = file.length() > 0;
+    if (append) {
+      final TickJournal existing = new TickJournal(fudgeContext, file, regionSize);
+      try {
+        final List<String> securities = existing.getSecurityDictionary();
+        for (int i = 0; i < securities.size(); i++) {
+          _securityIds.put(securities.get(i), i);
+        }
+        if (existing.getTickCount() > 0) {
+          _lastTimestamp = existing.getLastTimestamp();
+        }
+        _position = existing.getEndOffset();
+      } finally {
+        existing.close();
+      }
+      s_logger.info("Appending to {} at offset {}", file, _position);
+    }
+    try {
+      _raf = new RandomAccessFile(file, "rw");
+      _channel = _raf.getChannel();
+      if (append && _raf.length() > _position) {
+        // Discard anything after the last whole record so that the journal ends with zeros again
+        _raf.setLength(_position);
+      }
+    } catch (IOException e) {
+      throw new OpenGammaRuntimeException("Cannot open " + file + " for writing", e);
+    }
+    if (!append) {
+      final int index = reserve(HEADER_SIZE);
+      _region.putInt(index, MAGIC);
+      _region.putInt(index + 4, VERSION);
+      _position = HEADER_SIZE;
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the journal file.
+   *
+   * @return the file, not null
+   */
+  public File getFile() {
+    return _file;
+  }
+
+  /**
+   * Gets the number of ticks written since the journal was opened.
+   *
+   * @return the number of ticks
+   */
+  public synchronized long getTickCount() {
+    return _tickCount;
+  }
+
+  /**
+   * Gets the length of the journal.
+   *
+   * @return the number of bytes
+   */
+  public synchronized long getLength() {
+    return _position;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Records a tick whose payload is a Fudge message, to be read by {@link TickJournal.Cursor#getFields}.
+   *
+   * @param timestamp  the time of the tick in milliseconds since the epoch
+   * @param security  the security, not null
+   * @param fields  the fields of the tick, not null
+   */
+  public void write(long timestamp, String security, FudgeMsg fields) {
+    ArgumentChecker.notNull(fields, "fields");
+    write(timestamp, security, _fudgeContext.toByteArray(fields));
+  }
+
+  /**
+   * Records a tick.
+   *
+   * @param timestamp  the time of the tick in milliseconds since the epoch
+   * @param security  the security, not null
+   * @param payload  the payload of the tick, not null
+   */
+  public synchronized void write(long timestamp, String security, byte[] payload) {
+    ArgumentChecker.notNull(security, "security");
+    ArgumentChecker.notNull(payload, "payload");
+    if (_closed) {
+      throw new IllegalStateException("Journal " + _file + " is closed");
+    }
+    long recordedTimestamp = timestamp;
+    if (recordedTimestamp < _lastTimestamp) {
+      s_logger.debug("Tick for {} at {} is before the previous tick; recording it at {}", new Object[] {security, timestamp, _lastTimestamp});
+      recordedTimestamp = _lastTimestamp;
+    }
+    Integer id = _securityIds.get(security);
+    if (id == null) {
+      id = _securityIds.size();
+      append(recordedTimestamp, DICTIONARY_ENTRY, security.getBytes(UTF8));
+      _securityIds.put(security, id);
+    }
+    append(recordedTimestamp, id, payload);
+    _lastTimestamp = recordedTimestamp;
+    _tickCount++;
+  }
+
+  private void append(long timestamp, int security, byte[] payload) {
+    final int length = RECORD_HEADER_SIZE + payload.length;
+    final int index = reserve(length);
+    _region.putLong(index + 4, timestamp);
+    _region.putInt(index + 12, security);
+    _region.position(index + RECORD_HEADER_SIZE);
+    _region.put(payload);
+    _region.putInt(index, length);
+    _position += length;
+  }
+
+  /**
+   * Maps a new region if there is not room for a record in the current one.
+   *
+   * @param length  the length of the record
+   * @return the index of the record in the region
+   */
+  private int reserve(int length) {
+    if (_region == null || _position + length > _regionStart + _region.capacity()) {
+      if (_region != null) {
+        // Once unmapped the region can't be forced by a later flush
+        _region.force();
+      }
+      try {
+        // Mapping beyond the end of the file extends it with zeros, which also marks the end of the journal
+        _region = _channel.map(FileChannel.MapMode.READ_WRITE, _position, Math.max(_regionSize, length));
+      } catch (IOException e) {
+        throw new OpenGammaRuntimeException("Cannot map offset " + _position + " of " + _file, e);
+      }
+      _regionStart = _position;
+    }
+    return (int) (_position - _regionStart);
+  }
+
+  /**
+   * Writes the ticks recorded so far to disk.
+   */
+  public synchronized void flush() {
+    if (_region != null) {
+      _region.force();
+    }
+  }
+
+  /**
+   * Writes the ticks recorded to disk and closes the journal.
+   */
+  @Override
+  public synchronized void close() {
+    if (_closed) {
+      return;
+    }
+    _closed = true;
+    flush();
+    _region = null;
+    try {
+      try {
+        _raf.setLength(_position);
+      } catch (IOException e) {
+        // Some platforms refuse to truncate a mapped file; the zeros left after the journal are harmless
+        s_logger.debug("Cannot truncate {} - {}", _file, e.toString());
+      }
+      _channel.close();
+      _raf.close();
+    } catch (IOException e) {
+      s_logger.warn("Cannot close {} - {}", _file, e.toString());
+    }
+    s_logger.info("Closed {} after writing {} ticks", _file, _tickCount);
+  }
+
+}
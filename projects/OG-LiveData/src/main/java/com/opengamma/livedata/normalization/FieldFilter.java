@@ -6,7 +6,9 @@
 package com.opengamma.livedata.normalization;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Set;
 
 import org.fudgemsg.FudgeContext;
 import org.fudgemsg.FudgeField;
@@ -24,7 +26,7 @@ import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
  */
 public class FieldFilter implements NormalizationRule {
   
-  private final Collection<String> _fieldsToAccept;
+  private final Set<String> _fieldsToAccept;
   private final FudgeContext _context;
   
   public FieldFilter(String... fieldsToAccept) {
@@ -46,6 +48,15 @@ public class FieldFilter implements NormalizationRule {
     _context = fudgeContext;
   }
 
+  /**
+   * Gets the names of the fields accepted.
+   *
+   * @return the field names, not null
+   */
+  public Set<String> getFieldsToAccept() {
+    return Collections.unmodifiableSet(_fieldsToAccept);
+  }
+
   /**
    * @return the context
    */
@@ -5,7 +5,6 @@
  */
 package com.opengamma.livedata.normalization;
 
-import org.fudgemsg.FudgeMsg;
 import org.fudgemsg.MutableFudgeMsg;
 
 import com.opengamma.core.value.MarketDataRequirementNames;
@@ -39,16 +38,14 @@ public class MarketValueCalculator implements NormalizationRule {
   @Override
   public MutableFudgeMsg apply(MutableFudgeMsg msg, String securityUniqueId, FieldHistoryStore fieldHistory) {
     
-    FudgeMsg lkv = fieldHistory.getLastKnownValues();
-    
     Double bid = msg.getDouble(MarketDataRequirementNames.BID);
     if (bid == null) {
-      bid = lkv.getDouble(MarketDataRequirementNames.BID);
+      bid = fieldHistory.getDouble(MarketDataRequirementNames.BID);
     }
     
     Double ask = msg.getDouble(MarketDataRequirementNames.ASK);
     if (ask == null) {
-      ask = lkv.getDouble(MarketDataRequirementNames.ASK);
+      ask = fieldHistory.getDouble(MarketDataRequirementNames.ASK);
     }
     
     // If we have seen bid & ask in the past, use bid & ask midpoint.
@@ -57,7 +54,7 @@ public class MarketValueCalculator implements NormalizationRule {
       // Too big of a spread for midpoint to be meaningful?
       if (Math.abs(bid) > TOLERANCE && (Math.abs(ask - bid) / Math.abs(bid) > MAX_ACCEPTABLE_SPREAD_TO_USE_MIDPOINT)) {
         // Try to resort to last, though if this fails use midpoint anyway.
-        Double last = lkv.getDouble(MarketDataRequirementNames.LAST);
+        Double last = fieldHistory.getDouble(MarketDataRequirementNames.LAST);
         if (last == null) {
           last = msg.getDouble(MarketDataRequirementNames.LAST);
         }
@@ -102,9 +99,7 @@ public class MarketValueCalculator implements NormalizationRule {
       MutableFudgeMsg msg,
       FieldHistoryStore fieldHistory) {
     
-    FudgeMsg lkv = fieldHistory.getLastKnownValues();
-    
-    Double lastKnownMarketValue = lkv.getDouble(MarketDataRequirementNames.MARKET_VALUE);
+    Double lastKnownMarketValue = fieldHistory.getDouble(MarketDataRequirementNames.MARKET_VALUE);
     if (lastKnownMarketValue == null) {
       return msg;      
     }
@@ -0,0 +1,366 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.normalization;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeField;
+import org.fudgemsg.FudgeFieldType;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.MutableFudgeMsg;
+
+import com.opengamma.livedata.server.FieldHistoryStore;
+import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
+
+/**
+ * The rules of a {@link NormalizationRuleSet}, compiled once into stages applied to each tick.
+ * <p>
+ * A run of rules that starts with a {@link FieldFilter} and continues with further
+ * {@link FieldFilter}, {@link FieldNameChange} and {@link UnitChange} rules only ever drops,
+ * renames or rescales fields it can name up front. Such a run is compiled into a single
+ * stage holding, for each field name accepted by the leading filter, what the run finally
+ * does to it. The stage builds its output in one pass over the input, without the
+ * intermediate messages and repeated field lookups of applying the rules one by one, and
+ * produces exactly the fields, types and field order they would.
+ * <p>
+ * Other rules are applied as they are. If the first stage is compiled, the incoming message
+ * is read directly rather than copied first.
+ */
+/* package */ final class NormalizationPipeline {
+
+  private final List<Stage> _stages;
+  private final boolean _copyInput;
+
+  private NormalizationPipeline(List<Stage> stages) {
+    _stages = stages;
+    _copyInput = stages.isEmpty() || !(stages.get(0) instanceof FieldMappingStage);
+  }
+
+  /**
+   * Compiles a list of rules.
+   *
+   * @param rules  the rules, in order, not null
+   * @return the pipeline, not null
+   */
+  /* package */ static NormalizationPipeline compile(List<NormalizationRule> rules) {
+    List<Stage> stages = new ArrayList<Stage>();
+    int i = 0;
+    while (i < rules.size()) {
+      NormalizationRule rule = rules.get(i);
+      if (rule.getClass() == FieldFilter.class) {
+        FieldMappingCompiler compiler = new FieldMappingCompiler((FieldFilter) rule);
+        int end = i + 1;
+        while (end < rules.size() && compiler.add(rules.get(end), end)) {
+          end++;
+        }
+        stages.add(compiler.build(rules.subList(i, end)));
+        i = end;
+      } else {
+        stages.add(new RuleStage(rule));
+        i++;
+      }
+    }
+    return new NormalizationPipeline(stages);
+  }
+
+  /**
+   * Applies the compiled rules to a message.
+   *
+   * @param msg  the message, not modified, not null
+   * @param securityUniqueId  the data provider's unique ID of the security, not null
+   * @param fieldHistory  the distributor-specific field history, not null
+   * @return the normalized message, null if one of the rules rejected the message
+   */
+  /* package */ MutableFudgeMsg apply(FudgeMsg msg, String securityUniqueId, FieldHistoryStore fieldHistory) {
+    FudgeMsg current = _copyInput ? OpenGammaFudgeContext.getInstance().newMessage(msg) : msg;
+    boolean owned = _copyInput;
+    for (Stage stage : _stages) {
+      current = stage.apply(current, owned, securityUniqueId, fieldHistory);
+      if (current == null) {
+        return null;
+      }
+      owned = true;
+    }
+    return (MutableFudgeMsg) current;
+  }
+
+  /**
+   * Gets the number of stages the rules compiled to.
+   *
+   * @return the number of stages
+   */
+  /* package */ int getStageCount() {
+    return _stages.size();
+  }
+
+  @Override
+  public String toString() {
+    return "NormalizationPipeline" + _stages;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * A compiled stage.
+   */
+  private abstract static class Stage {
+
+    /**
+     * Applies the stage.
+     *
+     * @param msg  the message, not null
+     * @param owned  whether the message is private to this pipeline and may be modified;
+     *  it is always a {@link MutableFudgeMsg} if so
+     * @param securityUniqueId  the data provider's unique ID of the security, not null
+     * @param fieldHistory  the distributor-specific field history, not null
+     * @return the resulting message, null to reject the message
+     */
+    abstract MutableFudgeMsg apply(FudgeMsg msg, boolean owned, String securityUniqueId, FieldHistoryStore fieldHistory);
+
+  }
+
+  /**
+   * A rule applied as it is.
+   */
+  private static final class RuleStage extends Stage {
+
+    private final NormalizationRule _rule;
+
+    private RuleStage(NormalizationRule rule) {
+      _rule = rule;
+    }
+
+    @Override
+    MutableFudgeMsg apply(FudgeMsg msg, boolean owned, String securityUniqueId, FieldHistoryStore fieldHistory) {
+      return _rule.apply((MutableFudgeMsg) msg, securityUniqueId, fieldHistory);
+    }
+
+    @Override
+    public String toString() {
+      return _rule.toString();
+    }
+
+  }
+
+  /**
+   * What a compiled run does to one accepted field.
+   */
+  private static final class FieldMapping {
+
+    /** The slot of a field that is renamed or rescaled, -1 if the field is passed through. */
+    private final int _slot;
+    private final double[] _multipliers;
+
+    private FieldMapping(int slot, double[] multipliers) {
+      _slot = slot;
+      _multipliers = multipliers;
+    }
+
+  }
+
+  /**
+   * A compiled run of field filters, renames and unit changes.
+   */
+  private static final class FieldMappingStage extends Stage {
+
+    private final FudgeContext _context;
+    private final Map<String, FieldMapping> _mappings;
+    private final String[] _slotNames;
+    private final List<NormalizationRule> _rules;
+
+    private FieldMappingStage(FudgeContext context, Map<String, FieldMapping> mappings, String[] slotNames, List<NormalizationRule> rules) {
+      _context = context;
+      _mappings = mappings;
+      _slotNames = slotNames;
+      _rules = rules;
+    }
+
+    @Override
+    MutableFudgeMsg apply(FudgeMsg msg, boolean owned, String securityUniqueId, FieldHistoryStore fieldHistory) {
+      MutableFudgeMsg normalizedMsg = _context.newMessage();
+      // Renamed and rescaled fields go at the end, in the order the rules last touched them
+      FudgeFieldType[] slotTypes = null;
+      Object[] slotValues = null;
+      for (FudgeField field : msg) {
+        FieldMapping mapping = (field.getName() != null) ? _mappings.get(field.getName()) : null;
+        if (mapping == null) {
+          continue;
+        }
+        if (mapping._slot < 0) {
+          normalizedMsg.add(field);
+          continue;
+        }
+        if (slotValues == null) {
+          slotTypes = new FudgeFieldType[_slotNames.length];
+          slotValues = new Object[_slotNames.length];
+        } else if (slotValues[mapping._slot] != null) {
+          // The rules only act on the first of several fields with the same name
+          return applyRules(msg, owned, securityUniqueId, fieldHistory);
+        }
+        if (mapping._multipliers.length == 0) {
+          slotTypes[mapping._slot] = field.getType();
+          slotValues[mapping._slot] = field.getValue();
+        } else {
+          if (!(field.getValue() instanceof Number)) {
+            return applyRules(msg, owned, securityUniqueId, fieldHistory);
+          }
+          double value = ((Number) field.getValue()).doubleValue();
+          for (double multiplier : mapping._multipliers) {
+            value = value * multiplier;
+          }
+          slotValues[mapping._slot] = value;
+        }
+      }
+      if (slotValues != null) {
+        for (int slot = 0; slot < _slotNames.length; slot++) {
+          if (slotValues[slot] == null) {
+            continue;
+          }
+          if (slotTypes[slot] != null) {
+            normalizedMsg.add(_slotNames[slot], null, slotTypes[slot], slotValues[slot]);
+          } else {
+            normalizedMsg.add(_slotNames[slot], null, slotValues[slot]);
+          }
+        }
+      }
+      if (normalizedMsg.getNumFields() == 0) {
+        return null; // extinguish message
+      }
+      return normalizedMsg;
+    }
+
+    /**
+     * Applies the original rules one by one, for messages the compiled form cannot handle exactly.
+     */
+    private MutableFudgeMsg applyRules(FudgeMsg msg, boolean owned, String securityUniqueId, FieldHistoryStore fieldHistory) {
+      MutableFudgeMsg normalizedMsg = owned ? (MutableFudgeMsg) msg : _context.newMessage(msg);
+      for (NormalizationRule rule : _rules) {
+        normalizedMsg = rule.apply(normalizedMsg, securityUniqueId, fieldHistory);
+        if (normalizedMsg == null) {
+          return null;
+        }
+      }
+      return normalizedMsg;
+    }
+
+    @Override
+    public String toString() {
+      return "Compiled" + _rules;
+    }
+
+  }
+
+  /**
+   * Follows each field accepted by a leading {@link FieldFilter} through the rules after it.
+   */
+  private static final class FieldMappingCompiler {
+
+    private final FudgeContext _context;
+    /** The accepted fields still present, keyed by their current name. */
+    private final Map<String, AcceptedField> _present = new LinkedHashMap<String, AcceptedField>();
+
+    private FieldMappingCompiler(FieldFilter filter) {
+      _context = filter.getContext();
+      for (String name : filter.getFieldsToAccept()) {
+        _present.put(name, new AcceptedField(name));
+      }
+    }
+
+    /**
+     * Adds the next rule to the run.
+     *
+     * @param rule  the rule, not null
+     * @param index  the position of the rule in the rule set
+     * @return false if the rule cannot be compiled into the run, which then ends before it
+     */
+    private boolean add(NormalizationRule rule, int index) {
+      if (rule.getClass() == FieldFilter.class) {
+        _present.keySet().retainAll(((FieldFilter) rule).getFieldsToAccept());
+        return true;
+      }
+      if (rule.getClass() == FieldNameChange.class) {
+        FieldNameChange nameChange = (FieldNameChange) rule;
+        AcceptedField field = _present.get(nameChange.getFrom());
+        if (field == null) {
+          return true;
+        }
+        if (!nameChange.getFrom().equals(nameChange.getTo()) && _present.containsKey(nameChange.getTo())) {
+          // The message would end up with two fields of the same name
+          return false;
+        }
+        _present.remove(nameChange.getFrom());
+        field._currentName = nameChange.getTo();
+        field._lastTouched = index;
+        _present.put(nameChange.getTo(), field);
+        return true;
+      }
+      if (rule.getClass() == UnitChange.class) {
+        UnitChange unitChange = (UnitChange) rule;
+        AcceptedField field = _present.get(unitChange.getField());
+        if (field != null) {
+          field._multipliers.add(unitChange.getMultiplier());
+          field._lastTouched = index;
+        }
+        return true;
+      }
+      return false;
+    }
+
+    private FieldMappingStage build(List<NormalizationRule> rules) {
+      List<AcceptedField> touched = new ArrayList<AcceptedField>();
+      for (AcceptedField field : _present.values()) {
+        if (field._lastTouched >= 0) {
+          touched.add(field);
+        }
+      }
+      Collections.sort(touched, new Comparator<AcceptedField>() {
+        @Override
+        public int compare(AcceptedField field1, AcceptedField field2) {
+          return field1._lastTouched - field2._lastTouched;
+        }
+      });
+      String[] slotNames = new String[touched.size()];
+      Map<String, FieldMapping> mappings = new HashMap<String, FieldMapping>();
+      for (AcceptedField field : _present.values()) {
+        int slot = touched.indexOf(field);
+        if (slot >= 0) {
+          slotNames[slot] = field._currentName;
+        }
+        double[] multipliers = new double[field._multipliers.size()];
+        for (int i = 0; i < multipliers.length; i++) {
+          multipliers[i] = field._multipliers.get(i);
+        }
+        mappings.put(field._originalName, new FieldMapping(slot, multipliers));
+      }
+      return new FieldMappingStage(_context, mappings, slotNames, new ArrayList<NormalizationRule>(rules));
+    }
+
+  }
+
+  /**
+   * The compile-time state of one accepted field.
+   */
+  private static final class AcceptedField {
+
+    private final String _originalName;
+    private String _currentName;
+    private final List<Double> _multipliers = new ArrayList<Double>();
+    private int _lastTouched = -1;
+
+    private AcceptedField(String originalName) {
+      _originalName = originalName;
+      _currentName = originalName;
+    }
+
+  }
+
+}
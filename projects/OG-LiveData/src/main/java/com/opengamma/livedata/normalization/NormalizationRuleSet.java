@@ -30,6 +30,7 @@ public class NormalizationRuleSet {
   private final String _id;
   private final String _jmsTopicSuffix;
   private final List<NormalizationRule> _rules;
+  private final NormalizationPipeline _pipeline;
   
   /* Useful for tests */
   public NormalizationRuleSet(String id) {
@@ -56,12 +57,17 @@ public class NormalizationRuleSet {
     }
     
     _rules = new ArrayList<NormalizationRule>(rules);    
+    _pipeline = NormalizationPipeline.compile(_rules);
   }
   
   /**
    * Gets a normalized message.
    * This is done by applying the set of normalization rules
    * to the raw message. 
+   * <p>
+   * The rules are compiled when the rule set is created, so that runs of field
+   * filters, renames and unit changes are applied in a single pass over the message.
+   * The result is the same as applying the rules one at a time.
    * 
    * @param msg message received from underlying market data API in its native format.
    * @param securityUniqueId  the data provider's unique ID of the security, not null
@@ -70,6 +76,21 @@ public class NormalizationRuleSet {
    * rejected the message.
    */
   public FudgeMsg getNormalizedMessage(FudgeMsg msg, String securityUniqueId, FieldHistoryStore fieldHistory) {
+    MutableFudgeMsg normalizedMsg = _pipeline.apply(msg, securityUniqueId, fieldHistory);
+    s_logger.debug("Applying rule set {} to message {} produced normalized message {}", new Object[] {getId(), msg, normalizedMsg});
+    return normalizedMsg;
+  }
+
+  /**
+   * Gets a normalized message by applying the rules one at a time, without compilation.
+   * 
+   * @param msg message received from underlying market data API in its native format.
+   * @param securityUniqueId  the data provider's unique ID of the security, not null
+   * @param fieldHistory history of field values  
+   * @return the normalized message. Null if one of the normalization rules
+   * rejected the message.
+   */
+  /*package*/ FudgeMsg getNormalizedMessageUncompiled(FudgeMsg msg, String securityUniqueId, FieldHistoryStore fieldHistory) {
     MutableFudgeMsg normalizedMsg = OpenGammaFudgeContext.getInstance().newMessage(msg);
     for (NormalizationRule rule : _rules) {
       normalizedMsg = rule.apply(normalizedMsg, securityUniqueId, fieldHistory);
@@ -92,6 +113,15 @@ public class NormalizationRuleSet {
     return _id;
   }
   
+  /**
+   * Gets the compiled form of the rules.
+   * 
+   * @return the pipeline, not null
+   */
+  /*package*/ NormalizationPipeline getPipeline() {
+    return _pipeline;
+  }
+
   /**
    * Gets the Jms topic suffix of this normalization rule set.
    * <p>
@@ -24,6 +24,24 @@ public class UnitChange implements NormalizationRule {
     _multiplier = multiplier;        
   }
   
+  /**
+   * Gets the name of the field to multiply.
+   *
+   * @return the field name, not null
+   */
+  public String getField() {
+    return _field;
+  }
+
+  /**
+   * Gets the multiplier.
+   *
+   * @return the multiplier
+   */
+  public double getMultiplier() {
+    return _multiplier;
+  }
+
   @Override
   public MutableFudgeMsg apply(MutableFudgeMsg msg, String securityUniqueId, FieldHistoryStore fieldHistory) {
     return multiplyField(msg, _field, _multiplier);
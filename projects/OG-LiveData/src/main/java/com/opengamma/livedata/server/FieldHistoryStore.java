@@ -89,6 +89,29 @@ public class FieldHistoryStore {
     return newMessage;
   }
 
+  /**
+   * Gets the last known value of a single field as a {@code Double}.
+   * <p>
+   * This avoids copying the whole history when only a few fields are needed.
+   * 
+   * @param fieldName  the field name, not null
+   * @return the value, null if the field is not in the history or is not numeric
+   */
+  public synchronized Double getDouble(String fieldName) {
+    UnmodifiableFudgeField field = _lastKnownValues.get(fieldName);
+    if (field == null) {
+      return null;
+    }
+    Object value = field.getValue();
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue();
+    }
+    // let Fudge apply its usual type conversions
+    MutableFudgeMsg msg = _context.newMessage();
+    msg.add(field);
+    return msg.getDouble(fieldName);
+  }
+
   /**
    * Checks if the history store is empty.
    * 
@@ -138,6 +138,32 @@ public class LiveDataServerMBean {
     }
   }
 
+  @ManagedAttribute(description = "Queue depth, conflation and latency of each tick distribution shard. Empty if ticks are not sharded.")
+  public String[] getTickShardStatistics() {
+    try {
+      ShardedTickDispatcher dispatcher = getServer().getTickDispatcher();
+      if (dispatcher == null) {
+        return new String[0];
+      }
+      String[] statistics = new String[dispatcher.getShardCount()];
+      for (int i = 0; i < statistics.length; i++) {
+        statistics[i] = "shard " + i
+            + ": depth=" + dispatcher.getQueueDepth(i)
+            + ", maxDepth=" + dispatcher.getMaxQueueDepth(i)
+            + ", received=" + dispatcher.getTicksReceived(i)
+            + ", conflated=" + dispatcher.getTicksConflated(i)
+            + ", dropped=" + dispatcher.getTicksDropped(i)
+            + ", distributed=" + dispatcher.getTicksDistributed(i)
+            + ", meanLatencyMicros=" + dispatcher.getMeanLatencyMicros(i)
+            + ", maxLatencyMicros=" + dispatcher.getMaxLatencyMicros(i);
+      }
+      return statistics;
+    } catch (RuntimeException e) {
+      s_logger.error("getTickShardStatistics() failed", e);
+      throw new RuntimeException(e.getMessage());
+    }
+  }
+
   @ManagedOperation(description = "Subscribes to market data. The subscription will be non-persistent."
       + " If the server already subscribes to the given market data, this method is a "
       + " no-op. Returns the name of the JMS topic market data will be published on.")
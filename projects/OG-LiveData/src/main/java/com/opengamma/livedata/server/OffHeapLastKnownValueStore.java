@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.server;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.fudgemsg.FudgeField;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.MutableFudgeMsg;
+import org.fudgemsg.UnmodifiableFudgeField;
+import org.fudgemsg.wire.types.FudgeWireType;
+
+import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
+
+/**
+ * A {@link LastKnownValueStore} which is one row of the table of an
+ * {@link OffHeapLastKnownValueStoreProvider}.
+ * <p>
+ * Reads and writes of the row are synchronized on the store. Only the distributor
+ * owning the store normally writes to it, so the lock is uncontended.
+ */
+public class OffHeapLastKnownValueStore implements LastKnownValueStore {
+
+  private final OffHeapLastKnownValueStoreProvider _provider;
+  private final ByteBuffer _buffer;
+  private final int _offset;
+  private final LastKnownValueStore _persistentStore;
+  /** Fields not held in the table, created on first use. */
+  private Map<String, UnmodifiableFudgeField> _heapFields;
+
+  /* package */ OffHeapLastKnownValueStore(OffHeapLastKnownValueStoreProvider provider, ByteBuffer buffer, int offset, LastKnownValueStore persistentStore) {
+    _provider = provider;
+    _buffer = buffer;
+    _offset = offset;
+    _persistentStore = persistentStore;
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public void updateFields(FudgeMsg fieldValues) {
+    synchronized (this) {
+      store(fieldValues);
+    }
+    if (_persistentStore != null) {
+      _persistentStore.updateFields(fieldValues);
+    }
+  }
+
+  /**
+   * Loads values from the persistent tier, without writing them back.
+   *
+   * @param fieldValues  the values, not null
+   */
+  /* package */ synchronized void load(FudgeMsg fieldValues) {
+    store(fieldValues);
+  }
+
+  private void store(FudgeMsg fieldValues) {
+    for (FudgeField field : fieldValues) {
+      String name = field.getName();
+      boolean isDouble = (name != null) && (field.getType().getTypeId() == FudgeWireType.DOUBLE_TYPE_ID);
+      int column = (name != null) ? _provider.getColumn(name, isDouble) : -1;
+      if (isDouble && column >= 0) {
+        _buffer.putDouble(valueIndex(column), (Double) field.getValue());
+        setPresent(column, true);
+        if (_heapFields != null) {
+          _heapFields.remove(name);
+        }
+      } else {
+        if (column >= 0) {
+          setPresent(column, false);
+        }
+        if (_heapFields == null) {
+          _heapFields = new HashMap<String, UnmodifiableFudgeField>();
+        }
+        _heapFields.put(name, UnmodifiableFudgeField.of(field));
+      }
+    }
+    _buffer.putLong(_offset, _buffer.getLong(_offset) + 1);
+  }
+
+  @Override
+  public synchronized FudgeMsg getFields() {
+    MutableFudgeMsg msg = OpenGammaFudgeContext.getInstance().newMessage();
+    int maskIndex = _offset + _provider.getMaskOffset();
+    for (int word = 0; word * 64 < _provider.getMaxFields(); word++) {
+      long mask = _buffer.getLong(maskIndex + 8 * word);
+      while (mask != 0) {
+        int column = word * 64 + Long.numberOfTrailingZeros(mask);
+        msg.add(_provider.getColumnName(column), _buffer.getDouble(valueIndex(column)));
+        mask &= mask - 1;
+      }
+    }
+    if (_heapFields != null) {
+      for (UnmodifiableFudgeField field : _heapFields.values()) {
+        msg.add(field);
+      }
+    }
+    return msg;
+  }
+
+  @Override
+  public synchronized boolean isEmpty() {
+    if (_heapFields != null && !_heapFields.isEmpty()) {
+      return false;
+    }
+    int maskIndex = _offset + _provider.getMaskOffset();
+    for (int word = 0; word * 64 < _provider.getMaxFields(); word++) {
+      if (_buffer.getLong(maskIndex + 8 * word) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Gets the last known value of a {@code double} field without building a message.
+   *
+   * @param fieldName  the field name, not null
+   * @return the value, null if the field has no {@code double} value
+   */
+  public synchronized Double getDouble(String fieldName) {
+    int column = _provider.getColumn(fieldName, false);
+    if (column >= 0 && isPresent(column)) {
+      return _buffer.getDouble(valueIndex(column));
+    }
+    return null;
+  }
+
+  /**
+   * Gets the sequence number of the row, which is incremented on every update.
+   *
+   * @return the number of updates made to the row
+   */
+  public synchronized long getSequence() {
+    return _buffer.getLong(_offset);
+  }
+
+  //-------------------------------------------------------------------------
+  private int valueIndex(int column) {
+    return _offset + _provider.getValuesOffset() + 8 * column;
+  }
+
+  private boolean isPresent(int column) {
+    int index = _offset + _provider.getMaskOffset() + 8 * (column / 64);
+    return (_buffer.getLong(index) & (1L << (column % 64))) != 0;
+  }
+
+  private void setPresent(int column, boolean present) {
+    int index = _offset + _provider.getMaskOffset() + 8 * (column / 64);
+    long mask = _buffer.getLong(index);
+    long bit = 1L << (column % 64);
+    _buffer.putLong(index, present ? (mask | bit) : (mask & ~bit));
+  }
+
+}
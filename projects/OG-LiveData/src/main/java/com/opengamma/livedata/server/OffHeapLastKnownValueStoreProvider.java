@@ -0,0 +1,258 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.server;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.id.ExternalId;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.tuple.Pair;
+
+/**
+ * An implementation of {@link LastKnownValueStoreProvider} which keeps the numeric last known
+ * values of all its stores in one off-heap table.
+ * <p>
+ * Each store is a row of the table and each field name is a column, assigned the first time
+ * the field is seen. A row holds an update sequence number, a bit mask of the columns which
+ * have values and a {@code double} per column. Rows live in direct buffers allocated a
+ * segment at a time, so half a million instruments cost a few hundred buffers rather than
+ * millions of small objects. Updating a row writes into the buffer in place.
+ * <p>
+ * Only {@code double} fields are held in the table. Fields of other types, and fields seen
+ * after all the columns have been assigned, are held on the heap for the row concerned.
+ * <p>
+ * Rows are never released. A store requested again for the same security and normalization
+ * rule set returns the existing row, with its values.
+ * <p>
+ * It has the following properties that may be set:
+ * <dl>
+ *   <dt>persistentTier</dt>
+ *   <dd>A further provider, such as {@link RedisLastKnownValueStoreProvider}, whose stores
+ *       are loaded into a row when it is created and are written through to on every update.
+ *       Defaults to none.</dd>
+ * </dl>
+ */
+public class OffHeapLastKnownValueStoreProvider implements LastKnownValueStoreProvider {
+  private static final Logger s_logger = LoggerFactory.getLogger(OffHeapLastKnownValueStoreProvider.class);
+
+  /**
+   * The default maximum number of columns.
+   */
+  public static final int DEFAULT_MAX_FIELDS = 64;
+  /**
+   * The default number of rows allocated at a time.
+   */
+  public static final int DEFAULT_ROWS_PER_SEGMENT = 4096;
+
+  private final int _maxFields;
+  private final int _rowsPerSegment;
+  private final int _maskOffset;
+  private final int _valuesOffset;
+  private final int _rowBytes;
+
+  private final ConcurrentMap<String, Integer> _fieldColumns = new ConcurrentHashMap<String, Integer>();
+  private final Object _columnLock = new Object();
+  /** Access controlled via _columnLock */
+  private final String[] _columnNames;
+  /** Access controlled via _columnLock */
+  private int _columnCount;
+  private volatile boolean _columnsFull;
+
+  private final ConcurrentMap<Pair<ExternalId, String>, OffHeapLastKnownValueStore> _stores =
+      new ConcurrentHashMap<Pair<ExternalId, String>, OffHeapLastKnownValueStore>();
+  private final List<ByteBuffer> _segments = new ArrayList<ByteBuffer>();
+  private int _rowCount;
+
+  private LastKnownValueStoreProvider _persistentTier;
+
+  /**
+   * Creates an instance with the default table dimensions.
+   */
+  public OffHeapLastKnownValueStoreProvider() {
+    this(DEFAULT_MAX_FIELDS, DEFAULT_ROWS_PER_SEGMENT);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param maxFields  the maximum number of distinct field names held off-heap, greater than zero
+   * @param rowsPerSegment  the number of rows allocated at a time, greater than zero
+   */
+  public OffHeapLastKnownValueStoreProvider(int maxFields, int rowsPerSegment) {
+    ArgumentChecker.isTrue(maxFields > 0, "maxFields must be positive");
+    ArgumentChecker.isTrue(rowsPerSegment > 0, "rowsPerSegment must be positive");
+    _maxFields = maxFields;
+    _rowsPerSegment = rowsPerSegment;
+    _maskOffset = 8;
+    _valuesOffset = _maskOffset + 8 * ((maxFields + 63) / 64);
+    _rowBytes = _valuesOffset + 8 * maxFields;
+    ArgumentChecker.isTrue((long) _rowBytes * rowsPerSegment <= Integer.MAX_VALUE, "segment too large");
+    _columnNames = new String[maxFields];
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the persistent tier.
+   * @return the provider, null if none
+   */
+  public LastKnownValueStoreProvider getPersistentTier() {
+    return _persistentTier;
+  }
+
+  /**
+   * Sets the persistent tier.
+   * @param persistentTier  the provider, null for none
+   */
+  public void setPersistentTier(LastKnownValueStoreProvider persistentTier) {
+    _persistentTier = persistentTier;
+  }
+
+  /**
+   * Gets the number of rows allocated.
+   * @return the number of rows
+   */
+  public synchronized int getRowCount() {
+    return _rowCount;
+  }
+
+  /**
+   * Gets the number of field names assigned a column.
+   * @return the number of columns
+   */
+  public int getColumnCount() {
+    synchronized (_columnLock) {
+      return _columnCount;
+    }
+  }
+
+  /**
+   * Gets the off-heap memory allocated.
+   * @return the number of bytes
+   */
+  public synchronized long getOffHeapBytes() {
+    return (long) _segments.size() * _rowsPerSegment * _rowBytes;
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public LastKnownValueStore newInstance(ExternalId security, String normalizationRuleSetId) {
+    ArgumentChecker.notNull(security, "security");
+    ArgumentChecker.notNull(normalizationRuleSetId, "normalizationRuleSetId");
+    Pair<ExternalId, String> key = Pair.of(security, normalizationRuleSetId);
+    OffHeapLastKnownValueStore store = _stores.get(key);
+    if (store != null) {
+      return store;
+    }
+    synchronized (this) {
+      store = _stores.get(key);
+      if (store != null) {
+        return store;
+      }
+      LastKnownValueStore persistentStore = (getPersistentTier() != null) ? getPersistentTier().newInstance(security, normalizationRuleSetId) : null;
+      int row = _rowCount++;
+      int segment = row / _rowsPerSegment;
+      if (segment == _segments.size()) {
+        s_logger.debug("Allocating segment {} of {} bytes", segment, _rowsPerSegment * _rowBytes);
+        _segments.add(ByteBuffer.allocateDirect(_rowsPerSegment * _rowBytes).order(ByteOrder.nativeOrder()));
+      }
+      store = new OffHeapLastKnownValueStore(this, _segments.get(segment), (row % _rowsPerSegment) * _rowBytes, persistentStore);
+      if (persistentStore != null && !persistentStore.isEmpty()) {
+        store.load(persistentStore.getFields());
+      }
+      _stores.put(key, store);
+      return store;
+    }
+  }
+
+  @Override
+  public Set<String> getAllIdentifiers(String identifierScheme) {
+    if (getPersistentTier() != null) {
+      return getPersistentTier().getAllIdentifiers(identifierScheme);
+    }
+    Set<String> identifiers = new HashSet<String>();
+    for (Pair<ExternalId, String> key : _stores.keySet()) {
+      if (key.getFirst().getScheme().getName().equals(identifierScheme) && !_stores.get(key).isEmpty()) {
+        identifiers.add(key.getFirst().getValue());
+      }
+    }
+    return identifiers;
+  }
+
+  @Override
+  public boolean isAvailable(ExternalId security, String normalizationRuleSetId) {
+    OffHeapLastKnownValueStore store = _stores.get(Pair.of(security, normalizationRuleSetId));
+    if (store != null && !store.isEmpty()) {
+      return true;
+    }
+    return getPersistentTier() != null && getPersistentTier().isAvailable(security, normalizationRuleSetId);
+  }
+
+  //-------------------------------------------------------------------------
+  /* package */ int getMaxFields() {
+    return _maxFields;
+  }
+
+  /* package */ int getMaskOffset() {
+    return _maskOffset;
+  }
+
+  /* package */ int getValuesOffset() {
+    return _valuesOffset;
+  }
+
+  /**
+   * Gets the column of a field, assigning one if the field has not been seen before.
+   *
+   * @param fieldName  the field name, not null
+   * @param assign  whether to assign a column to a new field
+   * @return the column, -1 if the field has none
+   */
+  /* package */ int getColumn(String fieldName, boolean assign) {
+    Integer column = _fieldColumns.get(fieldName);
+    if (column != null) {
+      return column;
+    }
+    if (!assign || _columnsFull) {
+      return -1;
+    }
+    synchronized (_columnLock) {
+      column = _fieldColumns.get(fieldName);
+      if (column != null) {
+        return column;
+      }
+      if (_columnCount == _maxFields) {
+        s_logger.warn("All {} columns assigned; {} and any further fields will be held on the heap", _maxFields, fieldName);
+        _columnsFull = true;
+        return -1;
+      }
+      _columnNames[_columnCount] = fieldName;
+      _fieldColumns.put(fieldName, _columnCount);
+      return _columnCount++;
+    }
+  }
+
+  /**
+   * Gets the field name of a column.
+   *
+   * @param column  the column, which must have been returned by {@link #getColumn}
+   * @return the field name, not null
+   */
+  /* package */ String getColumnName(int column) {
+    // Anyone holding the column got it from _fieldColumns, whose put followed the array write
+    return _columnNames[column];
+  }
+
+}
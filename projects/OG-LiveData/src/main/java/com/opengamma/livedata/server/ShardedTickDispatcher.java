@@ -0,0 +1,409 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.server;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.fudgemsg.FudgeMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Moves tick distribution off the thread delivering ticks from the underlying market data API.
+ * <p>
+ * Ticks are hashed by security unique ID onto a fixed number of shards. Each shard has a bounded
+ * queue and a single thread which normalizes the tick, updates the last known values and hands
+ * it to the market data senders. All ticks for one security are therefore distributed by one
+ * thread, in arrival order, and the per-subscription and per-distributor locks on that path are
+ * never contended.
+ * <p>
+ * When conflation is enabled, a tick arriving for a security which already has a tick waiting
+ * on its shard is merged into the waiting tick rather than queued behind it. The latest value
+ * of each field is kept, in the same way as {@link FieldHistoryStore}. A shard's queue then
+ * holds at most one entry per security, so a burst on one security cannot delay the others.
+ * <p>
+ * The delivering thread never waits for a shard. When a shard's queue is full, a tick is merged
+ * into the tick waiting for its security, whether or not conflation is enabled, so it is still
+ * distributed in order with the earlier ticks. If there is no such tick, it is dropped and
+ * counted. Ticks arriving after {@link #stop()} are also dropped.
+ */
+public class ShardedTickDispatcher {
+
+  /** Logger. */
+  private static final Logger s_logger = LoggerFactory.getLogger(ShardedTickDispatcher.class);
+
+  /**
+   * The default capacity of each shard's queue.
+   */
+  public static final int DEFAULT_SHARD_CAPACITY = 16384;
+
+  /**
+   * How long {@link #stop()} waits for each shard to drain.
+   */
+  private static final long STOP_TIMEOUT_MILLIS = 5000;
+
+  private final String _name;
+  private final boolean _conflating;
+  private final Shard[] _shards;
+  private boolean _running;
+  private volatile boolean _stopped;
+
+  /**
+   * Creates a conflating dispatcher with the default shard capacity.
+   *
+   * @param name  the name used for the shard threads, not null
+   * @param shardCount  the number of shards, greater than zero
+   */
+  public ShardedTickDispatcher(String name, int shardCount) {
+    this(name, shardCount, DEFAULT_SHARD_CAPACITY, true);
+  }
+
+  /**
+   * Creates a dispatcher.
+   *
+   * @param name  the name used for the shard threads, not null
+   * @param shardCount  the number of shards, greater than zero
+   * @param shardCapacity  the capacity of each shard's queue, greater than zero
+   * @param conflating  whether ticks waiting for distribution are merged per security
+   */
+  public ShardedTickDispatcher(String name, int shardCount, int shardCapacity, boolean conflating) {
+    ArgumentChecker.notNull(name, "name");
+    ArgumentChecker.isTrue(shardCount > 0, "shardCount must be positive");
+    ArgumentChecker.isTrue(shardCapacity > 0, "shardCapacity must be positive");
+    _name = name;
+    _conflating = conflating;
+    _shards = new Shard[shardCount];
+    for (int i = 0; i < shardCount; i++) {
+      _shards[i] = new Shard(shardCapacity);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the number of shards.
+   *
+   * @return the number of shards
+   */
+  public int getShardCount() {
+    return _shards.length;
+  }
+
+  /**
+   * Checks whether ticks waiting for distribution are merged per security.
+   *
+   * @return true if conflating
+   */
+  public boolean isConflating() {
+    return _conflating;
+  }
+
+  /**
+   * Gets the shard a security is distributed by.
+   *
+   * @param securityUniqueId  the security unique ID, not null
+   * @return the shard index
+   */
+  public int getShard(String securityUniqueId) {
+    int hash = securityUniqueId.hashCode();
+    hash ^= (hash >>> 16);
+    return (hash & Integer.MAX_VALUE) % _shards.length;
+  }
+
+  /**
+   * Gets the number of ticks waiting on a shard.
+   *
+   * @param shard  the shard index
+   * @return the queue depth
+   */
+  public int getQueueDepth(int shard) {
+    return _shards[shard]._queue.size();
+  }
+
+  /**
+   * Gets the largest number of ticks that have been waiting on a shard.
+   *
+   * @param shard  the shard index
+   * @return the maximum queue depth
+   */
+  public int getMaxQueueDepth(int shard) {
+    return (int) _shards[shard]._maxQueueDepth.get();
+  }
+
+  /**
+   * Gets the number of ticks received for a shard.
+   *
+   * @param shard  the shard index
+   * @return the number of ticks received
+   */
+  public long getTicksReceived(int shard) {
+    return _shards[shard]._received.get();
+  }
+
+  /**
+   * Gets the number of ticks merged into a tick already waiting on a shard.
+   *
+   * @param shard  the shard index
+   * @return the number of ticks conflated
+   */
+  public long getTicksConflated(int shard) {
+    return _shards[shard]._conflated.get();
+  }
+
+  /**
+   * Gets the number of ticks dropped by a shard because its queue was full or the dispatcher had stopped.
+   *
+   * @param shard  the shard index
+   * @return the number of ticks dropped
+   */
+  public long getTicksDropped(int shard) {
+    return _shards[shard]._dropped.get();
+  }
+
+  /**
+   * Gets the number of ticks a shard has distributed, after conflation.
+   *
+   * @param shard  the shard index
+   * @return the number of ticks distributed
+   */
+  public long getTicksDistributed(int shard) {
+    return _shards[shard]._distributed.get();
+  }
+
+  /**
+   * Gets the mean time from a tick being received to it being distributed by a shard.
+   *
+   * @param shard  the shard index
+   * @return the mean latency in microseconds, zero if nothing has been distributed
+   */
+  public long getMeanLatencyMicros(int shard) {
+    Shard s = _shards[shard];
+    long distributed = s._distributed.get();
+    return distributed == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(s._totalLatencyNanos.get() / distributed);
+  }
+
+  /**
+   * Gets the longest time from a tick being received to it being distributed by a shard.
+   *
+   * @param shard  the shard index
+   * @return the maximum latency in microseconds
+   */
+  public long getMaxLatencyMicros(int shard) {
+    return TimeUnit.NANOSECONDS.toMicros(_shards[shard]._maxLatencyNanos.get());
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Starts the shard threads, if not already running.
+   */
+  public synchronized void start() {
+    if (_running) {
+      return;
+    }
+    for (int i = 0; i < _shards.length; i++) {
+      Thread thread = new Thread(_shards[i], _name + "-shard-" + i);
+      thread.setDaemon(true);
+      _shards[i]._thread = thread;
+      thread.start();
+    }
+    _stopped = false;
+    _running = true;
+  }
+
+  /**
+   * Stops the shard threads, if running, after distributing the ticks already queued. Any tick
+   * arriving afterwards is dropped until the dispatcher is started again.
+   */
+  public synchronized void stop() {
+    _stopped = true;
+    if (!_running) {
+      return;
+    }
+    _running = false;
+    for (Shard shard : _shards) {
+      try {
+        // The shard thread is draining the queue, so this waits for space only briefly
+        shard._queue.put(PendingTick.STOP);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+    for (Shard shard : _shards) {
+      try {
+        shard._thread.join(STOP_TIMEOUT_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      if (shard._thread.isAlive()) {
+        s_logger.warn("Shard thread {} did not stop within {}ms", shard._thread.getName(), STOP_TIMEOUT_MILLIS);
+      }
+      shard._thread = null;
+    }
+  }
+
+  /**
+   * Checks if the shard threads are running.
+   *
+   * @return true if running
+   */
+  public synchronized boolean isRunning() {
+    return _running;
+  }
+
+  /**
+   * Queues a tick for distribution by the shard owning its security.
+   *
+   * @param subscription  the subscription the tick is for, not null
+   * @param liveDataFields  the tick, not null
+   */
+  /*package*/ void dispatch(Subscription subscription, FudgeMsg liveDataFields) {
+    String securityUniqueId = subscription.getSecurityUniqueId();
+    _shards[getShard(securityUniqueId)].dispatch(securityUniqueId, subscription, liveDataFields);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * A tick waiting for distribution, into which later ticks for the same security may be merged.
+   */
+  private static final class PendingTick {
+
+    private static final PendingTick STOP = new PendingTick(null, null);
+
+    private final Subscription _subscription;
+    private final long _receivedNanos = System.nanoTime();
+    private FudgeMsg _fields;
+    private FieldHistoryStore _merged;
+    private boolean _claimed;
+
+    private PendingTick(Subscription subscription, FudgeMsg fields) {
+      _subscription = subscription;
+      _fields = fields;
+    }
+
+    /**
+     * Merges a later tick into this one.
+     *
+     * @return false if this tick has already been taken for distribution
+     */
+    private synchronized boolean merge(FudgeMsg fields) {
+      if (_claimed) {
+        return false;
+      }
+      if (_merged == null) {
+        _merged = new FieldHistoryStore(_fields);
+      }
+      _merged.liveDataReceived(fields);
+      return true;
+    }
+
+    /**
+     * Takes this tick for distribution, after which nothing more can be merged into it.
+     */
+    private synchronized FudgeMsg claim() {
+      _claimed = true;
+      if (_merged != null) {
+        _fields = _merged.getLastKnownValues();
+        _merged = null;
+      }
+      return _fields;
+    }
+
+  }
+
+  /**
+   * A shard's queue, and the single thread that distributes from it.
+   */
+  private final class Shard implements Runnable {
+
+    private final BlockingQueue<PendingTick> _queue;
+    private final ConcurrentMap<String, PendingTick> _pending = new ConcurrentHashMap<String, PendingTick>();
+    private final AtomicLong _maxQueueDepth = new AtomicLong();
+    private final AtomicLong _received = new AtomicLong();
+    private final AtomicLong _conflated = new AtomicLong();
+    private final AtomicLong _dropped = new AtomicLong();
+    private final AtomicLong _distributed = new AtomicLong();
+    private final AtomicLong _totalLatencyNanos = new AtomicLong();
+    private final AtomicLong _maxLatencyNanos = new AtomicLong();
+    private volatile Thread _thread;
+
+    private Shard(int capacity) {
+      _queue = new ArrayBlockingQueue<PendingTick>(capacity);
+    }
+
+    private void dispatch(String securityUniqueId, Subscription subscription, FudgeMsg liveDataFields) {
+      _received.incrementAndGet();
+      if (_stopped) {
+        _dropped.incrementAndGet();
+        s_logger.debug("Dispatcher stopped; tick for {} dropped", securityUniqueId);
+        return;
+      }
+      while (true) {
+        // The latest tick waiting for the security, which is always the last one queued for it
+        PendingTick pending = _pending.get(securityUniqueId);
+        if (pending != null && (_conflating || _queue.remainingCapacity() == 0) && pending.merge(liveDataFields)) {
+          _conflated.incrementAndGet();
+          return;
+        }
+        PendingTick tick = new PendingTick(subscription, liveDataFields);
+        boolean added = (pending == null) ? (_pending.putIfAbsent(securityUniqueId, tick) == null) : _pending.replace(securityUniqueId, pending, tick);
+        if (added) {
+          if (_queue.offer(tick)) {
+            updateMax(_maxQueueDepth, _queue.size());
+          } else {
+            _pending.remove(securityUniqueId, tick);
+            _dropped.incrementAndGet();
+            s_logger.debug("Shard queue full; tick for {} dropped", securityUniqueId);
+          }
+          return;
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        PendingTick tick;
+        try {
+          tick = _queue.take();
+        } catch (InterruptedException e) {
+          s_logger.warn("Shard thread {} interrupted", Thread.currentThread().getName());
+          return;
+        }
+        if (tick == PendingTick.STOP) {
+          return;
+        }
+        _pending.remove(tick._subscription.getSecurityUniqueId(), tick);
+        FudgeMsg liveDataFields = tick.claim();
+        try {
+          tick._subscription.liveDataReceived(liveDataFields);
+        } catch (RuntimeException e) {
+          s_logger.error("Failed to distribute tick for " + tick._subscription, e);
+        }
+        long latency = System.nanoTime() - tick._receivedNanos;
+        _distributed.incrementAndGet();
+        _totalLatencyNanos.addAndGet(latency);
+        updateMax(_maxLatencyNanos, latency);
+      }
+    }
+
+  }
+
+  private static void updateMax(AtomicLong max, long value) {
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+  }
+
+}
@@ -67,8 +67,8 @@ public abstract class StandardLiveDataServer implements LiveDataServer, Lifecycl
   /** _Write_ access controlled via _subscriptionLock */
   private final Map<String, Subscription> _securityUniqueId2Subscription = new ConcurrentHashMap<String, Subscription>();
 
-  /** Access controlled via _subscriptionLock */
-  private final Map<LiveDataSpecification, MarketDataDistributor> _fullyQualifiedSpec2Distributor = new HashMap<LiveDataSpecification, MarketDataDistributor>();
+  /** _Write_ access controlled via _subscriptionLock */
+  private final Map<LiveDataSpecification, MarketDataDistributor> _fullyQualifiedSpec2Distributor = new ConcurrentHashMap<LiveDataSpecification, MarketDataDistributor>();
 
   private final AtomicLong _numMarketDataUpdatesReceived = new AtomicLong(0);
   private final PerformanceCounter _performanceCounter;
@@ -80,6 +80,7 @@ public abstract class StandardLiveDataServer implements LiveDataServer, Lifecycl
   private DistributionSpecificationResolver _distributionSpecificationResolver = new NaiveDistributionSpecificationResolver();
   private LiveDataEntitlementChecker _entitlementChecker = new PermissiveLiveDataEntitlementChecker();
   private LastKnownValueStoreProvider _lkvStoreProvider = new MapLastKnownValueStoreProvider();
+  private volatile ShardedTickDispatcher _tickDispatcher;
 
   private volatile ConnectionStatus _connectionStatus = ConnectionStatus.NOT_CONNECTED;
 
@@ -224,6 +225,28 @@ public abstract class StandardLiveDataServer implements LiveDataServer, Lifecycl
     _lkvStoreProvider = lkvStoreProvider;
   }
 
+  /**
+   * Gets the dispatcher distributing ticks off the thread which delivers them.
+   *
+   * @return the dispatcher, null if ticks are distributed on the delivering thread
+   */
+  public ShardedTickDispatcher getTickDispatcher() {
+    return _tickDispatcher;
+  }
+
+  /**
+   * Sets the dispatcher distributing ticks off the thread which delivers them.
+   * <p>
+   * The dispatcher is started on {@link #connect()} and stopped on {@link #disconnect()}.
+   * By default there is no dispatcher and ticks are normalized and sent on the thread
+   * calling {@link #liveDataReceived(String, FudgeMsg)}.
+   *
+   * @param tickDispatcher  the dispatcher, null to distribute on the delivering thread
+   */
+  public void setTickDispatcher(ShardedTickDispatcher tickDispatcher) {
+    _tickDispatcher = tickDispatcher;
+  }
+
   //-------------------------------------------------------------------------
   /**
    * Subscribes to the specified tickers using the underlying market data provider.
@@ -385,6 +408,10 @@ public abstract class StandardLiveDataServer implements LiveDataServer, Lifecycl
     if (getConnectionStatus() != ConnectionStatus.NOT_CONNECTED) {
       throw new IllegalStateException("Can only connect if not connected");
     }
+    ShardedTickDispatcher tickDispatcher = getTickDispatcher();
+    if (tickDispatcher != null) {
+      tickDispatcher.start();
+    }
     doConnect();
     setConnectionStatus(ConnectionStatus.CONNECTED);
   }
@@ -394,6 +421,10 @@ public abstract class StandardLiveDataServer implements LiveDataServer, Lifecycl
       throw new IllegalStateException("Can only disconnect if connected");
     }
     doDisconnect();
+    ShardedTickDispatcher tickDispatcher = getTickDispatcher();
+    if (tickDispatcher != null) {
+      tickDispatcher.stop();
+    }
     setConnectionStatus(ConnectionStatus.NOT_CONNECTED);
   }
 
@@ -959,12 +990,7 @@ public abstract class StandardLiveDataServer implements LiveDataServer, Lifecycl
   }
 
   public boolean isSubscribedTo(LiveDataSpecification fullyQualifiedSpec) {
-    _subscriptionLock.lock();
-    try {
-      return _fullyQualifiedSpec2Distributor.containsKey(fullyQualifiedSpec);
-    } finally {
-      _subscriptionLock.unlock();
-    }
+    return _fullyQualifiedSpec2Distributor.containsKey(fullyQualifiedSpec);
   }
 
   public boolean isSubscribedTo(Subscription subscription) {
@@ -986,7 +1012,12 @@ public abstract class StandardLiveDataServer implements LiveDataServer, Lifecycl
       return;
     }
 
-    subscription.liveDataReceived(liveDataFields);
+    ShardedTickDispatcher tickDispatcher = getTickDispatcher();
+    if (tickDispatcher != null) {
+      tickDispatcher.dispatch(subscription, liveDataFields);
+    } else {
+      subscription.liveDataReceived(liveDataFields);
+    }
   }
 
   public Set<String> getActiveDistributionSpecs() {
@@ -1067,12 +1098,7 @@ public abstract class StandardLiveDataServer implements LiveDataServer, Lifecycl
   }
 
   public MarketDataDistributor getMarketDataDistributor(LiveDataSpecification fullyQualifiedSpec) {
-    _subscriptionLock.lock();
-    try {
-      return _fullyQualifiedSpec2Distributor.get(fullyQualifiedSpec);
-    } finally {
-      _subscriptionLock.unlock();
-    }
+    return _fullyQualifiedSpec2Distributor.get(fullyQualifiedSpec);
   }
 
   /**
@@ -0,0 +1,216 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.client;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.fudgemsg.FudgeContext;
+import org.testng.annotations.Test;
+
+import com.opengamma.id.ExternalId;
+import com.opengamma.livedata.LiveDataClient;
+import com.opengamma.livedata.LiveDataListener;
+import com.opengamma.livedata.LiveDataSpecification;
+import com.opengamma.livedata.LiveDataValueUpdateBean;
+import com.opengamma.livedata.UserPrincipal;
+import com.opengamma.livedata.msg.LiveDataSubscriptionResponse;
+import com.opengamma.livedata.msg.LiveDataSubscriptionResult;
+import com.opengamma.livedata.test.CollectingLiveDataListener;
+import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
+import com.opengamma.util.tuple.Pair;
+
+/**
+ * Tests the {@link CoalescingLiveDataClient} class.
+ */
+@Test(groups = "unit")
+public class CoalescingLiveDataClientTest {
+
+  private static final long TIMEOUT = 5000;
+
+  private final FudgeContext _fudgeContext = OpenGammaFudgeContext.getInstance();
+
+  /**
+   * Records the requests made to it, leaving the test to send the responses.
+   */
+  private static final class RecordingLiveDataClient implements LiveDataClient {
+
+    private final BlockingQueue<Pair<Collection<LiveDataSpecification>, LiveDataListener>> _subscriptions = new LinkedBlockingQueue<Pair<Collection<LiveDataSpecification>, LiveDataListener>>();
+    private final BlockingQueue<Collection<LiveDataSpecification>> _snapshots = new LinkedBlockingQueue<Collection<LiveDataSpecification>>();
+    private final BlockingQueue<Collection<LiveDataSpecification>> _unsubscriptions = new LinkedBlockingQueue<Collection<LiveDataSpecification>>();
+
+    public Pair<Collection<LiveDataSpecification>, LiveDataListener> nextSubscription() throws InterruptedException {
+      return _subscriptions.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    public Collection<LiveDataSpecification> nextSnapshot() throws InterruptedException {
+      return _snapshots.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    public Collection<LiveDataSpecification> nextUnsubscription() {
+      return _unsubscriptions.poll();
+    }
+
+    @Override
+    public boolean isEntitled(UserPrincipal user, LiveDataSpecification requestedSpecification) {
+      return true;
+    }
+
+    @Override
+    public Map<LiveDataSpecification, Boolean> isEntitled(UserPrincipal user, Collection<LiveDataSpecification> requestedSpecifications) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void subscribe(UserPrincipal user, LiveDataSpecification requestedSpecification, LiveDataListener listener) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void subscribe(UserPrincipal user, Collection<LiveDataSpecification> requestedSpecifications, LiveDataListener listener) {
+      _subscriptions.add(Pair.of((Collection<LiveDataSpecification>) new ArrayList<LiveDataSpecification>(requestedSpecifications), listener));
+    }
+
+    @Override
+    public void unsubscribe(UserPrincipal user, LiveDataSpecification fullyQualifiedSpecification, LiveDataListener listener) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void unsubscribe(UserPrincipal user, Collection<LiveDataSpecification> fullyQualifiedSpecifications, LiveDataListener listener) {
+      _unsubscriptions.add(new ArrayList<LiveDataSpecification>(fullyQualifiedSpecifications));
+    }
+
+    @Override
+    public LiveDataSubscriptionResponse snapshot(UserPrincipal user, LiveDataSpecification requestedSpecification, long timeout) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<LiveDataSubscriptionResponse> snapshot(UserPrincipal user, Collection<LiveDataSpecification> requestedSpecifications, long timeout) {
+      _snapshots.add(new ArrayList<LiveDataSpecification>(requestedSpecifications));
+      final List<LiveDataSubscriptionResponse> responses = new ArrayList<LiveDataSubscriptionResponse>();
+      for (LiveDataSpecification specification : requestedSpecifications) {
+        final LiveDataValueUpdateBean snapshot = new LiveDataValueUpdateBean(10, specification, OpenGammaFudgeContext.getInstance().newMessage());
+        responses.add(new LiveDataSubscriptionResponse(specification, LiveDataSubscriptionResult.SUCCESS, null, specification, null, snapshot));
+      }
+      return responses;
+    }
+
+    @Override
+    public String getDefaultNormalizationRuleSetId() {
+      return null;
+    }
+
+    @Override
+    public void close() {
+    }
+
+  }
+
+  private static LiveDataSpecification spec(final String id) {
+    return new LiveDataSpecification("Test", ExternalId.of("Test", id));
+  }
+
+  private static LiveDataSubscriptionResponse success(final LiveDataSpecification spec) {
+    return new LiveDataSubscriptionResponse(spec, LiveDataSubscriptionResult.SUCCESS, null, spec, null, null);
+  }
+
+  private static CoalescingLiveDataClient client(final RecordingLiveDataClient underlying) {
+    final CoalescingLiveDataClient client = new CoalescingLiveDataClient(underlying);
+    client.setBatchSize(2);
+    client.setLingerMillis(100);
+    return client;
+  }
+
+  public void testBatchesAndDeduplicates() throws InterruptedException {
+    final RecordingLiveDataClient underlying = new RecordingLiveDataClient();
+    final CoalescingLiveDataClient client = client(underlying);
+    final CollectingLiveDataListener listener1 = new CollectingLiveDataListener();
+    final CollectingLiveDataListener listener2 = new CollectingLiveDataListener();
+    final UserPrincipal user = UserPrincipal.getTestUser();
+    client.subscribe(user, Arrays.asList(spec("A"), spec("B")), listener1);
+    client.subscribe(user, Arrays.asList(spec("B"), spec("C")), listener2);
+    final Pair<Collection<LiveDataSpecification>, LiveDataListener> batch1 = underlying.nextSubscription();
+    final Pair<Collection<LiveDataSpecification>, LiveDataListener> batch2 = underlying.nextSubscription();
+    assertEquals(Arrays.asList(spec("A"), spec("B")), batch1.getFirst());
+    assertEquals(Arrays.asList(spec("C")), batch2.getFirst());
+    final LiveDataListener multiplexer = batch1.getSecond();
+    multiplexer.subscriptionResultReceived(success(spec("A")));
+    multiplexer.subscriptionResultReceived(success(spec("B")));
+    assertEquals(2, listener1.getSubscriptionResponses().size());
+    assertEquals(1, listener2.getSubscriptionResponses().size());
+    multiplexer.subscriptionResultReceived(new LiveDataSubscriptionResponse(spec("C"), LiveDataSubscriptionResult.NOT_PRESENT));
+    assertEquals(2, listener2.getSubscriptionResponses().size());
+    multiplexer.valueUpdate(new LiveDataValueUpdateBean(1, spec("B"), _fudgeContext.newMessage()));
+    assertEquals(1, listener1.getValueUpdates().size());
+    assertEquals(1, listener2.getValueUpdates().size());
+    client.close();
+  }
+
+  public void testLateJoinerGetsSnapshot() throws InterruptedException {
+    final RecordingLiveDataClient underlying = new RecordingLiveDataClient();
+    final CoalescingLiveDataClient client = client(underlying);
+    final CollectingLiveDataListener listener1 = new CollectingLiveDataListener();
+    final CollectingLiveDataListener listener2 = new CollectingLiveDataListener();
+    final UserPrincipal user = UserPrincipal.getTestUser();
+    client.subscribe(user, spec("A"), listener1);
+    final LiveDataListener multiplexer = underlying.nextSubscription().getSecond();
+    multiplexer.subscriptionResultReceived(success(spec("A")));
+    client.subscribe(user, spec("A"), listener2);
+    // The existing response is passed on without a new subscription
+    assertEquals(1, listener2.getSubscriptionResponses().size());
+    assertEquals(new HashSet<LiveDataSpecification>(Arrays.asList(spec("A"))), new HashSet<LiveDataSpecification>(underlying.nextSnapshot()));
+    client.close();
+    // Wait for the snapshot to be released
+    final long timeout = System.currentTimeMillis() + TIMEOUT;
+    while (listener2.getValueUpdates().isEmpty() && (System.currentTimeMillis() < timeout)) {
+      Thread.sleep(10);
+    }
+    assertEquals(1, listener2.getValueUpdates().size());
+    assertEquals(10, listener2.getValueUpdates().get(0).getSequenceNumber());
+    multiplexer.valueUpdate(new LiveDataValueUpdateBean(11, spec("A"), _fudgeContext.newMessage()));
+    assertEquals(1, listener1.getValueUpdates().size());
+    assertEquals(2, listener2.getValueUpdates().size());
+  }
+
+  public void testUnsubscribeWhileOnHold() throws InterruptedException {
+    final RecordingLiveDataClient underlying = new RecordingLiveDataClient();
+    final CoalescingLiveDataClient client = client(underlying);
+    final CollectingLiveDataListener listener1 = new CollectingLiveDataListener();
+    final CollectingLiveDataListener listener2 = new CollectingLiveDataListener();
+    final UserPrincipal user = UserPrincipal.getTestUser();
+    client.subscribe(user, spec("A"), listener1);
+    final LiveDataListener multiplexer = underlying.nextSubscription().getSecond();
+    multiplexer.subscriptionResultReceived(success(spec("A")));
+    // Unsubscribes before the snapshot is taken, so the snapshot is no longer needed
+    client.subscribe(user, spec("A"), listener2);
+    client.unsubscribe(user, spec("A"), listener2);
+    assertEquals(1, listener2.getStoppedSubscriptions().size());
+    assertNull(underlying.nextUnsubscription());
+    // Nothing is left holding the subscription open
+    client.unsubscribe(user, spec("A"), listener1);
+    assertEquals(Arrays.asList(spec("A")), underlying.nextUnsubscription());
+    multiplexer.valueUpdate(new LiveDataValueUpdateBean(1, spec("A"), _fudgeContext.newMessage()));
+    assertEquals(0, listener1.getValueUpdates().size());
+    assertEquals(0, listener2.getValueUpdates().size());
+    // A new subscription is requested from the underlying client rather than reusing the stopped one
+    client.subscribe(user, spec("A"), listener2);
+    assertEquals(Arrays.asList(spec("A")), underlying.nextSubscription().getFirst());
+    client.close();
+  }
+
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.client;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.fudgemsg.MutableFudgeMsg;
+import org.testng.annotations.Test;
+
+import com.opengamma.id.ExternalId;
+import com.opengamma.livedata.BatchLiveDataListener;
+import com.opengamma.livedata.LiveDataListener;
+import com.opengamma.livedata.LiveDataSpecification;
+import com.opengamma.livedata.LiveDataValueUpdate;
+import com.opengamma.livedata.LiveDataValueUpdateBean;
+import com.opengamma.livedata.msg.LiveDataSubscriptionResponse;
+import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
+
+/**
+ * Test.
+ */
+@Test(groups = "unit")
+public class ConflatingLiveDataListenerTest {
+
+  private static final LiveDataSpecification SPEC_A = new LiveDataSpecification("Rules", ExternalId.of("Test", "A"));
+  private static final LiveDataSpecification SPEC_B = new LiveDataSpecification("Rules", ExternalId.of("Test", "B"));
+
+  private static LiveDataValueUpdate update(long sequence, LiveDataSpecification spec, String field, double value) {
+    MutableFudgeMsg msg = OpenGammaFudgeContext.getInstance().newMessage();
+    msg.add(field, value);
+    return new LiveDataValueUpdateBean(sequence, spec, msg);
+  }
+
+  private static class RecordingListener implements BatchLiveDataListener {
+
+    private final List<Collection<LiveDataValueUpdate>> _batches = new ArrayList<Collection<LiveDataValueUpdate>>();
+
+    @Override
+    public void subscriptionResultReceived(LiveDataSubscriptionResponse subscriptionResult) {
+    }
+
+    @Override
+    public void subscriptionStopped(LiveDataSpecification fullyQualifiedSpecification) {
+    }
+
+    @Override
+    public void valueUpdate(LiveDataValueUpdate valueUpdate) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void valueUpdates(Collection<LiveDataValueUpdate> valueUpdates) {
+      _batches.add(valueUpdates);
+    }
+
+  }
+
+  //-------------------------------------------------------------------------
+  public void conflatesIntoOneBatch() {
+    ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+    RecordingListener underlying = new RecordingListener();
+    ConflatingLiveDataListener listener = new ConflatingLiveDataListener(underlying, 500, executor);
+
+    listener.valueUpdate(update(1, SPEC_A, "Bid", 1.0));
+    listener.valueUpdate(update(2, SPEC_A, "Ask", 2.0));
+    listener.valueUpdate(update(3, SPEC_B, "Bid", 5.0));
+    LiveDataValueUpdate lastA = update(4, SPEC_A, "Bid", 1.5);
+    listener.valueUpdate(lastA);
+    verify(executor, times(1)).schedule(any(Runnable.class), eq(500L), eq(TimeUnit.MILLISECONDS));
+
+    listener.flush();
+    assertEquals(1, underlying._batches.size());
+    List<LiveDataValueUpdate> batch = new ArrayList<LiveDataValueUpdate>(underlying._batches.get(0));
+    assertEquals(2, batch.size());
+    LiveDataValueUpdate a = batch.get(0);
+    assertEquals(SPEC_A, a.getSpecification());
+    assertEquals(4, a.getSequenceNumber());
+    assertEquals(1.5, a.getFields().getDouble("Bid"), 0.0);
+    assertEquals(2.0, a.getFields().getDouble("Ask"), 0.0);
+    assertEquals(SPEC_B, batch.get(1).getSpecification());
+    assertEquals(4, listener.getUpdatesReceived());
+    assertEquals(2, listener.getUpdatesDelivered());
+    assertEquals(1, listener.getBatchesDelivered());
+
+    // nothing held, so nothing delivered
+    listener.flush();
+    assertEquals(1, underlying._batches.size());
+
+    // a new window starts with the next update
+    listener.valueUpdate(update(5, SPEC_B, "Bid", 6.0));
+    verify(executor, times(2)).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+  }
+
+  public void deliversSinglesToPlainListener() {
+    ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+    LiveDataListener underlying = mock(LiveDataListener.class);
+    ConflatingLiveDataListener listener = new ConflatingLiveDataListener(underlying, 100, executor);
+
+    LiveDataValueUpdate a = update(1, SPEC_A, "Bid", 1.0);
+    LiveDataValueUpdate b = update(2, SPEC_B, "Bid", 2.0);
+    listener.valueUpdate(a);
+    listener.valueUpdate(b);
+    listener.flush();
+    verify(underlying).valueUpdate(a);
+    verify(underlying).valueUpdate(b);
+  }
+
+  public void subscriptionCallbacksPassedStraightThrough() {
+    LiveDataListener underlying = mock(LiveDataListener.class);
+    ConflatingLiveDataListener listener = new ConflatingLiveDataListener(underlying, 100, mock(ScheduledExecutorService.class));
+    assertSame(underlying, listener.getUnderlying());
+    listener.subscriptionStopped(SPEC_A);
+    verify(underlying).subscriptionStopped(SPEC_A);
+  }
+
+}
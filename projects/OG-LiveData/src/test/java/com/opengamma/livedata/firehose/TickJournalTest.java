@@ -0,0 +1,346 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.firehose;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.fudgemsg.MutableFudgeMsg;
+import org.testng.annotations.Test;
+
+import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
+import com.opengamma.util.test.Timeout;
+
+/**
+ * Test.
+ */
+@Test(groups = "unit")
+public class TickJournalTest {
+
+  private static final long START = 1330000000000L;
+  private static final int TICKS = 1000;
+  /** Small enough for records to be read and written across many regions. */
+  private static final int REGION_SIZE = 256;
+
+  private static String security(int tick) {
+    return "S" + (tick % 3);
+  }
+
+  private static File writeJournal() throws IOException {
+    final File file = File.createTempFile("ticks", ".journal");
+    file.deleteOnExit();
+    final TickJournalWriter writer = new TickJournalWriter(OpenGammaFudgeContext.getInstance(), file, REGION_SIZE);
+    try {
+      for (int i = 0; i < TICKS; i++) {
+        final MutableFudgeMsg fields = OpenGammaFudgeContext.getInstance().newMessage();
+        fields.add("Tick", i);
+        writer.write(START + 10 * i, security(i), fields);
+      }
+      assertEquals(TICKS, writer.getTickCount());
+    } finally {
+      writer.close();
+    }
+    return file;
+  }
+
+  private static TickJournal open(final File file) {
+    return new TickJournal(OpenGammaFudgeContext.getInstance(), file, REGION_SIZE);
+  }
+
+  //-------------------------------------------------------------------------
+  public void readAll() throws IOException {
+    final TickJournal journal = open(writeJournal());
+    try {
+      assertEquals(TICKS, journal.getTickCount());
+      assertEquals(START, journal.getFirstTimestamp());
+      assertEquals(START + 10 * (TICKS - 1), journal.getLastTimestamp());
+      assertEquals(3, journal.getSecurities().size());
+      assertEquals(334, journal.getTickCount("S0"));
+      assertEquals(0, journal.getTickCount("Missing"));
+      final TickJournal.Cursor cursor = journal.cursor();
+      for (int i = 0; i < TICKS; i++) {
+        assertTrue(cursor.next());
+        assertEquals(START + 10 * i, cursor.getTimestamp());
+        assertEquals(security(i), cursor.getSecurity());
+        assertEquals(i, cursor.getFields().getInt("Tick").intValue());
+      }
+      assertFalse(cursor.next());
+    } finally {
+      journal.close();
+    }
+  }
+
+  public void readSecurities() throws IOException {
+    final TickJournal journal = open(writeJournal());
+    try {
+      final TickJournal.Cursor cursor = journal.cursor(Arrays.asList("S1", "S2", "Missing"));
+      for (int i = 0; i < TICKS; i++) {
+        if (i % 3 != 0) {
+          assertTrue(cursor.next());
+          assertEquals(i, cursor.getFields().getInt("Tick").intValue());
+        }
+      }
+      assertFalse(cursor.next());
+      assertFalse(journal.cursor(Collections.singleton("Missing")).next());
+    } finally {
+      journal.close();
+    }
+  }
+
+  public void seek() throws IOException {
+    final TickJournal journal = open(writeJournal());
+    try {
+      final TickJournal.Cursor cursor = journal.cursor();
+      cursor.seek(START + 10 * 700 - 5);
+      assertTrue(cursor.next());
+      assertEquals(700, cursor.getFields().getInt("Tick").intValue());
+      // backwards, to a tick exactly
+      cursor.seek(START + 10 * 300);
+      assertTrue(cursor.next());
+      assertEquals(300, cursor.getFields().getInt("Tick").intValue());
+      cursor.seek(START - 1);
+      assertTrue(cursor.next());
+      assertEquals(0, cursor.getFields().getInt("Tick").intValue());
+      cursor.seek(START + 10 * TICKS);
+      assertFalse(cursor.next());
+
+      final TickJournal.Cursor s0 = journal.cursor(Collections.singleton("S0"));
+      s0.seek(START + 10 * 500);
+      assertTrue(s0.next());
+      assertEquals(501, s0.getFields().getInt("Tick").intValue());
+    } finally {
+      journal.close();
+    }
+  }
+
+  public void append() throws IOException {
+    final File file = writeJournal();
+    final TickJournalWriter writer = new TickJournalWriter(OpenGammaFudgeContext.getInstance(), file, REGION_SIZE);
+    writer.write(START + 10 * TICKS, "S1", new byte[] {1, 2, 3});
+    writer.write(START + 10 * TICKS, "S3", new byte[0]);
+    // earlier than the last tick, so recorded at its time
+    writer.write(START, "S3", new byte[] {4});
+    writer.close();
+    final TickJournal journal = open(file);
+    try {
+      assertEquals(TICKS + 3, journal.getTickCount());
+      assertEquals(2, journal.getTickCount("S3"));
+      final TickJournal.Cursor cursor = journal.cursor(Arrays.asList("S1", "S3"));
+      cursor.seek(START + 10 * TICKS);
+      assertTrue(cursor.next());
+      assertEquals(Arrays.toString(new byte[] {1, 2, 3}), Arrays.toString(cursor.getPayload()));
+      assertTrue(cursor.next());
+      assertEquals("S3", cursor.getSecurity());
+      assertEquals(0, cursor.getPayloadLength());
+      assertTrue(cursor.next());
+      assertEquals(START + 10 * TICKS, cursor.getTimestamp());
+      assertFalse(cursor.next());
+    } finally {
+      journal.close();
+    }
+  }
+
+  public void replay() throws IOException {
+    final TickJournal journal = open(writeJournal());
+    try {
+      final List<Integer> ticks = new ArrayList<Integer>();
+      final TickJournalReplayer replayer = new TickJournalReplayer(journal, new TickJournalReplayer.Listener() {
+        @Override
+        public void tickReplayed(final TickJournal.Cursor tick) {
+          ticks.add(tick.getFields().getInt("Tick"));
+        }
+      });
+      replayer.setSpeed(TickJournalReplayer.MAXIMUM_SPEED);
+      replayer.setSecurities(Collections.singleton("S2"));
+      replayer.setStartTimestamp(START + 10 * 100);
+      replayer.setEndTimestamp(START + 10 * 110);
+      replayer.run();
+      assertEquals(Arrays.asList(101, 104, 107, 110), ticks);
+      assertEquals(4, replayer.getTicksReplayed());
+      assertEquals(START + 10 * 110, replayer.getReplayTimestamp());
+    } finally {
+      journal.close();
+    }
+  }
+
+  /**
+   * Records the ticks replayed and when each was delivered.
+   */
+  private static class RecordingListener implements TickJournalReplayer.Listener {
+
+    private final List<Integer> _ticks = Collections.synchronizedList(new ArrayList<Integer>());
+    private final List<Long> _nanos = Collections.synchronizedList(new ArrayList<Long>());
+
+    @Override
+    public void tickReplayed(final TickJournal.Cursor tick) {
+      _nanos.add(System.nanoTime());
+      _ticks.add(tick.getFields().getInt("Tick"));
+    }
+
+  }
+
+  private static void assertPaced(final RecordingListener listener, final double speed) {
+    final long originNanos = listener._nanos.get(0);
+    final int originTick = listener._ticks.get(0);
+    for (int i = 1; i < listener._ticks.size(); i++) {
+      final double dueMillis = 10 * (listener._ticks.get(i) - originTick) / speed;
+      final double actualMillis = (listener._nanos.get(i) - originNanos) / 1000000d;
+      // Ticks due less than a millisecond ahead are delivered without pausing, and the replayer anchors just before the first delivery
+      assertTrue("tick " + listener._ticks.get(i) + " at " + actualMillis + "ms, due at " + dueMillis + "ms", actualMillis > dueMillis - 2);
+    }
+  }
+
+  private static void replayPaced(final double speed) throws IOException {
+    final TickJournal journal = open(writeJournal());
+    try {
+      final RecordingListener listener = new RecordingListener();
+      final TickJournalReplayer replayer = new TickJournalReplayer(journal, listener);
+      replayer.setSpeed(speed);
+      replayer.setStartTimestamp(START + 10 * 100);
+      replayer.setEndTimestamp(START + 10 * 130);
+      final long startNanos = System.nanoTime();
+      replayer.run();
+      final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+      assertEquals(31, listener._ticks.size());
+      assertEquals(100, listener._ticks.get(0).intValue());
+      assertEquals(130, listener._ticks.get(30).intValue());
+      assertPaced(listener, speed);
+      assertTrue("replay took " + elapsedMillis + "ms", elapsedMillis >= (long) (300 / speed) - 1);
+    } finally {
+      journal.close();
+    }
+  }
+
+  public void replayRealTime() throws IOException {
+    replayPaced(TickJournalReplayer.REAL_TIME);
+  }
+
+  public void replayMultiple() throws IOException {
+    replayPaced(4.0);
+  }
+
+  public void seekAndSpeedUpWhileRunning() throws Exception {
+    final TickJournal journal = open(writeJournal());
+    try {
+      final CountDownLatch started = new CountDownLatch(5);
+      final RecordingListener listener = new RecordingListener() {
+        @Override
+        public void tickReplayed(final TickJournal.Cursor tick) {
+          super.tickReplayed(tick);
+          started.countDown();
+        }
+      };
+      final TickJournalReplayer replayer = new TickJournalReplayer(journal, listener);
+      replayer.setSpeed(TickJournalReplayer.REAL_TIME);
+      final Thread thread = new Thread(replayer, "TickJournalReplayer");
+      thread.start();
+      try {
+        assertTrue(started.await(Timeout.standardTimeoutMillis(), TimeUnit.MILLISECONDS));
+        // At real time the rest of the journal would take ten seconds
+        replayer.seek(START + 10 * 500);
+        replayer.setSpeed(TickJournalReplayer.MAXIMUM_SPEED);
+        thread.join(Timeout.standardTimeoutMillis());
+        assertFalse(thread.isAlive());
+      } finally {
+        replayer.stop();
+      }
+      final List<Integer> ticks = listener._ticks;
+      final int seekIndex = ticks.indexOf(500);
+      assertTrue(seekIndex >= 5);
+      for (int i = 0; i < seekIndex; i++) {
+        assertEquals(i, ticks.get(i).intValue());
+      }
+      assertEquals(seekIndex + 500, ticks.size());
+      for (int i = seekIndex; i < ticks.size(); i++) {
+        assertEquals(500 + i - seekIndex, ticks.get(i).intValue());
+      }
+      assertEquals(START + 10 * (TICKS - 1), replayer.getReplayTimestamp());
+      assertEquals(ticks.size(), replayer.getTicksReplayed());
+      // 500 ticks recorded 10ms apart, replayed without pausing
+      final long afterSeekMillis = TimeUnit.NANOSECONDS.toMillis(listener._nanos.get(ticks.size() - 1) - listener._nanos.get(seekIndex));
+      assertTrue("replay after seek took " + afterSeekMillis + "ms", afterSeekMillis < 2500);
+    } finally {
+      journal.close();
+    }
+  }
+
+  public void seekAndStopDuringGap() throws Exception {
+    // Three ticks, then a minute's gap before the next, then another minute's gap
+    final long[] timestamps = new long[] {START, START + 10, START + 20, START + 60000, START + 60010, START + 120000};
+    final File file = File.createTempFile("ticks", ".journal");
+    file.deleteOnExit();
+    final TickJournalWriter writer = new TickJournalWriter(OpenGammaFudgeContext.getInstance(), file, REGION_SIZE);
+    try {
+      for (int i = 0; i < timestamps.length; i++) {
+        final MutableFudgeMsg fields = OpenGammaFudgeContext.getInstance().newMessage();
+        fields.add("Tick", i);
+        writer.write(timestamps[i], security(i), fields);
+      }
+    } finally {
+      writer.close();
+    }
+    final TickJournal journal = open(file);
+    try {
+      final CountDownLatch beforeGap = new CountDownLatch(3);
+      final CountDownLatch afterSeek = new CountDownLatch(4);
+      final RecordingListener listener = new RecordingListener() {
+        @Override
+        public void tickReplayed(final TickJournal.Cursor tick) {
+          super.tickReplayed(tick);
+          beforeGap.countDown();
+          afterSeek.countDown();
+        }
+      };
+      final TickJournalReplayer replayer = new TickJournalReplayer(journal, listener);
+      replayer.setSpeed(TickJournalReplayer.REAL_TIME);
+      final Thread thread = new Thread(replayer, "TickJournalReplayer");
+      final long startNanos = System.nanoTime();
+      thread.start();
+      try {
+        assertTrue(beforeGap.await(Timeout.standardTimeoutMillis(), TimeUnit.MILLISECONDS));
+        // Let the replayer start waiting for the tick a minute away; the seek must wake it and discard that tick
+        Thread.sleep(100);
+        replayer.seek(START + 60010);
+        assertTrue(afterSeek.await(Timeout.standardTimeoutMillis(), TimeUnit.MILLISECONDS));
+        Thread.sleep(100);
+        replayer.stop();
+        thread.join(Timeout.standardTimeoutMillis());
+        assertFalse(thread.isAlive());
+      } finally {
+        replayer.stop();
+      }
+      final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+      assertTrue("replay took " + elapsedMillis + "ms", elapsedMillis < 30000);
+      assertEquals(Arrays.asList(0, 1, 2, 4), listener._ticks);
+      assertEquals(4, replayer.getTicksReplayed());
+      assertEquals(START + 60010, replayer.getReplayTimestamp());
+    } finally {
+      journal.close();
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void invalidSpeed() throws IOException {
+    final TickJournal journal = open(writeJournal());
+    try {
+      new TickJournalReplayer(journal, mock(TickJournalReplayer.Listener.class)).setSpeed(0);
+    } finally {
+      journal.close();
+    }
+  }
+
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.normalization;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.MutableFudgeMsg;
+import org.fudgemsg.wire.FudgeMsgReader;
+import org.fudgemsg.wire.FudgeMsgWriter;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.core.value.MarketDataRequirementNames;
+import com.opengamma.livedata.firehose.AbstractConnectorJob;
+import com.opengamma.livedata.firehose.AbstractTest;
+import com.opengamma.livedata.firehose.RecordStream;
+import com.opengamma.livedata.server.FieldHistoryStore;
+import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
+
+/**
+ * This is intentionally NOT a TestNG test. It should be run manually to measure
+ * normalization throughput, compiled and uncompiled, over a tick recording.
+ * <p>
+ * The recording is a file of Fudge messages, each with the security in an "id"
+ * field and the raw tick in a "fields" sub-message, replayed with a
+ * {@code FileReplayConnectorJob}. If no file is given, a synthetic one is written.
+ */
+public class NormalizationPerformanceTest {
+  public static final int NUM_SECURITIES = 1000;
+  public static final int NUM_TICKS = 1000000;
+  public static final int NUM_CYCLES = 5;
+  public static final FudgeContext FUDGE_CONTEXT = OpenGammaFudgeContext.getInstance();
+  public static final String ID_FIELD = "id";
+  public static final String FIELDS_FIELD = "fields";
+
+  private final NormalizationRuleSet _ruleSet = new NormalizationRuleSet("Performance Test",
+      new FieldFilter("BID", "ASK", "LAST_PRICE", "PX_SETTLE", "VOLUME", "OPT_IMPLIED_VOLATILITY_MID_RT", "YLD_YTM_MID"),
+      new FieldNameChange("BID", MarketDataRequirementNames.BID),
+      new FieldNameChange("ASK", MarketDataRequirementNames.ASK),
+      new FieldNameChange("LAST_PRICE", MarketDataRequirementNames.LAST),
+      new FieldNameChange("PX_SETTLE", MarketDataRequirementNames.SETTLE_PRICE),
+      new FieldNameChange("VOLUME", MarketDataRequirementNames.VOLUME),
+      new FieldNameChange("OPT_IMPLIED_VOLATILITY_MID_RT", MarketDataRequirementNames.MID_IMPLIED_VOLATILITY),
+      new FieldNameChange("YLD_YTM_MID", MarketDataRequirementNames.YIELD_YIELD_TO_MATURITY_MID),
+      new MarketValueCalculator(),
+      new ImpliedVolatilityCalculator(),
+      new FieldHistoryUpdater(),
+      new FieldFilter(MarketDataRequirementNames.MARKET_VALUE, MarketDataRequirementNames.VOLUME, MarketDataRequirementNames.IMPLIED_VOLATILITY,
+          MarketDataRequirementNames.YIELD_YIELD_TO_MATURITY_MID),
+      new RequiredFieldFilter(MarketDataRequirementNames.MARKET_VALUE));
+
+  public static void writeRecording(File file) throws IOException {
+    Random random = new Random(0);
+    OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 65536);
+    try {
+      FudgeMsgWriter writer = FUDGE_CONTEXT.createMessageWriter(out);
+      for (int i = 0; i < NUM_TICKS; i++) {
+        MutableFudgeMsg fields = FUDGE_CONTEXT.newMessage();
+        double mid = 100.0 + random.nextInt(1000) / 100.0;
+        fields.add("BID", mid - 0.01);
+        fields.add("ASK", mid + 0.01);
+        if (random.nextBoolean()) {
+          fields.add("LAST_PRICE", mid);
+          fields.add("VOLUME", (double) random.nextInt(10000));
+        }
+        fields.add("BID_SIZE", random.nextInt(100));
+        fields.add("ASK_SIZE", random.nextInt(100));
+        fields.add("TIME", "12:00:00");
+        MutableFudgeMsg record = FUDGE_CONTEXT.newMessage();
+        record.add(ID_FIELD, "Security-" + random.nextInt(NUM_SECURITIES));
+        record.add(FIELDS_FIELD, fields);
+        writer.writeMessage(record);
+      }
+      writer.flush();
+    } finally {
+      out.close();
+    }
+  }
+
+  public void runTest(String filename, final boolean compiled) {
+    final Map<String, FieldHistoryStore> histories = new HashMap<String, FieldHistoryStore>();
+    final long[] ticks = new long[2];
+    long startTime = System.nanoTime();
+    AbstractTest.readFile(filename, new AbstractConnectorJob.Callback<FudgeMsg>() {
+
+      @Override
+      public void disconnected() {
+        throw new OpenGammaRuntimeException("End of recording");
+      }
+
+      @Override
+      public void received(final FudgeMsg record) {
+        String securityUniqueId = record.getString(ID_FIELD);
+        FieldHistoryStore history = histories.get(securityUniqueId);
+        if (history == null) {
+          history = new FieldHistoryStore();
+          histories.put(securityUniqueId, history);
+        }
+        FudgeMsg fields = record.getMessage(FIELDS_FIELD);
+        FudgeMsg normalized = compiled ? _ruleSet.getNormalizedMessage(fields, securityUniqueId, history)
+            : _ruleSet.getNormalizedMessageUncompiled(fields, securityUniqueId, history);
+        ticks[0]++;
+        if (normalized != null) {
+          ticks[1]++;
+        }
+      }
+
+      @Override
+      public void connected() {
+      }
+
+    }, new RecordStream.Factory<FudgeMsg>() {
+
+      @Override
+      public RecordStream<FudgeMsg> newInstance(final InputStream input) {
+        final FudgeMsgReader reader = FUDGE_CONTEXT.createMessageReader(input);
+        return new RecordStream<FudgeMsg>() {
+          @Override
+          public FudgeMsg readRecord() throws IOException {
+            if (!reader.hasNext()) {
+              throw new EOFException();
+            }
+            return reader.nextMessage();
+          }
+        };
+      }
+
+    });
+    long delta = System.nanoTime() - startTime;
+    System.out.println("........" + (compiled ? "compiled" : "uncompiled") + ": " + ticks[0] + " ticks, " + ticks[1] + " published.");
+    System.out.println("........" + ((double) delta / (double) ticks[0]) + " nanos per tick (including replay).");
+    System.out.println("........" + (ticks[0] / (delta * 1.0e-9)) + " ticks per second.");
+  }
+
+  /**
+   * @param args  optionally, the recording to replay
+   */
+  public static void main(String[] args) throws Exception {
+    final NormalizationPerformanceTest test = new NormalizationPerformanceTest();
+    String filename;
+    File generated = null;
+    if (args.length > 0) {
+      filename = args[0];
+    } else {
+      generated = File.createTempFile("ticks", ".fudge");
+      writeRecording(generated);
+      filename = generated.getPath();
+    }
+    try {
+      for (int i = 0; i < NUM_CYCLES; i++) {
+        System.out.println("CYCLE : " + i);
+        test.runTest(filename, false);
+        test.runTest(filename, true);
+      }
+    } finally {
+      if (generated != null) {
+        generated.delete();
+      }
+    }
+  }
+
+}
@@ -5,12 +5,19 @@
  */
 package com.opengamma.livedata.normalization;
 
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
 import static org.testng.AssertJUnit.assertNull;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.fudgemsg.FudgeField;
 import org.fudgemsg.FudgeMsg;
 import org.fudgemsg.MutableFudgeMsg;
 import org.testng.annotations.Test;
 
+import com.opengamma.core.value.MarketDataRequirementNames;
 import com.opengamma.livedata.server.FieldHistoryStore;
 import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
 
@@ -39,4 +46,83 @@ public class NormalizationRuleSetTest {
     assertNull(normalizedMsg);
   }
 
+  //-------------------------------------------------------------------------
+  private static NormalizationRuleSet bloombergLikeRuleSet() {
+    return new NormalizationRuleSet("Testing",
+        new FieldFilter("BID", "ASK", "LAST_PRICE", "VOLUME", "QUOTE"),
+        new FieldNameChange("BID", MarketDataRequirementNames.BID),
+        new FieldNameChange("ASK", MarketDataRequirementNames.ASK),
+        new FieldNameChange("LAST_PRICE", MarketDataRequirementNames.LAST),
+        new UnitChange(MarketDataRequirementNames.BID, 0.01),
+        new UnitChange("QUOTE", 100),
+        new MarketValueCalculator(),
+        new FieldHistoryUpdater(),
+        new FieldFilter(MarketDataRequirementNames.MARKET_VALUE, MarketDataRequirementNames.BID, MarketDataRequirementNames.ASK, "QUOTE"),
+        new RequiredFieldFilter(MarketDataRequirementNames.MARKET_VALUE));
+  }
+
+  private static List<String> describe(FudgeMsg msg) {
+    List<String> fields = new ArrayList<String>();
+    for (FudgeField field : msg) {
+      fields.add(field.getName() + "/" + field.getOrdinal() + "/" + field.getType().getTypeId() + "/" + field.getValue());
+    }
+    return fields;
+  }
+
+  private static void assertCompiledMatchesUncompiled(NormalizationRuleSet ruleSet, FudgeMsg msg) {
+    FudgeMsg compiled = ruleSet.getNormalizedMessage(msg, "123", new FieldHistoryStore());
+    FudgeMsg uncompiled = ruleSet.getNormalizedMessageUncompiled(msg, "123", new FieldHistoryStore());
+    if (uncompiled == null) {
+      assertNull(compiled);
+    } else {
+      assertNotNull(compiled);
+      assertEquals(describe(uncompiled), describe(compiled));
+    }
+  }
+
+  public void compiledRunsOfFieldRules() {
+    NormalizationRuleSet ruleSet = bloombergLikeRuleSet();
+    // filter+renames+unit changes, market value, history, filter, required
+    assertEquals(5, ruleSet.getPipeline().getStageCount());
+  }
+
+  public void compiledMatchesUncompiled() {
+    NormalizationRuleSet ruleSet = bloombergLikeRuleSet();
+    MutableFudgeMsg msg = OpenGammaFudgeContext.getInstance().newMessage();
+    msg.add("VOLUME", 1000);
+    msg.add("ASK", 101.0);
+    msg.add("IGNORED", "x");
+    msg.add("QUOTE", 3);
+    msg.add("BID", 99.0);
+    msg.add("LAST_PRICE", 100.0);
+    assertCompiledMatchesUncompiled(ruleSet, msg);
+  }
+
+  public void compiledMatchesUncompiledWithDuplicateFields() {
+    NormalizationRuleSet ruleSet = bloombergLikeRuleSet();
+    MutableFudgeMsg msg = OpenGammaFudgeContext.getInstance().newMessage();
+    msg.add("BID", 99.0);
+    msg.add("ASK", 101.0);
+    msg.add("BID", 98.0);
+    assertCompiledMatchesUncompiled(ruleSet, msg);
+  }
+
+  public void compiledMatchesUncompiledWhenFiltered() {
+    NormalizationRuleSet ruleSet = bloombergLikeRuleSet();
+    MutableFudgeMsg msg = OpenGammaFudgeContext.getInstance().newMessage();
+    msg.add("IGNORED", 1.0);
+    assertCompiledMatchesUncompiled(ruleSet, msg);
+  }
+
+  public void renameOntoExistingFieldIsNotCompiled() {
+    NormalizationRuleSet ruleSet = new NormalizationRuleSet("Testing",
+        new FieldFilter("A", "B"),
+        new FieldNameChange("A", "B"));
+    assertEquals(2, ruleSet.getPipeline().getStageCount());
+    MutableFudgeMsg msg = OpenGammaFudgeContext.getInstance().newMessage();
+    msg.add("A", 1.0);
+    msg.add("B", 2.0);
+    assertCompiledMatchesUncompiled(ruleSet, msg);
+  }
+
 }
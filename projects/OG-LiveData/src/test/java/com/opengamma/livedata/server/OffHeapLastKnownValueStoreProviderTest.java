@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.server;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.MutableFudgeMsg;
+import org.testng.annotations.Test;
+
+import com.opengamma.id.ExternalId;
+import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
+
+/**
+ * Test.
+ */
+@Test(groups = "unit")
+public class OffHeapLastKnownValueStoreProviderTest {
+
+  private static final ExternalId SECURITY = ExternalId.of("Test", "A");
+
+  private static MutableFudgeMsg msg() {
+    return OpenGammaFudgeContext.getInstance().newMessage();
+  }
+
+  public void updateAndRead() {
+    OffHeapLastKnownValueStoreProvider provider = new OffHeapLastKnownValueStoreProvider();
+    OffHeapLastKnownValueStore store = (OffHeapLastKnownValueStore) provider.newInstance(SECURITY, "Rules");
+    assertTrue(store.isEmpty());
+    assertEquals(0, store.getSequence());
+
+    MutableFudgeMsg update = msg();
+    update.add("Bid", 1.5);
+    update.add("Ask", 2.5);
+    store.updateFields(update);
+    update = msg();
+    update.add("Bid", 1.75);
+    update.add("Status", "OPEN");
+    store.updateFields(update);
+
+    assertFalse(store.isEmpty());
+    assertEquals(2, store.getSequence());
+    assertEquals(1.75, store.getDouble("Bid"), 0.0);
+    assertNull(store.getDouble("Last"));
+    FudgeMsg fields = store.getFields();
+    assertEquals(3, fields.getNumFields());
+    assertEquals(1.75, fields.getDouble("Bid"), 0.0);
+    assertEquals(2.5, fields.getDouble("Ask"), 0.0);
+    assertEquals("OPEN", fields.getString("Status"));
+    assertEquals(2, provider.getColumnCount());
+  }
+
+  public void fieldChangingType() {
+    OffHeapLastKnownValueStore store = (OffHeapLastKnownValueStore) new OffHeapLastKnownValueStoreProvider().newInstance(SECURITY, "Rules");
+    MutableFudgeMsg update = msg();
+    update.add("Volume", 10.0);
+    store.updateFields(update);
+    update = msg();
+    update.add("Volume", "n/a");
+    store.updateFields(update);
+    assertNull(store.getDouble("Volume"));
+    assertEquals("n/a", store.getFields().getString("Volume"));
+    assertEquals(1, store.getFields().getNumFields());
+  }
+
+  public void sameRowForSameKey() {
+    OffHeapLastKnownValueStoreProvider provider = new OffHeapLastKnownValueStoreProvider(4, 2);
+    LastKnownValueStore store = provider.newInstance(SECURITY, "Rules");
+    assertSame(store, provider.newInstance(SECURITY, "Rules"));
+    provider.newInstance(SECURITY, "Other");
+    provider.newInstance(ExternalId.of("Test", "B"), "Rules");
+    assertEquals(3, provider.getRowCount());
+
+    assertFalse(provider.isAvailable(SECURITY, "Rules"));
+    MutableFudgeMsg update = msg();
+    update.add("Bid", 1.0);
+    store.updateFields(update);
+    assertTrue(provider.isAvailable(SECURITY, "Rules"));
+    assertEquals(Collections.singleton("A"), provider.getAllIdentifiers("Test"));
+  }
+
+  public void columnsExhausted() {
+    OffHeapLastKnownValueStoreProvider provider = new OffHeapLastKnownValueStoreProvider(2, 16);
+    LastKnownValueStore store = provider.newInstance(SECURITY, "Rules");
+    MutableFudgeMsg update = msg();
+    update.add("A", 1.0);
+    update.add("B", 2.0);
+    update.add("C", 3.0);
+    store.updateFields(update);
+    assertEquals(2, provider.getColumnCount());
+    FudgeMsg fields = store.getFields();
+    assertEquals(3, fields.getNumFields());
+    assertEquals(3.0, fields.getDouble("C"), 0.0);
+  }
+
+  public void persistentTier() {
+    final MapLastKnownValueStore persistent = new MapLastKnownValueStore();
+    MutableFudgeMsg saved = msg();
+    saved.add("Bid", 1.0);
+    persistent.updateFields(saved);
+    OffHeapLastKnownValueStoreProvider provider = new OffHeapLastKnownValueStoreProvider();
+    provider.setPersistentTier(new MapLastKnownValueStoreProvider() {
+      @Override
+      public LastKnownValueStore newInstance(ExternalId security, String normalizationRuleSetId) {
+        return persistent;
+      }
+      @Override
+      public Set<String> getAllIdentifiers(String identifierScheme) {
+        return Collections.singleton("A");
+      }
+    });
+
+    LastKnownValueStore store = provider.newInstance(SECURITY, "Rules");
+    assertEquals(1.0, store.getFields().getDouble("Bid"), 0.0);
+    MutableFudgeMsg update = msg();
+    update.add("Bid", 2.0);
+    store.updateFields(update);
+    assertEquals(2.0, persistent.getFields().getDouble("Bid"), 0.0);
+    assertEquals(Collections.singleton("A"), provider.getAllIdentifiers("Test"));
+  }
+
+}
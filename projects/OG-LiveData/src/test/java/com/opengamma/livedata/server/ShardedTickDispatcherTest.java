@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.server;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.MutableFudgeMsg;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.opengamma.id.ExternalScheme;
+import com.opengamma.livedata.LiveDataValueUpdateBean;
+import com.opengamma.livedata.server.distribution.MarketDataDistributor;
+import com.opengamma.livedata.server.distribution.MarketDataSender;
+import com.opengamma.livedata.server.distribution.MarketDataSenderFactory;
+import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
+
+/**
+ * Test.
+ */
+@Test(groups = "unit")
+public class ShardedTickDispatcherTest {
+
+  private MockLiveDataServer _server;
+  private Map<String, List<Integer>> _sent;
+
+  @BeforeMethod
+  public void setUp() {
+    _server = new MockLiveDataServer(ExternalScheme.of("test"));
+    _sent = new ConcurrentHashMap<String, List<Integer>>();
+    _server.setMarketDataSenderFactory(new MarketDataSenderFactory() {
+      @Override
+      public Collection<MarketDataSender> create(final MarketDataDistributor distributor) {
+        final List<Integer> sent = Collections.synchronizedList(new ArrayList<Integer>());
+        _sent.put(distributor.getSubscription().getSecurityUniqueId(), sent);
+        return Collections.<MarketDataSender>singleton(new MarketDataSender() {
+
+          @Override
+          public void sendMarketData(LiveDataValueUpdateBean data) {
+            sent.add(data.getFields().getInt("seq"));
+          }
+
+          @Override
+          public MarketDataDistributor getDistributor() {
+            return distributor;
+          }
+
+        });
+      }
+    });
+  }
+
+  private static FudgeMsg tick(String field, int value) {
+    MutableFudgeMsg msg = OpenGammaFudgeContext.getInstance().newMessage();
+    msg.add(field, value);
+    return msg;
+  }
+
+  private long totalDistributed(ShardedTickDispatcher dispatcher) {
+    long total = 0;
+    for (int i = 0; i < dispatcher.getShardCount(); i++) {
+      total += dispatcher.getTicksDistributed(i);
+    }
+    return total;
+  }
+
+  //-------------------------------------------------------------------------
+  private static List<Integer> sequence(int from, int to) {
+    List<Integer> sequence = new ArrayList<Integer>();
+    for (int i = from; i <= to; i++) {
+      sequence.add(i);
+    }
+    return sequence;
+  }
+
+  public void distributesEveryTickInOrder() {
+    // large enough that no shard can fill
+    ShardedTickDispatcher dispatcher = new ShardedTickDispatcher("test", 2, 256, false);
+    _server.setTickDispatcher(dispatcher);
+    _server.connect();
+    assertTrue(dispatcher.isRunning());
+    _server.subscribe("a");
+    _server.subscribe("b");
+
+    for (int i = 1; i <= 100; i++) {
+      _server.liveDataReceived("a", tick("seq", i));
+      _server.liveDataReceived("b", tick("seq", i));
+    }
+    _server.disconnect();
+    assertFalse(dispatcher.isRunning());
+
+    assertEquals(200, totalDistributed(dispatcher));
+    assertEquals(sequence(1, 100), _sent.get("a"));
+    assertEquals(sequence(1, 100), _sent.get("b"));
+    assertEquals(100, _server.getSubscription("a").getLiveDataHistory().getLastKnownValues().getInt("seq").intValue());
+    assertEquals(100, _server.getSubscription("b").getLiveDataHistory().getLastKnownValues().getInt("seq").intValue());
+  }
+
+  public void mergesOrDropsWhenFull() {
+    _server.connect();
+    _server.subscribe("a");
+    _server.subscribe("b");
+    ShardedTickDispatcher dispatcher = new ShardedTickDispatcher("test", 1, 2, false);
+    _server.setTickDispatcher(dispatcher);
+
+    // not yet started, so the ticks wait on the shard until it is full
+    _server.liveDataReceived("a", tick("seq", 1));
+    _server.liveDataReceived("a", tick("seq", 2));
+    assertEquals(2, dispatcher.getQueueDepth(0));
+    // merged into the latest tick waiting for the security rather than blocking
+    _server.liveDataReceived("a", tick("seq", 3));
+    // nothing waiting for the security to merge into
+    _server.liveDataReceived("b", tick("seq", 1));
+    assertEquals(2, dispatcher.getQueueDepth(0));
+    assertEquals(4, dispatcher.getTicksReceived(0));
+    assertEquals(1, dispatcher.getTicksConflated(0));
+    assertEquals(1, dispatcher.getTicksDropped(0));
+
+    dispatcher.start();
+    dispatcher.stop();
+
+    assertEquals(2, dispatcher.getTicksDistributed(0));
+    assertEquals(Arrays.asList(1, 3), _sent.get("a"));
+    assertTrue(_sent.get("b").isEmpty());
+  }
+
+  public void dropsTicksAfterStop() {
+    ShardedTickDispatcher dispatcher = new ShardedTickDispatcher("test", 1);
+    _server.setTickDispatcher(dispatcher);
+    _server.connect();
+    _server.subscribe("a");
+    _server.liveDataReceived("a", tick("seq", 1));
+    _server.disconnect();
+    _server.liveDataReceived("a", tick("seq", 2));
+
+    assertEquals(0, dispatcher.getQueueDepth(0));
+    assertEquals(1, dispatcher.getTicksDistributed(0));
+    assertEquals(1, dispatcher.getTicksDropped(0));
+    assertEquals(Collections.singletonList(1), _sent.get("a"));
+  }
+
+  public void conflatesTicksWaitingForTheSameSecurity() {
+    _server.connect();
+    _server.subscribe("a");
+    ShardedTickDispatcher dispatcher = new ShardedTickDispatcher("test", 4);
+    _server.setTickDispatcher(dispatcher);
+    int shard = dispatcher.getShard("a");
+
+    // not yet started, so the ticks wait on the shard
+    _server.liveDataReceived("a", tick("bid", 1));
+    _server.liveDataReceived("a", tick("ask", 2));
+    _server.liveDataReceived("a", tick("bid", 3));
+    assertEquals(1, dispatcher.getQueueDepth(shard));
+    assertEquals(3, dispatcher.getTicksReceived(shard));
+    assertEquals(2, dispatcher.getTicksConflated(shard));
+
+    dispatcher.start();
+    dispatcher.stop();
+
+    assertEquals(0, dispatcher.getQueueDepth(shard));
+    assertEquals(1, dispatcher.getTicksDistributed(shard));
+    FudgeMsg history = _server.getSubscription("a").getLiveDataHistory().getLastKnownValues();
+    assertEquals(3, history.getInt("bid").intValue());
+    assertEquals(2, history.getInt("ask").intValue());
+  }
+
+  public void sameSecurityAlwaysOnSameShard() {
+    ShardedTickDispatcher dispatcher = new ShardedTickDispatcher("test", 7);
+    for (int i = 0; i < 100; i++) {
+      String securityUniqueId = "security" + i;
+      int shard = dispatcher.getShard(securityUniqueId);
+      assertTrue(shard >= 0 && shard < 7);
+      assertEquals(shard, dispatcher.getShard(securityUniqueId));
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void zeroShards() {
+    new ShardedTickDispatcher("test", 0);
+  }
+
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.util.test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Minimal micro-benchmark harness for speed tests. Each benchmark is run for a number of warm-up iterations, to allow the JIT to
+ * compile the code under test, and then for a number of measured iterations. The mean and standard deviation of the time per
+ * operation over the measured iterations are logged and appended to a results file as a line of comma separated values:
+ * <pre>
+ * timestamp,version,suite,benchmark,iterations,operations,nsPerOperation,nsPerOperationStdDev
+ * </pre>
+ * The results file is {@code benchmark-results.csv} in the working directory unless the {@code benchmark.results} property gives
+ * another. The version recorded is taken from the {@code benchmark.version} property so that results from different releases can
+ * be compared.
+ * <p>
+ * Values returned by the benchmarked tasks are consumed so that the JIT cannot eliminate the work that produced them.
+ */
+public final class Benchmark {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(Benchmark.class);
+
+  /**
+   * Default number of warm-up iterations.
+   */
+  public static final int DEFAULT_WARMUP_ITERATIONS = 5;
+  /**
+   * Default number of measured iterations.
+   */
+  public static final int DEFAULT_MEASURED_ITERATIONS = 10;
+
+  private static final String RESULTS_FILE = System.getProperty("benchmark.results", "benchmark-results.csv");
+  private static final String VERSION = System.getProperty("benchmark.version", "");
+
+  /**
+   * A unit of work to benchmark.
+   */
+  public interface Task {
+
+    /**
+     * Performs the operations of one iteration.
+     *
+     * @return a value derived from the work done, to be consumed by the harness
+     */
+    Object run();
+
+  }
+
+  private final String _suite;
+  private final int _warmupIterations;
+  private final int _measuredIterations;
+  private volatile int _sink;
+
+  public Benchmark(final String suite) {
+    this(suite, DEFAULT_WARMUP_ITERATIONS, DEFAULT_MEASURED_ITERATIONS);
+  }
+
+  public Benchmark(final String suite, final int warmupIterations, final int measuredIterations) {
+    ArgumentChecker.notNull(suite, "suite");
+    ArgumentChecker.isTrue(warmupIterations >= 0, "warmupIterations must not be negative");
+    ArgumentChecker.isTrue(measuredIterations > 0, "measuredIterations must be positive");
+    _suite = suite;
+    _warmupIterations = warmupIterations;
+    _measuredIterations = measuredIterations;
+  }
+
+  public String getSuite() {
+    return _suite;
+  }
+
+  /**
+   * Runs a benchmark.
+   *
+   * @param name the benchmark name, not null
+   * @param operations the number of operations performed by each invocation of the task
+   * @param task the task to run, not null
+   * @return the mean time per operation in nanoseconds
+   */
+  public double run(final String name, final int operations, final Task task) {
+    ArgumentChecker.notNull(name, "name");
+    ArgumentChecker.isTrue(operations > 0, "operations must be positive");
+    ArgumentChecker.notNull(task, "task");
+    for (int i = 0; i < _warmupIterations; i++) {
+      consume(task.run());
+    }
+    final double[] nsPerOperation = new double[_measuredIterations];
+    for (int i = 0; i < _measuredIterations; i++) {
+      final long start = System.nanoTime();
+      consume(task.run());
+      nsPerOperation[i] = (double) (System.nanoTime() - start) / (double) operations;
+    }
+    double mean = 0;
+    for (double ns : nsPerOperation) {
+      mean += ns;
+    }
+    mean /= _measuredIterations;
+    double variance = 0;
+    for (double ns : nsPerOperation) {
+      variance += (ns - mean) * (ns - mean);
+    }
+    final double stdDev = Math.sqrt(variance / _measuredIterations);
+    s_logger.info("{}.{}: {} ns/op (+/- {})", new Object[] {_suite, name, mean, stdDev });
+    writeResult(name, operations, mean, stdDev);
+    return mean;
+  }
+
+  private void consume(final Object value) {
+    if (value != null) {
+      _sink ^= value.hashCode();
+    }
+  }
+
+  private void writeResult(final String name, final int operations, final double mean, final double stdDev) {
+    final File file = new File(RESULTS_FILE);
+    Writer out = null;
+    try {
+      synchronized (Benchmark.class) {
+        final boolean header = !file.exists();
+        out = new FileWriter(file, true);
+        if (header) {
+          out.write("timestamp,version,suite,benchmark,iterations,operations,nsPerOperation,nsPerOperationStdDev\n");
+        }
+        out.write(System.currentTimeMillis() + "," + VERSION + "," + _suite + "," + name + "," + _measuredIterations + "," + operations + "," + mean + "," + stdDev + "\n");
+        out.close();
+        out = null;
+      }
+    } catch (IOException e) {
+      s_logger.warn("Couldn't write benchmark result to {}: {}", file, e.getMessage());
+    } finally {
+      IOUtils.closeQuietly(out);
+    }
+  }
+
+}